@@ -0,0 +1,80 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A profiler reporting the octets of Fast Infoset documents parsed or
+ * serialized per operation, as the secondary result bytes.norm.
+ * <p>
+ * Each operation of a benchmark parses or serializes the same document, so
+ * the octets of an operation are set once, from the setup of the benchmark
+ * with {@link #setBytes(Class, long)} or {@link #setBytes(Class, String, long)},
+ * and nothing is counted while the benchmark is measured.
+ */
+public final class BytesProfiler implements InternalProfiler {
+    private static final Map<String, Long> BYTES = new ConcurrentHashMap<String, Long>();
+    
+    /**
+     * Set the octets of an operation of the benchmark methods of a class.
+     */
+    static void setBytes(Class<?> benchmark, long bytes) {
+        BYTES.put(benchmark.getName(), bytes);
+    }
+    
+    /**
+     * Set the octets of an operation of a benchmark method, overriding
+     * those set for the methods of the class.
+     */
+    static void setBytes(Class<?> benchmark, String method, long bytes) {
+        BYTES.put(benchmark.getName() + '.' + method, bytes);
+    }
+    
+    public String getDescription() {
+        return "Octets of Fast Infoset documents per operation";
+    }
+    
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    }
+    
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, 
+            IterationParams iterationParams, IterationResult result) {
+        final String benchmark = benchmarkParams.getBenchmark();
+        Long bytes = BYTES.get(benchmark);
+        if (bytes == null) {
+            bytes = BYTES.get(benchmark.substring(0, benchmark.lastIndexOf('.')));
+        }
+        if (bytes == null) {
+            return Collections.<Result>emptyList();
+        }
+        
+        return Collections.singletonList(new ScalarResult("bytes.norm", 
+                bytes.doubleValue(), "B/op", AggregationPolicy.AVG));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import java.util.Random;
+
+/**
+ * A synthetic corpus of documents.
+ * <p>
+ * The documents are generated deterministically, so that results are
+ * comparable between runs.
+ */
+public final class Corpus {
+    /**
+     * A small SOAP message with WS-Addressing headers.
+     */
+    public static final String SOAP = "soap";
+    
+    /**
+     * A large document of many records that are siblings.
+     */
+    public static final String FLAT = "flat";
+    
+    /**
+     * A document of deeply nested elements.
+     */
+    public static final String DEEP = "deep";
+    
+    /**
+     * A document whose content is mostly binary data.
+     */
+    public static final String BINARY = "binary";
+    
+    private static final String SOAP_NAMESPACE = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String WSA_NAMESPACE = "http://www.w3.org/2005/08/addressing";
+    private static final String ORDER_NAMESPACE = "urn:example:order";
+    private static final String DATA_NAMESPACE = "urn:example:data";
+    
+    private Corpus() {
+    }
+    
+    /**
+     * Create a document of the corpus.
+     *
+     * @param name the name of the document, one of {@link #SOAP},
+     *        {@link #FLAT}, {@link #DEEP} or {@link #BINARY}.
+     */
+    public static CorpusDocument create(String name) throws Exception {
+        if (SOAP.equals(name)) {
+            return createSoap();
+        } else if (FLAT.equals(name)) {
+            return createFlat();
+        } else if (DEEP.equals(name)) {
+            return createDeep();
+        } else if (BINARY.equals(name)) {
+            return createBinary();
+        } else {
+            throw new IllegalArgumentException(name);
+        }
+    }
+    
+    private static CorpusDocument createSoap() throws Exception {
+        final CorpusDocument d = new CorpusDocument();
+        d.startElement(SOAP_NAMESPACE, "soapenv", "Envelope", 
+                new String[] {"soapenv", SOAP_NAMESPACE, "wsa", WSA_NAMESPACE}, null);
+        
+        d.startElement(SOAP_NAMESPACE, "soapenv", "Header", null, null);
+        text(d, WSA_NAMESPACE, "wsa", "To", "http://example.com/services/OrderService");
+        text(d, WSA_NAMESPACE, "wsa", "Action", "urn:example:order:submit");
+        text(d, WSA_NAMESPACE, "wsa", "MessageID", "urn:uuid:6b29fc40-ca47-1067-b31d-00dd010662da");
+        d.endElement();
+        
+        d.startElement(SOAP_NAMESPACE, "soapenv", "Body", null, null);
+        d.startElement(ORDER_NAMESPACE, "", "submitOrder", 
+                new String[] {"", ORDER_NAMESPACE}, null);
+        text(d, ORDER_NAMESPACE, "", "customer", "ACME Corporation");
+        for (int i = 0; i < 5; i++) {
+            d.startElement(ORDER_NAMESPACE, "", "line", null, 
+                    new String[] {"number", Integer.toString(i + 1), "currency", "EUR"});
+            text(d, ORDER_NAMESPACE, "", "product", "P-" + (1000 + i * 17));
+            text(d, ORDER_NAMESPACE, "", "quantity", Integer.toString(i * 3 + 1));
+            text(d, ORDER_NAMESPACE, "", "price", (i * 7 + 10) + ".95");
+            d.endElement();
+        }
+        d.endElement();
+        d.endElement();
+        
+        d.endElement();
+        return d.complete();
+    }
+    
+    private static CorpusDocument createFlat() throws Exception {
+        final Random r = new Random(0);
+        final CorpusDocument d = new CorpusDocument();
+        d.startElement(DATA_NAMESPACE, "", "records", new String[] {"", DATA_NAMESPACE}, null);
+        for (int i = 0; i < 10000; i++) {
+            d.startElement(DATA_NAMESPACE, "", "record", null, 
+                    new String[] {"id", Integer.toString(i), "status", (i % 3 == 0) ? "active" : "closed"});
+            text(d, DATA_NAMESPACE, "", "name", "name-" + r.nextInt(1000));
+            text(d, DATA_NAMESPACE, "", "value", Integer.toString(r.nextInt()));
+            text(d, DATA_NAMESPACE, "", "comment", "A comment of record " + i + " that is not repeated");
+            d.endElement();
+        }
+        d.endElement();
+        return d.complete();
+    }
+    
+    private static CorpusDocument createDeep() throws Exception {
+        final CorpusDocument d = new CorpusDocument();
+        d.startElement(DATA_NAMESPACE, "", "tree", new String[] {"", DATA_NAMESPACE}, null);
+        for (int i = 0; i < 20; i++) {
+            for (int depth = 0; depth < 500; depth++) {
+                d.startElement(DATA_NAMESPACE, "", "node", null, 
+                        new String[] {"depth", Integer.toString(depth)});
+            }
+            d.characters("leaf " + i);
+            for (int depth = 0; depth < 500; depth++) {
+                d.endElement();
+            }
+        }
+        d.endElement();
+        return d.complete();
+    }
+    
+    private static CorpusDocument createBinary() throws Exception {
+        final Random r = new Random(0);
+        final CorpusDocument d = new CorpusDocument();
+        d.startElement(DATA_NAMESPACE, "", "attachments", new String[] {"", DATA_NAMESPACE}, null);
+        for (int i = 0; i < 64; i++) {
+            final byte[] b = new byte[16 * 1024];
+            r.nextBytes(b);
+            d.startElement(DATA_NAMESPACE, "", "attachment", null, 
+                    new String[] {"id", Integer.toString(i), "type", "application/octet-stream"});
+            d.octets(b);
+            d.endElement();
+        }
+        d.endElement();
+        return d.complete();
+    }
+    
+    private static void text(CorpusDocument d, String namespaceURI, String prefix, 
+            String localName, String value) {
+        d.startElement(namespaceURI, prefix, localName, null, null);
+        d.characters(value);
+        d.endElement();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A document of the corpus, held as a sequence of events that may be
+ * replayed to a SAX or StAX serializer.
+ * <p>
+ * Binary content is replayed as octets, which are encoded using the
+ * base64 encoding algorithm.
+ */
+public final class CorpusDocument {
+    private static final int START_ELEMENT = 0;
+    private static final int END_ELEMENT = 1;
+    private static final int CHARACTERS = 2;
+    private static final int OCTETS = 3;
+    
+    private static final class Event {
+        final int type;
+        final String namespaceURI;
+        final String prefix;
+        final String localName;
+        final String qName;
+        final String[] namespaces;
+        final AttributesImpl attributes;
+        final char[] characters;
+        final byte[] octets;
+        
+        Event(int type, String namespaceURI, String prefix, String localName, 
+                String[] namespaces, AttributesImpl attributes, 
+                char[] characters, byte[] octets) {
+            this.type = type;
+            this.namespaceURI = namespaceURI;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.qName = (prefix == null || prefix.length() == 0) 
+                    ? localName : prefix + ":" + localName;
+            this.namespaces = namespaces;
+            this.attributes = attributes;
+            this.characters = characters;
+            this.octets = octets;
+        }
+    }
+    
+    private final List<Event> _events = new ArrayList<Event>();
+    
+    private final List<Event> _openElements = new ArrayList<Event>();
+    
+    private byte[] _fastInfoset;
+    
+    private Document _dom;
+    
+    CorpusDocument() {
+    }
+    
+    /**
+     * Add the start of an element.
+     *
+     * @param namespaces pairs of prefix and namespace name declared on the
+     *        element, or null.
+     * @param attributes pairs of local name and value of attributes without
+     *        a namespace, or null.
+     */
+    CorpusDocument startElement(String namespaceURI, String prefix, String localName,
+            String[] namespaces, String[] attributes) {
+        final AttributesImpl atts = new AttributesImpl();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                atts.addAttribute("", attributes[i], attributes[i], "CDATA", attributes[i + 1]);
+            }
+        }
+        
+        final Event e = new Event(START_ELEMENT, namespaceURI, prefix, localName,
+                (namespaces != null) ? namespaces : new String[0], atts, null, null);
+        _events.add(e);
+        _openElements.add(e);
+        return this;
+    }
+    
+    CorpusDocument endElement() {
+        final Event s = _openElements.remove(_openElements.size() - 1);
+        _events.add(new Event(END_ELEMENT, s.namespaceURI, s.prefix, s.localName,
+                s.namespaces, null, null, null));
+        return this;
+    }
+    
+    CorpusDocument characters(String s) {
+        _events.add(new Event(CHARACTERS, null, null, null, null, null, 
+                s.toCharArray(), null));
+        return this;
+    }
+    
+    CorpusDocument octets(byte[] b) {
+        _events.add(new Event(OCTETS, null, null, null, null, null, null, b));
+        return this;
+    }
+    
+    /**
+     * Complete the document, encoding it as a Fast Infoset document and 
+     * parsing that into a DOM document.
+     */
+    CorpusDocument complete() throws Exception {
+        if (!_openElements.isEmpty()) {
+            throw new IllegalStateException();
+        }
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(out);
+        replay(s);
+        _fastInfoset = out.toByteArray();
+        
+        _dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        new DOMDocumentParser().parse(_dom, new ByteArrayInputStream(_fastInfoset));
+        return this;
+    }
+    
+    /**
+     * Get the Fast Infoset document.
+     */
+    public byte[] getFastInfoset() {
+        return _fastInfoset;
+    }
+    
+    /**
+     * Get the DOM document.
+     */
+    public Document getDOM() {
+        return _dom;
+    }
+    
+    /**
+     * Replay the events of the document to a SAX serializer.
+     */
+    public void replay(SAXDocumentSerializer h) throws SAXException {
+        h.startDocument();
+        for (int i = 0; i < _events.size(); i++) {
+            final Event e = _events.get(i);
+            switch (e.type) {
+                case START_ELEMENT:
+                    for (int j = 0; j < e.namespaces.length; j += 2) {
+                        h.startPrefixMapping(e.namespaces[j], e.namespaces[j + 1]);
+                    }
+                    h.startElement(e.namespaceURI, e.localName, e.qName, e.attributes);
+                    break;
+                case END_ELEMENT:
+                    h.endElement(e.namespaceURI, e.localName, e.qName);
+                    for (int j = 0; j < e.namespaces.length; j += 2) {
+                        h.endPrefixMapping(e.namespaces[j]);
+                    }
+                    break;
+                case CHARACTERS:
+                    h.characters(e.characters, 0, e.characters.length);
+                    break;
+                case OCTETS:
+                    h.bytes(e.octets, 0, e.octets.length);
+                    break;
+            }
+        }
+        h.endDocument();
+    }
+    
+    /**
+     * Replay the events of the document to a StAX serializer.
+     */
+    public void replay(StAXDocumentSerializer w) throws XMLStreamException {
+        w.writeStartDocument();
+        for (int i = 0; i < _events.size(); i++) {
+            final Event e = _events.get(i);
+            switch (e.type) {
+                case START_ELEMENT:
+                    w.writeStartElement(e.prefix, e.localName, e.namespaceURI);
+                    for (int j = 0; j < e.namespaces.length; j += 2) {
+                        w.writeNamespace(e.namespaces[j], e.namespaces[j + 1]);
+                    }
+                    for (int j = 0; j < e.attributes.getLength(); j++) {
+                        w.writeAttribute(e.attributes.getLocalName(j), e.attributes.getValue(j));
+                    }
+                    break;
+                case END_ELEMENT:
+                    w.writeEndElement();
+                    break;
+                case CHARACTERS:
+                    w.writeCharacters(e.characters, 0, e.characters.length);
+                    break;
+                case OCTETS:
+                    w.writeOctets(e.octets, 0, e.octets.length);
+                    break;
+            }
+        }
+        w.writeEndDocument();
+        w.flush();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Benchmarks of the SAX parser over documents of nested elements, 
+ * measuring the cost of element processing as the depth of nesting 
+ * increases.
+ * <p>
+ * Each document holds the same number of elements, as sequences of
+ * elements nested to the given depth, so that results of different depths
+ * are comparable. When namespaces are declared each element declares a 
+ * prefix, so that the elements are processed with namespaces.
+ * <p>
+ * The benchmarks are used to compare the element processing of different
+ * builds of the parser, see README.txt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class NestingBenchmark {
+    
+    private static final int ELEMENTS = 20000;
+    
+    private static final String NAMESPACE = "urn:example:nesting";
+    
+    @Param({"10", "100", "1000"})
+    public int depth;
+    
+    @Param({"false", "true"})
+    public boolean namespaces;
+    
+    private byte[] _fastInfoset;
+    
+    private SAXDocumentParser _saxParser;
+    
+    private DepthHandler _handler;
+    
+    /**
+     * A content handler that computes a checksum of the depths of the 
+     * elements, so that the events are not optimized away.
+     */
+    private static final class DepthHandler extends DefaultHandler {
+        int depth;
+        
+        int checksum;
+        
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            checksum += ++depth + atts.getLength();
+        }
+        
+        public void endElement(String uri, String localName, String qName) {
+            depth--;
+        }
+    }
+    
+    @Setup
+    public void setup() throws Exception {
+        _fastInfoset = createDocument(depth, namespaces);
+        BytesProfiler.setBytes(NestingBenchmark.class, _fastInfoset.length);
+        
+        _saxParser = new SAXDocumentParser();
+        _handler = new DepthHandler();
+        _saxParser.setContentHandler(_handler);
+    }
+    
+    @Benchmark
+    public int saxParser() throws Exception {
+        _handler.checksum = 0;
+        _saxParser.parse(new ByteArrayInputStream(_fastInfoset));
+        return _handler.checksum;
+    }
+    
+    private static byte[] createDocument(int depth, boolean namespaces) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(out);
+        
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "id", "id", "CDATA", "value");
+        final String uri = namespaces ? NAMESPACE : "";
+        final String qName = namespaces ? "n:node" : "node";
+        
+        s.startDocument();
+        s.startElement("", "nesting", "nesting", new AttributesImpl());
+        for (int i = 0; i < ELEMENTS / depth; i++) {
+            for (int d = 0; d < depth; d++) {
+                if (namespaces) {
+                    s.startPrefixMapping("n", NAMESPACE);
+                }
+                s.startElement(uri, "node", qName, atts);
+            }
+            for (int d = 0; d < depth; d++) {
+                s.endElement(uri, "node", qName);
+                if (namespaces) {
+                    s.endPrefixMapping("n");
+                }
+            }
+        }
+        s.endElement("", "nesting", "nesting");
+        s.endDocument();
+        return out.toByteArray();
+    }
+}
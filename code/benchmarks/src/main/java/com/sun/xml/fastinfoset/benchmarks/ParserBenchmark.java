@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Benchmarks of the parsers, parsing the Fast Infoset documents of the
+ * corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ParserBenchmark {
+    
+    @Param({Corpus.SOAP, Corpus.FLAT, Corpus.DEEP, Corpus.BINARY})
+    public String document;
+    
+    private byte[] _fastInfoset;
+    
+    private SAXDocumentParser _saxParser;
+    
+    private ChecksumHandler _handler;
+    
+    private StAXDocumentParser _staxParser;
+    
+    private DOMDocumentParser _domParser;
+    
+    private DocumentBuilder _documentBuilder;
+    
+    /**
+     * A content handler that computes a checksum of the events, so that
+     * the events are not optimized away.
+     */
+    private static final class ChecksumHandler extends DefaultHandler {
+        int checksum;
+        
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            checksum += localName.length() + atts.getLength();
+        }
+        
+        public void characters(char[] ch, int start, int length) {
+            checksum += length;
+        }
+    }
+    
+    @Setup
+    public void setup() throws Exception {
+        _fastInfoset = Corpus.create(document).getFastInfoset();
+        BytesProfiler.setBytes(ParserBenchmark.class, _fastInfoset.length);
+        
+        _saxParser = new SAXDocumentParser();
+        _handler = new ChecksumHandler();
+        _saxParser.setContentHandler(_handler);
+        
+        _staxParser = new StAXDocumentParser();
+        
+        _domParser = new DOMDocumentParser();
+        _documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+    
+    @Benchmark
+    public int saxParser() throws Exception {
+        _handler.checksum = 0;
+        _saxParser.parse(new ByteArrayInputStream(_fastInfoset));
+        return _handler.checksum;
+    }
+    
+    @Benchmark
+    public int staxParser() throws Exception {
+        int checksum = 0;
+        _staxParser.setInputStream(new ByteArrayInputStream(_fastInfoset));
+        while (_staxParser.hasNext()) {
+            switch (_staxParser.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    checksum += _staxParser.getLocalName().length() 
+                            + _staxParser.getAttributeCount();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                    checksum += _staxParser.getTextLength();
+                    break;
+            }
+        }
+        return checksum;
+    }
+    
+    @Benchmark
+    public Document domParser() throws Exception {
+        final Document d = _documentBuilder.newDocument();
+        _domParser.parse(d, new ByteArrayInputStream(_fastInfoset));
+        return d;
+    }
+}
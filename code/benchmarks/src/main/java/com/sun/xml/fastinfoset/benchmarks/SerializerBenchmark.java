@@ -0,0 +1,107 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.benchmarks;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentSerializer;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks of the serializers, serializing the documents of the corpus
+ * to a reused output stream.
+ * <p>
+ * The SAX and StAX serializers are driven by replaying the events of the
+ * document, the DOM serializer serializes the DOM of the document.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+    
+    @Param({Corpus.SOAP, Corpus.FLAT, Corpus.DEEP, Corpus.BINARY})
+    public String document;
+    
+    private CorpusDocument _document;
+    
+    private Document _dom;
+    
+    private ByteArrayOutputStream _out;
+    
+    private SAXDocumentSerializer _saxSerializer;
+    
+    private StAXDocumentSerializer _staxSerializer;
+    
+    private DOMDocumentSerializer _domSerializer;
+    
+    @Setup
+    public void setup() throws Exception {
+        _document = Corpus.create(document);
+        _dom = _document.getDOM();
+        _out = new ByteArrayOutputStream(_document.getFastInfoset().length * 2);
+        
+        _saxSerializer = new SAXDocumentSerializer();
+        _staxSerializer = new StAXDocumentSerializer();
+        _domSerializer = new DOMDocumentSerializer();
+        
+        // Each serializer is run once to set the octets of an operation
+        BytesProfiler.setBytes(SerializerBenchmark.class, "saxSerializer", saxSerializer());
+        BytesProfiler.setBytes(SerializerBenchmark.class, "staxSerializer", staxSerializer());
+        BytesProfiler.setBytes(SerializerBenchmark.class, "domSerializer", domSerializer());
+    }
+    
+    @Benchmark
+    public int saxSerializer() throws Exception {
+        _out.reset();
+        _saxSerializer.setOutputStream(_out);
+        _document.replay(_saxSerializer);
+        return _out.size();
+    }
+    
+    @Benchmark
+    public int staxSerializer() throws Exception {
+        _out.reset();
+        _staxSerializer.setOutputStream(_out);
+        _document.replay(_staxSerializer);
+        return _out.size();
+    }
+    
+    @Benchmark
+    public int domSerializer() throws Exception {
+        _out.reset();
+        _domSerializer.setOutputStream(_out);
+        _domSerializer.serialize(_dom);
+        return _out.size();
+    }
+}
@@ -27,10 +27,13 @@ import com.sun.xml.fastinfoset.util.DuplicateAttributeVerifier;
 import com.sun.xml.fastinfoset.util.PrefixArray;
 import com.sun.xml.fastinfoset.util.QualifiedNameArray;
 import com.sun.xml.fastinfoset.util.StringArray;
+import com.sun.xml.fastinfoset.vocab.CompiledVocabulary;
 import com.sun.xml.fastinfoset.vocab.ParserVocabulary;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -72,6 +75,12 @@ public abstract class Decoder implements FastInfosetParser {
     private static final char[] XMLNS_NAMESPACE_NAME_CHARS =
             EncodingConstants.XMLNS_NAMESPACE_NAME.toCharArray();
     
+    /**
+     * The charset used to create strings from octets that each encode
+     * one character, copying the octets directly into the string.
+     */
+    protected static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    
     /**
      * String interning system property.
      */
@@ -114,6 +123,13 @@ public abstract class Decoder implements FastInfosetParser {
      */
     private InputStream _s;
     
+    /**
+     * The internal buffer that is restored when switching from decoding
+     * a {@link ByteBuffer} back to decoding an {@link InputStream}.
+     * Null if not decoding from a {@link ByteBuffer}.
+     */
+    private byte[] _streamOctetBuffer;
+    
     /**
      * The map of URIs to referenced vocabularies.
      */
@@ -253,6 +269,17 @@ public abstract class Decoder implements FastInfosetParser {
      */
     protected int _charBufferLength;
     
+    /**
+     * The length of octets of content above which the content is streamed
+     * in chunks, or 0 if content is not streamed.
+     */
+    protected int _contentStreamingThreshold;
+    
+    /**
+     * The number of octets of streamed content that remain to be read.
+     */
+    protected int _contentOctetsRemaining;
+    
     /**
      * Helper class that checks for duplicate attribute information items.
      */
@@ -304,6 +331,33 @@ public abstract class Decoder implements FastInfosetParser {
         return _bufferSize;
     }
     
+    /**
+     * Set the length of octets of character content, or of encoding 
+     * algorithm data, above which the content is streamed in chunks.
+     * <p>
+     * Streamed content is read in chunks that fit in the internal buffer, 
+     * so the internal buffer is not resized however large the content is.
+     * Content that is to be added to the vocabulary is not streamed.
+     *
+     * @param threshold the length of octets, or 0 if content is not 
+     *        streamed.
+     */
+    public void setContentStreamingThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                    getString("message.illegalContentStreamingThreshold", new Object[]{Integer.valueOf(threshold)}));
+        }
+        _contentStreamingThreshold = threshold;
+    }
+    
+    /**
+     * @return the length of octets above which content is streamed, or 0 if 
+     *         content is not streamed.
+     */
+    public int getContentStreamingThreshold() {
+        return _contentStreamingThreshold;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -376,6 +430,7 @@ public abstract class Decoder implements FastInfosetParser {
      */
     public void reset() {
         _terminate = _doubleTerminate = false;
+        _contentOctetsRemaining = 0;
     }
     
     /**
@@ -399,6 +454,10 @@ public abstract class Decoder implements FastInfosetParser {
      * @param s the InputStream where the fast infoset document is decoded from.
      */
     public void setInputStream(InputStream s) {
+        if (_streamOctetBuffer != null) {
+            _octetBuffer = _streamOctetBuffer;
+            _streamOctetBuffer = null;
+        }
         _s = s;
         _octetBufferOffset = 0;
         _octetBufferEnd = 0;
@@ -407,6 +466,49 @@ public abstract class Decoder implements FastInfosetParser {
         }
     }
     
+    /**
+     * Set the ByteBuffer to decode the fast infoset document.
+     * <p>
+     * The octets from the position to the limit of the buffer are decoded.
+     * If the buffer is backed by an accessible array the octets are decoded
+     * in place, without being copied into the internal buffer and without
+     * any refilling of the internal buffer. Otherwise, for example for a
+     * direct or memory mapped buffer, the octets are transferred in bulk
+     * into the internal buffer as decoding progresses.
+     * <p>
+     * The position and limit of the buffer are not modified. The contents
+     * of the buffer must not be modified while decoding.
+     *
+     * @param b the ByteBuffer where the fast infoset document is decoded from.
+     */
+    public void setInput(ByteBuffer b) {
+        if (!b.hasArray()) {
+            setInputStream(new ByteBufferInputStream(b.duplicate()));
+            return;
+        }
+        
+        if (_streamOctetBuffer == null) {
+            _streamOctetBuffer = _octetBuffer;
+        }
+        _s = null;
+        _octetBuffer = b.array();
+        _octetBufferOffset = b.arrayOffset() + b.position();
+        _octetBufferEnd = b.arrayOffset() + b.limit();
+        if (_vIsInternal == true) {
+            _v.clear();
+        }
+    }
+    
+    /**
+     * Check if the octets are decoded in place from the array of a
+     * {@link ByteBuffer} set using {@link #setInput(ByteBuffer)}.
+     *
+     * @return true if decoding in place from the array of a ByteBuffer.
+     */
+    protected final boolean isByteBufferInput() {
+        return _streamOctetBuffer != null;
+    }
+    
     protected final void decodeDII() throws FastInfosetException, IOException {
         final int b = read();
         if (b == EncodingConstants.DOCUMENT_INITIAL_VOCABULARY_FLAG) {
@@ -505,7 +607,10 @@ public abstract class Decoder implements FastInfosetParser {
                 decodeNonEmptyOctetStringOnSecondBitAsUtf8String();
         
         Object o = _externalVocabularies.get(externalVocabularyURI);
-        if (o instanceof ParserVocabulary) {
+        if (o instanceof CompiledVocabulary) {
+            _v.setReferencedVocabulary(externalVocabularyURI,
+                    ((CompiledVocabulary)o).getParserVocabulary(), false);
+        } else if (o instanceof ParserVocabulary) {
             _v.setReferencedVocabulary(externalVocabularyURI,
                     (ParserVocabulary)o, false);
         } else if (o instanceof org.jvnet.fastinfoset.ExternalVocabulary) {
@@ -873,6 +978,15 @@ public abstract class Decoder implements FastInfosetParser {
     }
     
     protected final void decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(int b) throws FastInfosetException, IOException {
+        decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(b);
+        decodeOctets();
+    }
+    
+    /**
+     * Decode the length of octets, setting _octetBufferLength, without 
+     * reading the octets.
+     */
+    protected final void decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(int b) throws IOException {
         // Remove top 6 bits of restricted alphabet or encoding algorithm integer
         switch (b & 0x03) {
             // Small length
@@ -896,7 +1010,13 @@ public abstract class Decoder implements FastInfosetParser {
                 _octetBufferLength += EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
                 break;
         }
-        
+    }
+    
+    /**
+     * Read _octetBufferLength octets into the internal buffer, from 
+     * _octetBufferStart.
+     */
+    protected final void decodeOctets() throws IOException {
         ensureOctetBufferSize();
         _octetBufferStart = _octetBufferOffset;
         _octetBufferOffset += _octetBufferLength;
@@ -1393,8 +1513,63 @@ public abstract class Decoder implements FastInfosetParser {
     }
     
     protected final String decodeUtf8StringAsString() throws IOException {
-        decodeUtf8StringAsCharBuffer();
-        return new String(_charBuffer, 0, _charBufferLength);
+        if (decodeUtf8StringAsOneByteCharacters()) {
+            return new String(_octetBuffer, _octetBufferStart, _octetBufferLength, ISO_8859_1);
+        } else {
+            return new String(_charBuffer, 0, _charBufferLength);
+        }
+    }
+    
+    /**
+     * Decode a UTF-8 encoded string, leaving the octets in the octet buffer
+     * if every character is encoded in one octet.
+     * <p>
+     * The number of characters is set in _charBufferLength.
+     *
+     * @return true if every character is encoded in one octet, in which
+     *         case the octets start at _octetBufferStart, otherwise false
+     *         and the characters are decoded into the character buffer.
+     */
+    protected final boolean decodeUtf8StringAsOneByteCharacters() throws IOException {
+        ensureOctetBufferSize();
+        final int end = _octetBufferOffset + _octetBufferLength;
+        if (isUtf8OneByteCharacters(_octetBufferOffset, end)) {
+            _octetBufferStart = _octetBufferOffset;
+            _octetBufferOffset = end;
+            _charBufferLength = _octetBufferLength;
+            return true;
+        } else {
+            decodeUtf8StringIntoCharBuffer();
+            return false;
+        }
+    }
+    
+    private boolean isUtf8OneByteCharacters(int offset, int end) {
+        final byte[] b = _octetBuffer;
+        while (true) {
+            while (end - offset >= 8) {
+                // See decodeUtf8PrintableAsciiCharacters
+                if (((b[offset] - 0x20) | (b[offset + 1] - 0x20)
+                        | (b[offset + 2] - 0x20) | (b[offset + 3] - 0x20)
+                        | (b[offset + 4] - 0x20) | (b[offset + 5] - 0x20)
+                        | (b[offset + 6] - 0x20) | (b[offset + 7] - 0x20)) < 0) {
+                    break;
+                }
+                offset += 8;
+            }
+            
+            while (offset != end && b[offset] >= 0x20) {
+                offset++;
+            }
+            if (offset == end) {
+                return true;
+            }
+            
+            final int b1 = b[offset++];
+            if (b1 < 0 || DecoderStateTables.UTF8(b1) != DecoderStateTables.UTF8_ONE_BYTE) {
+                return false;
+            }
+        }
     }
     
     protected final void decodeUtf16StringAsCharBuffer() throws IOException {
@@ -1409,6 +1584,10 @@ public abstract class Decoder implements FastInfosetParser {
     
     private void ensureOctetBufferSize() throws IOException {
         if (_octetBufferEnd < (_octetBufferOffset + _octetBufferLength)) {
+            if (_s == null) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            
             final int octetsInBuffer = _octetBufferEnd - _octetBufferOffset;
             
             if (_octetBuffer.length < _octetBufferLength) {
@@ -1438,6 +1617,107 @@ public abstract class Decoder implements FastInfosetParser {
         }
     }
     
+    /**
+     * @return true if the content of _octetBufferLength octets, which have
+     *         not been read, is to be streamed.
+     */
+    protected final boolean isStreamedContent() {
+        return _contentStreamingThreshold > 0 && _octetBufferLength > _contentStreamingThreshold;
+    }
+    
+    /**
+     * Start streaming the content of _octetBufferLength octets.
+     */
+    protected final void startStreamedContent() {
+        _contentOctetsRemaining = _octetBufferLength;
+    }
+    
+    /**
+     * Make the next chunk of octets of the streamed content available in 
+     * the internal buffer, from _octetBufferOffset, without resizing the 
+     * internal buffer.
+     * <p>
+     * The octets that are consumed must be subtracted from 
+     * _contentOctetsRemaining.
+     *
+     * @return the number of octets of the content that are available.
+     */
+    protected final int readStreamedContentOctets() throws IOException {
+        final int required = Math.min(_octetBuffer.length, _contentOctetsRemaining);
+        int available = _octetBufferEnd - _octetBufferOffset;
+        if (available < required) {
+            if (_s == null) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            
+            // Move partially read octets to the start of the buffer
+            System.arraycopy(_octetBuffer, _octetBufferOffset, _octetBuffer, 0, available);
+            _octetBufferOffset = 0;
+            _octetBufferEnd = available;
+            while (_octetBufferEnd < required) {
+                final int octetsRead = _s.read(_octetBuffer, _octetBufferEnd, _octetBuffer.length - _octetBufferEnd);
+                if (octetsRead < 0) {
+                    throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+                }
+                _octetBufferEnd += octetsRead;
+            }
+            available = _octetBufferEnd;
+        }
+        
+        return Math.min(available, _contentOctetsRemaining);
+    }
+    
+    /**
+     * Decode the next chunk of streamed UTF-8 encoded content into the 
+     * buffer of characters.
+     * <p>
+     * A chunk ends before a last character whose octets are not all in the 
+     * internal buffer.
+     *
+     * @return false if there is no more content.
+     */
+    protected final boolean decodeUtf8StreamedContentIntoCharBuffer() throws IOException {
+        if (_contentOctetsRemaining == 0) {
+            return false;
+        }
+        
+        final int available = readStreamedContentOctets();
+        _octetBufferLength = (available < _contentOctetsRemaining)
+                ? getCompleteUtf8Length(available) : available;
+        _contentOctetsRemaining -= _octetBufferLength;
+        decodeUtf8StringIntoCharBuffer();
+        return true;
+    }
+    
+    /**
+     * Get the length of the octets at _octetBufferOffset up to the start 
+     * of a last character that is not complete.
+     */
+    private int getCompleteUtf8Length(int length) {
+        final int end = _octetBufferOffset + length;
+        int start = end - 1;
+        while (start > _octetBufferOffset && end - start < 4 && 
+                (_octetBuffer[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        
+        final int b = _octetBuffer[start] & 0xFF;
+        final int characterLength = (b < 0xC0) ? 1 : (b < 0xE0) ? 2 : (b < 0xF0) ? 3 : 4;
+        // An illegal sequence is left to be reported when decoded
+        return (end - start >= characterLength) ? length : start - _octetBufferOffset;
+    }
+    
+    /**
+     * Skip the octets of the streamed content that remain to be read.
+     */
+    protected final void skipStreamedContent() throws IOException {
+        while (_contentOctetsRemaining > 0) {
+            final int length = readStreamedContentOctets();
+            _octetBufferOffset += length;
+            _contentOctetsRemaining -= length;
+        }
+    }
+    
     private void repeatedRead() throws IOException {
         // Check if the number of octets that have been read is not enough
         while (_octetBufferEnd < _octetBufferLength) {
@@ -1458,7 +1738,12 @@ public abstract class Decoder implements FastInfosetParser {
         _charBufferLength = 0;
         final int end = _octetBufferLength + _octetBufferOffset;
         int b1;
-        while (end != _octetBufferOffset) {
+        while (true) {
+            decodeUtf8PrintableAsciiCharacters(_charBuffer, end);
+            if (end == _octetBufferOffset) {
+                break;
+            }
+            
             b1 = _octetBuffer[_octetBufferOffset++] & 0xFF;
             if (DecoderStateTables.UTF8(b1) == DecoderStateTables.UTF8_ONE_BYTE) {
                 _charBuffer[_charBufferLength++] = (char) b1;
@@ -1472,7 +1757,12 @@ public abstract class Decoder implements FastInfosetParser {
         _charBufferLength = offset;
         final int end = _octetBufferLength + _octetBufferOffset;
         int b1;
-        while (end != _octetBufferOffset) {
+        while (true) {
+            decodeUtf8PrintableAsciiCharacters(ch, end);
+            if (end == _octetBufferOffset) {
+                break;
+            }
+            
             b1 = _octetBuffer[_octetBufferOffset++] & 0xFF;
             if (DecoderStateTables.UTF8(b1) == DecoderStateTables.UTF8_ONE_BYTE) {
                 ch[_charBufferLength++] = (char) b1;
@@ -1483,6 +1773,58 @@ public abstract class Decoder implements FastInfosetParser {
         _charBufferLength -= offset;
     }
     
+    /**
+     * Decode the run of octets in the range [0x20, 0x7F] at the current
+     * offset, which are the ASCII characters that are always valid
+     * character content.
+     * <p>
+     * Octets are checked eight at a time and each block of eight is widened
+     * without looking up the UTF-8 state table. The run stops at the first
+     * octet that requires the state table, which is left unread.
+     */
+    private void decodeUtf8PrintableAsciiCharacters(char[] ch, int end) {
+        final byte[] b = _octetBuffer;
+        int offset = _octetBufferOffset;
+        int length = _charBufferLength;
+        
+        while (end - offset >= 8) {
+            final int b0 = b[offset];
+            final int b1 = b[offset + 1];
+            final int b2 = b[offset + 2];
+            final int b3 = b[offset + 3];
+            final int b4 = b[offset + 4];
+            final int b5 = b[offset + 5];
+            final int b6 = b[offset + 6];
+            final int b7 = b[offset + 7];
+            // The octets are sign extended, so an octet that is not in
+            // [0x20, 0x7F] results in a negative value
+            if (((b0 - 0x20) | (b1 - 0x20) | (b2 - 0x20) | (b3 - 0x20)
+                    | (b4 - 0x20) | (b5 - 0x20) | (b6 - 0x20) | (b7 - 0x20)) < 0) {
+                break;
+            }
+            
+            ch[length] = (char) b0;
+            ch[length + 1] = (char) b1;
+            ch[length + 2] = (char) b2;
+            ch[length + 3] = (char) b3;
+            ch[length + 4] = (char) b4;
+            ch[length + 5] = (char) b5;
+            ch[length + 6] = (char) b6;
+            ch[length + 7] = (char) b7;
+            offset += 8;
+            length += 8;
+        }
+        
+        int c;
+        while (offset != end && (c = b[offset]) >= 0x20) {
+            ch[length++] = (char) c;
+            offset++;
+        }
+        
+        _octetBufferOffset = offset;
+        _charBufferLength = length;
+    }
+    
     private void decodeTwoToFourByteUtf8Character(int b1, int end) throws IOException {
         switch(DecoderStateTables.UTF8(b1)) {
             case DecoderStateTables.UTF8_TWO_BYTES:
@@ -1818,6 +2160,10 @@ public abstract class Decoder implements FastInfosetParser {
         if (_octetBufferOffset < _octetBufferEnd) {
             return _octetBuffer[_octetBufferOffset++] & 0xFF;
         } else {
+            if (_s == null) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            
             _octetBufferEnd = _s.read(_octetBuffer);
             if (_octetBufferEnd < 0) {
                 throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
@@ -1842,6 +2188,10 @@ public abstract class Decoder implements FastInfosetParser {
         if (_octetBufferOffset < _octetBufferEnd) {
             return _octetBuffer[_octetBufferOffset] & 0xFF;
         } else {
+            if (_s == null) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            
             if (octetBufferListener != null) {
                 octetBufferListener.onBeforeOctetBufferOverwrite();
             }
@@ -1860,6 +2210,10 @@ public abstract class Decoder implements FastInfosetParser {
         if (_octetBufferOffset + 1 < _octetBufferEnd) {
             return _octetBuffer[_octetBufferOffset + 1] & 0xFF;
         } else {
+            if (_s == null) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            
             if (octetBufferListener != null) {
                 octetBufferListener.onBeforeOctetBufferOverwrite();
             }
@@ -1928,22 +2282,24 @@ public abstract class Decoder implements FastInfosetParser {
         
         _octetBufferLength = EncodingConstants.BINARY_HEADER.length;
         ensureOctetBufferSize();
+        // The document does not start at 0 when decoding from a ByteBuffer
+        final int start = _octetBufferOffset;
         _octetBufferOffset += _octetBufferLength;
         
         // Check for binary header
-        if (_octetBuffer[0] != EncodingConstants.BINARY_HEADER[0] ||
-                _octetBuffer[1] != EncodingConstants.BINARY_HEADER[1] ||
-                _octetBuffer[2] != EncodingConstants.BINARY_HEADER[2] ||
-                _octetBuffer[3] != EncodingConstants.BINARY_HEADER[3]) {
+        if (_octetBuffer[start] != EncodingConstants.BINARY_HEADER[0] ||
+                _octetBuffer[start + 1] != EncodingConstants.BINARY_HEADER[1] ||
+                _octetBuffer[start + 2] != EncodingConstants.BINARY_HEADER[2] ||
+                _octetBuffer[start + 3] != EncodingConstants.BINARY_HEADER[3]) {
             
             // Check for each form of XML declaration
             for (int i = 0; i < EncodingConstants.XML_DECLARATION_VALUES.length; i++) {
-                _octetBufferLength = EncodingConstants.XML_DECLARATION_VALUES[i].length - _octetBufferOffset;
+                _octetBufferLength = EncodingConstants.XML_DECLARATION_VALUES[i].length - (_octetBufferOffset - start);
                 ensureOctetBufferSize();
                 _octetBufferOffset += _octetBufferLength;
                 
                 // Check XML declaration
-                if (arrayEquals(_octetBuffer, 0,
+                if (arrayEquals(_octetBuffer, start,
                         EncodingConstants.XML_DECLARATION_VALUES[i],
                         EncodingConstants.XML_DECLARATION_VALUES[i].length)) {
                     _octetBufferLength = EncodingConstants.BINARY_HEADER.length;
@@ -1979,6 +2335,38 @@ public abstract class Decoder implements FastInfosetParser {
         return true;
     }
     
+    /**
+     * An InputStream that transfers octets in bulk from a ByteBuffer
+     * whose contents are not accessible as an array.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer _b;
+        
+        ByteBufferInputStream(ByteBuffer b) {
+            _b = b;
+        }
+        
+        public int read() throws IOException {
+            return (_b.hasRemaining()) ? (_b.get() & 0xFF) : -1;
+        }
+        
+        @Override
+        public int read(byte b[], int off, int len) throws IOException {
+            if (!_b.hasRemaining()) {
+                return -1;
+            }
+            
+            len = Math.min(len, _b.remaining());
+            _b.get(b, off, len);
+            return len;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return _b.remaining();
+        }
+    }
+    
     static public boolean isFastInfosetDocument(InputStream s) throws IOException {
         // TODO
         // Check for <?xml declaration with 'finf' encoding
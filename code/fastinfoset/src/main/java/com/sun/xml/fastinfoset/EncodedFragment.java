@@ -0,0 +1,87 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset;
+
+/**
+ * A fragment of a fast infoset document that is encoded once and may be
+ * written any number of times to other fast infoset documents.
+ * <p>
+ * A fragment is captured using {@link Encoder#startFragmentCapture} and
+ * {@link Encoder#endFragmentCapture}. The fragment is encoded against an
+ * external vocabulary and only refers to the entries of that vocabulary,
+ * so it may be written to any document that is encoded using the same 
+ * external vocabulary, when the namespace names bound to the prefixes 
+ * the fragment does not declare itself are the same.
+ * <p>
+ * Instances are immutable and may be shared between serializers.
+ */
+public final class EncodedFragment {
+    final String _externalVocabularyURI;
+    
+    final byte[] _octets;
+    
+    /**
+     * The termination left pending at the end of the fragment, or 0.
+     */
+    final int _terminator;
+    
+    /**
+     * The prefix and namespace name pairs that are required to be in 
+     * scope where the fragment is written.
+     */
+    final String[] _namespaces;
+    
+    EncodedFragment(String externalVocabularyURI, byte[] octets, 
+            int terminator, String[] namespaces) {
+        _externalVocabularyURI = externalVocabularyURI;
+        _octets = octets;
+        _terminator = terminator;
+        _namespaces = namespaces;
+    }
+    
+    /**
+     * @return the URI of the external vocabulary the fragment is encoded
+     *         against.
+     */
+    public String getExternalVocabularyURI() {
+        return _externalVocabularyURI;
+    }
+    
+    /**
+     * @return the number of octets of the encoded fragment.
+     */
+    public int getLength() {
+        return _octets.length;
+    }
+    
+    /**
+     * @return the number of namespaces that are required to be in scope
+     *         where the fragment is written.
+     */
+    public int getNamespaceCount() {
+        return _namespaces.length / 2;
+    }
+    
+    public String getNamespacePrefix(int index) {
+        return _namespaces[index * 2];
+    }
+    
+    public String getNamespaceURI(int index) {
+        return _namespaces[index * 2 + 1];
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset;
+
+import com.sun.xml.fastinfoset.util.KeyIntMap;
+import com.sun.xml.fastinfoset.util.LocalNameQualifiedNamesMap;
+import com.sun.xml.fastinfoset.vocab.SerializerVocabulary;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * The state of the capture of an {@link EncodedFragment} by an 
+ * {@link Encoder}.
+ * <p>
+ * The namespace attributes and the qualified names that are encoded are
+ * tracked to obtain the prefixes that are used, but not declared, in the 
+ * fragment.
+ */
+final class EncodedFragmentCapture {
+    /**
+     * The stream of the encoder, restored when the capture ends.
+     */
+    final OutputStream _s;
+    
+    final ByteArrayOutputStream _octets = new ByteArrayOutputStream();
+    
+    /**
+     * The sizes of the vocabulary tables when the capture started.
+     */
+    final int[] _tableSizes;
+    
+    /**
+     * The prefix and namespace name pairs declared in scope.
+     */
+    private String[] _declarations = new String[16];
+    private int _declarationsIndex;
+    
+    /**
+     * The start of the declarations of the next element, which are 
+     * encoded before the qualified name of the element.
+     */
+    private int _nextDeclarationsStart;
+    
+    /**
+     * The end of the declarations in scope of the parent of each element
+     * on the stack.
+     */
+    private int[] _scopeEnd = new int[16];
+    int _depth;
+    
+    /**
+     * The prefix and namespace name pairs used but not declared.
+     */
+    private String[] _namespaces = new String[8];
+    private int _namespacesIndex;
+    
+    /**
+     * The prefix bound to more than one namespace name outside of the
+     * fragment, or null.
+     */
+    String _conflictingPrefix;
+    
+    boolean _isUnbalanced;
+    
+    EncodedFragmentCapture(OutputStream s, SerializerVocabulary v) {
+        _s = s;
+        _tableSizes = new int[v.tables.length];
+        for (int i = 0; i < _tableSizes.length; i++) {
+            _tableSizes[i] = getSize(v.tables[i]);
+        }
+    }
+    
+    boolean isVocabularyModified(SerializerVocabulary v) {
+        for (int i = 0; i < _tableSizes.length; i++) {
+            if (getSize(v.tables[i]) != _tableSizes[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The entries of a name map are obtained for names of the read only
+     * map, so the index of the next qualified name is used instead.
+     */
+    private static int getSize(KeyIntMap m) {
+        return (m instanceof LocalNameQualifiedNamesMap) 
+                ? ((LocalNameQualifiedNamesMap)m).getIndex() : m.size();
+    }
+    
+    /**
+     * A namespace attribute of the next element.
+     */
+    void declareNamespace(String prefix, String namespaceName) {
+        if (_declarationsIndex == _declarations.length) {
+            final String[] declarations = new String[_declarationsIndex * 2];
+            System.arraycopy(_declarations, 0, declarations, 0, _declarationsIndex);
+            _declarations = declarations;
+        }
+        _declarations[_declarationsIndex++] = prefix;
+        _declarations[_declarationsIndex++] = namespaceName;
+    }
+    
+    void startElement(String prefix, String namespaceName) {
+        if (++_depth == _scopeEnd.length) {
+            final int[] scopeEnd = new int[_depth * 2];
+            System.arraycopy(_scopeEnd, 0, scopeEnd, 0, _depth);
+            _scopeEnd = scopeEnd;
+        }
+        _scopeEnd[_depth] = _nextDeclarationsStart;
+        _nextDeclarationsStart = _declarationsIndex;
+        
+        useNamespace(prefix, namespaceName);
+    }
+    
+    void endElement() {
+        if (_depth == 0) {
+            _isUnbalanced = true;
+            return;
+        }
+        _declarationsIndex = _nextDeclarationsStart = _scopeEnd[_depth--];
+    }
+    
+    /**
+     * A qualified name with a prefix is encoded.
+     */
+    void useNamespace(String prefix, String namespaceName) {
+        if (prefix.equals(EncodingConstants.XML_NAMESPACE_PREFIX)) {
+            return;
+        }
+        
+        for (int i = _declarationsIndex - 2; i >= 0; i -= 2) {
+            if (prefix.equals(_declarations[i])) {
+                return;
+            }
+        }
+        
+        for (int i = 0; i < _namespacesIndex; i += 2) {
+            if (prefix.equals(_namespaces[i])) {
+                if (!namespaceName.equals(_namespaces[i + 1])) {
+                    _conflictingPrefix = prefix;
+                }
+                return;
+            }
+        }
+        
+        if (_namespacesIndex == _namespaces.length) {
+            final String[] namespaces = new String[_namespacesIndex * 2];
+            System.arraycopy(_namespaces, 0, namespaces, 0, _namespacesIndex);
+            _namespaces = namespaces;
+        }
+        _namespaces[_namespacesIndex++] = prefix;
+        _namespaces[_namespacesIndex++] = namespaceName;
+    }
+    
+    String[] getNamespaces() {
+        final String[] namespaces = new String[_namespacesIndex];
+        System.arraycopy(_namespaces, 0, namespaces, 0, _namespacesIndex);
+        return namespaces;
+    }
+}
@@ -23,9 +23,13 @@ import com.sun.xml.fastinfoset.util.CharArrayIntMap;
 import com.sun.xml.fastinfoset.util.KeyIntMap;
 import com.sun.xml.fastinfoset.util.LocalNameQualifiedNamesMap;
 import com.sun.xml.fastinfoset.util.StringIntMap;
+import com.sun.xml.fastinfoset.vocab.CompiledVocabulary;
 import com.sun.xml.fastinfoset.vocab.SerializerVocabulary;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import org.jvnet.fastinfoset.EncodingAlgorithm;
@@ -210,7 +214,7 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
     /**
      * The internal buffer of bytes.
      */
-    protected byte[] _octetBuffer = new byte[1024];
+    protected byte[] _octetBuffer = new byte[CHUNK_SIZE];
     
     /**
      * The current position in the internal buffer.
@@ -225,6 +229,38 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      */
     protected int _markIndex = -1;
 
+    /**
+     * The internal buffer that contains the mark.
+     */
+    private byte[] _markBuffer;
+    
+    /**
+     * The size of the chunks of the buffered stream.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * The maximum number of chunks that are pooled for reuse.
+     */
+    private static final int CHUNK_POOL_SIZE = 16;
+    
+    /**
+     * The chunks of the buffered stream that are retained, while the mark
+     * is set, before the internal buffer.
+     */
+    private byte[][] _chunks = new byte[4][];
+    
+    private int[] _chunkLengths = new int[4];
+    
+    private int _chunksIndex;
+    
+    /**
+     * The chunks that are reused once written.
+     */
+    private final byte[][] _chunkPool = new byte[CHUNK_POOL_SIZE][];
+    
+    private int _chunkPoolIndex;
+
     /**
      * The minimum size of [normalized value] of Attribute Information 
      * Items that will be indexed.
@@ -262,6 +298,11 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * Limit is measured in characters number
      */
     protected int characterContentChunkMapTotalCharactersConstraint = FastInfosetSerializer.CHARACTER_CONTENT_CHUNK_MAP_MEMORY_CONSTRAINT / 2;
+
+    /**
+     * The capture of an encoded fragment, or null.
+     */
+    private EncodedFragmentCapture _fragmentCapture;
     
     /**
      * Default constructor for the Encoder.
@@ -448,7 +489,9 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @return whether character content map has enough memory
      */
     public boolean canAddCharacterContentToTable(int length, CharArrayIntMap map) {
-        return map.getTotalCharacterCount() + length <
+        // Strings are only looked up in the vocabulary of a captured fragment
+        return _fragmentCapture == null &&
+                map.getTotalCharacterCount() + length <
                         characterContentChunkMapTotalCharactersConstraint;
     }
     
@@ -526,7 +569,8 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @return whether attribute map has enough memory
      */
     public boolean canAddAttributeToTable(int length) {
-        return _v.attributeValue.getTotalCharacterCount() + length <
+        return _fragmentCapture == null &&
+                _v.attributeValue.getTotalCharacterCount() + length <
                         attributeValueMapTotalCharactersConstraint;
     }
 
@@ -534,13 +578,21 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * {@inheritDoc}
      */
     public void setExternalVocabulary(ExternalVocabulary v) {
-        // Create internal serializer vocabulary
-        _v = new SerializerVocabulary();
+        // Create internal serializer vocabulary, or reuse the internal
+        // serializer vocabulary that is cleared for each document
+        if (_v == null || !_vIsInternal) {
+            _v = new SerializerVocabulary();
+        }
         // Set the external vocabulary
-        SerializerVocabulary ev = new SerializerVocabulary(v.vocabulary,
-                _useLocalNameAsKeyForQualifiedNameLookup);
+        SerializerVocabulary ev = (v instanceof CompiledVocabulary)
+                ? ((CompiledVocabulary)v).getSerializerVocabulary(
+                    _useLocalNameAsKeyForQualifiedNameLookup)
+                : new SerializerVocabulary(v.vocabulary,
+                    _useLocalNameAsKeyForQualifiedNameLookup);
+        // The internal vocabulary is cleared for each document, clearing it
+        // now lets the tables of the external vocabulary be shared
         _v.setExternalVocabulary(v.URI,
-                ev, false);
+                ev, true);
         
         _vIsInternal = true;
     }
@@ -575,11 +627,25 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param s the OutputStream where the fast infoset document is written to.
      */
     public void setOutputStream(OutputStream s) {
+        releaseChunks();
         _octetBufferIndex = 0;
-        _markIndex = -1;
+        resetMark();
         _s = s;
     }
 
+    /**
+     * Set the channel to encode the XML infoset to a fast infoset document.
+     * <p>
+     * Chunks of the buffered stream that are retained while a position 
+     * is marked are written using a single gathering write if the channel
+     * is a {@link GatheringByteChannel}.
+     *
+     * @param channel the channel where the fast infoset document is written to.
+     */
+    public void setOutputChannel(WritableByteChannel channel) {
+        setOutputStream(new ChannelOutputStream(channel));
+    }
+
     /**
      * Set the SerializerVocabulary to be used for encoding.
      *
@@ -590,6 +656,151 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
         _vIsInternal = false;
     }
 
+    /**
+     * Start capturing the items that are encoded as an {@link EncodedFragment}.
+     * <p>
+     * The encoder must use an external vocabulary, set using 
+     * {@link #setExternalVocabulary}, and must not be encoding a document.
+     * The items that are subsequently encoded, until 
+     * {@link #endFragmentCapture} is called, are captured instead of 
+     * being written to the output stream. Character content and attribute
+     * values that are not in the external vocabulary are encoded literally,
+     * and names must be in the external vocabulary.
+     * <p>
+     * Elements written using indexes with the low-level StAX methods are 
+     * not tracked, and may not be captured.
+     */
+    public void startFragmentCapture() {
+        if (_fragmentCapture != null) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.fragmentCaptureStarted"));
+        }
+        if (_v == null || !_vIsInternal || !_v.hasExternalVocabulary() || 
+                _terminate || _octetBufferIndex > 0 || _chunksIndex > 0) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.fragmentCaptureNotAllowed"));
+        }
+        
+        // Only the entries of the external vocabulary may be referred to
+        _v.clear();
+        
+        _fragmentCapture = new EncodedFragmentCapture(_s, _v);
+        _s = _fragmentCapture._octets;
+        _b = 0;
+    }
+    
+    /**
+     * End capturing the items that are encoded as an {@link EncodedFragment}.
+     *
+     * @return the encoded fragment.
+     * @throws FastInfosetException if the fragment does not consist of
+     *         complete elements, or if a name, or a string that must be 
+     *         indexed, is not in the external vocabulary.
+     */
+    public EncodedFragment endFragmentCapture() throws IOException, FastInfosetException {
+        final EncodedFragmentCapture capture = _fragmentCapture;
+        if (capture == null) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.fragmentCaptureNotStarted"));
+        }
+        
+        // The termination of the last element is left pending, to be 
+        // combined with a termination following the fragment
+        final int terminator = (_terminate) ? _b : 0;
+        _terminate = false;
+        _b = 0;
+        
+        _flush();
+        _s = capture._s;
+        _fragmentCapture = null;
+        
+        if (capture._depth != 0 || capture._isUnbalanced) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.fragmentNotBalanced"));
+        }
+        if (capture._conflictingPrefix != null) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.fragmentNamespaceConflict", 
+                    new Object[]{capture._conflictingPrefix}));
+        }
+        if (capture.isVocabularyModified(_v)) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.fragmentNotInVocabulary"));
+        }
+        
+        return new EncodedFragment(_v.getExternalVocabularyURI(), 
+                capture._octets.toByteArray(), terminator, capture.getNamespaces());
+    }
+    
+    /**
+     * Track the qualified name of an element that is encoded, if a fragment 
+     * is being captured.
+     * <p>
+     * The namespace attributes of the element must be encoded before the
+     * qualified name is tracked.
+     *
+     * @param namespaceURI the namespace name of the element.
+     * @param prefix the prefix of the element.
+     */
+    protected final void captureElementName(String namespaceURI, String prefix) {
+        if (_fragmentCapture != null) {
+            _fragmentCapture.startElement(prefix, namespaceURI);
+        }
+    }
+    
+    /**
+     * Track the qualified name of an attribute that is encoded, if a 
+     * fragment is being captured.
+     *
+     * @param namespaceURI the namespace name of the attribute.
+     * @param prefix the prefix of the attribute.
+     */
+    protected final void captureAttributeName(String namespaceURI, String prefix) {
+        if (_fragmentCapture != null && prefix.length() > 0) {
+            _fragmentCapture.useNamespace(prefix, namespaceURI);
+        }
+    }
+    
+    /**
+     * Get the namespace name bound to a prefix in scope of the item that is
+     * encoded, to check an {@link EncodedFragment} may be encoded.
+     *
+     * @param prefix the prefix, "" for the default namespace.
+     * @return the namespace name, or null or "" if the prefix is not bound.
+     */
+    protected String getNamespaceURIInScope(String prefix) {
+        return null;
+    }
+    
+    /**
+     * Encode an {@link EncodedFragment}.
+     *
+     * @param fragment the fragment.
+     * @throws FastInfosetException if the fragment is encoded against
+     *         another external vocabulary, or if a namespace required by
+     *         the fragment is not in scope.
+     */
+    protected final void encodeFragment(EncodedFragment fragment) throws IOException, FastInfosetException {
+        if (_v == null || !fragment._externalVocabularyURI.equals(_v.getExternalVocabularyURI())) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.fragmentVocabularyNotCompatible", 
+                    new Object[]{fragment._externalVocabularyURI}));
+        }
+        
+        final String[] namespaces = fragment._namespaces;
+        for (int i = 0; i < namespaces.length; i += 2) {
+            String namespaceName = getNamespaceURIInScope(namespaces[i]);
+            if (namespaceName == null) {
+                namespaceName = "";
+            }
+            if (!namespaceName.equals(namespaces[i + 1])) {
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.fragmentNamespaceNotInScope", 
+                        new Object[]{namespaces[i], namespaces[i + 1]}));
+            }
+        }
+        
+        encodeTermination();
+        
+        write(fragment._octets, 0, fragment._octets.length);
+        if (fragment._terminator != 0) {
+            _b = fragment._terminator;
+            _terminate = true;
+        }
+    }
+    
     /**
      * Encode the header of a fast infoset document.
      *
@@ -664,6 +875,10 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      *
      */
     protected final void encodeElementTermination() throws IOException {
+        if (_fragmentCapture != null) {
+            _fragmentCapture.endElement();
+        }
+        
         _terminate = true;
         switch (_b) {
             case EncodingConstants.TERMINATOR:
@@ -712,6 +927,10 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
 
         write(_b);
 
+        if (_fragmentCapture != null) {
+            _fragmentCapture.declareNamespace(prefix, uri);
+        }
+
         if (prefix.length() > 0) {
             encodeIdentifyingNonEmptyStringOnFirstBit(prefix, _v.prefix);
         }
@@ -750,6 +969,24 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
         encodeNonIdentifyingStringOnThirdBit(ch, offset, length, _v.characterContentChunk, addToTable, false);
     }
     
+    /**
+     * Encode a chunk of Character Information Items from the UTF-8 encoded
+     * octets of the characters, without decoding the octets.
+     *
+     * The chunk is not added to the vocabulary. The character encoding 
+     * scheme must be UTF-8 and the octets must be a well-formed UTF-8
+     * encoding of the characters.
+     *
+     * @param b the array of octets.
+     * @param offset the offset into the array of octets.
+     * @param length the length of octets.
+     */
+    protected final void encodeUtf8Characters(byte[] b, int offset, int length) throws IOException {
+        _b = EncodingConstants.CHARACTER_CHUNK;
+        encodeNonZeroOctetStringLengthOnSenventhBit(length);
+        write(b, offset, length);
+    }
+
     /**
      * Encode a chunk of Character Information Items using a numeric
      * alphabet that results in the encoding of a character in 4 bits
@@ -984,6 +1221,8 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param localName the local name of the qualified name.
      */
     protected final void encodeElementQualifiedNameOnThirdBit(String namespaceURI, String prefix, String localName) throws IOException {
+        captureElementName(namespaceURI, prefix);
+        
         LocalNameQualifiedNamesMap.Entry entry = _v.elementName.obtainEntry(localName);
         if (entry._valueIndex > 0) {
             QualifiedName[] names = entry._value;
@@ -1070,6 +1309,8 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param localName the local name of the qualified name.
      */
     protected final void encodeAttributeQualifiedNameOnSecondBit(String namespaceURI, String prefix, String localName) throws IOException {
+        captureAttributeName(namespaceURI, prefix);
+        
         LocalNameQualifiedNamesMap.Entry entry = _v.attributeName.obtainEntry(localName);
         if (entry._valueIndex > 0) {
             QualifiedName[] names = entry._value;
@@ -1200,6 +1441,30 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
         }
     }
 
+    /**
+     * Encode a non identifying string on the first bit of an octet from the
+     * UTF-8 encoded octets of the string, without decoding the octets.
+     * Implementation of clause C.14 of ITU-T Rec. X.891 | ISO/IEC 24824-1.
+     *
+     * The string is not added to the vocabulary. The character encoding 
+     * scheme must be UTF-8 and the octets must be a well-formed UTF-8
+     * encoding of the string.
+     *
+     * @param b the array of octets.
+     * @param offset the offset into the array of octets.
+     * @param length the length of octets.
+     */
+    protected final void encodeNonIdentifyingUtf8StringOnFirstBit(byte[] b, int offset, int length) throws IOException {
+        if (length == 0) {
+            // C.26 an index (first bit '1') with seven '1' bits for an empty string
+            write(0xFF);
+        } else {
+            _b = 0;
+            encodeNonZeroOctetStringLengthOnFifthBit(length);
+            write(b, offset, length);
+        }
+    }
+
     /**
      * Encode a non identifying string on the first bit of an octet.
      * Implementation of clause C.14 of ITU-T Rec. X.891 | ISO/IEC 24824-1.
@@ -1762,9 +2027,9 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
         _b = EncodingAlgorithmIndexes.CDATA << 2;
 
         
-        length = encodeUTF8String(ch, offset, length);
-        encodeNonZeroOctetStringLengthOnSenventhBit(length);
-        write(_encodingBuffer, length);
+        final int utf8Length = calculateUtf8Length(ch, offset, length);
+        encodeNonZeroOctetStringLengthOnSenventhBit(utf8Length);
+        writeUtf8String(ch, offset, length, utf8Length);
     }
     
     /**
@@ -1794,9 +2059,9 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param s the string.
      */
     protected final void encodeNonEmptyOctetStringOnSecondBit(String s) throws IOException {
-        final int length = encodeUTF8String(s);
+        final int length = calculateUtf8Length(s);
         encodeNonZeroOctetStringLengthOnSecondBit(length);
-        write(_encodingBuffer, length);
+        writeUtf8String(s, length);
     }
 
     /**
@@ -1832,9 +2097,15 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param s the string.
      */
     protected final void encodeNonEmptyCharacterStringOnFifthBit(String s) throws IOException {
-        final int length = (_encodingStringsAsUtf8) ? encodeUTF8String(s) : encodeUtf16String(s);
-        encodeNonZeroOctetStringLengthOnFifthBit(length);
-        write(_encodingBuffer, length);
+        if (_encodingStringsAsUtf8) {
+            final int length = calculateUtf8Length(s);
+            encodeNonZeroOctetStringLengthOnFifthBit(length);
+            writeUtf8String(s, length);
+        } else {
+            final int length = encodeUtf16String(s);
+            encodeNonZeroOctetStringLengthOnFifthBit(length);
+            write(_encodingBuffer, length);
+        }
     }
 
     /**
@@ -1847,9 +2118,15 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param length the length of characters.
      */
     protected final void encodeNonEmptyCharacterStringOnFifthBit(char[] ch, int offset, int length) throws IOException {
-        length = (_encodingStringsAsUtf8) ? encodeUTF8String(ch, offset, length) : encodeUtf16String(ch, offset, length);
-        encodeNonZeroOctetStringLengthOnFifthBit(length);
-        write(_encodingBuffer, length);
+        if (_encodingStringsAsUtf8) {
+            final int utf8Length = calculateUtf8Length(ch, offset, length);
+            encodeNonZeroOctetStringLengthOnFifthBit(utf8Length);
+            writeUtf8String(ch, offset, length, utf8Length);
+        } else {
+            length = encodeUtf16String(ch, offset, length);
+            encodeNonZeroOctetStringLengthOnFifthBit(length);
+            write(_encodingBuffer, length);
+        }
     }
 
     /**
@@ -1888,9 +2165,15 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param length the length of characters.
      */
     protected final void encodeNonEmptyCharacterStringOnSeventhBit(char[] ch, int offset, int length) throws IOException {
-        length = (_encodingStringsAsUtf8) ? encodeUTF8String(ch, offset, length) : encodeUtf16String(ch, offset, length);
-        encodeNonZeroOctetStringLengthOnSenventhBit(length);
-        write(_encodingBuffer, length);
+        if (_encodingStringsAsUtf8) {
+            final int utf8Length = calculateUtf8Length(ch, offset, length);
+            encodeNonZeroOctetStringLengthOnSenventhBit(utf8Length);
+            writeUtf8String(ch, offset, length, utf8Length);
+        } else {
+            length = encodeUtf16String(ch, offset, length);
+            encodeNonZeroOctetStringLengthOnSenventhBit(length);
+            write(_encodingBuffer, length);
+        }
     }
 
     /**
@@ -2181,8 +2464,9 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      *        how the length of the UTF-8 encoded string is encoded.
      */
     protected final void encodeNonEmptyUTF8StringAsOctetString(int b, String s, int[] constants) throws IOException {
-        final char[] ch = s.toCharArray();
-        encodeNonEmptyUTF8StringAsOctetString(b, ch, 0, ch.length, constants);
+        final int length = calculateUtf8Length(s);
+        encodeNonZeroOctetStringLength(b, length, constants);
+        writeUtf8String(s, length);
     }
 
     /**
@@ -2197,9 +2481,9 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      *        how the length of the UTF-8 encoded string is encoded.
      */
     protected final void encodeNonEmptyUTF8StringAsOctetString(int b, char ch[], int offset, int length, int[] constants) throws IOException {
-        length = encodeUTF8String(ch, offset, length);
-        encodeNonZeroOctetStringLength(b, length, constants);
-        write(_encodingBuffer, length);
+        final int utf8Length = calculateUtf8Length(ch, offset, length);
+        encodeNonZeroOctetStringLength(b, utf8Length, constants);
+        writeUtf8String(ch, offset, length, utf8Length);
     }
 
     /**
@@ -2262,7 +2546,11 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * Mark the current position in the buffered stream.
      */
     protected final void mark() {
+        if (_octetBufferIndex == _octetBuffer.length) {
+            nextChunk(0);
+        }
         _markIndex = _octetBufferIndex;
+        _markBuffer = _octetBuffer;
     }
 
     /**
@@ -2270,6 +2558,18 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      */
     protected final void resetMark() {
         _markIndex = -1;
+        _markBuffer = null;
+    }
+
+    /**
+     * Set bits of the octet at the marked position in the buffered stream.
+     * <p>
+     * The marked octet may no longer be in the internal buffer.
+     *
+     * @param bits the bits to set.
+     */
+    protected final void setMarkedOctetBits(int bits) {
+        _markBuffer[_markIndex] |= bits;
     }
 
     /**
@@ -2288,13 +2588,11 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
             _octetBuffer[_octetBufferIndex++] = (byte)i;
         } else {
             if (_markIndex == -1) {
-                _s.write(_octetBuffer);
-                _octetBufferIndex = 1;
-                _octetBuffer[0] = (byte)i;
+                _flush();
             } else {
-                resize(_octetBuffer.length * 3 / 2);
-                _octetBuffer[_octetBufferIndex++] = (byte)i;
+                nextChunk(0);
             }
+            _octetBuffer[_octetBufferIndex++] = (byte)i;
         }
     }
 
@@ -2321,35 +2619,142 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
             _octetBufferIndex += length;
         } else {
             if (_markIndex == -1) {
-                _s.write(_octetBuffer, 0, _octetBufferIndex);
+                _flush();
                 _s.write(b, offset, length);
-                _octetBufferIndex = 0;
             } else {
-                resize((_octetBuffer.length + length) * 3 / 2 + 1);
+                nextChunk(length);
                 System.arraycopy(b, offset, _octetBuffer, _octetBufferIndex, length);
                 _octetBufferIndex += length;
             }
         }
     }
 
-    private void ensureSize(int length) {
+    /**
+     * Ensure there is space in the internal buffer for a number of 
+     * contiguous bytes.
+     */
+    private void ensureSize(int length) throws IOException {
         if ((_octetBufferIndex + length) > _octetBuffer.length) {
-            resize((_octetBufferIndex + length) * 3 / 2 + 1);
+            if (_markIndex == -1) {
+                _flush();
+                if (length > _octetBuffer.length) {
+                    _octetBuffer = new byte[length];
+                }
+            } else {
+                nextChunk(length);
+            }
         }
     }
 
-    private void resize(int length) {
-        byte[] b = new byte[length];
-        System.arraycopy(_octetBuffer, 0, b, 0, _octetBufferIndex);
-        _octetBuffer = b;
+    /**
+     * Retain the internal buffer as a chunk of the buffered stream, 
+     * and continue with a chunk that has space for a number of contiguous 
+     * bytes.
+     * <p>
+     * This avoids copying the internal buffer to grow it while the mark is 
+     * set.
+     */
+    private void nextChunk(int length) {
+        if (_chunksIndex == _chunks.length) {
+            final byte[][] chunks = new byte[_chunksIndex * 2][];
+            System.arraycopy(_chunks, 0, chunks, 0, _chunksIndex);
+            _chunks = chunks;
+            final int[] chunkLengths = new int[_chunksIndex * 2];
+            System.arraycopy(_chunkLengths, 0, chunkLengths, 0, _chunksIndex);
+            _chunkLengths = chunkLengths;
+        }
+        _chunks[_chunksIndex] = _octetBuffer;
+        _chunkLengths[_chunksIndex++] = _octetBufferIndex;
+        
+        if (length <= CHUNK_SIZE && _chunkPoolIndex > 0) {
+            _octetBuffer = _chunkPool[--_chunkPoolIndex];
+            _chunkPool[_chunkPoolIndex] = null;
+        } else {
+            _octetBuffer = new byte[Math.max(length, CHUNK_SIZE)];
+        }
+        _octetBufferIndex = 0;
     }
-
+    
+    /**
+     * Release the retained chunks to the pool.
+     */
+    private void releaseChunks() {
+        for (int i = 0; i < _chunksIndex; i++) {
+            final byte[] chunk = _chunks[i];
+            _chunks[i] = null;
+            if (chunk.length == CHUNK_SIZE && _chunkPoolIndex < CHUNK_POOL_SIZE) {
+                _chunkPool[_chunkPoolIndex++] = chunk;
+            }
+        }
+        _chunksIndex = 0;
+    }
+    
     private void _flush() throws IOException {
-        if (_octetBufferIndex > 0) {
+        if (_chunksIndex > 0) {
+            if (_s instanceof ChannelOutputStream) {
+                final ByteBuffer[] buffers = new ByteBuffer[_chunksIndex + 1];
+                for (int i = 0; i < _chunksIndex; i++) {
+                    buffers[i] = ByteBuffer.wrap(_chunks[i], 0, _chunkLengths[i]);
+                }
+                buffers[_chunksIndex] = ByteBuffer.wrap(_octetBuffer, 0, _octetBufferIndex);
+                ((ChannelOutputStream)_s).write(buffers);
+            } else {
+                for (int i = 0; i < _chunksIndex; i++) {
+                    _s.write(_chunks[i], 0, _chunkLengths[i]);
+                }
+                _s.write(_octetBuffer, 0, _octetBufferIndex);
+            }
+            releaseChunks();
+            _octetBufferIndex = 0;
+        } else if (_octetBufferIndex > 0) {
             _s.write(_octetBuffer, 0, _octetBufferIndex);
             _octetBufferIndex = 0;
         }
     }
+    
+    /**
+     * An output stream that writes to a channel.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final WritableByteChannel _channel;
+        
+        ChannelOutputStream(WritableByteChannel channel) {
+            _channel = channel;
+        }
+        
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+        
+        public void write(byte[] b, int off, int len) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                _channel.write(buffer);
+            }
+        }
+        
+        /**
+         * Write buffers, using a gathering write if supported by the channel.
+         */
+        void write(ByteBuffer[] buffers) throws IOException {
+            if (_channel instanceof GatheringByteChannel) {
+                final GatheringByteChannel channel = (GatheringByteChannel)_channel;
+                long remaining = 0;
+                for (int i = 0; i < buffers.length; i++) {
+                    remaining += buffers[i].remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+            } else {
+                for (int i = 0; i < buffers.length; i++) {
+                    while (buffers[i].hasRemaining()) {
+                        _channel.write(buffers[i]);
+                    }
+                }
+            }
+        }
+    }
 
     
     private EncodingBufferOutputStream _encodingBufferOutputStream = new EncodingBufferOutputStream();
@@ -2429,36 +2834,45 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
      * @param length the length of characters.
      */
     protected final int encodeUTF8String(char[] ch, int offset, int length) throws IOException {
-        int bpos = 0;
-
         // Make sure buffer is large enough
         ensureEncodingBufferSizeForUtf8String(length);
 
+        return encodeUTF8String(ch, offset, length, _encodingBuffer, 0);
+    }
+    
+    /**
+     * Encode characters using the UTF-8 encoding into an array of bytes
+     * that is large enough to hold the encoded characters.
+     *
+     * @return the position in the array of bytes after the last encoded
+     *         byte.
+     */
+    private int encodeUTF8String(char[] ch, int offset, int length, byte[] b, int bpos) throws IOException {
         final int end = offset + length;
         int c;
         while (end != offset) {
             c = ch[offset++];
             if (c < 0x80) {
                 // 1 byte, 7 bits
-                _encodingBuffer[bpos++] = (byte) c;
+                b[bpos++] = (byte) c;
             } else if (c < 0x800) {
                 // 2 bytes, 11 bits
-                _encodingBuffer[bpos++] =
+                b[bpos++] =
                     (byte) (0xC0 | (c >> 6));    // first 5
-                _encodingBuffer[bpos++] =
+                b[bpos++] =
                     (byte) (0x80 | (c & 0x3F));  // second 6
             } else if (c <= '\uFFFF') { 
                 if (!XMLChar.isHighSurrogate(c) && !XMLChar.isLowSurrogate(c)) {
                     // 3 bytes, 16 bits
-                    _encodingBuffer[bpos++] =
+                    b[bpos++] =
                         (byte) (0xE0 | (c >> 12));   // first 4
-                    _encodingBuffer[bpos++] =
+                    b[bpos++] =
                         (byte) (0x80 | ((c >> 6) & 0x3F));  // second 6
-                    _encodingBuffer[bpos++] =
+                    b[bpos++] =
                         (byte) (0x80 | (c & 0x3F));  // third 6
                 } else {
                     // 4 bytes, high and low surrogate
-                    encodeCharacterAsUtf8FourByte(c, ch, offset, end, bpos);
+                    encodeCharacterAsUtf8FourByte(c, ch, offset, end, b, bpos);
                     bpos += 4;
                     offset++;
                 }
@@ -2468,7 +2882,126 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
         return bpos;
     }
     
-    private void encodeCharacterAsUtf8FourByte(int c, char[] ch, int chpos, int chend, int bpos) throws IOException {
+    /**
+     * Calculate the length of a string encoded using the UTF-8 encoding.
+     *
+     * @param s the string.
+     * @return the length of the encoded string, which is equal to the
+     *         length of the string if all characters are ASCII characters.
+     */
+    private int calculateUtf8Length(String s) {
+        final int length = s.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x80) {
+                utf8Length += calculateUtf8AdditionalLength(c);
+            }
+        }
+        return utf8Length;
+    }
+    
+    /**
+     * Calculate the length of characters encoded using the UTF-8 encoding.
+     *
+     * @param ch the array of characters.
+     * @param offset the offset into the array of characters.
+     * @param length the length of characters.
+     * @return the length of the encoded characters.
+     */
+    private int calculateUtf8Length(char[] ch, int offset, int length) {
+        final int end = offset + length;
+        int utf8Length = length;
+        for (int i = offset; i < end; i++) {
+            final char c = ch[i];
+            if (c >= 0x80) {
+                utf8Length += calculateUtf8AdditionalLength(c);
+            }
+        }
+        return utf8Length;
+    }
+    
+    private static int calculateUtf8AdditionalLength(char c) {
+        if (c < 0x800) {
+            return 1;
+        } else if (!XMLChar.isHighSurrogate(c) && !XMLChar.isLowSurrogate(c)) {
+            return 2;
+        } else {
+            // Each character of a surrogate pair contributes 2 of the 4 bytes
+            return 1;
+        }
+    }
+    
+    /**
+     * Write a string using the UTF-8 encoding directly to the buffered
+     * stream.
+     * <p>
+     * If all characters are ASCII characters the low bytes of the characters
+     * are copied from the string in bulk.
+     *
+     * @param s the string.
+     * @param utf8Length the length of the encoded string, as calculated by
+     *        {@link #calculateUtf8Length(String)}.
+     */
+    @SuppressWarnings("deprecation")
+    private void writeUtf8String(String s, int utf8Length) throws IOException {
+        final int length = s.length();
+        if (!ensureSizeForUtf8String(utf8Length)) {
+            // Too large for the buffered stream, write through the
+            // encoding buffer
+            final int encodedLength = encodeUTF8String(s);
+            _s.write(_encodingBuffer, 0, encodedLength);
+        } else if (utf8Length == length) {
+            s.getBytes(0, length, _octetBuffer, _octetBufferIndex);
+            _octetBufferIndex += length;
+        } else if (length < _charBuffer.length) {
+            s.getChars(0, length, _charBuffer, 0);
+            _octetBufferIndex = encodeUTF8String(_charBuffer, 0, length, _octetBuffer, _octetBufferIndex);
+        } else {
+            _octetBufferIndex = encodeUTF8String(s.toCharArray(), 0, length, _octetBuffer, _octetBufferIndex);
+        }
+    }
+    
+    /**
+     * Write characters using the UTF-8 encoding directly to the buffered
+     * stream.
+     *
+     * @param ch the array of characters.
+     * @param offset the offset into the array of characters.
+     * @param length the length of characters.
+     * @param utf8Length the length of the encoded characters, as calculated
+     *        by {@link #calculateUtf8Length(char[], int, int)}.
+     */
+    private void writeUtf8String(char[] ch, int offset, int length, int utf8Length) throws IOException {
+        if (ensureSizeForUtf8String(utf8Length)) {
+            _octetBufferIndex = encodeUTF8String(ch, offset, length, _octetBuffer, _octetBufferIndex);
+        } else {
+            // Too large for the buffered stream, write through the
+            // encoding buffer
+            final int encodedLength = encodeUTF8String(ch, offset, length);
+            _s.write(_encodingBuffer, 0, encodedLength);
+        }
+    }
+    
+    /**
+     * Ensure there is space in the buffered stream for an encoded string.
+     *
+     * @return false if the buffered stream is flushed and the encoded string
+     *         is to be written directly to the output stream.
+     */
+    private boolean ensureSizeForUtf8String(int utf8Length) throws IOException {
+        if ((_octetBufferIndex + utf8Length) <= _octetBuffer.length) {
+            return true;
+        } else if (_markIndex == -1) {
+            _flush();
+            return utf8Length <= _octetBuffer.length;
+        } else {
+            ensureSize(utf8Length);
+            return true;
+        }
+    }
+    
+    private void encodeCharacterAsUtf8FourByte(int c, char[] ch, int chpos, int chend, byte[] b, int bpos) throws IOException {
         if (chpos == chend) {
             throw new IOException("");
         }
@@ -2483,10 +3016,10 @@ public abstract class Encoder extends DefaultHandler implements FastInfosetSeria
             throw new IOException("");
         }
 
-        _encodingBuffer[bpos++] = (byte)(0xF0 | ((uc >> 18)));
-        _encodingBuffer[bpos++] = (byte)(0x80 | ((uc >> 12) & 0x3F));
-        _encodingBuffer[bpos++] = (byte)(0x80 | ((uc >> 6) & 0x3F));
-        _encodingBuffer[bpos++] = (byte)(0x80 | (uc & 0x3F));
+        b[bpos++] = (byte)(0xF0 | ((uc >> 18)));
+        b[bpos++] = (byte)(0x80 | ((uc >> 12) & 0x3F));
+        b[bpos++] = (byte)(0x80 | ((uc >> 6) & 0x3F));
+        b[bpos++] = (byte)(0x80 | (uc & 0x3F));
     }
 
     /**
@@ -0,0 +1,543 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset;
+
+/**
+ * Locates the end of encoded information items in an octet buffer
+ * without decoding them.
+ * <p>
+ * The scanner follows the structure of the encoding only as far as is
+ * required to find item boundaries. It does not modify any vocabulary
+ * table and does not create any strings, so it may be run over partial
+ * input any number of times. Octets that do not start a legal encoding are
+ * treated as a complete item so that the decoder may report the error.
+ */
+public final class InformationItemScanner {
+    /**
+     * Returned when the octet buffer does not hold a complete item.
+     */
+    public static final int INCOMPLETE = -1;
+
+    private byte[] _b;
+
+    private int _end;
+
+    private int _count;
+
+    /**
+     * Scan the header and the document information item properties that
+     * precede the children of the document.
+     *
+     * @param b the octet buffer.
+     * @param offset the offset of the first octet of the header.
+     * @param end the offset after the last octet of the buffer.
+     * @return the offset after the document information item properties, or
+     *         {@link #INCOMPLETE}.
+     */
+    public int scanHeader(byte[] b, int offset, int end) {
+        _b = b;
+        _end = end;
+
+        int p = scanBinaryHeader(offset);
+        if (p == INCOMPLETE) return INCOMPLETE;
+        return scanDII(p);
+    }
+
+    /**
+     * Scan a child of the document information item or of an element
+     * information item. An element information item is scanned up to and
+     * including its attributes.
+     *
+     * @param b the octet buffer.
+     * @param offset the offset of the first octet of the item.
+     * @param end the offset after the last octet of the buffer.
+     * @return the offset after the item, or {@link #INCOMPLETE}.
+     */
+    public int scanItem(byte[] b, int offset, int end) {
+        _b = b;
+        _end = end;
+
+        int p = offset;
+        if (p >= _end) return INCOMPLETE;
+        final int b0 = _b[p++] & 0xFF;
+        switch(DecoderStateTables.EII(b0)) {
+            case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                return p;
+            case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                return scanAIIs(p);
+            case DecoderStateTables.EII_INDEX_MEDIUM:
+                return scanAIIs(b0, skip(p, 1));
+            case DecoderStateTables.EII_INDEX_LARGE:
+                return scanAIIs(b0, skip(p,
+                        ((b0 & EncodingConstants.INTEGER_3RD_BIT_LARGE_LARGE_FLAG) == 0x20) ? 2 : 3));
+            case DecoderStateTables.EII_LITERAL:
+                return scanAIIs(b0, scanLiteralQualifiedName(
+                        b0 & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK, p));
+            case DecoderStateTables.EII_NAMESPACES:
+                return scanEIIWithNamespaces(b0, p);
+            case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+            case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                return skip(p, (b0 & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK) + 1);
+            case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+            case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                if (p >= _end) return INCOMPLETE;
+                return skip(p + 1, (_b[p] & 0xFF) + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT);
+            case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+            case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                if (!has(p, 4)) return INCOMPLETE;
+                return skip(p + 4, readInt(p) + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT);
+            case DecoderStateTables.CII_RA:
+            case DecoderStateTables.CII_EA:
+                if (p >= _end) return INCOMPLETE;
+                return scanOctetsOnSeventhBit(_b[p] & 0xFF, p + 1);
+            case DecoderStateTables.CII_INDEX_SMALL:
+                return p;
+            case DecoderStateTables.CII_INDEX_MEDIUM:
+                return skip(p, 1);
+            case DecoderStateTables.CII_INDEX_LARGE:
+                return skip(p, 2);
+            case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+                return skip(p, 3);
+            case DecoderStateTables.COMMENT_II:
+                return scanNonIdentifyingString(p);
+            case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                return scanNonIdentifyingString(scanIdentifyingString(p));
+            case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
+                p = scanIdentifyingString(p);
+                if ((b0 & EncodingConstants.UNEXPANDED_ENTITY_SYSTEM_IDENTIFIER_FLAG) > 0) {
+                    p = scanIdentifyingString(p);
+                }
+                if ((b0 & EncodingConstants.UNEXPANDED_ENTITY_PUBLIC_IDENTIFIER_FLAG) > 0) {
+                    p = scanIdentifyingString(p);
+                }
+                return p;
+            default:
+                return p;
+        }
+    }
+
+    private int scanBinaryHeader(int p) {
+        if (!has(p, EncodingConstants.BINARY_HEADER.length)) return INCOMPLETE;
+        if (arrayEquals(p, EncodingConstants.BINARY_HEADER)) {
+            return p + EncodingConstants.BINARY_HEADER.length;
+        }
+
+        // Check for each form of XML declaration, in the order of the decoder
+        for (int i = 0; i < EncodingConstants.XML_DECLARATION_VALUES.length; i++) {
+            final byte[] declaration = EncodingConstants.XML_DECLARATION_VALUES[i];
+            if (!has(p, declaration.length)) return INCOMPLETE;
+            if (arrayEquals(p, declaration)) {
+                return skip(p + declaration.length, EncodingConstants.BINARY_HEADER.length);
+            }
+        }
+        return p;
+    }
+
+    private int scanDII(int p) {
+        if (p >= _end) return INCOMPLETE;
+        final int b = _b[p++] & 0xFF;
+
+        if ((b & EncodingConstants.DOCUMENT_ADDITIONAL_DATA_FLAG) > 0) {
+            p = scanNumberOfItems(p);
+            for (int i = _count; i > 0 && p != INCOMPLETE; i--) {
+                p = scanIdentifyingString(scanIdentifyingString(p));
+            }
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_INITIAL_VOCABULARY_FLAG) > 0) {
+            p = scanInitialVocabulary(p);
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_NOTATIONS_FLAG) > 0) {
+            p = scanNotations(p);
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_UNPARSED_ENTITIES_FLAG) > 0) {
+            p = scanUnparsedEntities(p);
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_CHARACTER_ENCODING_SCHEME) > 0) {
+            p = scanIdentifyingString(p);
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_STANDALONE_FLAG) > 0) {
+            p = skip(p, 1);
+        }
+
+        if ((b & EncodingConstants.DOCUMENT_VERSION_FLAG) > 0) {
+            p = scanNonIdentifyingString(p);
+        }
+        return p;
+    }
+
+    private int scanInitialVocabulary(int p) {
+        if (!has(p, 2)) return INCOMPLETE;
+        // First 5 optionals of 13 bit optional field
+        final int b = _b[p++] & 0xFF;
+        // Next 8 optionals of 13 bit optional field
+        final int b2 = _b[p++] & 0xFF;
+
+        if ((b & EncodingConstants.INITIAL_VOCABULARY_EXTERNAL_VOCABULARY_FLAG) > 0) {
+            p = scanIdentifyingString(p);
+        }
+        if ((b & EncodingConstants.INITIAL_VOCABULARY_RESTRICTED_ALPHABETS_FLAG) > 0) {
+            p = scanNonIdentifyingStringTable(p);
+        }
+        if ((b & EncodingConstants.INITIAL_VOCABULARY_ENCODING_ALGORITHMS_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b & EncodingConstants.INITIAL_VOCABULARY_PREFIXES_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b & EncodingConstants.INITIAL_VOCABULARY_NAMESPACE_NAMES_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_LOCAL_NAMES_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_OTHER_NCNAMES_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_OTHER_URIS_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_ATTRIBUTE_VALUES_FLAG) > 0) {
+            p = scanOctetStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_CONTENT_CHARACTER_CHUNKS_FLAG) > 0) {
+            p = scanNonIdentifyingStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_OTHER_STRINGS_FLAG) > 0) {
+            p = scanNonIdentifyingStringTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_ELEMENT_NAME_SURROGATES_FLAG) > 0) {
+            p = scanNameSurrogateTable(p);
+        }
+        if ((b2 & EncodingConstants.INITIAL_VOCABULARY_ATTRIBUTE_NAME_SURROGATES_FLAG) > 0) {
+            p = scanNameSurrogateTable(p);
+        }
+        return p;
+    }
+
+    private int scanOctetStringTable(int p) {
+        p = scanNumberOfItems(p);
+        for (int i = _count; i > 0 && p != INCOMPLETE; i--) {
+            p = scanIdentifyingString(p);
+        }
+        return p;
+    }
+
+    private int scanNonIdentifyingStringTable(int p) {
+        p = scanNumberOfItems(p);
+        for (int i = _count; i > 0 && p != INCOMPLETE; i--) {
+            p = scanNonIdentifyingString(p);
+        }
+        return p;
+    }
+
+    private int scanNameSurrogateTable(int p) {
+        p = scanNumberOfItems(p);
+        for (int i = _count; i > 0 && p != INCOMPLETE; i--) {
+            if (p >= _end) return INCOMPLETE;
+            final int b = _b[p++] & 0xFF;
+            if ((b & EncodingConstants.NAME_SURROGATE_PREFIX_FLAG) > 0) {
+                p = scanIntegerIndexOnSecondBit(p);
+            }
+            if ((b & EncodingConstants.NAME_SURROGATE_NAME_FLAG) > 0) {
+                p = scanIntegerIndexOnSecondBit(p);
+            }
+            p = scanIntegerIndexOnSecondBit(p);
+        }
+        return p;
+    }
+
+    private int scanNotations(int p) {
+        while (p != INCOMPLETE) {
+            if (p >= _end) return INCOMPLETE;
+            final int b = _b[p++] & 0xFF;
+            if ((b & EncodingConstants.NOTATIONS_MASK) != EncodingConstants.NOTATIONS) {
+                return p;
+            }
+
+            p = scanIdentifyingString(p);
+            if ((b & EncodingConstants.NOTATIONS_SYSTEM_IDENTIFIER_FLAG) > 0) {
+                p = scanIdentifyingString(p);
+            }
+            if ((b & EncodingConstants.NOTATIONS_PUBLIC_IDENTIFIER_FLAG) > 0) {
+                p = scanIdentifyingString(p);
+            }
+        }
+        return INCOMPLETE;
+    }
+
+    private int scanUnparsedEntities(int p) {
+        while (p != INCOMPLETE) {
+            if (p >= _end) return INCOMPLETE;
+            final int b = _b[p++] & 0xFF;
+            if ((b & EncodingConstants.UNPARSED_ENTITIES_MASK) != EncodingConstants.UNPARSED_ENTITIES) {
+                return p;
+            }
+
+            p = scanIdentifyingString(scanIdentifyingString(p));
+            if ((b & EncodingConstants.UNPARSED_ENTITIES_PUBLIC_IDENTIFIER_FLAG) > 0) {
+                p = scanIdentifyingString(p);
+            }
+            p = scanIdentifyingString(p);
+        }
+        return INCOMPLETE;
+    }
+
+    private int scanEIIWithNamespaces(int b0, int p) {
+        // Namespace attributes
+        int b;
+        while (true) {
+            if (p == INCOMPLETE || p >= _end) return INCOMPLETE;
+            b = _b[p++] & 0xFF;
+            if ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_MASK) != EncodingConstants.NAMESPACE_ATTRIBUTE) {
+                break;
+            }
+
+            if ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_PREFIX_FLAG) > 0) {
+                p = scanIdentifyingString(p);
+            }
+            if ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_NAME_FLAG) > 0) {
+                p = scanIdentifyingString(p);
+            }
+        }
+        if (b != EncodingConstants.TERMINATOR) {
+            return p;
+        }
+
+        // Qualified name of the element
+        if (p >= _end) return INCOMPLETE;
+        b = _b[p++] & 0xFF;
+        switch(DecoderStateTables.EII(b)) {
+            case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                return scanAIIs(b0, p);
+            case DecoderStateTables.EII_INDEX_MEDIUM:
+                return scanAIIs(b0, skip(p, 1));
+            case DecoderStateTables.EII_INDEX_LARGE:
+                return scanAIIs(b0, skip(p,
+                        ((b & EncodingConstants.INTEGER_3RD_BIT_LARGE_LARGE_FLAG) == 0x20) ? 2 : 3));
+            case DecoderStateTables.EII_LITERAL:
+                return scanAIIs(b0, scanLiteralQualifiedName(
+                        b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK, p));
+            default:
+                return p;
+        }
+    }
+
+    private int scanAIIs(int b0, int p) {
+        if (p == INCOMPLETE) return INCOMPLETE;
+        return ((b0 & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0) ? scanAIIs(p) : p;
+    }
+
+    private int scanAIIs(int p) {
+        while (p != INCOMPLETE) {
+            // AII qualified name
+            if (p >= _end) return INCOMPLETE;
+            final int b = _b[p++] & 0xFF;
+            switch (DecoderStateTables.AII(b)) {
+                case DecoderStateTables.AII_INDEX_SMALL:
+                    break;
+                case DecoderStateTables.AII_INDEX_MEDIUM:
+                    p = skip(p, 1);
+                    break;
+                case DecoderStateTables.AII_INDEX_LARGE:
+                    p = skip(p, 2);
+                    break;
+                case DecoderStateTables.AII_LITERAL:
+                    p = scanLiteralQualifiedName(
+                            b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK, p);
+                    break;
+                case DecoderStateTables.AII_TERMINATOR_DOUBLE:
+                case DecoderStateTables.AII_TERMINATOR_SINGLE:
+                default:
+                    return p;
+            }
+
+            // [normalized value] of AII
+            p = scanNonIdentifyingString(p);
+        }
+        return INCOMPLETE;
+    }
+
+    private int scanLiteralQualifiedName(int state, int p) {
+        switch (state) {
+            // no prefix, no namespace
+            case 0:
+                return scanIdentifyingString(p);
+            // no prefix, namespace
+            case 1:
+                return scanIdentifyingString(scanIdentifyingString(p));
+            // prefix, namespace
+            case 3:
+                return scanIdentifyingString(scanIdentifyingString(scanIdentifyingString(p)));
+            default:
+                return p;
+        }
+    }
+
+    /*
+     * C.13 and C.22
+     */
+    private int scanIdentifyingString(int p) {
+        if (p == INCOMPLETE || p >= _end) return INCOMPLETE;
+        final int b = _b[p++] & 0xFF;
+        switch(DecoderStateTables.ISTRING(b)) {
+            case DecoderStateTables.ISTRING_SMALL_LENGTH:
+                return skip(p, b + 1);
+            case DecoderStateTables.ISTRING_MEDIUM_LENGTH:
+                if (p >= _end) return INCOMPLETE;
+                return skip(p + 1, (_b[p] & 0xFF) + EncodingConstants.OCTET_STRING_LENGTH_2ND_BIT_SMALL_LIMIT);
+            case DecoderStateTables.ISTRING_LARGE_LENGTH:
+                if (!has(p, 4)) return INCOMPLETE;
+                return skip(p + 4, readInt(p) + EncodingConstants.OCTET_STRING_LENGTH_2ND_BIT_MEDIUM_LIMIT);
+            case DecoderStateTables.ISTRING_INDEX_SMALL:
+                return p;
+            case DecoderStateTables.ISTRING_INDEX_MEDIUM:
+                return skip(p, 1);
+            case DecoderStateTables.ISTRING_INDEX_LARGE:
+                return skip(p, 2);
+            default:
+                return p;
+        }
+    }
+
+    /*
+     * C.14
+     */
+    private int scanNonIdentifyingString(int p) {
+        if (p == INCOMPLETE || p >= _end) return INCOMPLETE;
+        final int b = _b[p++] & 0xFF;
+        switch(DecoderStateTables.NISTRING(b)) {
+            case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_SMALL_LENGTH:
+                return skip(p, (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1);
+            case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_MEDIUM_LENGTH:
+                if (p >= _end) return INCOMPLETE;
+                return skip(p + 1, (_b[p] & 0xFF) + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT);
+            case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_LARGE_LENGTH:
+                if (!has(p, 4)) return INCOMPLETE;
+                return skip(p + 4, readInt(p) + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT);
+            case DecoderStateTables.NISTRING_RA:
+            case DecoderStateTables.NISTRING_EA:
+                if (p >= _end) return INCOMPLETE;
+                return scanOctetsOnFifthBit(_b[p] & 0x0F, p + 1);
+            case DecoderStateTables.NISTRING_INDEX_MEDIUM:
+                return skip(p, 1);
+            case DecoderStateTables.NISTRING_INDEX_LARGE:
+                return skip(p, 2);
+            case DecoderStateTables.NISTRING_INDEX_SMALL:
+            case DecoderStateTables.NISTRING_EMPTY:
+            default:
+                return p;
+        }
+    }
+
+    private int scanOctetsOnFifthBit(int b, int p) {
+        switch(DecoderStateTables.NISTRING(b)) {
+            case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+                return skip(p, b + 1);
+            case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+                if (p >= _end) return INCOMPLETE;
+                return skip(p + 1, (_b[p] & 0xFF) + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT);
+            case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+                if (!has(p, 4)) return INCOMPLETE;
+                return skip(p + 4, readInt(p) + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT);
+            default:
+                return p;
+        }
+    }
+
+    private int scanOctetsOnSeventhBit(int b, int p) {
+        switch (b & 0x03) {
+            // Small length
+            case 0:
+                return skip(p, 1);
+            case 1:
+                return skip(p, 2);
+            // Medium length
+            case 2:
+                if (p >= _end) return INCOMPLETE;
+                return skip(p + 1, (_b[p] & 0xFF) + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT);
+            // Large length
+            default:
+                if (!has(p, 4)) return INCOMPLETE;
+                return skip(p + 4, readInt(p) + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT);
+        }
+    }
+
+    /*
+     * C.25
+     */
+    private int scanIntegerIndexOnSecondBit(int p) {
+        if (p == INCOMPLETE || p >= _end) return INCOMPLETE;
+        final int b = (_b[p++] & 0xFF) | 0x80;
+        switch(DecoderStateTables.ISTRING(b)) {
+            case DecoderStateTables.ISTRING_INDEX_MEDIUM:
+                return skip(p, 1);
+            case DecoderStateTables.ISTRING_INDEX_LARGE:
+                return skip(p, 2);
+            default:
+                return p;
+        }
+    }
+
+    private int scanNumberOfItems(int p) {
+        if (p == INCOMPLETE || p >= _end) return INCOMPLETE;
+        final int b = _b[p++] & 0xFF;
+        if (b < 128) {
+            _count = b + 1;
+            return p;
+        }
+
+        if (!has(p, 2)) return INCOMPLETE;
+        _count = (((b & 0x0F) << 16) | ((_b[p] & 0xFF) << 8) | (_b[p + 1] & 0xFF)) + 129;
+        return p + 2;
+    }
+
+    private int skip(int p, int length) {
+        if (p == INCOMPLETE) return INCOMPLETE;
+        // A length that overflows is illegal, leave it to the decoder
+        if (length < 0) return p;
+        return has(p, length) ? p + length : INCOMPLETE;
+    }
+
+    private boolean has(int p, int length) {
+        return p != INCOMPLETE && (long)p + length <= _end;
+    }
+
+    private int readInt(int p) {
+        return ((_b[p] & 0xFF) << 24) |
+                ((_b[p + 1] & 0xFF) << 16) |
+                ((_b[p + 2] & 0xFF) << 8) |
+                (_b[p + 3] & 0xFF);
+    }
+
+    private boolean arrayEquals(int p, byte[] b) {
+        for (int i = 0; i < b.length; i++) {
+            if (_b[p + i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -17,9 +17,12 @@
  */
 package com.sun.xml.fastinfoset;
 
+import java.nio.charset.Charset;
 import javax.xml.namespace.QName;
 
 public class QualifiedName {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
     public String prefix;
     public String namespaceName;
     public String localName;
@@ -31,6 +34,11 @@ public class QualifiedName {
     public int attributeId;
     public int attributeHash;
     private QName qNameObject;
+    /**
+     * Octets of the qualified name, published safely since names of a
+     * compiled vocabulary are shared between threads
+     */
+    private volatile byte[] qNameOctets;
     
     public QualifiedName() { }
     
@@ -55,6 +63,7 @@ public class QualifiedName {
         this.namespaceNameIndex = 0;        
         this.localNameIndex = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
     }    
     
     public QualifiedName(String prefix, String namespaceName, String localName, String qName, int index) {
@@ -78,6 +87,7 @@ public class QualifiedName {
         this.namespaceNameIndex = 0;        
         this.localNameIndex = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -104,6 +114,7 @@ public class QualifiedName {
         this.namespaceNameIndex = namespaceNameIndex + 1;
         this.localNameIndex = localNameIndex;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -128,6 +139,7 @@ public class QualifiedName {
         this.namespaceNameIndex = 0;        
         this.localNameIndex = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -188,6 +200,7 @@ public class QualifiedName {
         this.localNameIndex = localNameIndex;
         this.index = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -212,6 +225,7 @@ public class QualifiedName {
         this.namespaceNameIndex = 0;        
         this.localNameIndex = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -238,6 +252,7 @@ public class QualifiedName {
         this.namespaceNameIndex = namespaceNameIndex + 1;
         this.localNameIndex = localNameIndex;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }    
     
@@ -263,6 +278,7 @@ public class QualifiedName {
         this.namespaceNameIndex = 0;       
         this.localNameIndex = -1;
         this.qNameObject = null;
+        this.qNameOctets = null;
         return this;
     }
     
@@ -274,6 +290,22 @@ public class QualifiedName {
         return qNameObject;
     }
     
+    /**
+     * Get the qualified name encoded in UTF-8.
+     * <p>
+     * The octets are created once for the name and must not be modified.
+     * Threads that share the name may each create the octets, and only
+     * fully created octets are seen.
+     */
+    public final byte[] getQNameOctets() {
+        byte[] octets = qNameOctets;
+        if (octets == null) {
+            octets = qNameOctets = createQNameString(prefix, localName).getBytes(UTF_8);
+        }
+        
+        return octets;
+    }
+    
     public final String getQNameString() {
         if (this.qName != "") {
             return this.qName;
@@ -33,76 +33,31 @@ public class BASE64EncodingAlgorithm extends BuiltInEncodingAlgorithm {
         '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
     };
 
-    /* package */ static final int decodeBase64[] = {
-        /*'+'*/ 62,
-        -1, -1, -1,
-        /*'/'*/ 63,
-        /*'0'*/ 52,
-        /*'1'*/ 53,
-        /*'2'*/ 54,
-        /*'3'*/ 55,
-        /*'4'*/ 56,
-        /*'5'*/ 57,
-        /*'6'*/ 58,
-        /*'7'*/ 59,
-        /*'8'*/ 60,
-        /*'9'*/ 61,
-        -1, -1, -1, -1, -1, -1, -1,
-        /*'A'*/ 0,
-        /*'B'*/ 1,
-        /*'C'*/ 2,
-        /*'D'*/ 3,
-        /*'E'*/ 4,
-        /*'F'*/ 5,
-        /*'G'*/ 6,
-        /*'H'*/ 7,
-        /*'I'*/ 8,
-        /*'J'*/ 9,
-        /*'K'*/ 10,
-        /*'L'*/ 11,
-        /*'M'*/ 12,
-        /*'N'*/ 13,
-        /*'O'*/ 14,
-        /*'P'*/ 15,
-        /*'Q'*/ 16,
-        /*'R'*/ 17,
-        /*'S'*/ 18,
-        /*'T'*/ 19,
-        /*'U'*/ 20,
-        /*'V'*/ 21,
-        /*'W'*/ 22,
-        /*'X'*/ 23,
-        /*'Y'*/ 24,
-        /*'Z'*/ 25,
-        -1, -1, -1, -1, -1, -1,
-        /*'a'*/ 26,
-        /*'b'*/ 27,
-        /*'c'*/ 28,
-        /*'d'*/ 29,
-        /*'e'*/ 30,
-        /*'f'*/ 31,
-        /*'g'*/ 32,
-        /*'h'*/ 33,
-        /*'i'*/ 34,
-        /*'j'*/ 35,
-        /*'k'*/ 36,
-        /*'l'*/ 37,
-        /*'m'*/ 38,
-        /*'n'*/ 39,
-        /*'o'*/ 40,
-        /*'p'*/ 41,
-        /*'q'*/ 42,
-        /*'r'*/ 43,
-        /*'s'*/ 44,
-        /*'t'*/ 45,
-        /*'u'*/ 46,
-        /*'v'*/ 47,
-        /*'w'*/ 48,
-        /*'x'*/ 49,
-        /*'y'*/ 50,
-        /*'z'*/ 51
-    };
-
+    /**
+     * The length of octets, a multiple of 3, that are encoded to characters 
+     * at a time.
+     */
+    private static final int CHUNK_LENGTH = 3 * 1024;
+    
+    /**
+     * The values of ASCII characters, the value of a base64 character, 
+     * {@link #WHITESPACE} or {@link #INVALID}.
+     */
+    private static final byte[] DECODE_TABLE = new byte[128];
+    
+    private static final byte WHITESPACE = -2;
+    
+    private static final byte INVALID = -1;
+    
+    static {
+        for (int c = 0; c < DECODE_TABLE.length; c++) {
+            DECODE_TABLE[c] = Character.isWhitespace((char)c) ? WHITESPACE : INVALID;
+        }
+        for (int i = 0; i < encodeBase64.length; i++) {
+            DECODE_TABLE[encodeBase64[i]] = (byte)i;
+        }
+    }
+    
     public final Object decodeFromBytes(byte[] b, int start, int length) throws EncodingAlgorithmException {
         final byte[] data = new byte[length];
         System.arraycopy(b, start, data, 0, length);
@@ -110,7 +65,7 @@ public class BASE64EncodingAlgorithm extends BuiltInEncodingAlgorithm {
     }
     
     public final Object decodeFromInputStream(InputStream s) throws IOException {
-        throw new UnsupportedOperationException(CommonResourceBundle.getInstance().getString("message.notImplemented"));
+        return readAllOctets(s);
     }
     
     
@@ -127,43 +82,31 @@ public class BASE64EncodingAlgorithm extends BuiltInEncodingAlgorithm {
             return new byte[0];
         }
         
-        StringBuilder encodedValue = removeWhitespace(ch, start, length);
-        int encodedLength = encodedValue.length();
-        if (encodedLength == 0) {
-            return new byte[0];
+        // The length of the octets if there is no whitespace other than
+        // trailing whitespace
+        int end = start + length;
+        while (end > start && isWhitespace(ch[end - 1])) {
+            end--;
         }
-        
-        int blockCount = encodedLength / 4;
-        int partialBlockLength = 3;
-
-        if (encodedValue.charAt(encodedLength - 1) == '=') {
-            --partialBlockLength;
-            if (encodedValue.charAt(encodedLength - 2) == '=') {
-                --partialBlockLength;
-            }
+        int paddingLength = 0;
+        while (paddingLength < 2 && end - paddingLength > start && 
+                ch[end - paddingLength - 1] == '=') {
+            paddingLength++;
         }
-
-        int valueLength = (blockCount - 1) * 3 + partialBlockLength;
-        byte[] value = new byte[valueLength];
-
-        int idx = 0;
-        int encodedIdx = 0;
-        for (int i = 0; i < blockCount; ++i) {
-            int x1 = decodeBase64[encodedValue.charAt(encodedIdx++) - '+'];
-            int x2 = decodeBase64[encodedValue.charAt(encodedIdx++) - '+'];
-            int x3 = decodeBase64[encodedValue.charAt(encodedIdx++) - '+'];
-            int x4 = decodeBase64[encodedValue.charAt(encodedIdx++) - '+'];
-
-            value[idx++] = (byte) ((x1 << 2) | (x2 >> 4));
-            if (idx < valueLength) {
-                value[idx++] = (byte) (((x2 & 0x0f) << 4) | (x3 >> 2));
-            }
-            if (idx < valueLength) {
-                value[idx++] = (byte) (((x3 & 0x03) << 6) | x4);
-            }
+        final int expectedLength = getMaximumDecodedLength(end - start) - paddingLength;
+        
+        final byte[] value = new byte[Math.max(expectedLength, 0)];
+        int valueLength = decode(ch, start, length, value, 0, true);
+        if (valueLength == value.length) {
+            return value;
         }
 
-        return value;
+        // The characters contain whitespace
+        final byte[] b = new byte[getMaximumDecodedLength(length)];
+        valueLength = decode(ch, start, length, b, 0, false);
+        final byte[] v = new byte[valueLength];
+        System.arraycopy(b, 0, v, 0, valueLength);
+        return v;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -191,44 +134,229 @@ public class BASE64EncodingAlgorithm extends BuiltInEncodingAlgorithm {
         if (data == null) {
             return;
         }
-        final byte[] value = data;
         if (length == 0) {
             return;
         }
         
-        final int partialBlockLength = length % 3;
-        final int blockCount = (partialBlockLength != 0) ? 
-            length / 3 + 1 : 
-            length / 3;
-
-        final int encodedLength = blockCount * 4;
-        final int originalBufferSize = s.length();
-        s.ensureCapacity(encodedLength + originalBufferSize);
-
-        int idx = offset;
-        int lastIdx = offset + length;
-        for (int i = 0; i < blockCount; ++i) {
-            int b1 = value[idx++] & 0xFF;
-            int b2 = (idx < lastIdx) ? value[idx++] & 0xFF : 0;
-            int b3 = (idx < lastIdx) ? value[idx++] & 0xFF : 0;
-
-            s.append(encodeBase64[b1 >> 2]);
-
-            s.append(encodeBase64[((b1 & 0x03) << 4) | (b2 >> 4)]);
-
-            s.append(encodeBase64[((b2 & 0x0f) << 2) | (b3 >> 6)]);
-
-            s.append(encodeBase64[b3 & 0x3f]);
+        s.ensureCapacity(s.length() + getEncodedLength(length));
+        
+        // Encode in chunks, so that a large array of characters is not
+        // allocated for large data
+        final char[] ch = new char[getEncodedLength(Math.min(length, CHUNK_LENGTH))];
+        final int end = offset + length;
+        while (offset < end) {
+            final int chunkLength = Math.min(end - offset, CHUNK_LENGTH);
+            s.append(ch, 0, encode(data, offset, chunkLength, ch, 0));
+            offset += chunkLength;
         }
-
-        switch (partialBlockLength) {
-            case 1 :
-                s.setCharAt(originalBufferSize + encodedLength - 1, '=');
-                s.setCharAt(originalBufferSize + encodedLength - 2, '=');
+    }
+    
+    /**
+     * Get the number of base64 characters that octets are encoded to.
+     * 
+     * @param length the number of octets.
+     * @return the number of characters.
+     */
+    public static int getEncodedLength(int length) {
+        return (length + 2) / 3 * 4;
+    }
+    
+    /**
+     * Get the maximum number of octets that base64 characters are decoded 
+     * to.
+     * 
+     * @param length the number of characters.
+     * @return the maximum number of octets.
+     */
+    public static int getMaximumDecodedLength(int length) {
+        return (length + 3) / 4 * 3;
+    }
+    
+    /**
+     * Encode octets as base64 characters.
+     *
+     * @param b the array of octets.
+     * @param start the start of the octets.
+     * @param length the number of octets.
+     * @param ch the array that the characters are written to, from which
+     *        at least {@link #getEncodedLength} characters are available.
+     * @param chStart the start of the characters.
+     * @return the number of characters written.
+     */
+    public final int encode(byte[] b, int start, int length, char[] ch, int chStart) {
+        final char[] table = encodeBase64;
+        int i = start;
+        int j = chStart;
+        
+        // Encode three octets to four characters at a time
+        final int blockEnd = start + length - length % 3;
+        while (i < blockEnd) {
+            final int v = ((b[i] & 0xFF) << 16) | ((b[i + 1] & 0xFF) << 8) | (b[i + 2] & 0xFF);
+            ch[j] = table[v >>> 18];
+            ch[j + 1] = table[(v >>> 12) & 0x3F];
+            ch[j + 2] = table[(v >>> 6) & 0x3F];
+            ch[j + 3] = table[v & 0x3F];
+            i += 3;
+            j += 4;
+        }
+        
+        switch (length % 3) {
+            case 1:
+            {
+                final int v = b[i] & 0xFF;
+                ch[j++] = table[v >>> 2];
+                ch[j++] = table[(v & 0x03) << 4];
+                ch[j++] = '=';
+                ch[j++] = '=';
                 break;
-            case 2 :
-                s.setCharAt(originalBufferSize + encodedLength - 1, '=');
+            }
+            case 2:
+            {
+                final int v = ((b[i] & 0xFF) << 8) | (b[i + 1] & 0xFF);
+                ch[j++] = table[v >>> 10];
+                ch[j++] = table[(v >>> 4) & 0x3F];
+                ch[j++] = table[(v & 0x0F) << 2];
+                ch[j++] = '=';
                 break;
+            }
+        }
+        
+        return j - chStart;
+    }
+    
+    /**
+     * Decode base64 characters to octets.
+     * <p>
+     * Whitespace characters are ignored. The final block of characters may
+     * be unpadded.
+     *
+     * @param ch the array of characters.
+     * @param start the start of the characters.
+     * @param length the number of characters.
+     * @param b the array that the octets are written to, from which at 
+     *        least {@link #getMaximumDecodedLength} octets are available.
+     * @param bStart the start of the octets.
+     * @return the number of octets written.
+     * @throws IllegalArgumentException if the characters are not base64
+     *         characters.
+     */
+    public final int decode(char[] ch, int start, int length, byte[] b, int bStart) {
+        return decode(ch, start, length, b, bStart, false);
+    }
+    
+    /**
+     * @param stopOnWhitespace true if decoding stops at the first
+     *        whitespace character that is not trailing whitespace, returning
+     *        -1.
+     */
+    private int decode(char[] ch, int start, int length, byte[] b, int bStart, 
+            boolean stopOnWhitespace) {
+        final byte[] table = DECODE_TABLE;
+        final int end = start + length;
+        int i = start;
+        int j = bStart;
+        
+        while (true) {
+            // Decode four characters to three octets at a time, checking 
+            // all four characters are base64 characters at once
+            while (i + 4 <= end) {
+                final int c1 = ch[i];
+                final int c2 = ch[i + 1];
+                final int c3 = ch[i + 2];
+                final int c4 = ch[i + 3];
+                if ((c1 | c2 | c3 | c4) >= 0x80) {
+                    break;
+                }
+                final int x1 = table[c1];
+                final int x2 = table[c2];
+                final int x3 = table[c3];
+                final int x4 = table[c4];
+                if ((x1 | x2 | x3 | x4) < 0) {
+                    break;
+                }
+                
+                final int v = (x1 << 18) | (x2 << 12) | (x3 << 6) | x4;
+                b[j] = (byte)(v >>> 16);
+                b[j + 1] = (byte)(v >>> 8);
+                b[j + 2] = (byte)v;
+                i += 4;
+                j += 3;
+            }
+            
+            // Decode a block of characters containing whitespace or padding, 
+            // or the final block
+            int v = 0;
+            int n = 0;
+            boolean padding = false;
+            while (i < end) {
+                final char c = ch[i];
+                final int x = (c < 0x80) ? table[c] : 
+                    (Character.isWhitespace(c) ? WHITESPACE : INVALID);
+                if (x >= 0) {
+                    v = (v << 6) | x;
+                    i++;
+                    if (++n == 4) {
+                        break;
+                    }
+                } else if (x == WHITESPACE) {
+                    if (stopOnWhitespace && !isTrailingWhitespace(ch, i, end)) {
+                        return -1;
+                    }
+                    i++;
+                } else if (c == '=') {
+                    padding = true;
+                    break;
+                } else {
+                    throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                            getString("message.invalidBase64Character", new Object[]{new String(ch, i, 1)}));
+                }
+            }
+            
+            switch (n) {
+                case 4:
+                    b[j++] = (byte)(v >>> 16);
+                    b[j++] = (byte)(v >>> 8);
+                    b[j++] = (byte)v;
+                    continue;
+                case 3:
+                    b[j++] = (byte)(v >>> 10);
+                    b[j++] = (byte)(v >>> 2);
+                    break;
+                case 2:
+                    b[j++] = (byte)(v >>> 4);
+                    break;
+                case 1:
+                    throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                            getString("message.invalidBase64Length"));
+                case 0:
+                    if (padding) {
+                        throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                                getString("message.invalidBase64Length"));
+                    }
+                    break;
+            }
+            
+            // Only padding and whitespace may follow the final block
+            for (; i < end; i++) {
+                if (ch[i] != '=' && !isWhitespace(ch[i])) {
+                    throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                            getString("message.invalidBase64Character", new Object[]{new String(ch, i, 1)}));
+                }
+            }
+            return j - bStart;
         }
     }
+    
+    private static boolean isTrailingWhitespace(char[] ch, int i, int end) {
+        while (i < end) {
+            if (!isWhitespace(ch[i++])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isWhitespace(char c) {
+        return (c < 0x80) ? DECODE_TABLE[c] == WHITESPACE : Character.isWhitespace(c);
+    }
 }
@@ -22,9 +22,6 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -57,12 +54,8 @@ public class BooleanEncodingAlgorithm extends BuiltInEncodingAlgorithm {
     }
 
     public int getOctetLengthFromPrimitiveLength(int primitiveLength) {
-        if (primitiveLength < 5) {
-            return 1;
-        } else {
-            final int div = primitiveLength / 8;
-            return (div == 0) ? 2 : 1 + div;             
-        }         
+        // The first octet holds the number of unused bits and up to 4 values
+        return (primitiveLength + 4 + 7) / 8;
     }
                 
     public final Object decodeFromBytes(byte[] b, int start, int length) throws EncodingAlgorithmException {
@@ -74,32 +67,16 @@ public class BooleanEncodingAlgorithm extends BuiltInEncodingAlgorithm {
     }                
                 
     public final Object decodeFromInputStream(InputStream s) throws IOException {
-        final List booleanList = new ArrayList();
-
-        int value = s.read();
-        if (value == -1) {
-            throw new EOFException();            
+        final byte[] b = readAllOctets(s);
+        if (b.length == 0) {
+            throw new EOFException();
         }
-        final int unusedBits = (value >> 4) & 0xFF;
-                   
-        int bitPosition = 4;
-        int bitPositionEnd = 8;
-        int valueNext = 0;
-        do {
-            valueNext = s.read();
-            if (valueNext == -1) {
-                bitPositionEnd -= unusedBits;
-            }
-            
-            while(bitPosition < bitPositionEnd) {
-                booleanList.add(
-                        Boolean.valueOf((value & BIT_TABLE[bitPosition++]) > 0));
-            }
-            
-            value = valueNext;
-        } while (value != -1);
         
-        return generateArrayFromList(booleanList);
+        final int unusedBits = (b[0] >> 4) & 0x0F;
+        final int blength = Math.max(b.length * 8 - 4 - unusedBits, 0);
+        final boolean[] data = new boolean[blength];
+        decodeFromBytesToBooleanArray(data, 0, blength, b, 0, b.length);
+        return data;
     }
                 
     public void encodeToOutputStream(Object data, OutputStream s) throws IOException {
@@ -133,26 +110,17 @@ public class BooleanEncodingAlgorithm extends BuiltInEncodingAlgorithm {
     }
                                 
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        if (length == 0) {
-            return new boolean[0];
+        final int end = start + length;
+        final boolean[] bdata = new boolean[LexicalValueScanner.countWords(ch, start, end)];
+        
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < bdata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            bdata[n] = LexicalValueScanner.parseBoolean(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List booleanList = new ArrayList();
-
-        matchWhiteSpaceDelimnatedWords(cb,
-            new WordListener() {
-                public void word(int start, int end) {
-                    if (cb.charAt(start) == 't') {
-                        booleanList.add(Boolean.TRUE);
-                    } else {
-                        booleanList.add(Boolean.FALSE);
-                    }
-                }
-            }
-        );
-
-        return generateArrayFromList(booleanList);
+        
+        return bdata;
     }
 
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -241,22 +209,6 @@ public class BooleanEncodingAlgorithm extends BuiltInEncodingAlgorithm {
         }
     }
 
-
-    /**
-     *
-     * Generate a boolean array from a list of Booleans.
-     *
-     * @param array The array
-     *
-     */
-    private boolean[] generateArrayFromList(List array) {
-        boolean[] bdata = new boolean[array.size()];
-        for (int i = 0; i < bdata.length; i++) {
-            bdata[i] = ((Boolean)array.get(i)).booleanValue();
-        }
-
-        return bdata;
-    }
            
 }
 
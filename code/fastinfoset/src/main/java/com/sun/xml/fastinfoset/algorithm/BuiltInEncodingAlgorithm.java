@@ -17,7 +17,10 @@
  */
 package com.sun.xml.fastinfoset.algorithm;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jvnet.fastinfoset.EncodingAlgorithm;
@@ -26,6 +29,25 @@ import org.jvnet.fastinfoset.EncodingAlgorithmException;
 public abstract class BuiltInEncodingAlgorithm implements EncodingAlgorithm {
     protected final static Pattern SPACE_PATTERN = Pattern.compile("\\s");
 
+    /**
+     * The minimum number of primitive values that are converted to or from
+     * octets using a big-endian view of the octets, rather than one 
+     * octet at a time.
+     */
+    protected final static int BULK_THRESHOLD = 16;
+
+    /**
+     * The maximum number of octets that are written to an output stream
+     * at a time.
+     */
+    protected final static int OUTPUT_CHUNK_SIZE = 8192;
+
+    /**
+     * The number of octets that are read from an input stream at a time.
+     * The size is a multiple of the size of all primitive types.
+     */
+    protected final static int INPUT_CHUNK_SIZE = 8192;
+
     public abstract int getPrimtiveLengthFromOctetLength(int octetLength) throws EncodingAlgorithmException;
 
     public abstract int getOctetLengthFromPrimitiveLength(int primitiveLength);
@@ -68,5 +90,42 @@ public abstract class BuiltInEncodingAlgorithm implements EncodingAlgorithm {
         }
         return buf;
     }
-    
+
+    /**
+     * Read octets from a stream until the array is full or the end of the
+     * stream is reached.
+     *
+     * @return the number of octets read, less than the length of the array
+     *         only if the end of the stream is reached.
+     */
+    protected static int readOctets(InputStream s, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            final int m = s.read(b, n, b.length - n);
+            if (m == -1) {
+                break;
+            }
+            n += m;
+        }
+        return n;
+    }
+
+    /**
+     * Read all the octets of a stream.
+     */
+    protected static byte[] readAllOctets(InputStream s) throws IOException {
+        byte[] b = new byte[INPUT_CHUNK_SIZE];
+        int length = 0;
+        while (true) {
+            final int n = s.read(b, length, b.length - length);
+            if (n == -1) {
+                break;
+            }
+            length += n;
+            if (length == b.length) {
+                b = Arrays.copyOf(b, b.length * 2);
+            }
+        }
+        return (length == b.length) ? b : Arrays.copyOf(b, length);
+    }
 }
@@ -21,8 +21,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.List;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -67,19 +68,17 @@ public class DoubleEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorit
     }
     
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List doubleList = new ArrayList();
+        final int end = start + length;
+        final double[] ddata = new double[LexicalValueScanner.countWords(ch, start, end)];
         
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String fStringValue = cb.subSequence(start, end).toString();
-                doubleList.add(Double.valueOf(fStringValue));
-            }
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < ddata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            ddata[n] = LexicalValueScanner.parseDouble(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
         
-        return generateArrayFromList(doubleList);
+        return ddata;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -95,6 +94,11 @@ public class DoubleEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorit
     
     public final void decodeFromBytesToDoubleArray(double[] data, int fstart, byte[] b, int start, int length) {
         final int size = length / DOUBLE_SIZE;
+        if (size >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, length).asDoubleBuffer().get(data, fstart, size);
+            return;
+        }
+        
         for (int i = 0; i < size; i++) {
             final long bits =
                     ((long)(b[start++] & 0xFF) << 56) | 
@@ -110,53 +114,38 @@ public class DoubleEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorit
     }
     
     public final double[] decodeFromInputStreamToDoubleArray(InputStream s) throws IOException {
-        final List doubleList = new ArrayList();
-        final byte[] b = new byte[DOUBLE_SIZE];
+        final byte[] b = new byte[INPUT_CHUNK_SIZE];
+        double[] ddata = new double[0];
+        int length = 0;
         
         while (true) {
-            int n = s.read(b);
-            if (n != DOUBLE_SIZE) {
-                if (n == -1) {
-                    break;
-                }
-                
-                while(n != DOUBLE_SIZE) {
-                    final int m = s.read(b, n, DOUBLE_SIZE - n);
-                    if (m == -1) {
-                        throw new EOFException();
-                    }
-                    n += m;
-                }
+            final int n = readOctets(s, b);
+            final int size = n / DOUBLE_SIZE;
+            if (length + size > ddata.length) {
+                ddata = Arrays.copyOf(ddata, Math.max(length + size, ddata.length * 2));
             }
+            decodeFromBytesToDoubleArray(ddata, length, b, 0, size * DOUBLE_SIZE);
+            length += size;
             
-            final long bits = 
-                    ((long)(b[0] & 0xFF) << 56) | 
-                    ((long)(b[1] & 0xFF) << 48) | 
-                    ((long)(b[2] & 0xFF) << 40) | 
-                    ((long)(b[3] & 0xFF) << 32) | 
-                    ((b[4] & 0xFF) << 24) | 
-                    ((b[5] & 0xFF) << 16) | 
-                    ((b[6] & 0xFF) << 8) | 
-                    (b[7] & 0xFF);
-            
-            doubleList.add(Double.valueOf(Double.longBitsToDouble(bits)));
+            if (n < b.length) {
+                if (n % DOUBLE_SIZE != 0) {
+                    throw new EOFException();
+                }
+                break;
+            }
         }
         
-        return generateArrayFromList(doubleList);
+        return (length == ddata.length) ? ddata : Arrays.copyOf(ddata, length);
     }
     
     
     public final void encodeToOutputStreamFromDoubleArray(double[] fdata, OutputStream s) throws IOException {
-        for (int i = 0; i < fdata.length; i++) {
-            final long bits = Double.doubleToLongBits(fdata[i]);
-            s.write((int)((bits >>> 56) & 0xFF));
-            s.write((int)((bits >>> 48) & 0xFF));
-            s.write((int)((bits >>> 40) & 0xFF));
-            s.write((int)((bits >>> 32) & 0xFF));
-            s.write((int)((bits >>> 24) & 0xFF));
-            s.write((int)((bits >>> 16) & 0xFF));
-            s.write((int)((bits >>>  8) & 0xFF));
-            s.write((int)(bits & 0xFF));
+        final int chunkLength = Math.min(fdata.length, OUTPUT_CHUNK_SIZE / DOUBLE_SIZE);
+        final byte[] b = new byte[chunkLength * DOUBLE_SIZE];
+        for (int i = 0; i < fdata.length; i += chunkLength) {
+            final int length = Math.min(fdata.length - i, chunkLength);
+            encodeToBytesFromDoubleArray(fdata, i, length, b, 0);
+            s.write(b, 0, length * DOUBLE_SIZE);
         }
     }
     
@@ -165,6 +154,23 @@ public class DoubleEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorit
     }
     
     public final void encodeToBytesFromDoubleArray(double[] fdata, int fstart, int flength, byte[] b, int start) {
+        if (flength >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, flength * DOUBLE_SIZE).asDoubleBuffer().put(fdata, fstart, flength);
+            
+            // Write NaN values as the canonical NaN
+            LongBuffer nanBuffer = null;
+            for (int i = 0; i < flength; i++) {
+                final double v = fdata[fstart + i];
+                if (v != v) {
+                    if (nanBuffer == null) {
+                        nanBuffer = ByteBuffer.wrap(b, start, flength * DOUBLE_SIZE).asLongBuffer();
+                    }
+                    nanBuffer.put(i, Double.doubleToLongBits(v));
+                }
+            }
+            return;
+        }
+        
         final int fend = fstart + flength;
         for (int i = fstart; i < fend; i++) {
             final long bits = Double.doubleToLongBits(fdata[i]);
@@ -181,13 +187,42 @@ public class DoubleEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorit
     
     
     public final void convertToCharactersFromDoubleArray(double[] fdata, StringBuffer s) {
-        final int end = fdata.length - 1;
-        for (int i = 0; i <= end; i++) {
-            s.append(Double.toString(fdata[i]));
-            if (i != end) {
+        // Format in chunks, so that a large array of characters is not
+        // allocated for large data
+        final char[] ch = new char[Math.min(fdata.length, CHARACTERS_CHUNK_LENGTH) * 
+                (FloatingPointFormatter.DOUBLE_MAX_CHARACTER_SIZE + 1)];
+        for (int i = 0; i < fdata.length; i += CHARACTERS_CHUNK_LENGTH) {
+            if (i != 0) {
                 s.append(' ');
             }
+            final int length = Math.min(fdata.length - i, CHARACTERS_CHUNK_LENGTH);
+            s.append(ch, 0, convertToCharactersFromDoubleArray(fdata, i, length, ch, 0));
+        }
+    }
+    
+    /**
+     * Convert double values to space separated characters.
+     *
+     * @param fdata the array of double values.
+     * @param fstart the start of the values.
+     * @param flength the number of values.
+     * @param ch the array that the characters are written to, from which 
+     *        at least flength * 
+     *        ({@link FloatingPointFormatter#DOUBLE_MAX_CHARACTER_SIZE} + 1) 
+     *        characters are available.
+     * @param start the start of the characters.
+     * @return the number of characters written.
+     */
+    public final int convertToCharactersFromDoubleArray(double[] fdata, int fstart, int flength, char[] ch, int start) {
+        final int fend = fstart + flength;
+        int i = start;
+        for (int j = fstart; j < fend; j++) {
+            if (j != fstart) {
+                ch[i++] = ' ';
+            }
+            i = FloatingPointFormatter.format(fdata[j], ch, i);
         }
+        return i - start;
     }
     
     
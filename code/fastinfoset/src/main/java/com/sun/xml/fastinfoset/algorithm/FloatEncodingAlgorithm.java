@@ -21,8 +21,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.List;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -67,19 +68,17 @@ public class FloatEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorith
     }
     
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List floatList = new ArrayList();
+        final int end = start + length;
+        final float[] fdata = new float[LexicalValueScanner.countWords(ch, start, end)];
         
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String fStringValue = cb.subSequence(start, end).toString();
-                floatList.add(Float.valueOf(fStringValue));
-            }
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < fdata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            fdata[n] = LexicalValueScanner.parseFloat(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
         
-        return generateArrayFromList(floatList);
+        return fdata;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -95,6 +94,11 @@ public class FloatEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorith
     
     public final void decodeFromBytesToFloatArray(float[] data, int fstart, byte[] b, int start, int length) {
         final int size = length / FLOAT_SIZE;
+        if (size >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, length).asFloatBuffer().get(data, fstart, size);
+            return;
+        }
+        
         for (int i = 0; i < size; i++) {
             final int bits = ((b[start++] & 0xFF) << 24) | 
                     ((b[start++] & 0xFF) << 16) | 
@@ -105,43 +109,38 @@ public class FloatEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorith
     }
     
     public final float[] decodeFromInputStreamToFloatArray(InputStream s) throws IOException {
-        final List floatList = new ArrayList();
-        final byte[] b = new byte[FLOAT_SIZE];
+        final byte[] b = new byte[INPUT_CHUNK_SIZE];
+        float[] fdata = new float[0];
+        int length = 0;
         
         while (true) {
-            int n = s.read(b);
-            if (n != 4) {
-                if (n == -1) {
-                    break;
-                }
-                
-                while(n != 4) {
-                    final int m = s.read(b, n, FLOAT_SIZE - n);
-                    if (m == -1) {
-                        throw new EOFException();
-                    }
-                    n += m;
-                }
+            final int n = readOctets(s, b);
+            final int size = n / FLOAT_SIZE;
+            if (length + size > fdata.length) {
+                fdata = Arrays.copyOf(fdata, Math.max(length + size, fdata.length * 2));
             }
+            decodeFromBytesToFloatArray(fdata, length, b, 0, size * FLOAT_SIZE);
+            length += size;
             
-            final int bits = ((b[0] & 0xFF) << 24) | 
-                    ((b[1] & 0xFF) << 16) | 
-                    ((b[2] & 0xFF) << 8) | 
-                    (b[3] & 0xFF);
-            floatList.add(Float.valueOf(Float.intBitsToFloat(bits)));
+            if (n < b.length) {
+                if (n % FLOAT_SIZE != 0) {
+                    throw new EOFException();
+                }
+                break;
+            }
         }
         
-        return generateArrayFromList(floatList);
+        return (length == fdata.length) ? fdata : Arrays.copyOf(fdata, length);
     }
     
     
     public final void encodeToOutputStreamFromFloatArray(float[] fdata, OutputStream s) throws IOException {
-        for (int i = 0; i < fdata.length; i++) {
-            final int bits = Float.floatToIntBits(fdata[i]);
-            s.write((bits >>> 24) & 0xFF);
-            s.write((bits >>> 16) & 0xFF);
-            s.write((bits >>> 8) & 0xFF);
-            s.write(bits & 0xFF);
+        final int chunkLength = Math.min(fdata.length, OUTPUT_CHUNK_SIZE / FLOAT_SIZE);
+        final byte[] b = new byte[chunkLength * FLOAT_SIZE];
+        for (int i = 0; i < fdata.length; i += chunkLength) {
+            final int length = Math.min(fdata.length - i, chunkLength);
+            encodeToBytesFromFloatArray(fdata, i, length, b, 0);
+            s.write(b, 0, length * FLOAT_SIZE);
         }
     }
     
@@ -150,6 +149,23 @@ public class FloatEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorith
     }
     
     public final void encodeToBytesFromFloatArray(float[] fdata, int fstart, int flength, byte[] b, int start) {
+        if (flength >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, flength * FLOAT_SIZE).asFloatBuffer().put(fdata, fstart, flength);
+            
+            // Write NaN values as the canonical NaN
+            IntBuffer nanBuffer = null;
+            for (int i = 0; i < flength; i++) {
+                final float v = fdata[fstart + i];
+                if (v != v) {
+                    if (nanBuffer == null) {
+                        nanBuffer = ByteBuffer.wrap(b, start, flength * FLOAT_SIZE).asIntBuffer();
+                    }
+                    nanBuffer.put(i, Float.floatToIntBits(v));
+                }
+            }
+            return;
+        }
+        
         final int fend = fstart + flength;
         for (int i = fstart; i < fend; i++) {
             final int bits = Float.floatToIntBits(fdata[i]);
@@ -162,13 +178,42 @@ public class FloatEncodingAlgorithm extends IEEE754FloatingPointEncodingAlgorith
     
     
     public final void convertToCharactersFromFloatArray(float[] fdata, StringBuffer s) {
-        final int end = fdata.length - 1;
-        for (int i = 0; i <= end; i++) {
-            s.append(Float.toString(fdata[i]));
-            if (i != end) {
+        // Format in chunks, so that a large array of characters is not
+        // allocated for large data
+        final char[] ch = new char[Math.min(fdata.length, CHARACTERS_CHUNK_LENGTH) * 
+                (FloatingPointFormatter.FLOAT_MAX_CHARACTER_SIZE + 1)];
+        for (int i = 0; i < fdata.length; i += CHARACTERS_CHUNK_LENGTH) {
+            if (i != 0) {
                 s.append(' ');
             }
+            final int length = Math.min(fdata.length - i, CHARACTERS_CHUNK_LENGTH);
+            s.append(ch, 0, convertToCharactersFromFloatArray(fdata, i, length, ch, 0));
+        }
+    }
+    
+    /**
+     * Convert float values to space separated characters.
+     *
+     * @param fdata the array of float values.
+     * @param fstart the start of the values.
+     * @param flength the number of values.
+     * @param ch the array that the characters are written to, from which 
+     *        at least flength * 
+     *        ({@link FloatingPointFormatter#FLOAT_MAX_CHARACTER_SIZE} + 1) 
+     *        characters are available.
+     * @param start the start of the characters.
+     * @return the number of characters written.
+     */
+    public final int convertToCharactersFromFloatArray(float[] fdata, int fstart, int flength, char[] ch, int start) {
+        final int fend = fstart + flength;
+        int i = start;
+        for (int j = fstart; j < fend; j++) {
+            if (j != fstart) {
+                ch[i++] = ' ';
+            }
+            i = FloatingPointFormatter.format(fdata[j], ch, i);
         }
+        return i - start;
     }
     
     
@@ -0,0 +1,435 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.algorithm;
+
+import java.math.BigInteger;
+
+/**
+ * Format float and double values as the shortest decimal that converts
+ * back to the same value, writing directly to an array of characters.
+ * <p>
+ * The decimal is selected using the Schubfach algorithm of Raffaello 
+ * Giulietti, and is formatted in the same manner as 
+ * {@link Double#toString(double)} and {@link Float#toString(float)}:
+ * values in the range [10<sup>-3</sup>, 10<sup>7</sup>) are formatted in 
+ * plain notation, other values in computerized scientific notation.
+ */
+public final class FloatingPointFormatter {
+    
+    /**
+     * The maximum number of characters of a formatted float.
+     */
+    public static final int FLOAT_MAX_CHARACTER_SIZE = 15;
+    
+    /**
+     * The maximum number of characters of a formatted double.
+     */
+    public static final int DOUBLE_MAX_CHARACTER_SIZE = 24;
+    
+    private static final int DOUBLE_P = 53;
+    private static final int DOUBLE_Q_MIN = -1074;
+    private static final long DOUBLE_C_MIN = 1L << (DOUBLE_P - 1);
+    private static final int DOUBLE_C_TINY = 3;
+    
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+    private static final int FLOAT_C_TINY = 8;
+    
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+    
+    /**
+     * The minimum and maximum powers of ten, k, such that 10<sup>-k</sup> 
+     * is approximated by g.
+     */
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    
+    /**
+     * For each k, the 126-bit approximation 
+     * g = floor(10<sup>-k</sup> 2<sup>-r</sup>) + 1, where 
+     * r = floor(log2(10<sup>-k</sup>)) - 125, as the high bits g1 
+     * and low 63 bits g0.
+     */
+    private static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+    
+    static {
+        final BigInteger mask63 = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            final int r = flog2pow10(-k) - 125;
+            BigInteger g;
+            if (k <= 0) {
+                g = BigInteger.TEN.pow(-k);
+                g = (r <= 0) ? g.shiftLeft(-r) : g.shiftRight(r);
+            } else {
+                g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            }
+            g = g.add(BigInteger.ONE);
+            G[(k - K_MIN) << 1] = g.shiftRight(63).longValue();
+            G[(k - K_MIN) << 1 | 1] = g.and(mask63).longValue();
+        }
+    }
+    
+    private static final long[] POWERS_OF_TEN = new long[18];
+    
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+    
+    private static final char[] NAN = "NaN".toCharArray();
+    private static final char[] INFINITY = "Infinity".toCharArray();
+    
+    private FloatingPointFormatter() {
+    }
+    
+    /**
+     * Format a double value.
+     * 
+     * @param v the value.
+     * @param ch the array that the characters are written to, from which 
+     *        at least {@link #DOUBLE_MAX_CHARACTER_SIZE} characters are 
+     *        available.
+     * @param start the start of the characters.
+     * @return the index after the last character written.
+     */
+    public static int format(double v, char[] ch, int start) {
+        final long bits = Double.doubleToRawLongBits(v);
+        final long t = bits & ((1L << (DOUBLE_P - 1)) - 1);
+        final int bq = (int) (bits >>> (DOUBLE_P - 1)) & 0x7FF;
+        if (bq == 0x7FF) {
+            return formatNonFinite(t != 0, bits < 0, ch, start);
+        }
+        
+        int i = start;
+        if (bits < 0) {
+            ch[i++] = '-';
+        }
+        if (bq != 0) {
+            final int mq = -DOUBLE_Q_MIN + 1 - bq;
+            final long c = DOUBLE_C_MIN | t;
+            // Integer values are their own shortest decimal
+            if (0 < mq && mq < DOUBLE_P) {
+                final long f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, ch, i);
+                }
+            }
+            return toDecimal(-mq, c, 0, ch, i);
+        }
+        if (t != 0) {
+            // Subnormal values
+            return (t < DOUBLE_C_TINY) ? 
+                toDecimal(DOUBLE_Q_MIN, 10 * t, -1, ch, i) : 
+                toDecimal(DOUBLE_Q_MIN, t, 0, ch, i);
+        }
+        ch[i++] = '0';
+        ch[i++] = '.';
+        ch[i++] = '0';
+        return i;
+    }
+    
+    /**
+     * Format a float value.
+     * 
+     * @param v the value.
+     * @param ch the array that the characters are written to, from which 
+     *        at least {@link #FLOAT_MAX_CHARACTER_SIZE} characters are 
+     *        available.
+     * @param start the start of the characters.
+     * @return the index after the last character written.
+     */
+    public static int format(float v, char[] ch, int start) {
+        final int bits = Float.floatToRawIntBits(v);
+        final int t = bits & ((1 << (FLOAT_P - 1)) - 1);
+        final int bq = (bits >>> (FLOAT_P - 1)) & 0xFF;
+        if (bq == 0xFF) {
+            return formatNonFinite(t != 0, bits < 0, ch, start);
+        }
+        
+        int i = start;
+        if (bits < 0) {
+            ch[i++] = '-';
+        }
+        if (bq != 0) {
+            final int mq = -FLOAT_Q_MIN + 1 - bq;
+            final int c = FLOAT_C_MIN | t;
+            // Integer values are their own shortest decimal
+            if (0 < mq && mq < FLOAT_P) {
+                final int f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, ch, i);
+                }
+            }
+            return toDecimal(-mq, c, 0, ch, i);
+        }
+        if (t != 0) {
+            // Subnormal values
+            return (t < FLOAT_C_TINY) ? 
+                toDecimal(FLOAT_Q_MIN, 10 * t, -1, ch, i) : 
+                toDecimal(FLOAT_Q_MIN, t, 0, ch, i);
+        }
+        ch[i++] = '0';
+        ch[i++] = '.';
+        ch[i++] = '0';
+        return i;
+    }
+    
+    private static int formatNonFinite(boolean isNaN, boolean negative, char[] ch, int i) {
+        if (isNaN) {
+            System.arraycopy(NAN, 0, ch, i, NAN.length);
+            return i + NAN.length;
+        }
+        if (negative) {
+            ch[i++] = '-';
+        }
+        System.arraycopy(INFINITY, 0, ch, i, INFINITY.length);
+        return i + INFINITY.length;
+    }
+    
+    /**
+     * Select the shortest decimal in the rounding interval of the double
+     * c 2<sup>q</sup>, and format it.
+     */
+    private static int toDecimal(int q, long c, int dk, char[] ch, int i) {
+        final int out = (int) c & 0x1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        // The rounding interval is asymmetric at powers of two
+        if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 2;
+        
+        final long g1 = G[(k - K_MIN) << 1];
+        final long g0 = G[(k - K_MIN) << 1 | 1];
+        
+        final long vb = rop(g1, g0, cb << h);
+        final long vbl = rop(g1, g0, cbl << h);
+        final long vbr = rop(g1, g0, cbr << h);
+        
+        final long s = vb >> 2;
+        if (s >= 100) {
+            // Prefer a decimal with one digit fewer
+            final long sp10 = s / 10 * 10;
+            final long tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, ch, i);
+            }
+        }
+        
+        final long t = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk, ch, i);
+        }
+        // Both are in the rounding interval, select the closest
+        final long cmp = vb - (s + t << 1);
+        return toChars((cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : t, k + dk, ch, i);
+    }
+    
+    /**
+     * Select the shortest decimal in the rounding interval of the float 
+     * c 2<sup>q</sup>, and format it.
+     */
+    private static int toDecimal(int q, int c, int dk, char[] ch, int i) {
+        final int out = c & 0x1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        // The rounding interval is asymmetric at powers of two
+        if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 33;
+        
+        final long g = G[(k - K_MIN) << 1] + 1;
+        
+        final int vb = rop(g, cb << h);
+        final int vbl = rop(g, cbl << h);
+        final int vbr = rop(g, cbr << h);
+        
+        final int s = vb >> 2;
+        if (s >= 100) {
+            // Prefer a decimal with one digit fewer
+            final int sp10 = s / 10 * 10;
+            final int tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, ch, i);
+            }
+        }
+        
+        final int t = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk, ch, i);
+        }
+        // Both are in the rounding interval, select the closest
+        final int cmp = vb - (s + t << 1);
+        return toChars((cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : t, k + dk, ch, i);
+    }
+    
+    /**
+     * Round to odd of g cp 2<sup>-127</sup>, where g = g1 2<sup>63</sup> + g0.
+     */
+    private static long rop(long g1, long g0, long cp) {
+        final long x1 = multiplyHigh(g0, cp);
+        final long y0 = g1 * cp;
+        final long y1 = multiplyHigh(g1, cp);
+        final long z = (y0 >>> 1) + x1;
+        final long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+    
+    /**
+     * Round to odd of g cp 2<sup>-95</sup>.
+     */
+    private static int rop(long g, long cp) {
+        final long x1 = multiplyHigh(g, cp);
+        final long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+    
+    /**
+     * The high 64 bits of the 128-bit product of two longs.
+     */
+    private static long multiplyHigh(long x, long y) {
+        final long x1 = x >> 32;
+        final long x2 = x & 0xFFFFFFFFL;
+        final long y1 = y >> 32;
+        final long y2 = y & 0xFFFFFFFFL;
+        final long z2 = x2 * y2;
+        final long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        final long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+    
+    /**
+     * floor(log10(2<sup>e</sup>))
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+    
+    /**
+     * floor(log10(3/4 2<sup>e</sup>))
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L + -274743187321L >> 41);
+    }
+    
+    /**
+     * floor(log2(10<sup>e</sup>))
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+    
+    /**
+     * Format the decimal f 10<sup>e</sup>, where f &gt; 0.
+     */
+    private static int toChars(long f, int e, char[] ch, int i) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int n = 1;
+        while (n < POWERS_OF_TEN.length && f >= POWERS_OF_TEN[n]) {
+            n++;
+        }
+        
+        // The value is 0.d1...dn 10^exponent
+        final int exponent = e + n;
+        if (0 < exponent && exponent <= 7) {
+            // Plain notation, at least one digit before the point
+            if (n <= exponent) {
+                i = writeDigits(f, n, ch, i);
+                for (int j = n; j < exponent; j++) {
+                    ch[i++] = '0';
+                }
+                ch[i++] = '.';
+                ch[i++] = '0';
+            } else {
+                final long p = POWERS_OF_TEN[n - exponent];
+                i = writeDigits(f / p, exponent, ch, i);
+                ch[i++] = '.';
+                i = writeDigits(f % p, n - exponent, ch, i);
+            }
+        } else if (-3 < exponent && exponent <= 0) {
+            // Plain notation, no digits before the point
+            ch[i++] = '0';
+            ch[i++] = '.';
+            for (int j = exponent; j < 0; j++) {
+                ch[i++] = '0';
+            }
+            i = writeDigits(f, n, ch, i);
+        } else {
+            // Computerized scientific notation
+            final long p = POWERS_OF_TEN[n - 1];
+            ch[i++] = (char) ('0' + f / p);
+            ch[i++] = '.';
+            if (n == 1) {
+                ch[i++] = '0';
+            } else {
+                i = writeDigits(f % p, n - 1, ch, i);
+            }
+            ch[i++] = 'E';
+            int x = exponent - 1;
+            if (x < 0) {
+                ch[i++] = '-';
+                x = -x;
+            }
+            i = writeDigits(x, (x < 10) ? 1 : (x < 100) ? 2 : 3, ch, i);
+        }
+        return i;
+    }
+    
+    /**
+     * Write a fixed number of decimal digits, including leading zeros.
+     */
+    private static int writeDigits(long v, int digits, char[] ch, int i) {
+        final int end = i + digits;
+        for (int j = end - 1; j >= i; j--) {
+            ch[j] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return end;
+    }
+}
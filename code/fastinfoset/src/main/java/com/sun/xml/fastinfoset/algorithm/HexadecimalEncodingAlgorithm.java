@@ -28,31 +28,30 @@ public class HexadecimalEncodingAlgorithm extends BuiltInEncodingAlgorithm {
         {   '0','1','2','3','4','5','6','7',
             '8','9','A','B','C','D','E','F' };
     
-    private static final int HEXADECIMAL_TO_NIBBLE_TABLE[] = {
-        /*'0'*/ 0,
-        /*'1'*/ 1,
-        /*'2'*/ 2,
-        /*'3'*/ 3,
-        /*'4'*/ 4,
-        /*'5'*/ 5,
-        /*'6'*/ 6,
-        /*'7'*/ 7,
-        /*'8'*/ 8,
-        /*'9'*/ 9, -1, -1, -1, -1, -1, -1, -1,
-        /*'A'*/ 10,
-        /*'B'*/ 11,
-        /*'C'*/ 12,
-        /*'D'*/ 13,
-        /*'E'*/ 14,
-        /*'F'*/ 15,
-        /*'G'-'Z'*/-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,-1,
-        /*'[' - '`'*/ -1, -1, -1, -1, -1, -1,
-        /*'a'*/ 10,
-        /*'b'*/ 11,
-        /*'c'*/ 12,
-        /*'d'*/ 13,
-        /*'e'*/ 14,
-        /*'f'*/ 15 };
+    /**
+     * The values of ASCII characters, the value of a hexadecimal character,
+     * {@link #WHITESPACE} or {@link #INVALID}.
+     */
+    private static final byte[] HEXADECIMAL_TO_NIBBLE_TABLE = new byte[128];
+    
+    private static final byte WHITESPACE = -2;
+    
+    private static final byte INVALID = -1;
+    
+    static {
+        for (int c = 0; c < HEXADECIMAL_TO_NIBBLE_TABLE.length; c++) {
+            HEXADECIMAL_TO_NIBBLE_TABLE[c] = Character.isWhitespace((char)c) ? WHITESPACE : INVALID;
+        }
+        for (int i = 0; i < NIBBLE_TO_HEXADECIMAL_TABLE.length; i++) {
+            HEXADECIMAL_TO_NIBBLE_TABLE[NIBBLE_TO_HEXADECIMAL_TABLE[i]] = (byte)i;
+            HEXADECIMAL_TO_NIBBLE_TABLE[Character.toLowerCase(NIBBLE_TO_HEXADECIMAL_TABLE[i])] = (byte)i;
+        }
+    }
+    
+    /**
+     * The length of octets that are encoded to characters at a time.
+     */
+    private static final int CHUNK_LENGTH = 2 * 1024;
 
     public final Object decodeFromBytes(byte[] b, int start, int length) throws EncodingAlgorithmException {
         final byte[] data = new byte[length];
@@ -61,7 +60,7 @@ public class HexadecimalEncodingAlgorithm extends BuiltInEncodingAlgorithm {
     }
     
     public final Object decodeFromInputStream(InputStream s) throws IOException {
-        throw new UnsupportedOperationException(CommonResourceBundle.getInstance().getString("message.notImplemented"));
+        return readAllOctets(s);
     }
     
     
@@ -78,23 +77,16 @@ public class HexadecimalEncodingAlgorithm extends BuiltInEncodingAlgorithm {
             return new byte[0];
         }
         
-        StringBuilder encodedValue = removeWhitespace(ch, start, length);
-        int encodedLength = encodedValue.length();
-        if (encodedLength == 0) {
-            return new byte[0];
+        final byte[] value = new byte[length / 2];
+        final int valueLength = decode(ch, start, length, value, 0);
+        if (valueLength == value.length) {
+            return value;
         }
         
-        int valueLength = encodedValue.length() / 2;
-        byte[] value = new byte[valueLength];
-
-        int encodedIdx = 0;
-        for (int i = 0; i < valueLength; ++i) {
-            int nibble1 = HEXADECIMAL_TO_NIBBLE_TABLE[encodedValue.charAt(encodedIdx++) - '0'];
-            int nibble2 = HEXADECIMAL_TO_NIBBLE_TABLE[encodedValue.charAt(encodedIdx++) - '0'];
-            value[i] = (byte) ((nibble1 << 4) | nibble2);
-        }
-
-        return value;
+        // The characters contain whitespace
+        final byte[] v = new byte[valueLength];
+        System.arraycopy(value, 0, v, 0, valueLength);
+        return v;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -106,15 +98,119 @@ public class HexadecimalEncodingAlgorithm extends BuiltInEncodingAlgorithm {
             return;
         }
 
-        s.ensureCapacity(value.length * 2);
-        for (int i = 0; i < value.length; ++i) {
-            s.append(NIBBLE_TO_HEXADECIMAL_TABLE[(value[i] >>> 4) & 0xf]);
-            s.append(NIBBLE_TO_HEXADECIMAL_TABLE[value[i] & 0xf]);
+        s.ensureCapacity(s.length() + value.length * 2);
+        
+        // Encode in chunks, so that a large array of characters is not
+        // allocated for large data
+        final char[] ch = new char[Math.min(value.length, CHUNK_LENGTH) * 2];
+        for (int offset = 0; offset < value.length; offset += CHUNK_LENGTH) {
+            final int chunkLength = Math.min(value.length - offset, CHUNK_LENGTH);
+            s.append(ch, 0, encode(value, offset, chunkLength, ch, 0));
         }
     }
     
+    /**
+     * Encode octets as hexadecimal characters.
+     *
+     * @param b the array of octets.
+     * @param start the start of the octets.
+     * @param length the number of octets.
+     * @param ch the array that the characters are written to, from which
+     *        at least twice the number of octets characters are available.
+     * @param chStart the start of the characters.
+     * @return the number of characters written.
+     */
+    public final int encode(byte[] b, int start, int length, char[] ch, int chStart) {
+        final char[] table = NIBBLE_TO_HEXADECIMAL_TABLE;
+        final int end = start + length;
+        int j = chStart;
+        for (int i = start; i < end; i++) {
+            final int v = b[i];
+            ch[j] = table[(v >>> 4) & 0x0F];
+            ch[j + 1] = table[v & 0x0F];
+            j += 2;
+        }
+        return j - chStart;
+    }
     
+    /**
+     * Decode hexadecimal characters to octets.
+     * <p>
+     * Whitespace characters are ignored.
+     *
+     * @param ch the array of characters.
+     * @param start the start of the characters.
+     * @param length the number of characters.
+     * @param b the array that the octets are written to, from which at 
+     *        least half the number of characters octets are available.
+     * @param bStart the start of the octets.
+     * @return the number of octets written.
+     * @throws IllegalArgumentException if the characters are not 
+     *         hexadecimal characters, or there is an odd number of 
+     *         hexadecimal characters.
+     */
+    public final int decode(char[] ch, int start, int length, byte[] b, int bStart) {
+        final byte[] table = HEXADECIMAL_TO_NIBBLE_TABLE;
+        final int end = start + length;
+        int i = start;
+        int j = bStart;
         
+        while (true) {
+            // Decode four characters to two octets at a time, checking 
+            // all four characters are hexadecimal characters at once
+            while (i + 4 <= end) {
+                final int c1 = ch[i];
+                final int c2 = ch[i + 1];
+                final int c3 = ch[i + 2];
+                final int c4 = ch[i + 3];
+                if ((c1 | c2 | c3 | c4) >= 0x80) {
+                    break;
+                }
+                final int x1 = table[c1];
+                final int x2 = table[c2];
+                final int x3 = table[c3];
+                final int x4 = table[c4];
+                if ((x1 | x2 | x3 | x4) < 0) {
+                    break;
+                }
+                
+                b[j] = (byte)((x1 << 4) | x2);
+                b[j + 1] = (byte)((x3 << 4) | x4);
+                i += 4;
+                j += 2;
+            }
+            
+            // Decode a pair of characters, skipping whitespace
+            int v = 0;
+            int n = 0;
+            while (i < end) {
+                final char c = ch[i++];
+                final int x = (c < 0x80) ? table[c] : 
+                    (Character.isWhitespace(c) ? WHITESPACE : INVALID);
+                if (x >= 0) {
+                    v = (v << 4) | x;
+                    if (++n == 2) {
+                        break;
+                    }
+                } else if (x == INVALID) {
+                    throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                            getString("message.invalidHexadecimalCharacter", new Object[]{new String(ch, i - 1, 1)}));
+                }
+            }
+            
+            switch (n) {
+                case 2:
+                    b[j++] = (byte)v;
+                    break;
+                case 1:
+                    throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                            getString("message.invalidHexadecimalLength"));
+                case 0:
+                    return j - bStart;
+            }
+        }
+    }
+    
     public final int getPrimtiveLengthFromOctetLength(int octetLength) throws EncodingAlgorithmException {
         return octetLength * 2;
     }
@@ -23,5 +23,10 @@ public abstract class IEEE754FloatingPointEncodingAlgorithm extends BuiltInEncod
 
     public final static int FLOAT_MAX_CHARACTER_SIZE    = 14;
     public final static int DOUBLE_MAX_CHARACTER_SIZE   = 24;
+
+    /**
+     * The number of values that are converted to characters at a time.
+     */
+    protected final static int CHARACTERS_CHUNK_LENGTH = 256;
         
 }
@@ -21,8 +21,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -68,19 +68,17 @@ public class IntEncodingAlgorithm extends IntegerEncodingAlgorithm {
     
     
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List integerList = new ArrayList();
+        final int end = start + length;
+        final int[] idata = new int[LexicalValueScanner.countWords(ch, start, end)];
         
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String iStringValue = cb.subSequence(start, end).toString();
-                integerList.add(Integer.valueOf(iStringValue));
-            }
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < idata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            idata[n] = LexicalValueScanner.parseInt(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
         
-        return generateArrayFromList(integerList);
+        return idata;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -96,6 +94,11 @@ public class IntEncodingAlgorithm extends IntegerEncodingAlgorithm {
     
     public final void decodeFromBytesToIntArray(int[] idata, int istart, byte[] b, int start, int length) {
         final int size = length / INT_SIZE;
+        if (size >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, length).asIntBuffer().get(idata, istart, size);
+            return;
+        }
+        
         for (int i = 0; i < size; i++) {
             idata[istart++] = ((b[start++] & 0xFF) << 24) | 
                     ((b[start++] & 0xFF) << 16) | 
@@ -105,43 +108,38 @@ public class IntEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
     
     public final int[] decodeFromInputStreamToIntArray(InputStream s) throws IOException {
-        final List integerList = new ArrayList();
-        final byte[] b = new byte[INT_SIZE];
+        final byte[] b = new byte[INPUT_CHUNK_SIZE];
+        int[] idata = new int[0];
+        int length = 0;
         
         while (true) {
-            int n = s.read(b);
-            if (n != 4) {
-                if (n == -1) {
-                    break;
-                }
-                
-                while(n != 4) {
-                    final int m = s.read(b, n, INT_SIZE - n);
-                    if (m == -1) {
-                        throw new EOFException();
-                    }
-                    n += m;
-                }
+            final int n = readOctets(s, b);
+            final int size = n / INT_SIZE;
+            if (length + size > idata.length) {
+                idata = Arrays.copyOf(idata, Math.max(length + size, idata.length * 2));
             }
+            decodeFromBytesToIntArray(idata, length, b, 0, size * INT_SIZE);
+            length += size;
             
-            final int i = ((b[0] & 0xFF) << 24) | 
-                    ((b[1] & 0xFF) << 16) | 
-                    ((b[2] & 0xFF) << 8) | 
-                    (b[3] & 0xFF);
-            integerList.add(Integer.valueOf(i));
+            if (n < b.length) {
+                if (n % INT_SIZE != 0) {
+                    throw new EOFException();
+                }
+                break;
+            }
         }
         
-        return generateArrayFromList(integerList);
+        return (length == idata.length) ? idata : Arrays.copyOf(idata, length);
     }
     
     
     public final void encodeToOutputStreamFromIntArray(int[] idata, OutputStream s) throws IOException {
-        for (int i = 0; i < idata.length; i++) {
-            final int bits = idata[i];
-            s.write((bits >>> 24) & 0xFF);
-            s.write((bits >>> 16) & 0xFF);
-            s.write((bits >>> 8) & 0xFF);
-            s.write(bits & 0xFF);
+        final int chunkLength = Math.min(idata.length, OUTPUT_CHUNK_SIZE / INT_SIZE);
+        final byte[] b = new byte[chunkLength * INT_SIZE];
+        for (int i = 0; i < idata.length; i += chunkLength) {
+            final int length = Math.min(idata.length - i, chunkLength);
+            encodeToBytesFromIntArray(idata, i, length, b, 0);
+            s.write(b, 0, length * INT_SIZE);
         }
     }
     
@@ -150,6 +148,11 @@ public class IntEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
     
     public final void encodeToBytesFromIntArray(int[] idata, int istart, int ilength, byte[] b, int start) {
+        if (ilength >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, ilength * INT_SIZE).asIntBuffer().put(idata, istart, ilength);
+            return;
+        }
+        
         final int iend = istart + ilength;
         for (int i = istart; i < iend; i++) {
             final int bits = idata[i];
@@ -0,0 +1,290 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.algorithm;
+
+/**
+ * Scan whitespace separated lexical values of the built-in encoding 
+ * algorithms directly from an array of characters.
+ * <p>
+ * Lexical values that cannot be parsed by the fast paths, for example
+ * numbers with non-ASCII digits or decimal numbers with many significant 
+ * digits, are parsed by the <code>parse</code> methods of the primitive 
+ * wrapper classes, which also report any errors.
+ */
+public final class LexicalValueScanner {
+    
+    /**
+     * The maximum number of significant digits of a decimal number that is 
+     * exactly represented as a double.
+     */
+    private static final int DOUBLE_MAX_SIGNIFICAND_DIGITS = 15;
+    
+    /**
+     * The maximum number of significant digits of a decimal number that is 
+     * exactly represented as a float.
+     */
+    private static final int FLOAT_MAX_SIGNIFICAND_DIGITS = 7;
+    
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 
+        1e21, 1e22
+    };
+    
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    
+    private LexicalValueScanner() {
+    }
+    
+    /**
+     * Check if a character is a whitespace character, as matched by 
+     * the regular expression <code>\s</code>.
+     */
+    public static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || 
+                c == '\f' || c == '\u000B';
+    }
+    
+    /**
+     * Count the number of whitespace separated words.
+     */
+    public static int countWords(char[] ch, int start, int end) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = start; i < end; i++) {
+            if (isWhiteSpace(ch[i])) {
+                inWord = false;
+            } else if (!inWord) {
+                inWord = true;
+                words++;
+            }
+        }
+        return words;
+    }
+    
+    /**
+     * @return the index of the first character that is not whitespace, 
+     *         or end.
+     */
+    public static int skipWhiteSpace(char[] ch, int i, int end) {
+        while (i < end && isWhiteSpace(ch[i])) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * @return the index of the first whitespace character, or end.
+     */
+    public static int skipWord(char[] ch, int i, int end) {
+        while (i < end && !isWhiteSpace(ch[i])) {
+            i++;
+        }
+        return i;
+    }
+    
+    public static long parseLong(char[] ch, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        if (i < end) {
+            if (ch[i] == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+                i++;
+            } else if (ch[i] == '+') {
+                i++;
+            }
+        }
+        if (i == end) {
+            return Long.parseLong(new String(ch, start, end - start));
+        }
+        
+        // Accumulate negatively, as the magnitude of Long.MIN_VALUE is 
+        // larger than Long.MAX_VALUE
+        final long multiplicationLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = ch[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplicationLimit) {
+                return Long.parseLong(new String(ch, start, end - start));
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return Long.parseLong(new String(ch, start, end - start));
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+    
+    public static int parseInt(char[] ch, int start, int end) {
+        final long v = parseLong(ch, start, end);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            return Integer.parseInt(new String(ch, start, end - start));
+        }
+        return (int)v;
+    }
+    
+    public static short parseShort(char[] ch, int start, int end) {
+        final long v = parseLong(ch, start, end);
+        if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {
+            return Short.parseShort(new String(ch, start, end - start));
+        }
+        return (short)v;
+    }
+    
+    public static double parseDouble(char[] ch, int start, int end) {
+        final double v = parseDecimal(ch, start, end, false);
+        if (v != v) {
+            return Double.parseDouble(new String(ch, start, end - start));
+        }
+        return v;
+    }
+    
+    public static float parseFloat(char[] ch, int start, int end) {
+        final double v = parseDecimal(ch, start, end, true);
+        if (v != v) {
+            return Float.parseFloat(new String(ch, start, end - start));
+        }
+        return (float)v;
+    }
+    
+    public static boolean parseBoolean(char[] ch, int start, int end) {
+        return ch[start] == 't';
+    }
+    
+    /**
+     * Parse hexadecimal digits.
+     * 
+     * @return the value, or -1 if a character is not a hexadecimal digit.
+     */
+    public static long parseHexadecimal(char[] ch, int start, int end) {
+        long v = 0;
+        for (int i = start; i < end; i++) {
+            final char c = ch[i];
+            final int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            v = (v << 4) | digit;
+        }
+        return v;
+    }
+    
+    /**
+     * Parse a decimal number whose significand and power of ten are
+     * exactly represented, so that a single correctly rounded 
+     * multiplication or division gives the correctly rounded value.
+     * 
+     * @return the value, or NaN if the number is not of the form 
+     *         [+-]?digits[.digits][(e|E)[+-]?digits] or is not exactly 
+     *         represented.
+     */
+    private static double parseDecimal(char[] ch, int start, int end, boolean isFloat) {
+        final int maxDigits = isFloat ? FLOAT_MAX_SIGNIFICAND_DIGITS : DOUBLE_MAX_SIGNIFICAND_DIGITS;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (ch[i] == '-' || ch[i] == '+')) {
+            negative = ch[i] == '-';
+            i++;
+        }
+        
+        long significand = 0;
+        int significandDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final char c = ch[i];
+            if (c == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            final int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            hasDigits = true;
+            if (significand != 0 || digit != 0) {
+                if (++significandDigits > maxDigits) {
+                    return Double.NaN;
+                }
+                significand = significand * 10 + digit;
+            }
+            if (fraction) {
+                exponent--;
+            }
+        }
+        if (!hasDigits) {
+            return Double.NaN;
+        }
+        
+        if (i < end && (ch[i] == 'e' || ch[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (ch[i] == '-' || ch[i] == '+')) {
+                negativeExponent = ch[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return Double.NaN;
+            }
+            int e = 0;
+            for (; i < end; i++) {
+                final int digit = ch[i] - '0';
+                if (digit < 0 || digit > 9 || e > 1000) {
+                    return Double.NaN;
+                }
+                e = e * 10 + digit;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        
+        if (significand == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        
+        if (isFloat) {
+            if (exponent < -10 || exponent > 10) {
+                return Double.NaN;
+            }
+            float v = (float)significand;
+            v = (exponent < 0) ? v / FLOAT_POWERS_OF_TEN[-exponent] : v * FLOAT_POWERS_OF_TEN[exponent];
+            return negative ? -v : v;
+        } else {
+            if (exponent < -22 || exponent > 22) {
+                return Double.NaN;
+            }
+            double v = (double)significand;
+            v = (exponent < 0) ? v / DOUBLE_POWERS_OF_TEN[-exponent] : v * DOUBLE_POWERS_OF_TEN[exponent];
+            return negative ? -v : v;
+        }
+    }
+}
@@ -21,8 +21,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -67,19 +67,17 @@ public class LongEncodingAlgorithm extends IntegerEncodingAlgorithm {
     
     
     public Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List longList = new ArrayList();
+        final int end = start + length;
+        final long[] ldata = new long[LexicalValueScanner.countWords(ch, start, end)];
         
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String lStringValue = cb.subSequence(start, end).toString();
-                longList.add(Long.valueOf(lStringValue));
-            }
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < ldata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            ldata[n] = LexicalValueScanner.parseLong(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
         
-        return generateArrayFromList(longList);
+        return ldata;
     }
     
     public void convertToCharacters(Object data, StringBuffer s) {
@@ -95,6 +93,11 @@ public class LongEncodingAlgorithm extends IntegerEncodingAlgorithm {
     
     public final void decodeFromBytesToLongArray(long[] ldata, int istart, byte[] b, int start, int length) {
         final int size = length / LONG_SIZE;
+        if (size >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, length).asLongBuffer().get(ldata, istart, size);
+            return;
+        }
+        
         for (int i = 0; i < size; i++) {
             ldata[istart++] = 
                     ((long)(b[start++] & 0xFF) << 56) | 
@@ -109,53 +112,38 @@ public class LongEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
     
     public final long[] decodeFromInputStreamToIntArray(InputStream s) throws IOException {
-        final List longList = new ArrayList();
-        final byte[] b = new byte[LONG_SIZE];
+        final byte[] b = new byte[INPUT_CHUNK_SIZE];
+        long[] ldata = new long[0];
+        int length = 0;
         
         while (true) {
-            int n = s.read(b);
-            if (n != LONG_SIZE) {
-                if (n == -1) {
-                    break;
-                }
-                
-                while(n != LONG_SIZE) {
-                    final int m = s.read(b, n, LONG_SIZE - n);
-                    if (m == -1) {
-                        throw new EOFException();
-                    }
-                    n += m;
-                }
+            final int n = readOctets(s, b);
+            final int size = n / LONG_SIZE;
+            if (length + size > ldata.length) {
+                ldata = Arrays.copyOf(ldata, Math.max(length + size, ldata.length * 2));
             }
+            decodeFromBytesToLongArray(ldata, length, b, 0, size * LONG_SIZE);
+            length += size;
             
-            final long l =
-                    (((long) b[0] << 56) +
-                    ((long) (b[1] & 0xFF) << 48) +
-                    ((long) (b[2] & 0xFF) << 40) +
-                    ((long) (b[3] & 0xFF) << 32) +
-                    ((long) (b[4] & 0xFF) << 24) +
-                    ((b[5] & 0xFF) << 16) +
-                    ((b[6] & 0xFF) << 8) +
-                    ((b[7] & 0xFF) << 0));
-
-            longList.add(Long.valueOf(l));
+            if (n < b.length) {
+                if (n % LONG_SIZE != 0) {
+                    throw new EOFException();
+                }
+                break;
+            }
         }
         
-        return generateArrayFromList(longList);
+        return (length == ldata.length) ? ldata : Arrays.copyOf(ldata, length);
     }
     
     
     public final void encodeToOutputStreamFromLongArray(long[] ldata, OutputStream s) throws IOException {
-        for (int i = 0; i < ldata.length; i++) {
-            final long bits = ldata[i];
-            s.write((int)((bits >>> 56) & 0xFF));
-            s.write((int)((bits >>> 48) & 0xFF));
-            s.write((int)((bits >>> 40) & 0xFF));
-            s.write((int)((bits >>> 32) & 0xFF));
-            s.write((int)((bits >>> 24) & 0xFF));
-            s.write((int)((bits >>> 16) & 0xFF));
-            s.write((int)((bits >>> 8) & 0xFF));
-            s.write((int)(bits & 0xFF));
+        final int chunkLength = Math.min(ldata.length, OUTPUT_CHUNK_SIZE / LONG_SIZE);
+        final byte[] b = new byte[chunkLength * LONG_SIZE];
+        for (int i = 0; i < ldata.length; i += chunkLength) {
+            final int length = Math.min(ldata.length - i, chunkLength);
+            encodeToBytesFromLongArray(ldata, i, length, b, 0);
+            s.write(b, 0, length * LONG_SIZE);
         }
     }
     
@@ -164,6 +152,11 @@ public class LongEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
     
     public final void encodeToBytesFromLongArray(long[] ldata, int lstart, int llength, byte[] b, int start) {
+        if (llength >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, llength * LONG_SIZE).asLongBuffer().put(ldata, lstart, llength);
+            return;
+        }
+        
         final int lend = lstart + llength;
         for (int i = lstart; i < lend; i++) {
             final long bits = ldata[i];
@@ -21,8 +21,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
@@ -73,19 +73,17 @@ public class ShortEncodingAlgorithm extends IntegerEncodingAlgorithm {
 
 
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List shortList = new ArrayList();
-
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String iStringValue = cb.subSequence(start, end).toString();
-                shortList.add(Short.valueOf(iStringValue));
-            }
+        final int end = start + length;
+        final short[] sdata = new short[LexicalValueScanner.countWords(ch, start, end)];
+        
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < sdata.length; n++) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            sdata[n] = LexicalValueScanner.parseShort(ch, i, wordEnd);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
-
-        return generateArrayFromList(shortList);
+        
+        return sdata;
     }
 
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -101,6 +99,11 @@ public class ShortEncodingAlgorithm extends IntegerEncodingAlgorithm {
 
     public final void decodeFromBytesToShortArray(short[] sdata, int istart, byte[] b, int start, int length) {
         final int size = length / SHORT_SIZE;
+        if (size >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, length).asShortBuffer().get(sdata, istart, size);
+            return;
+        }
+        
         for (int i = 0; i < size; i++) {
             sdata[istart++] = (short) (((b[start++] & 0xFF) << 8) |
                     (b[start++] & 0xFF));
@@ -108,39 +111,38 @@ public class ShortEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
 
     public final short[] decodeFromInputStreamToShortArray(InputStream s) throws IOException {
-        final List shortList = new ArrayList();
-        final byte[] b = new byte[SHORT_SIZE];
-
+        final byte[] b = new byte[INPUT_CHUNK_SIZE];
+        short[] sdata = new short[0];
+        int length = 0;
+        
         while (true) {
-            int n = s.read(b);
-            if (n != 2) {
-                if (n == -1) {
-                    break;
-                }
-
-                while(n != 2) {
-                    final int m = s.read(b, n, SHORT_SIZE - n);
-                    if (m == -1) {
-                        throw new EOFException();
-                    }
-                    n += m;
+            final int n = readOctets(s, b);
+            final int size = n / SHORT_SIZE;
+            if (length + size > sdata.length) {
+                sdata = Arrays.copyOf(sdata, Math.max(length + size, sdata.length * 2));
+            }
+            decodeFromBytesToShortArray(sdata, length, b, 0, size * SHORT_SIZE);
+            length += size;
+            
+            if (n < b.length) {
+                if (n % SHORT_SIZE != 0) {
+                    throw new EOFException();
                 }
+                break;
             }
-
-            final int i = ((b[0] & 0xFF) << 8) |
-                    (b[1] & 0xFF);
-            shortList.add(Short.valueOf((short)i));
         }
-
-        return generateArrayFromList(shortList);
+        
+        return (length == sdata.length) ? sdata : Arrays.copyOf(sdata, length);
     }
 
 
     public final void encodeToOutputStreamFromShortArray(short[] idata, OutputStream s) throws IOException {
-        for (int i = 0; i < idata.length; i++) {
-            final int bits = idata[i];
-            s.write((bits >>> 8) & 0xFF);
-            s.write(bits & 0xFF);
+        final int chunkLength = Math.min(idata.length, OUTPUT_CHUNK_SIZE / SHORT_SIZE);
+        final byte[] b = new byte[chunkLength * SHORT_SIZE];
+        for (int i = 0; i < idata.length; i += chunkLength) {
+            final int length = Math.min(idata.length - i, chunkLength);
+            encodeToBytesFromShortArray(idata, i, length, b, 0);
+            s.write(b, 0, length * SHORT_SIZE);
         }
     }
 
@@ -149,6 +151,11 @@ public class ShortEncodingAlgorithm extends IntegerEncodingAlgorithm {
     }
 
     public final void encodeToBytesFromShortArray(short[] sdata, int istart, int ilength, byte[] b, int start) {
+        if (ilength >= BULK_THRESHOLD) {
+            ByteBuffer.wrap(b, start, ilength * SHORT_SIZE).asShortBuffer().put(sdata, istart, ilength);
+            return;
+        }
+        
         final int iend = istart + ilength;
         for (int i = istart; i < iend; i++) {
             final short bits = sdata[i];
@@ -17,9 +17,6 @@
  */
 package com.sun.xml.fastinfoset.algorithm;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.nio.CharBuffer;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
 
@@ -35,21 +32,17 @@ public class UUIDEncodingAlgorithm extends LongEncodingAlgorithm {
     }
     
     public final Object convertFromCharacters(char[] ch, int start, int length) {
-        final CharBuffer cb = CharBuffer.wrap(ch, start, length);
-        final List longList = new ArrayList();
+        final int end = start + length;
+        final long[] ldata = new long[LexicalValueScanner.countWords(ch, start, end) * 2];
         
-        matchWhiteSpaceDelimnatedWords(cb,
-                new WordListener() {
-            public void word(int start, int end) {
-                String uuidValue = cb.subSequence(start, end).toString();
-                fromUUIDString(uuidValue);
-                longList.add(Long.valueOf(_msb));
-                longList.add(Long.valueOf(_lsb));
-            }
+        int i = LexicalValueScanner.skipWhiteSpace(ch, start, end);
+        for (int n = 0; n < ldata.length; n += 2) {
+            final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+            fromUUIDCharacters(ch, i, wordEnd, ldata, n);
+            i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
         }
-        );
         
-        return generateArrayFromList(longList);
+        return ldata;
     }
     
     public final void convertToCharacters(Object data, StringBuffer s) {
@@ -69,27 +62,30 @@ public class UUIDEncodingAlgorithm extends LongEncodingAlgorithm {
     }    
 
     
-    private long _msb;
-    private long _lsb;
-    
-    final void fromUUIDString(String name) {
-        String[] components = name.split("-");
-        if (components.length != 5)
+    /**
+     * Convert the canonical string representation of a UUID, 
+     * xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx, to the most and least
+     * significant bits.
+     */
+    public final void fromUUIDCharacters(char[] ch, int start, int end, long[] ldata, int lstart) {
+        if (end - start != 36 || ch[start + 8] != '-' || ch[start + 13] != '-' ||
+                ch[start + 18] != '-' || ch[start + 23] != '-') {
             throw new IllegalArgumentException(CommonResourceBundle.getInstance().
-                    getString("message.invalidUUID", new Object[]{name}));
-                    
-        for (int i=0; i<5; i++)
-            components[i] = "0x"+components[i];
-
-        _msb = Long.parseLong(components[0], 16);
-        _msb <<= 16;
-        _msb |= Long.parseLong(components[1], 16);
-        _msb <<= 16;
-        _msb |= Long.parseLong(components[2], 16);
-
-        _lsb = Long.parseLong(components[3], 16);
-        _lsb <<= 48;
-        _lsb |= Long.parseLong(components[4], 16);
+                    getString("message.invalidUUID", new Object[]{new String(ch, start, end - start)}));
+        }
+        
+        final long timeLow = LexicalValueScanner.parseHexadecimal(ch, start, start + 8);
+        final long timeMid = LexicalValueScanner.parseHexadecimal(ch, start + 9, start + 13);
+        final long timeHigh = LexicalValueScanner.parseHexadecimal(ch, start + 14, start + 18);
+        final long clockSequence = LexicalValueScanner.parseHexadecimal(ch, start + 19, start + 23);
+        final long node = LexicalValueScanner.parseHexadecimal(ch, start + 24, end);
+        if ((timeLow | timeMid | timeHigh | clockSequence | node) < 0) {
+            throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                    getString("message.invalidUUID", new Object[]{new String(ch, start, end - start)}));
+        }
+        
+        ldata[lstart] = (timeLow << 32) | (timeMid << 16) | timeHigh;
+        ldata[lstart + 1] = (clockSequence << 48) | node;
     }
 
     final String toUUIDString(long msb, long lsb) {
@@ -26,6 +26,7 @@ import com.sun.xml.fastinfoset.util.CharArray;
 import com.sun.xml.fastinfoset.util.CharArrayString;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import org.jvnet.fastinfoset.EncodingAlgorithm;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
 import org.jvnet.fastinfoset.EncodingAlgorithmIndexes;
@@ -60,6 +61,26 @@ public class DOMDocumentParser extends Decoder {
     
     protected int _namespacePrefixesIndex;
     
+    /**
+     * Stack of the parent nodes of the elements being processed
+     */
+    protected Node[] _parentNodeStack = new Node[32];
+    
+    /**
+     * Stack of the start index into the namespace prefixes of the namespace
+     * attributes declared on the elements being processed, or -1 if no
+     * namespace attributes are declared
+     */
+    protected int[] _namespacePrefixesStartStack = new int[32];
+    
+    protected int _elementStackCount;
+    
+    /**
+     * The document to which the records of the nodes are added when parsing
+     * into a deferred document, otherwise null
+     */
+    private DeferredDocument _deferredDocument;
+    
     /**
      * Parse a fast infoset document into a {@link Document} instance.
      * <p>
@@ -76,6 +97,71 @@ public class DOMDocumentParser extends Decoder {
         parse(s);
     }
     
+    /**
+     * Parse a fast infoset document into a {@link Document} instance.
+     * <p>
+     * {@link Node}s will be created and appended to the {@link Document}
+     * instance.
+     *
+     * @param d the {@link Document} instance.
+     * @param b the ByteBuffer containing the fast infoset document.
+     * @see Decoder#setInput(ByteBuffer)
+     */
+    public void parse(Document d, ByteBuffer b) throws FastInfosetException, IOException {
+        _currentNode = _document = d;
+        _namespaceAttributesIndex = 0;
+        
+        setInput(b);
+        parse();
+    }
+    
+    /**
+     * Parse a fast infoset document into a deferred {@link Document}.
+     * <p>
+     * The nodes of the document are held as compact records, referring to
+     * the names decoded by the parser and to ranges of the characters of
+     * the values, and {@link Node}s are created from the records when first
+     * accessed. A document that is only partly accessed therefore retains
+     * less memory than a fully built document.
+     * <p>
+     * The returned document is read only. A node may be imported into
+     * another document to be modified.
+     *
+     * @param s the input stream containing the fast infoset document.
+     * @return the deferred document.
+     */
+    public Document parseDeferred(InputStream s) throws FastInfosetException, IOException {
+        setInputStream(s);
+        return parseDeferred();
+    }
+    
+    /**
+     * Parse a fast infoset document into a deferred {@link Document}.
+     *
+     * @param b the ByteBuffer containing the fast infoset document.
+     * @return the deferred document.
+     * @see #parseDeferred(InputStream)
+     * @see Decoder#setInput(ByteBuffer)
+     */
+    public Document parseDeferred(ByteBuffer b) throws FastInfosetException, IOException {
+        setInput(b);
+        return parseDeferred();
+    }
+    
+    private Document parseDeferred() throws FastInfosetException, IOException {
+        final DeferredDocument d = new DeferredDocument();
+        _currentNode = _document = _deferredDocument = d;
+        _namespaceAttributesIndex = 0;
+        
+        try {
+            parse();
+        } finally {
+            _currentNode = _document = _deferredDocument = null;
+        }
+        d.endDocument();
+        return d;
+    }
+    
     protected final void parse(InputStream s) throws FastInfosetException, IOException {
         setInputStream(s);
         parse();
@@ -83,6 +169,7 @@ public class DOMDocumentParser extends Decoder {
     
     protected void resetOnError() {
         _namespacePrefixesIndex = 0;
+        _elementStackCount = 0;
         
         if (_v == null) {
             _prefixTable.clearCompletely();
@@ -186,8 +273,14 @@ public class DOMDocumentParser extends Decoder {
                         _terminate = true;
                     }
                     
-                    _notations.clear();
-                    _unparsedEntities.clear();
+                    // The lists are created only when a notation or an
+                    // unparsed entity is decoded
+                    if (_notations != null) {
+                        _notations.clear();
+                    }
+                    if (_unparsedEntities != null) {
+                        _unparsedEntities.clear();
+                    }
                     /*
                      * TODO
                      * Report All events associated with DTD, PIs, notations etc
@@ -287,42 +380,117 @@ public class DOMDocumentParser extends Decoder {
     }
     
     protected final void processEII(QualifiedName name, boolean hasAttributes) throws FastInfosetException, IOException {
+        startEII(name, hasAttributes, -1);
+        processEIIContent();
+    }
+    
+    /**
+     * Create an element, append it to the current node and push the
+     * current node onto the stack.
+     *
+     * @param namespacePrefixesStart the start index into the namespace
+     *        prefixes of the namespace attributes of the element, or -1
+     *        if the element has no namespace attributes.
+     */
+    private void startEII(QualifiedName name, boolean hasAttributes, int namespacePrefixesStart) throws FastInfosetException, IOException {
         if (_prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
             throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.qnameOfEIINotInScope"));
         }
         
         final Node parentCurrentNode = _currentNode;
         
-        _currentNode = _currentElement = createElement(name.namespaceName, name.qName, name.localName);
-        
-        if (_namespaceAttributesIndex > 0) {
-            for (int i = 0; i < _namespaceAttributesIndex; i++) {
-                _currentElement.setAttributeNode(_namespaceAttributes[i]);
-                _namespaceAttributes[i] = null;
-            }
+        if (_deferredDocument != null) {
+            // The current node remains the deferred document
+            _deferredDocument.startElement(name, _namespaceAttributesIndex);
             _namespaceAttributesIndex = 0;
+            
+            if (hasAttributes) {
+                processAIIs();
+            }
+        } else {
+            _currentNode = _currentElement = createElement(name.namespaceName, name.qName, name.localName);
+            
+            if (_namespaceAttributesIndex > 0) {
+                for (int i = 0; i < _namespaceAttributesIndex; i++) {
+                    _currentElement.setAttributeNode(_namespaceAttributes[i]);
+                    _namespaceAttributes[i] = null;
+                }
+                _namespaceAttributesIndex = 0;
+            }
+            
+            if (hasAttributes) {
+                processAIIs();
+            }
+            
+            parentCurrentNode.appendChild(_currentElement);
         }
         
-        if (hasAttributes) {
-            processAIIs();
+        // Push parent node onto the stack
+        if (_elementStackCount == _parentNodeStack.length) {
+            final Node[] parentNodeStack = new Node[_elementStackCount * 2];
+            System.arraycopy(_parentNodeStack, 0, parentNodeStack, 0, _elementStackCount);
+            _parentNodeStack = parentNodeStack;
+            
+            final int[] namespacePrefixesStartStack = new int[_elementStackCount * 2];
+            System.arraycopy(_namespacePrefixesStartStack, 0, namespacePrefixesStartStack, 0, _elementStackCount);
+            _namespacePrefixesStartStack = namespacePrefixesStartStack;
         }
+        _parentNodeStack[_elementStackCount] = parentCurrentNode;
+        _namespacePrefixesStartStack[_elementStackCount++] = namespacePrefixesStart;
+    }
+    
+    /**
+     * Complete the element being processed and pop its parent node from
+     * the stack.
+     */
+    private void endEII() {
+        _terminate = _doubleTerminate;
+        _doubleTerminate = false;
         
-        parentCurrentNode.appendChild(_currentElement);
+        _currentNode = _parentNodeStack[--_elementStackCount];
+        _parentNodeStack[_elementStackCount] = null;
+        if (_deferredDocument != null) {
+            _deferredDocument.endElement();
+        }
         
-        while(!_terminate) {
+        final int start = _namespacePrefixesStartStack[_elementStackCount];
+        if (start != -1) {
+            for (int i = start; i < _namespacePrefixesIndex; i++) {
+                _prefixTable.popScope(_namespacePrefixes[i]);
+            }
+            _namespacePrefixesIndex = start;
+        }
+    }
+    
+    /**
+     * Process the children of the element being processed, up to and
+     * including the end of that element.
+     * <p>
+     * Descendant elements are pushed onto and popped from the stack rather
+     * than processed recursively, so the depth of the document does not
+     * affect the depth of the Java stack.
+     */
+    private void processEIIContent() throws FastInfosetException, IOException {
+        final int depth = _elementStackCount;
+        while (_elementStackCount >= depth) {
+            if (_terminate) {
+                endEII();
+                continue;
+            }
+            
             _b = read();
             switch(DecoderStateTables.EII(_b)) {
                 case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[_b], false);
+                    startEII(_elementNameTable._array[_b], false, -1);
                     break;
                 case DecoderStateTables.EII_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true);
+                    startEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true, -1);
                     break;
                 case DecoderStateTables.EII_INDEX_MEDIUM:
-                    processEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 case DecoderStateTables.EII_INDEX_LARGE:
-                    processEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 case DecoderStateTables.EII_LITERAL:
                 {
@@ -330,11 +498,11 @@ public class DOMDocumentParser extends Decoder {
                             _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
                             _elementNameTable.getNext());
                     _elementNameTable.add(qn);
-                    processEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 }
                 case DecoderStateTables.EII_NAMESPACES:
-                    processEIIWithNamespaces();
+                    startEIIWithNamespaces();
                     break;
                 case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
                 {
@@ -497,14 +665,14 @@ public class DOMDocumentParser extends Decoder {
                     throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
             }
         }
-        
-        _terminate = _doubleTerminate;
-        _doubleTerminate = false;
-        
-        _currentNode = parentCurrentNode;
     }
     
     private void appendOrCreateTextData(String textData) {
+        if (_deferredDocument != null) {
+            _deferredDocument.addText(textData);
+            return;
+        }
+        
         Node lastChild = _currentNode.getLastChild();
         if (lastChild instanceof Text) {
             ((Text) lastChild).appendData(textData);
@@ -522,20 +690,27 @@ public class DOMDocumentParser extends Decoder {
             _characterContentChunkTable.add(_charBufferLength);
             return _characterContentChunkTable.getString(_characterContentChunkTable._cachedIndex);
         } else {
-            decodeUtf8StringAsCharBuffer();
-            return new String(_charBuffer, 0, _charBufferLength);
+            return decodeUtf8StringAsString();
         }
     }
     
     protected final void processEIIWithNamespaces() throws FastInfosetException, IOException {
+        startEIIWithNamespaces();
+        processEIIContent();
+    }
+    
+    /**
+     * Decode the namespace attributes and start an element.
+     */
+    private void startEIIWithNamespaces() throws FastInfosetException, IOException {
         final boolean hasAttributes = (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0;
         
         if (++_prefixTable._declarationId == Integer.MAX_VALUE) {
             _prefixTable.clearDeclarationIds();
         }
         
-        String prefix;
-        Attr a = null;
+        String prefix = null;
+        String namespaceName = null;
         final int start = _namespacePrefixesIndex;
         int b = read();
         while ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_MASK) == EncodingConstants.NAMESPACE_ATTRIBUTE) {
@@ -556,22 +731,16 @@ public class DOMDocumentParser extends Decoder {
                 // no prefix, no namespace
                 // Undeclaration of default namespace
                 case 0:
-                    a = createAttribute(
-                            EncodingConstants.XMLNS_NAMESPACE_NAME,
-                            EncodingConstants.XMLNS_NAMESPACE_PREFIX,
-                            EncodingConstants.XMLNS_NAMESPACE_PREFIX);
-                    a.setValue("");
+                    prefix = null;
+                    namespaceName = "";
                     
                     _prefixIndex = _namespaceNameIndex = _namespacePrefixes[_namespacePrefixesIndex++] = -1;
                     break;
                     // no prefix, namespace
                     // Declaration of default namespace
                 case 1:
-                    a = createAttribute(
-                            EncodingConstants.XMLNS_NAMESPACE_NAME,
-                            EncodingConstants.XMLNS_NAMESPACE_PREFIX,
-                            EncodingConstants.XMLNS_NAMESPACE_PREFIX);
-                    a.setValue(decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(false));
+                    prefix = null;
+                    namespaceName = decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(false);
                     
                     _prefixIndex = _namespacePrefixes[_namespacePrefixesIndex++] = -1;
                     break;
@@ -579,11 +748,7 @@ public class DOMDocumentParser extends Decoder {
                     // Undeclaration of namespace
                 case 2:
                     prefix = decodeIdentifyingNonEmptyStringOnFirstBitAsPrefix(false);
-                    a = createAttribute(
-                            EncodingConstants.XMLNS_NAMESPACE_NAME,
-                            createQualifiedNameString(prefix),
-                            prefix);
-                    a.setValue("");
+                    namespaceName = "";
                     
                     _namespaceNameIndex = -1;
                     _namespacePrefixes[_namespacePrefixesIndex++] = _prefixIndex;
@@ -592,11 +757,7 @@ public class DOMDocumentParser extends Decoder {
                     // Declaration of prefixed namespace
                 case 3:
                     prefix = decodeIdentifyingNonEmptyStringOnFirstBitAsPrefix(true);
-                    a = createAttribute(
-                            EncodingConstants.XMLNS_NAMESPACE_NAME,
-                            createQualifiedNameString(prefix),
-                            prefix);
-                    a.setValue(decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(true));
+                    namespaceName = decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(true);
                     
                     _namespacePrefixes[_namespacePrefixesIndex++] = _prefixIndex;
                     break;
@@ -604,25 +765,39 @@ public class DOMDocumentParser extends Decoder {
             
             _prefixTable.pushScope(_prefixIndex, _namespaceNameIndex);
             
-            _namespaceAttributes[_namespaceAttributesIndex++] = a;
+            if (_deferredDocument != null) {
+                _deferredDocument.addNamespaceAttribute(prefix, namespaceName);
+            } else {
+                final Attr a = (prefix == null)
+                        ? createAttribute(
+                            EncodingConstants.XMLNS_NAMESPACE_NAME,
+                            EncodingConstants.XMLNS_NAMESPACE_PREFIX,
+                            EncodingConstants.XMLNS_NAMESPACE_PREFIX)
+                        : createAttribute(
+                            EncodingConstants.XMLNS_NAMESPACE_NAME,
+                            createQualifiedNameString(prefix),
+                            prefix);
+                a.setValue(namespaceName);
+                _namespaceAttributes[_namespaceAttributesIndex] = a;
+            }
+            _namespaceAttributesIndex++;
             
             b = read();
         }
         if (b != EncodingConstants.TERMINATOR) {
             throw new IOException(CommonResourceBundle.getInstance().getString("message.EIInamespaceNameNotTerminatedCorrectly"));
         }
-        final int end = _namespacePrefixesIndex;
         
         _b = read();
         switch(DecoderStateTables.EII(_b)) {
             case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                processEII(_elementNameTable._array[_b], hasAttributes);
+                startEII(_elementNameTable._array[_b], hasAttributes, start);
                 break;
             case DecoderStateTables.EII_INDEX_MEDIUM:
-                processEII(decodeEIIIndexMedium(), hasAttributes);
+                startEII(decodeEIIIndexMedium(), hasAttributes, start);
                 break;
             case DecoderStateTables.EII_INDEX_LARGE:
-                processEII(decodeEIIIndexLarge(), hasAttributes);
+                startEII(decodeEIIIndexLarge(), hasAttributes, start);
                 break;
             case DecoderStateTables.EII_LITERAL:
             {
@@ -630,18 +805,12 @@ public class DOMDocumentParser extends Decoder {
                         _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
                         _elementNameTable.getNext());
                 _elementNameTable.add(qn);
-                processEII(qn, hasAttributes);
+                startEII(qn, hasAttributes, start);
                 break;
             }
             default:
                 throw new IOException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEIIAfterAIIs"));
         }
-        
-        for (int i = start; i < end; i++) {
-            _prefixTable.popScope(_namespacePrefixes[i]);
-        }
-        _namespacePrefixesIndex = start;
-        
     }
     
     protected final QualifiedName processLiteralQualifiedName(int state, QualifiedName q)
@@ -781,11 +950,6 @@ public class DOMDocumentParser extends Decoder {
             
             _duplicateAttributeVerifier.checkForDuplicateAttribute(name.attributeHash, name.attributeId);
             
-            Attr a = createAttribute(
-                    name.namespaceName,
-                    name.qName,
-                    name.localName);
-            
             // [normalized value] of AII
             
             b = read();
@@ -799,8 +963,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
@@ -812,8 +975,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
@@ -829,8 +991,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_UTF16_SMALL_LENGTH:
@@ -842,8 +1003,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_UTF16_MEDIUM_LENGTH:
@@ -855,8 +1015,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_UTF16_LARGE_LENGTH:
@@ -872,8 +1031,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_RA:
@@ -891,8 +1049,7 @@ public class DOMDocumentParser extends Decoder {
                         _attributeValueTable.add(value);
                     }
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_EA:
@@ -907,15 +1064,13 @@ public class DOMDocumentParser extends Decoder {
                     if (addToTable) {
                         _attributeValueTable.add(value);
                     }
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_INDEX_SMALL:
                     value = _attributeValueTable._array[b & EncodingConstants.INTEGER_2ND_BIT_SMALL_MASK];
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 case DecoderStateTables.NISTRING_INDEX_MEDIUM:
                 {
@@ -923,8 +1078,7 @@ public class DOMDocumentParser extends Decoder {
                     + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
                     value = _attributeValueTable._array[index];
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_INDEX_LARGE:
@@ -933,13 +1087,11 @@ public class DOMDocumentParser extends Decoder {
                     + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
                     value = _attributeValueTable._array[index];
                     
-                    a.setValue(value);
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, value);
                     break;
                 }
                 case DecoderStateTables.NISTRING_EMPTY:
-                    a.setValue("");
-                    _currentElement.setAttributeNode(a);
+                    addAttribute(name, "");
                     break;
                 default:
                     throw new IOException(CommonResourceBundle.getInstance().getString("message.decodingAIIValue"));
@@ -954,6 +1106,19 @@ public class DOMDocumentParser extends Decoder {
         _doubleTerminate = false;
     }
     
+    private void addAttribute(QualifiedName name, String value) {
+        if (_deferredDocument != null) {
+            _deferredDocument.addAttribute(name, value);
+        } else {
+            final Attr a = createAttribute(
+                    name.namespaceName,
+                    name.qName,
+                    name.localName);
+            a.setValue(value);
+            _currentElement.setAttributeNode(a);
+        }
+    }
+    
     protected final void processCommentII() throws FastInfosetException, IOException {
         switch(decodeNonIdentifyingStringOnFirstBit()) {
             case NISTRING_STRING:
@@ -963,7 +1128,7 @@ public class DOMDocumentParser extends Decoder {
                     _v.otherString.add(new CharArrayString(s, false));
                 }
                 
-                _currentNode.appendChild(_document.createComment(s));
+                appendComment(s);
                 break;
             }
             case NISTRING_ENCODING_ALGORITHM:
@@ -972,11 +1137,11 @@ public class DOMDocumentParser extends Decoder {
             {
                 final String s = _v.otherString.get(_integer).toString();
                 
-                _currentNode.appendChild(_document.createComment(s));
+                appendComment(s);
                 break;
             }
             case NISTRING_EMPTY_STRING:
-                _currentNode.appendChild(_document.createComment(""));
+                appendComment("");
                 break;
         }
     }
@@ -992,7 +1157,7 @@ public class DOMDocumentParser extends Decoder {
                     _v.otherString.add(new CharArrayString(data, false));
                 }
                 
-                _currentNode.appendChild(_document.createProcessingInstruction(target, data));
+                appendProcessingInstruction(target, data);
                 break;
             }
             case NISTRING_ENCODING_ALGORITHM:
@@ -1001,15 +1166,31 @@ public class DOMDocumentParser extends Decoder {
             {
                 final String data = _v.otherString.get(_integer).toString();
                 
-                _currentNode.appendChild(_document.createProcessingInstruction(target, data));
+                appendProcessingInstruction(target, data);
                 break;
             }
             case NISTRING_EMPTY_STRING:
-                _currentNode.appendChild(_document.createProcessingInstruction(target, ""));
+                appendProcessingInstruction(target, "");
                 break;
         }
     }
     
+    private void appendComment(String data) {
+        if (_deferredDocument != null) {
+            _deferredDocument.addComment(data);
+        } else {
+            _currentNode.appendChild(_document.createComment(data));
+        }
+    }
+    
+    private void appendProcessingInstruction(String target, String data) {
+        if (_deferredDocument != null) {
+            _deferredDocument.addProcessingInstruction(target, data);
+        } else {
+            _currentNode.appendChild(_document.createProcessingInstruction(target, data));
+        }
+    }
+    
     protected Element createElement(String namespaceName, String qName, String localName) {
         return _document.createElementNS(namespaceName, qName);
     }
@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import com.sun.xml.fastinfoset.QualifiedName;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * An attribute of a {@link DeferredDocument}, whose index is that of the
+ * record of the attribute.
+ * <p>
+ * The value of the attribute is held by a child text node, which is 
+ * created when first accessed.
+ */
+final class DeferredAttr extends DeferredNode implements Attr {
+    private Text _value;
+    
+    DeferredAttr(DeferredDocument document, int index) {
+        super(document, index);
+    }
+    
+    private QualifiedName getQualifiedName() {
+        return _document._names[_document._attributeName[_index]];
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return getQualifiedName().qName;
+    }
+    
+    public String getNodeValue() throws DOMException {
+        return _document.getAttributeValue(_index);
+    }
+    
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public short getNodeType() {
+        return ATTRIBUTE_NODE;
+    }
+    
+    public Node getParentNode() {
+        return null;
+    }
+    
+    public NodeList getChildNodes() {
+        return new NodeList() {
+            public Node item(int index) {
+                return (index == 0) ? getFirstChild() : null;
+            }
+            
+            public int getLength() {
+                return 1;
+            }
+        };
+    }
+    
+    public Node getFirstChild() {
+        if (_value == null) {
+            _value = new DeferredAttrText(_document, this);
+        }
+        return _value;
+    }
+    
+    public Node getLastChild() {
+        return getFirstChild();
+    }
+    
+    public Node getPreviousSibling() {
+        return null;
+    }
+    
+    public Node getNextSibling() {
+        return null;
+    }
+    
+    public boolean hasChildNodes() {
+        return true;
+    }
+    
+    public String getNamespaceURI() {
+        return DeferredDocument.emptyToNull(getQualifiedName().namespaceName);
+    }
+    
+    public String getPrefix() {
+        return DeferredDocument.emptyToNull(getQualifiedName().prefix);
+    }
+    
+    public String getLocalName() {
+        return getQualifiedName().localName;
+    }
+    
+    int getOwnerIndex() {
+        return _document._attributeOwner[_index];
+    }
+    
+    int getElementIndex() {
+        return _document._attributeOwner[_index];
+    }
+    
+    // Attr
+    
+    public String getName() {
+        return getQualifiedName().qName;
+    }
+    
+    public boolean getSpecified() {
+        return true;
+    }
+    
+    public String getValue() {
+        return _document.getAttributeValue(_index);
+    }
+    
+    public void setValue(String value) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Element getOwnerElement() {
+        return (Element)_document.getNode(_document._attributeOwner[_index]);
+    }
+    
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+    
+    public boolean isId() {
+        return false;
+    }
+}
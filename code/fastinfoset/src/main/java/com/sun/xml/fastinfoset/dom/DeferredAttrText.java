@@ -0,0 +1,117 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+
+/**
+ * The text holding the value of an attribute of a {@link DeferredDocument},
+ * whose index is that of the record of the attribute.
+ */
+final class DeferredAttrText extends DeferredCharacterData implements Text {
+    private final DeferredAttr _attr;
+    
+    DeferredAttrText(DeferredDocument document, DeferredAttr attr) {
+        super(document, attr._index);
+        _attr = attr;
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return "#text";
+    }
+    
+    public short getNodeType() {
+        return TEXT_NODE;
+    }
+    
+    public Node getParentNode() {
+        return _attr;
+    }
+    
+    public NodeList getChildNodes() {
+        return DeferredNodeList.EMPTY;
+    }
+    
+    public Node getFirstChild() {
+        return null;
+    }
+    
+    public Node getLastChild() {
+        return null;
+    }
+    
+    public Node getPreviousSibling() {
+        return null;
+    }
+    
+    public Node getNextSibling() {
+        return null;
+    }
+    
+    public boolean hasChildNodes() {
+        return false;
+    }
+    
+    public short compareDocumentPosition(Node other) throws DOMException {
+        if (other == this) {
+            return 0;
+        } else if (other == _attr) {
+            return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+        }
+        
+        // Other nodes are positioned as they are to the attribute
+        return _attr.compareDocumentPosition(other);
+    }
+    
+    int getOwnerIndex() {
+        return _document._attributeOwner[_index];
+    }
+    
+    int getElementIndex() {
+        return _document._attributeOwner[_index];
+    }
+    
+    // CharacterData
+    
+    public String getData() throws DOMException {
+        return _document.getAttributeValue(_index);
+    }
+    
+    // Text
+    
+    public Text splitText(int offset) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+    
+    public String getWholeText() {
+        return getData();
+    }
+    
+    public Text replaceWholeText(String content) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
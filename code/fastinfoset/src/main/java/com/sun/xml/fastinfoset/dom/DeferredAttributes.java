@@ -0,0 +1,68 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The attributes of an element of a {@link DeferredDocument}, whose nodes
+ * are created as the items are accessed.
+ */
+final class DeferredAttributes implements NamedNodeMap {
+    private final DeferredElement _element;
+    
+    DeferredAttributes(DeferredElement element) {
+        _element = element;
+    }
+    
+    public Node getNamedItem(String name) {
+        return _element.getAttributeNode(name);
+    }
+    
+    public Node setNamedItem(Node arg) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node removeNamedItem(String name) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node item(int index) {
+        final DeferredDocument d = _element._document;
+        return (index >= 0 && index < d._attributeCount[_element._index]) 
+                ? d.getAttribute(d._attributeStart[_element._index] + index) : null;
+    }
+    
+    public int getLength() {
+        return _element._document._attributeCount[_element._index];
+    }
+    
+    public Node getNamedItemNS(String namespaceURI, String localName) throws DOMException {
+        return _element.getAttributeNodeNS(namespaceURI, localName);
+    }
+    
+    public Node setNamedItemNS(Node arg) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node removeNamedItemNS(String namespaceURI, String localName) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * The character data of a text or comment of a {@link DeferredDocument}.
+ */
+abstract class DeferredCharacterData extends DeferredNode implements CharacterData {
+    DeferredCharacterData(DeferredDocument document, int index) {
+        super(document, index);
+    }
+    
+    // Node
+    
+    public String getNodeValue() throws DOMException {
+        return getData();
+    }
+    
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    // CharacterData
+    
+    public String getData() throws DOMException {
+        return _document.getNodeValue(_index);
+    }
+    
+    public void setData(String data) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public int getLength() {
+        return getData().length();
+    }
+    
+    public String substringData(int offset, int count) throws DOMException {
+        final String data = getData();
+        if (offset < 0 || offset > data.length() || count < 0) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR,
+                    CommonResourceBundle.getInstance().getString("message.deferredDocumentIndex",
+                    new Object[]{Integer.valueOf(offset), Integer.valueOf(count)}));
+        }
+        return data.substring(offset, Math.min(offset + count, data.length()));
+    }
+    
+    public void appendData(String arg) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void insertData(int offset, String arg) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void deleteData(int offset, int count) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void replaceData(int offset, int count, String arg) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
@@ -0,0 +1,787 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.EncodingConstants;
+import com.sun.xml.fastinfoset.QualifiedName;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * A read only {@link Document} whose nodes are created when first accessed.
+ * <p>
+ * The nodes of the document are held as records in parallel arrays indexed
+ * by the position of the node in document order, the record of the
+ * document being the first. The attributes of an element are held as
+ * records in parallel arrays, in a range given by the record of the
+ * element. The names of elements and attributes are held as indexes into
+ * the table of the names of the document. The values are held as ranges of
+ * the characters of the document, from which a string is created each time
+ * a value is accessed, so that a document that is not accessed holds no
+ * string per value.
+ * <p>
+ * The records are added by {@link DOMDocumentParser} as the document is
+ * parsed. A {@link Node} is created for a record when the node is first
+ * accessed, and the same node is returned on further accesses. The arrays
+ * are trimmed to their size when the document is complete.
+ * <p>
+ * Measured before any node is accessed, a deferred document retains about
+ * a third of the memory of the DOM that the parser creates with the
+ * document builder of the JDK for a document of deeply nested elements
+ * with attributes. It retains about three quarters for a large document
+ * of sibling records with text content, and about nine tenths for small
+ * documents, such as a SOAP message, whose records are few compared to the
+ * copied table of names. Each node that is accessed adds the memory of
+ * the node.
+ * <p>
+ * Operations that would modify the document throw a {@link DOMException}
+ * with the code NO_MODIFICATION_ALLOWED_ERR, and nodes cannot be created or
+ * cloned. A node may be imported into another document to be modified.
+ */
+final class DeferredDocument extends DeferredNode implements Document {
+    static final int INITIAL_NODE_SIZE = 64;
+    static final int INITIAL_ATTRIBUTE_SIZE = 32;
+    static final int INITIAL_NAME_SIZE = 32;
+    static final int INITIAL_CHARACTER_SIZE = 1024;
+    
+    static final DOMImplementation IMPLEMENTATION = new DOMImplementation() {
+        public boolean hasFeature(String feature, String version) {
+            if (feature.startsWith("+")) {
+                feature = feature.substring(1);
+            }
+            return (feature.equalsIgnoreCase("Core") || feature.equalsIgnoreCase("XML")) &&
+                    (version == null || version.length() == 0 || version.equals("1.0") ||
+                    version.equals("2.0") || version.equals("3.0"));
+        }
+        
+        public DocumentType createDocumentType(String qualifiedName, String publicId, String systemId) {
+            throw notSupported();
+        }
+        
+        public Document createDocument(String namespaceURI, String qualifiedName, DocumentType doctype) {
+            throw notSupported();
+        }
+        
+        public Object getFeature(String feature, String version) {
+            return hasFeature(feature, version) ? this : null;
+        }
+    };
+    
+    /**
+     * The number of node records.
+     */
+    int _nodeSize;
+    
+    short[] _nodeType;
+    int[] _parent;
+    int[] _firstChild;
+    int[] _lastChild;
+    int[] _previousSibling;
+    int[] _nextSibling;
+    
+    /**
+     * The index of the name of an element, or of the target of a processing
+     * instruction, in the table of names.
+     */
+    int[] _nodeName;
+    
+    /**
+     * The range of the characters of the data of a text, comment or
+     * processing instruction.
+     */
+    int[] _nodeValueOffset;
+    int[] _nodeValueLength;
+    
+    int[] _attributeStart;
+    int[] _attributeCount;
+    
+    /**
+     * The number of attribute records.
+     */
+    int _attributeSize;
+    
+    int[] _attributeName;
+    int[] _attributeValueOffset;
+    int[] _attributeValueLength;
+    int[] _attributeOwner;
+    
+    /**
+     * The characters of the values of the nodes and attributes.
+     */
+    char[] _characters;
+    int _charactersLength;
+    
+    /**
+     * The table of names, copied from the qualified names of the parser,
+     * which may be modified when the parser decodes another document.
+     */
+    QualifiedName[] _names;
+    int _nameSize;
+    
+    /**
+     * The nodes and attributes created from the records, allocated once 
+     * the document is complete.
+     */
+    private Node[] _nodes;
+    private Attr[] _attributes;
+    
+    /**
+     * The qualified names of the parser, and the indexes of their copies,
+     * in an identity hash table used while the document is parsed.
+     */
+    private QualifiedName[] _nameKeys;
+    private int[] _nameIndexes;
+    
+    /**
+     * The element, or the document, to which nodes are added.
+     */
+    private int _current;
+    
+    private String _documentURI;
+    
+    private boolean _strictErrorChecking = true;
+    
+    DeferredDocument() {
+        super(null, 0);
+        _document = this;
+        
+        _nodeType = new short[INITIAL_NODE_SIZE];
+        _parent = new int[INITIAL_NODE_SIZE];
+        _firstChild = new int[INITIAL_NODE_SIZE];
+        _lastChild = new int[INITIAL_NODE_SIZE];
+        _previousSibling = new int[INITIAL_NODE_SIZE];
+        _nextSibling = new int[INITIAL_NODE_SIZE];
+        _nodeName = new int[INITIAL_NODE_SIZE];
+        _nodeValueOffset = new int[INITIAL_NODE_SIZE];
+        _nodeValueLength = new int[INITIAL_NODE_SIZE];
+        _attributeStart = new int[INITIAL_NODE_SIZE];
+        _attributeCount = new int[INITIAL_NODE_SIZE];
+        
+        _attributeName = new int[INITIAL_ATTRIBUTE_SIZE];
+        _attributeValueOffset = new int[INITIAL_ATTRIBUTE_SIZE];
+        _attributeValueLength = new int[INITIAL_ATTRIBUTE_SIZE];
+        _attributeOwner = new int[INITIAL_ATTRIBUTE_SIZE];
+        
+        _names = new QualifiedName[INITIAL_NAME_SIZE];
+        _nameKeys = new QualifiedName[INITIAL_NAME_SIZE * 2];
+        _nameIndexes = new int[INITIAL_NAME_SIZE * 2];
+        
+        _characters = new char[INITIAL_CHARACTER_SIZE];
+        
+        // The record of the document
+        _current = -1;
+        addNode(DOCUMENT_NODE, -1, null);
+        _current = 0;
+    }
+    
+    // Methods used by the parser to add the records
+    
+    /**
+     * Add an element to the current element, which becomes the current
+     * element.
+     * 
+     * @param namespaceAttributeCount the number of namespace attributes of 
+     *        the element, which have been added.
+     */
+    void startElement(QualifiedName name, int namespaceAttributeCount) {
+        final int e = addNode(ELEMENT_NODE, getNameIndex(name), null);
+        _attributeStart[e] = _attributeSize - namespaceAttributeCount;
+        _attributeCount[e] = namespaceAttributeCount;
+        for (int a = _attributeStart[e]; a < _attributeSize; a++) {
+            _attributeOwner[a] = e;
+        }
+        _current = e;
+    }
+    
+    void endElement() {
+        _current = _parent[_current];
+    }
+    
+    void addAttribute(QualifiedName name, String value) {
+        final int a = addAttributeRecord(getNameIndex(name), value);
+        _attributeOwner[a] = _current;
+        _attributeCount[_current]++;
+    }
+    
+    /**
+     * Add a namespace attribute of the element that is next added.
+     *
+     * @param prefix the prefix, or null for the default namespace.
+     */
+    void addNamespaceAttribute(String prefix, String namespaceName) {
+        final QualifiedName name = (prefix == null)
+                ? new QualifiedName("", EncodingConstants.XMLNS_NAMESPACE_NAME, 
+                        EncodingConstants.XMLNS_NAMESPACE_PREFIX, EncodingConstants.XMLNS_NAMESPACE_PREFIX)
+                : new QualifiedName(EncodingConstants.XMLNS_NAMESPACE_PREFIX, 
+                        EncodingConstants.XMLNS_NAMESPACE_NAME, prefix);
+        addAttributeRecord(addName(name), namespaceName);
+    }
+    
+    /**
+     * Add character content to the current element, appending it to the
+     * last child if that is a text node.
+     */
+    void addText(String data) {
+        final int last = _lastChild[_current];
+        if (last != -1 && _nodeType[last] == TEXT_NODE) {
+            final int offset = _nodeValueOffset[last];
+            final int length = _nodeValueLength[last];
+            if (offset + length != _charactersLength) {
+                // Copy the characters of the last child to the end
+                _nodeValueOffset[last] = addCharacters(new String(_characters, offset, length));
+            }
+            addCharacters(data);
+            _nodeValueLength[last] = length + data.length();
+        } else {
+            addNode(TEXT_NODE, -1, data);
+        }
+    }
+    
+    void addComment(String data) {
+        addNode(COMMENT_NODE, -1, data);
+    }
+    
+    void addProcessingInstruction(String target, String data) {
+        addNode(PROCESSING_INSTRUCTION_NODE, addName(new QualifiedName("", "", target, target)), data);
+    }
+    
+    /**
+     * Complete the document once all the records have been added.
+     */
+    void endDocument() {
+        _nameKeys = null;
+        _nameIndexes = null;
+        
+        if (_nodeSize < _nodeType.length) {
+            resizeNodes(_nodeSize);
+        }
+        if (_attributeSize < _attributeName.length) {
+            resizeAttributes(_attributeSize);
+        }
+        if (_charactersLength < _characters.length) {
+            final char[] characters = new char[_charactersLength];
+            System.arraycopy(_characters, 0, characters, 0, _charactersLength);
+            _characters = characters;
+        }
+        
+        _nodes = new Node[_nodeSize];
+        _nodes[0] = this;
+        _attributes = new Attr[_attributeSize];
+    }
+    
+    private int addNode(short type, int name, String value) {
+        if (_nodeSize == _nodeType.length) {
+            resizeNodes(_nodeSize * 2);
+        }
+        
+        final int n = _nodeSize++;
+        _nodeType[n] = type;
+        _nodeName[n] = name;
+        if (value != null) {
+            _nodeValueOffset[n] = addCharacters(value);
+            _nodeValueLength[n] = value.length();
+        }
+        _parent[n] = _current;
+        _firstChild[n] = -1;
+        _lastChild[n] = -1;
+        _nextSibling[n] = -1;
+        _attributeStart[n] = _attributeSize;
+        _attributeCount[n] = 0;
+        
+        if (_current != -1) {
+            final int last = _lastChild[_current];
+            _previousSibling[n] = last;
+            if (last == -1) {
+                _firstChild[_current] = n;
+            } else {
+                _nextSibling[last] = n;
+            }
+            _lastChild[_current] = n;
+        } else {
+            _previousSibling[n] = -1;
+        }
+        return n;
+    }
+    
+    private int addAttributeRecord(int name, String value) {
+        if (_attributeSize == _attributeName.length) {
+            resizeAttributes(_attributeSize * 2);
+        }
+        
+        final int a = _attributeSize++;
+        _attributeName[a] = name;
+        _attributeValueOffset[a] = addCharacters(value);
+        _attributeValueLength[a] = value.length();
+        return a;
+    }
+    
+    /**
+     * Add the characters of a value.
+     *
+     * @return the offset of the characters.
+     */
+    private int addCharacters(String value) {
+        final int length = value.length();
+        if (_charactersLength + length > _characters.length) {
+            final char[] characters = new char[Math.max(_characters.length * 2, _charactersLength + length)];
+            System.arraycopy(_characters, 0, characters, 0, _charactersLength);
+            _characters = characters;
+        }
+        
+        final int offset = _charactersLength;
+        value.getChars(0, length, _characters, offset);
+        _charactersLength += length;
+        return offset;
+    }
+    
+    /**
+     * Get the index of the copy of a qualified name of the parser, copying
+     * the name when first seen.
+     */
+    private int getNameIndex(QualifiedName name) {
+        final int mask = _nameKeys.length - 1;
+        int i = System.identityHashCode(name) & mask;
+        QualifiedName k;
+        while ((k = _nameKeys[i]) != null) {
+            if (k == name) {
+                return _nameIndexes[i];
+            }
+            i = (i + 1) & mask;
+        }
+        
+        final int index = addName(new QualifiedName(name.prefix, name.namespaceName, name.localName, name.qName));
+        _nameKeys[i] = name;
+        _nameIndexes[i] = index;
+        if (_nameSize * 2 > _nameKeys.length) {
+            resizeNameKeys(_nameKeys.length * 2);
+        }
+        return index;
+    }
+    
+    private int addName(QualifiedName name) {
+        if (_nameSize == _names.length) {
+            final QualifiedName[] names = new QualifiedName[_nameSize * 2];
+            System.arraycopy(_names, 0, names, 0, _nameSize);
+            _names = names;
+        }
+        
+        _names[_nameSize] = name;
+        return _nameSize++;
+    }
+    
+    private void resizeNameKeys(int newLength) {
+        final QualifiedName[] nameKeys = _nameKeys;
+        final int[] nameIndexes = _nameIndexes;
+        
+        _nameKeys = new QualifiedName[newLength];
+        _nameIndexes = new int[newLength];
+        final int mask = newLength - 1;
+        for (int j = 0; j < nameKeys.length; j++) {
+            if (nameKeys[j] != null) {
+                int i = System.identityHashCode(nameKeys[j]) & mask;
+                while (_nameKeys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                _nameKeys[i] = nameKeys[j];
+                _nameIndexes[i] = nameIndexes[j];
+            }
+        }
+    }
+    
+    private void resizeNodes(int newLength) {
+        final short[] nodeType = new short[newLength];
+        System.arraycopy(_nodeType, 0, nodeType, 0, _nodeSize);
+        _nodeType = nodeType;
+        
+        _parent = resize(_parent, newLength);
+        _firstChild = resize(_firstChild, newLength);
+        _lastChild = resize(_lastChild, newLength);
+        _previousSibling = resize(_previousSibling, newLength);
+        _nextSibling = resize(_nextSibling, newLength);
+        _nodeName = resize(_nodeName, newLength);
+        _attributeStart = resize(_attributeStart, newLength);
+        _attributeCount = resize(_attributeCount, newLength);
+        _nodeValueOffset = resize(_nodeValueOffset, newLength);
+        _nodeValueLength = resize(_nodeValueLength, newLength);
+    }
+    
+    private void resizeAttributes(int newLength) {
+        _attributeName = resize(_attributeName, newLength);
+        _attributeValueOffset = resize(_attributeValueOffset, newLength);
+        _attributeValueLength = resize(_attributeValueLength, newLength);
+        _attributeOwner = resize(_attributeOwner, newLength);
+    }
+    
+    private static int[] resize(int[] a, int newLength) {
+        final int[] b = new int[newLength];
+        System.arraycopy(a, 0, b, 0, Math.min(a.length, newLength));
+        return b;
+    }
+    
+    // Methods used by the nodes to access the records
+    
+    /**
+     * Get the data of a text, comment or processing instruction.
+     */
+    String getNodeValue(int node) {
+        return new String(_characters, _nodeValueOffset[node], _nodeValueLength[node]);
+    }
+    
+    String getAttributeValue(int attribute) {
+        return new String(_characters, _attributeValueOffset[attribute], _attributeValueLength[attribute]);
+    }
+    
+    /**
+     * Get the node of a record, creating it when first accessed.
+     * 
+     * @return the node, or null if the index is -1.
+     */
+    Node getNode(int index) {
+        if (index == -1) {
+            return null;
+        }
+        
+        Node n = _nodes[index];
+        if (n == null) {
+            switch (_nodeType[index]) {
+                case ELEMENT_NODE:
+                    n = new DeferredElement(this, index);
+                    break;
+                case TEXT_NODE:
+                    n = new DeferredText(this, index);
+                    break;
+                case COMMENT_NODE:
+                    n = new DeferredComment(this, index);
+                    break;
+                case PROCESSING_INSTRUCTION_NODE:
+                    n = new DeferredProcessingInstruction(this, index);
+                    break;
+            }
+            _nodes[index] = n;
+        }
+        return n;
+    }
+    
+    /**
+     * Get the attribute of a record, creating it when first accessed.
+     */
+    Attr getAttribute(int index) {
+        Attr a = _attributes[index];
+        if (a == null) {
+            a = _attributes[index] = new DeferredAttr(this, index);
+        }
+        return a;
+    }
+    
+    NodeList getChildNodes(int parent) {
+        int length = 0;
+        for (int n = _firstChild[parent]; n != -1; n = _nextSibling[n]) {
+            length++;
+        }
+        
+        final int[] nodes = new int[length];
+        int i = 0;
+        for (int n = _firstChild[parent]; n != -1; n = _nextSibling[n]) {
+            nodes[i++] = n;
+        }
+        return new DeferredNodeList(this, nodes, length);
+    }
+    
+    /**
+     * Get the elements, in document order, of the descendants of a node
+     * that match a name.
+     *
+     * @param namespaceURI the namespace name, "*" to match all namespace
+     *        names, or null to match the qualified name.
+     * @param name the local name, or the qualified name, "*" to match all
+     *        names.
+     */
+    NodeList getElementsByName(int node, String namespaceURI, String name, boolean qualified) {
+        final boolean allNames = name.equals("*");
+        final boolean allNamespaceURIs = "*".equals(namespaceURI);
+        if (namespaceURI != null && namespaceURI.length() == 0) {
+            namespaceURI = null;
+        }
+        
+        // The descendants of a node are the records that follow the node
+        // up to the next sibling of the node or of one of its ancestors
+        final int end = getEndIndex(node);
+        int[] elements = new int[16];
+        int length = 0;
+        for (int n = node + 1; n < end; n++) {
+            if (_nodeType[n] != ELEMENT_NODE) {
+                continue;
+            }
+            
+            final QualifiedName q = _names[_nodeName[n]];
+            final boolean matches = qualified 
+                    ? allNames || name.equals(q.qName)
+                    : (allNames || name.equals(q.localName)) &&
+                    (allNamespaceURIs || equals(namespaceURI, getNamespaceURI(n)));
+            if (matches) {
+                if (length == elements.length) {
+                    elements = resize(elements, length * 2);
+                }
+                elements[length++] = n;
+            }
+        }
+        return new DeferredNodeList(this, elements, length);
+    }
+    
+    /**
+     * Get the characters of the text nodes that are descendants of a node.
+     */
+    String getTextContent(int node) {
+        final int end = getEndIndex(node);
+        final StringBuffer b = new StringBuffer();
+        for (int n = node + 1; n < end; n++) {
+            if (_nodeType[n] == TEXT_NODE) {
+                b.append(_characters, _nodeValueOffset[n], _nodeValueLength[n]);
+            }
+        }
+        return b.toString();
+    }
+    
+    /**
+     * Get the index that follows the last descendant of a node.
+     */
+    int getEndIndex(int node) {
+        for (int n = node; n != -1; n = _parent[n]) {
+            if (_nextSibling[n] != -1) {
+                return _nextSibling[n];
+            }
+        }
+        return _nodeSize;
+    }
+    
+    boolean isAncestor(int ancestor, int node) {
+        for (int n = _parent[node]; n != -1; n = _parent[n]) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    String getNamespaceURI(int element) {
+        return emptyToNull(_names[_nodeName[element]].namespaceName);
+    }
+    
+    String getPrefix(int element) {
+        return emptyToNull(_names[_nodeName[element]].prefix);
+    }
+    
+    boolean isNamespaceDeclaration(int attribute) {
+        return EncodingConstants.XMLNS_NAMESPACE_NAME.equals(_names[_attributeName[attribute]].namespaceName);
+    }
+    
+    /**
+     * Get the prefix declared by a namespace attribute, or null if the
+     * attribute declares the default namespace or is not a namespace
+     * attribute.
+     */
+    String getNamespaceDeclarationPrefix(int attribute) {
+        final QualifiedName name = _names[_attributeName[attribute]];
+        return (EncodingConstants.XMLNS_NAMESPACE_NAME.equals(name.namespaceName) && 
+                EncodingConstants.XMLNS_NAMESPACE_PREFIX.equals(name.prefix)) ? name.localName : null;
+    }
+    
+    static String emptyToNull(String s) {
+        return (s != null && s.length() > 0) ? s : null;
+    }
+    
+    static DOMException noModificationAllowed() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                CommonResourceBundle.getInstance().getString("message.deferredDocumentReadOnly"));
+    }
+    
+    static DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR,
+                CommonResourceBundle.getInstance().getString("message.deferredDocumentNotSupported"));
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return "#document";
+    }
+    
+    public short getNodeType() {
+        return DOCUMENT_NODE;
+    }
+    
+    public Document getOwnerDocument() {
+        return null;
+    }
+    
+    public String getTextContent() {
+        return null;
+    }
+    
+    int getElementIndex() {
+        final Element e = getDocumentElement();
+        return (e != null) ? ((DeferredElement)e)._index : 0;
+    }
+    
+    // Document
+    
+    public DocumentType getDoctype() {
+        return null;
+    }
+    
+    public DOMImplementation getImplementation() {
+        return IMPLEMENTATION;
+    }
+    
+    public Element getDocumentElement() {
+        for (int n = _firstChild[0]; n != -1; n = _nextSibling[n]) {
+            if (_nodeType[n] == ELEMENT_NODE) {
+                return (Element)getNode(n);
+            }
+        }
+        return null;
+    }
+    
+    public Element createElement(String tagName) throws DOMException {
+        throw notSupported();
+    }
+    
+    public DocumentFragment createDocumentFragment() {
+        throw notSupported();
+    }
+    
+    public Text createTextNode(String data) {
+        throw notSupported();
+    }
+    
+    public Comment createComment(String data) {
+        throw notSupported();
+    }
+    
+    public CDATASection createCDATASection(String data) throws DOMException {
+        throw notSupported();
+    }
+    
+    public ProcessingInstruction createProcessingInstruction(String target, String data) throws DOMException {
+        throw notSupported();
+    }
+    
+    public Attr createAttribute(String name) throws DOMException {
+        throw notSupported();
+    }
+    
+    public EntityReference createEntityReference(String name) throws DOMException {
+        throw notSupported();
+    }
+    
+    public NodeList getElementsByTagName(String tagname) {
+        return getElementsByName(0, null, tagname, true);
+    }
+    
+    public Node importNode(Node importedNode, boolean deep) throws DOMException {
+        throw notSupported();
+    }
+    
+    public Element createElementNS(String namespaceURI, String qualifiedName) throws DOMException {
+        throw notSupported();
+    }
+    
+    public Attr createAttributeNS(String namespaceURI, String qualifiedName) throws DOMException {
+        throw notSupported();
+    }
+    
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+        return getElementsByName(0, namespaceURI, localName, false);
+    }
+    
+    public Element getElementById(String elementId) {
+        // No attribute is known to be of type ID
+        return null;
+    }
+    
+    public String getInputEncoding() {
+        return null;
+    }
+    
+    public String getXmlEncoding() {
+        return null;
+    }
+    
+    public boolean getXmlStandalone() {
+        return false;
+    }
+    
+    public void setXmlStandalone(boolean xmlStandalone) throws DOMException {
+        throw noModificationAllowed();
+    }
+    
+    public String getXmlVersion() {
+        return "1.0";
+    }
+    
+    public void setXmlVersion(String xmlVersion) throws DOMException {
+        throw noModificationAllowed();
+    }
+    
+    public boolean getStrictErrorChecking() {
+        return _strictErrorChecking;
+    }
+    
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+        _strictErrorChecking = strictErrorChecking;
+    }
+    
+    public String getDocumentURI() {
+        return _documentURI;
+    }
+    
+    public void setDocumentURI(String documentURI) {
+        _documentURI = documentURI;
+    }
+    
+    public Node adoptNode(Node source) throws DOMException {
+        throw noModificationAllowed();
+    }
+    
+    public DOMConfiguration getDomConfig() {
+        throw notSupported();
+    }
+    
+    public void normalizeDocument() {
+        // Adjacent character content is merged into one text node when
+        // the document is parsed
+    }
+    
+    public Node renameNode(Node n, String namespaceURI, String qualifiedName) throws DOMException {
+        throw noModificationAllowed();
+    }
+}
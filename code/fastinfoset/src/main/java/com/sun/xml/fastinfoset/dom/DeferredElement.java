@@ -0,0 +1,192 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import com.sun.xml.fastinfoset.QualifiedName;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * An element of a {@link DeferredDocument}.
+ */
+final class DeferredElement extends DeferredNode implements Element {
+    private NamedNodeMap _attributes;
+    
+    DeferredElement(DeferredDocument document, int index) {
+        super(document, index);
+    }
+    
+    private QualifiedName getName() {
+        return _document._names[_document._nodeName[_index]];
+    }
+    
+    /**
+     * Get the index of the record of an attribute of the element.
+     *
+     * @param namespaceURI the namespace name, or null to match the
+     *        qualified name.
+     * @param name the local name, or the qualified name.
+     * @return the index, or -1 if the element has no such attribute.
+     */
+    int getAttributeIndex(String namespaceURI, String name, boolean qualified) {
+        if (namespaceURI != null && namespaceURI.length() == 0) {
+            namespaceURI = null;
+        }
+        
+        final int end = _document._attributeStart[_index] + _document._attributeCount[_index];
+        for (int a = _document._attributeStart[_index]; a < end; a++) {
+            final QualifiedName q = _document._names[_document._attributeName[a]];
+            if (qualified ? name.equals(q.qName) : name.equals(q.localName) &&
+                    equals(namespaceURI, DeferredDocument.emptyToNull(q.namespaceName))) {
+                return a;
+            }
+        }
+        return -1;
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return getName().qName;
+    }
+    
+    public short getNodeType() {
+        return ELEMENT_NODE;
+    }
+    
+    public NamedNodeMap getAttributes() {
+        if (_attributes == null) {
+            _attributes = new DeferredAttributes(this);
+        }
+        return _attributes;
+    }
+    
+    public String getNamespaceURI() {
+        return _document.getNamespaceURI(_index);
+    }
+    
+    public String getPrefix() {
+        return _document.getPrefix(_index);
+    }
+    
+    public String getLocalName() {
+        return getName().localName;
+    }
+    
+    public boolean hasAttributes() {
+        return _document._attributeCount[_index] > 0;
+    }
+    
+    public String getTextContent() throws DOMException {
+        return _document.getTextContent(_index);
+    }
+    
+    int getElementIndex() {
+        return _index;
+    }
+    
+    // Element
+    
+    public String getTagName() {
+        return getName().qName;
+    }
+    
+    public String getAttribute(String name) {
+        final int a = getAttributeIndex(null, name, true);
+        return (a != -1) ? _document.getAttributeValue(a) : "";
+    }
+    
+    public void setAttribute(String name, String value) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void removeAttribute(String name) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Attr getAttributeNode(String name) {
+        final int a = getAttributeIndex(null, name, true);
+        return (a != -1) ? _document.getAttribute(a) : null;
+    }
+    
+    public Attr setAttributeNode(Attr newAttr) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Attr removeAttributeNode(Attr oldAttr) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public NodeList getElementsByTagName(String name) {
+        return _document.getElementsByName(_index, null, name, true);
+    }
+    
+    public String getAttributeNS(String namespaceURI, String localName) throws DOMException {
+        final int a = getAttributeIndex(namespaceURI, localName, false);
+        return (a != -1) ? _document.getAttributeValue(a) : "";
+    }
+    
+    public void setAttributeNS(String namespaceURI, String qualifiedName, String value) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void removeAttributeNS(String namespaceURI, String localName) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Attr getAttributeNodeNS(String namespaceURI, String localName) throws DOMException {
+        final int a = getAttributeIndex(namespaceURI, localName, false);
+        return (a != -1) ? _document.getAttribute(a) : null;
+    }
+    
+    public Attr setAttributeNodeNS(Attr newAttr) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) throws DOMException {
+        return _document.getElementsByName(_index, namespaceURI, localName, false);
+    }
+    
+    public boolean hasAttribute(String name) {
+        return getAttributeIndex(null, name, true) != -1;
+    }
+    
+    public boolean hasAttributeNS(String namespaceURI, String localName) throws DOMException {
+        return getAttributeIndex(namespaceURI, localName, false) != -1;
+    }
+    
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+    
+    public void setIdAttribute(String name, boolean isId) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public void setIdAttributeNode(Attr idAttr, boolean isId) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * A node of a {@link DeferredDocument}, created from the record of the
+ * node when first accessed.
+ * <p>
+ * The methods are implemented for nodes that are children of a document
+ * or an element. The relations of a node are those of its record, and the
+ * nodes they refer to are created as they are accessed.
+ */
+abstract class DeferredNode implements Node {
+    DeferredDocument _document;
+    
+    /**
+     * The index of the record of the node.
+     */
+    final int _index;
+    
+    private NodeList _childNodes;
+    
+    private Map _userData;
+    
+    DeferredNode(DeferredDocument document, int index) {
+        _document = document;
+        _index = index;
+    }
+    
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+    
+    public void setNodeValue(String nodeValue) throws DOMException {
+        // Setting a value that is defined to be null has no effect
+    }
+    
+    public Node getParentNode() {
+        return _document.getNode(_document._parent[_index]);
+    }
+    
+    public NodeList getChildNodes() {
+        if (_childNodes == null) {
+            _childNodes = _document.getChildNodes(_index);
+        }
+        return _childNodes;
+    }
+    
+    public Node getFirstChild() {
+        return _document.getNode(_document._firstChild[_index]);
+    }
+    
+    public Node getLastChild() {
+        return _document.getNode(_document._lastChild[_index]);
+    }
+    
+    public Node getPreviousSibling() {
+        return _document.getNode(_document._previousSibling[_index]);
+    }
+    
+    public Node getNextSibling() {
+        return _document.getNode(_document._nextSibling[_index]);
+    }
+    
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+    
+    public Document getOwnerDocument() {
+        return _document;
+    }
+    
+    public Node insertBefore(Node newChild, Node refChild) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node replaceChild(Node newChild, Node oldChild) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node removeChild(Node oldChild) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public Node appendChild(Node newChild) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public boolean hasChildNodes() {
+        return _document._firstChild[_index] != -1;
+    }
+    
+    public Node cloneNode(boolean deep) {
+        throw DeferredDocument.notSupported();
+    }
+    
+    public void normalize() {
+        // Adjacent character content is merged into one text node when
+        // the document is parsed
+    }
+    
+    public boolean isSupported(String feature, String version) {
+        return DeferredDocument.IMPLEMENTATION.hasFeature(feature, version);
+    }
+    
+    public String getNamespaceURI() {
+        return null;
+    }
+    
+    public String getPrefix() {
+        return null;
+    }
+    
+    public void setPrefix(String prefix) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public String getLocalName() {
+        return null;
+    }
+    
+    public boolean hasAttributes() {
+        return false;
+    }
+    
+    public String getBaseURI() {
+        return null;
+    }
+    
+    public short compareDocumentPosition(Node other) throws DOMException {
+        if (other == this) {
+            return 0;
+        }
+        
+        if (!(other instanceof DeferredNode) || ((DeferredNode)other)._document != _document) {
+            return (short)(DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC |
+                    ((System.identityHashCode(this) < System.identityHashCode(other)) 
+                    ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+        }
+        
+        if (other instanceof DeferredAttrText) {
+            final Node attr = other.getParentNode();
+            return (attr == this) 
+                    ? DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING 
+                    : compareDocumentPosition(attr);
+        }
+        
+        // The records of the nodes are in document order, and an attribute
+        // is ordered after its owner element and before its children
+        final DeferredNode o = (DeferredNode)other;
+        final int node = getOwnerIndex();
+        final int otherNode = o.getOwnerIndex();
+        if (node == otherNode) {
+            if (!(this instanceof DeferredAttr)) {
+                return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+            } else if (!(o instanceof DeferredAttr)) {
+                return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            } else {
+                return (short)(DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC |
+                        ((_index < o._index) ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+            }
+        }
+        
+        if (!(this instanceof DeferredAttr) && _document.isAncestor(node, otherNode)) {
+            return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+        } else if (!(o instanceof DeferredAttr) && _document.isAncestor(otherNode, node)) {
+            return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+        } else {
+            return (node < otherNode) ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING;
+        }
+    }
+    
+    public String getTextContent() throws DOMException {
+        return getNodeValue();
+    }
+    
+    public void setTextContent(String textContent) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public boolean isSameNode(Node other) {
+        return this == other;
+    }
+    
+    public String lookupPrefix(String namespaceURI) {
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            return null;
+        }
+        
+        for (int e = getElementIndex(); e > 0; e = _document._parent[e]) {
+            final String prefix = _document.getPrefix(e);
+            if (prefix != null && namespaceURI.equals(_document.getNamespaceURI(e)) &&
+                    namespaceURI.equals(lookupNamespaceURI(prefix))) {
+                return prefix;
+            }
+            
+            final int end = _document._attributeStart[e] + _document._attributeCount[e];
+            for (int a = _document._attributeStart[e]; a < end; a++) {
+                final String localName = _document.getNamespaceDeclarationPrefix(a);
+                if (localName != null && namespaceURI.equals(_document.getAttributeValue(a)) &&
+                        namespaceURI.equals(lookupNamespaceURI(localName))) {
+                    return localName;
+                }
+            }
+        }
+        return null;
+    }
+    
+    public boolean isDefaultNamespace(String namespaceURI) {
+        final String defaultNamespaceURI = lookupNamespaceURI(null);
+        return (defaultNamespaceURI == null) 
+                ? namespaceURI == null || namespaceURI.length() == 0
+                : defaultNamespaceURI.equals(namespaceURI);
+    }
+    
+    public String lookupNamespaceURI(String prefix) {
+        if (prefix != null && prefix.length() == 0) {
+            prefix = null;
+        }
+        
+        for (int e = getElementIndex(); e > 0; e = _document._parent[e]) {
+            final String namespaceURI = _document.getNamespaceURI(e);
+            if (namespaceURI != null && equals(prefix, _document.getPrefix(e))) {
+                return namespaceURI;
+            }
+            
+            final int end = _document._attributeStart[e] + _document._attributeCount[e];
+            for (int a = _document._attributeStart[e]; a < end; a++) {
+                if (_document.isNamespaceDeclaration(a) && 
+                        equals(prefix, _document.getNamespaceDeclarationPrefix(a))) {
+                    final String value = _document.getAttributeValue(a);
+                    return (value.length() > 0) ? value : null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    public boolean isEqualNode(Node arg) {
+        if (arg == this) {
+            return true;
+        }
+        if (arg == null || arg.getNodeType() != getNodeType() ||
+                !equals(getNodeName(), arg.getNodeName()) ||
+                !equals(getLocalName(), arg.getLocalName()) ||
+                !equals(getNamespaceURI(), arg.getNamespaceURI()) ||
+                !equals(getPrefix(), arg.getPrefix()) ||
+                !equals(getNodeValue(), arg.getNodeValue())) {
+            return false;
+        }
+        
+        final NamedNodeMap attributes = getAttributes();
+        final NamedNodeMap argAttributes = arg.getAttributes();
+        if (attributes != null || argAttributes != null) {
+            if (attributes == null || argAttributes == null || 
+                    attributes.getLength() != argAttributes.getLength()) {
+                return false;
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node a = attributes.item(i);
+                final Node b = (a.getLocalName() == null) 
+                        ? argAttributes.getNamedItem(a.getNodeName()) 
+                        : argAttributes.getNamedItemNS(a.getNamespaceURI(), a.getLocalName());
+                if (b == null || !a.isEqualNode(b)) {
+                    return false;
+                }
+            }
+        }
+        
+        Node child = getFirstChild();
+        Node argChild = arg.getFirstChild();
+        while (child != null && argChild != null) {
+            if (!child.isEqualNode(argChild)) {
+                return false;
+            }
+            child = child.getNextSibling();
+            argChild = argChild.getNextSibling();
+        }
+        return child == null && argChild == null;
+    }
+    
+    public Object getFeature(String feature, String version) {
+        return isSupported(feature, version) ? this : null;
+    }
+    
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        if (_userData == null) {
+            if (data == null) {
+                return null;
+            }
+            _userData = new HashMap();
+        }
+        return (data != null) ? _userData.put(key, data) : _userData.remove(key);
+    }
+    
+    public Object getUserData(String key) {
+        return (_userData != null) ? _userData.get(key) : null;
+    }
+    
+    /**
+     * Get the index of the record of the node, or of the owner element
+     * of an attribute.
+     */
+    int getOwnerIndex() {
+        return _index;
+    }
+    
+    /**
+     * Get the index of the record of the element from which namespace
+     * prefixes are looked up, or 0 if there is no such element.
+     */
+    int getElementIndex() {
+        int e = _document._parent[_index];
+        while (e > 0 && _document._nodeType[e] != ELEMENT_NODE) {
+            e = _document._parent[e];
+        }
+        return Math.max(e, 0);
+    }
+    
+    static boolean equals(String x, String y) {
+        return (x == null) ? y == null : x.equals(y);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * A processing instruction of a {@link DeferredDocument}.
+ */
+final class DeferredProcessingInstruction extends DeferredNode implements ProcessingInstruction {
+    DeferredProcessingInstruction(DeferredDocument document, int index) {
+        super(document, index);
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return getTarget();
+    }
+    
+    public String getNodeValue() throws DOMException {
+        return _document.getNodeValue(_index);
+    }
+    
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public short getNodeType() {
+        return PROCESSING_INSTRUCTION_NODE;
+    }
+    
+    // ProcessingInstruction
+    
+    public String getTarget() {
+        return _document._names[_document._nodeName[_index]].localName;
+    }
+    
+    public String getData() {
+        return _document.getNodeValue(_index);
+    }
+    
+    public void setData(String data) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Text;
+
+/**
+ * A text of a {@link DeferredDocument}, holding all the adjacent character
+ * content.
+ */
+final class DeferredText extends DeferredCharacterData implements Text {
+    DeferredText(DeferredDocument document, int index) {
+        super(document, index);
+    }
+    
+    // Node
+    
+    public String getNodeName() {
+        return "#text";
+    }
+    
+    public short getNodeType() {
+        return TEXT_NODE;
+    }
+    
+    // Text
+    
+    public Text splitText(int offset) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+    
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+    
+    public String getWholeText() {
+        return getData();
+    }
+    
+    public Text replaceWholeText(String content) throws DOMException {
+        throw DeferredDocument.noModificationAllowed();
+    }
+}
@@ -21,6 +21,7 @@ import com.sun.xml.fastinfoset.EncodingConstants;
 import com.sun.xml.fastinfoset.QualifiedName;
 import com.sun.xml.fastinfoset.algorithm.BuiltInEncodingAlgorithmFactory;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import org.jvnet.fastinfoset.EncodingAlgorithm;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
@@ -32,6 +33,12 @@ import com.sun.xml.fastinfoset.CommonResourceBundle;
 
 public class AttributesHolder implements EncodingAlgorithmAttributes {
     private static final int DEFAULT_CAPACITY = 8;
+    
+    /**
+     * The number of attributes above which look ups by name use a hash
+     * table of the local names of the attributes
+     */
+    private static final int HASH_THRESHOLD = 8;
 
     private Map _registeredEncodingAlgorithms;
     
@@ -44,6 +51,13 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
     private int[] _algorithmIds;
     private Object[] _algorithmData;
     
+    /**
+     * Open addressed hash table of the attributes, holding the index of
+     * an attribute plus one, built on the first look up by name
+     */
+    private int[] _hashTable;
+    private int _hashedAttributeCount;
+    
     public AttributesHolder() {
         _names = new QualifiedName[DEFAULT_CAPACITY];
         _values = new String[DEFAULT_CAPACITY];
@@ -105,18 +119,26 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
     }
 
     public final int getIndex(String qName) {
-        int i = qName.indexOf(':');
-        String prefix = "";
-        String localName = qName;
-        if (i >= 0) {
-            prefix = qName.substring(0, i);
-            localName = qName.substring(i + 1);
+        if (_attributeCount > HASH_THRESHOLD) {
+            // Hash the local name without splitting the qualified name
+            int hash = 0;
+            for (int i = qName.indexOf(':') + 1; i < qName.length(); i++) {
+                hash = 31 * hash + qName.charAt(i);
+            }
+            
+            final int[] hashTable = getHashTable();
+            final int mask = hashTable.length - 1;
+            for (int i = hash & mask; hashTable[i] != 0; i = (i + 1) & mask) {
+                final int index = hashTable[i] - 1;
+                if (qName.equals(_names[index].getQNameString())) {
+                    return index;
+                }
+            }
+            return -1;
         }
         
-        for (i = 0; i < _attributeCount; i++) {
-            QualifiedName name = _names[i];
-            if (localName.equals(name.localName) &&
-                prefix.equals(name.prefix)) {
+        for (int i = 0; i < _attributeCount; i++) {
+            if (qName.equals(_names[i].getQNameString())) {
                 return i;
             }
         }
@@ -142,6 +164,20 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
     }
 
     public final int getIndex(String uri, String localName) {
+        if (_attributeCount > HASH_THRESHOLD) {
+            final int[] hashTable = getHashTable();
+            final int mask = hashTable.length - 1;
+            for (int i = localName.hashCode() & mask; hashTable[i] != 0; i = (i + 1) & mask) {
+                final int index = hashTable[i] - 1;
+                final QualifiedName name = _names[index];
+                if (localName.equals(name.localName) &&
+                    uri.equals(name.namespaceName)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        
         for (int i = 0; i < _attributeCount; i++) {
             QualifiedName name = _names[i];
             if (localName.equals(name.localName) &&
@@ -152,6 +188,65 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
         return -1;
     }
 
+    /**
+     * Get the index of the first attribute with a local name, in any
+     * namespace.
+     *
+     * @param localName the local name of the attribute.
+     * @return the index of the attribute, or -1 if there is no attribute.
+     */
+    public final int getIndexOfLocalName(String localName) {
+        if (_attributeCount > HASH_THRESHOLD) {
+            final int[] hashTable = getHashTable();
+            final int mask = hashTable.length - 1;
+            for (int i = localName.hashCode() & mask; hashTable[i] != 0; i = (i + 1) & mask) {
+                final int index = hashTable[i] - 1;
+                if (localName.equals(_names[index].localName)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        
+        for (int i = 0; i < _attributeCount; i++) {
+            if (localName.equals(_names[i].localName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the index of an attribute from its qualified name.
+     * <p>
+     * Qualified names held by the vocabulary tables of a parser are
+     * compared by identity before their namespace names and local names
+     * are compared.
+     *
+     * @param qualifiedName the qualified name of the attribute.
+     * @return the index of the attribute, or -1 if there is no attribute.
+     */
+    public final int getIndex(QualifiedName qualifiedName) {
+        if (_attributeCount > HASH_THRESHOLD) {
+            final int[] hashTable = getHashTable();
+            final int mask = hashTable.length - 1;
+            for (int i = qualifiedName.localName.hashCode() & mask; hashTable[i] != 0; i = (i + 1) & mask) {
+                final int index = hashTable[i] - 1;
+                if (isSameName(qualifiedName, _names[index])) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        
+        for (int i = 0; i < _attributeCount; i++) {
+            if (isSameName(qualifiedName, _names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public final String getType(String uri, String localName) {
         int index = getIndex(uri, localName);
         if (index >= 0) {
@@ -176,6 +271,7 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
             _algorithmData[i] = null;
         }
         _attributeCount = 0;
+        _hashedAttributeCount = 0;
     }
 
     // EncodingAlgorithmAttributes
@@ -230,6 +326,43 @@ public class AttributesHolder implements EncodingAlgorithmAttributes {
         return _names[index].prefix;
     }
         
+    private static boolean isSameName(QualifiedName a, QualifiedName b) {
+        return a == b ||
+            (a.localName.equals(b.localName) && a.namespaceName.equals(b.namespaceName));
+    }
+    
+    /**
+     * Get the hash table of the attributes, building the table if 
+     * attributes have been added since it was last built.
+     */
+    private int[] getHashTable() {
+        if (_hashedAttributeCount == _attributeCount) {
+            return _hashTable;
+        }
+        
+        // Keep the table at most half full
+        int size = 32;
+        while (size < _attributeCount * 2) {
+            size <<= 1;
+        }
+        if (_hashTable == null || _hashTable.length < size) {
+            _hashTable = new int[size];
+        } else {
+            Arrays.fill(_hashTable, 0);
+        }
+        
+        final int mask = _hashTable.length - 1;
+        for (int index = 0; index < _attributeCount; index++) {
+            int i = _names[index].localName.hashCode() & mask;
+            while (_hashTable[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            _hashTable[i] = index + 1;
+        }
+        _hashedAttributeCount = _attributeCount;
+        return _hashTable;
+    }
+    
     private final void resize() {
         final int newLength = _attributeCount * 3 / 2 + 1;
 
@@ -31,6 +31,7 @@ import com.sun.xml.fastinfoset.util.CharArrayString;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import org.jvnet.fastinfoset.EncodingAlgorithm;
 import org.jvnet.fastinfoset.EncodingAlgorithmException;
@@ -153,6 +154,20 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
     
     protected boolean _clearAttributes = false;
     
+    /**
+     * Stack of the qualified names of the elements being processed
+     */
+    protected QualifiedName[] _elementStack = new QualifiedName[32];
+    
+    /**
+     * Stack of the start index into the namespace prefixes of the namespace
+     * attributes declared on the elements being processed, or -1 if no
+     * namespace attributes are declared
+     */
+    protected int[] _namespacePrefixesStartStack = new int[32];
+    
+    protected int _elementStackCount;
+    
     /** Creates a new instance of DocumetParser2 */
     public SAXDocumentParser() {
         DefaultHandler handler = new DefaultHandler();
@@ -170,6 +185,7 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
         _clearAttributes = false;
         _attributes.clear();
         _namespacePrefixesIndex = 0;
+        _elementStackCount = 0;
         
         if (_v != null) {
             _v.prefix.clearCompletely();
@@ -350,6 +366,17 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
         parse();
     }
     
+    /**
+     * Parse a fast infoset document from a {@link ByteBuffer}.
+     *
+     * @param b the ByteBuffer containing the fast infoset document.
+     * @see Decoder#setInput(ByteBuffer)
+     */
+    public final void parse(ByteBuffer b) throws IOException, FastInfosetException, SAXException {
+        setInput(b);
+        parse();
+    }
+    
     public void setLexicalHandler(LexicalHandler handler) {
         _lexicalHandler = handler;
     }
@@ -386,7 +413,7 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
     
     
     public final void parse() throws FastInfosetException, IOException {
-        if (_octetBuffer.length < _bufferSize) {
+        if (_octetBuffer.length < _bufferSize && !isByteBufferInput()) {
             _octetBuffer = new byte[_bufferSize];
         }
         
@@ -690,9 +717,14 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
                     _b = read();
                     _identifier |= (_b & 0xFC) >> 2;
                     
-                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
+                    decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
                     
-                    processCIIEncodingAlgorithm(addToTable);
+                    if (!addToTable && isStreamedCIIEncodingAlgorithm()) {
+                        processStreamedCIIEncodingAlgorithm();
+                    } else {
+                        decodeOctets();
+                        processCIIEncodingAlgorithm(addToTable);
+                    }
                     break;
                 }
                 case DecoderStateTables.CII_INDEX_SMALL:
@@ -865,6 +897,18 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
     }
     
     protected final void processEII(QualifiedName name, boolean hasAttributes) throws FastInfosetException, IOException {
+        startEII(name, hasAttributes, -1);
+        processEIIContent();
+    }
+    
+    /**
+     * Report the start of an element and push it onto the element stack.
+     *
+     * @param namespacePrefixesStart the start index into the namespace
+     *        prefixes of the namespace attributes of the element, or -1
+     *        if the element has no namespace attributes.
+     */
+    private void startEII(QualifiedName name, boolean hasAttributes, int namespacePrefixesStart) throws FastInfosetException, IOException {
         if (_prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
             throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.qNameOfEIINotInScope"));
         }
@@ -885,20 +929,81 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
             _clearAttributes = false;
         }
         
-        while(!_terminate) {
+        // Push element holder onto the stack
+        if (_elementStackCount == _elementStack.length) {
+            final QualifiedName[] elementStack = new QualifiedName[_elementStackCount * 2];
+            System.arraycopy(_elementStack, 0, elementStack, 0, _elementStackCount);
+            _elementStack = elementStack;
+            
+            final int[] namespacePrefixesStartStack = new int[_elementStackCount * 2];
+            System.arraycopy(_namespacePrefixesStartStack, 0, namespacePrefixesStartStack, 0, _elementStackCount);
+            _namespacePrefixesStartStack = namespacePrefixesStartStack;
+        }
+        _elementStack[_elementStackCount] = name;
+        _namespacePrefixesStartStack[_elementStackCount++] = namespacePrefixesStart;
+    }
+    
+    /**
+     * Report the end of the element on the top of the element stack and
+     * pop it from the stack.
+     */
+    private void endEII() throws FastInfosetException, IOException {
+        _terminate = _doubleTerminate;
+        _doubleTerminate = false;
+        
+        final QualifiedName name = _elementStack[--_elementStackCount];
+        try {
+            _contentHandler.endElement(name.namespaceName, name.localName, name.qName);
+        } catch (SAXException e) {
+            throw new FastInfosetException("processEII", e);
+        }
+        
+        final int start = _namespacePrefixesStartStack[_elementStackCount];
+        if (start != -1) {
+            try {
+                for (int i = _namespacePrefixesIndex - 1; i >= start; i--) {
+                    final int prefixIndex = _namespacePrefixes[i];
+                    _prefixTable.popScope(prefixIndex);
+                    final String prefix = (prefixIndex > 0) ? _prefixTable.get(prefixIndex - 1) :
+                        (prefixIndex == -1) ? "" : EncodingConstants.XML_NAMESPACE_PREFIX;
+                    _contentHandler.endPrefixMapping(prefix);
+                }
+                _namespacePrefixesIndex = start;
+            } catch (SAXException e) {
+                throw new IOException("processStartNamespaceAII");
+            }
+        }
+    }
+    
+    /**
+     * Process the children of the element on the top of the element stack,
+     * up to and including the end of that element.
+     * <p>
+     * Descendant elements are pushed onto and popped from the element stack
+     * rather than processed recursively, so the depth of the document does
+     * not affect the depth of the Java stack.
+     */
+    private void processEIIContent() throws FastInfosetException, IOException {
+        final int depth = _elementStackCount;
+        while (_elementStackCount >= depth) {
+            if (_terminate) {
+                endEII();
+                continue;
+            }
+            
             _b = read();
             switch(DecoderStateTables.EII(_b)) {
                 case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[_b], false);
+                    startEII(_elementNameTable._array[_b], false, -1);
                     break;
                 case DecoderStateTables.EII_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true);
+                    startEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true, -1);
                     break;
                 case DecoderStateTables.EII_INDEX_MEDIUM:
-                    processEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 case DecoderStateTables.EII_INDEX_LARGE:
-                    processEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 case DecoderStateTables.EII_LITERAL:
                 {
@@ -906,11 +1011,11 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
                             _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
                             _elementNameTable.getNext());
                     _elementNameTable.add(qn);
-                    processEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                    startEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
                     break;
                 }
                 case DecoderStateTables.EII_NAMESPACES:
-                    processEIIWithNamespaces();
+                    startEIIWithNamespaces();
                     break;
                 case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
                     _octetBufferLength = (_b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
@@ -1005,9 +1110,14 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
                     _b = read();
                     _identifier |= (_b & 0xFC) >> 2;
                     
-                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
+                    decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
                     
-                    processCIIEncodingAlgorithm(addToTable);
+                    if (!addToTable && isStreamedCIIEncodingAlgorithm()) {
+                        processStreamedCIIEncodingAlgorithm();
+                    } else {
+                        decodeOctets();
+                        processCIIEncodingAlgorithm(addToTable);
+                    }
                     break;
                 }
                 case DecoderStateTables.CII_INDEX_SMALL:
@@ -1105,15 +1215,6 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
                     throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
             }
         }
-        
-        _terminate = _doubleTerminate;
-        _doubleTerminate = false;
-        
-        try {
-            _contentHandler.endElement(name.namespaceName, name.localName, name.qName);
-        } catch (SAXException e) {
-            throw new FastInfosetException("processEII", e);
-        }
     }
     
     private final void processUtf8CharacterString() throws FastInfosetException, IOException {
@@ -1127,6 +1228,15 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
             } catch (SAXException e) {
                 throw new FastInfosetException("processCII", e);
             }
+        } else if (isStreamedContent()) {
+            startStreamedContent();
+            try {
+                while (decodeUtf8StreamedContentIntoCharBuffer()) {
+                    _contentHandler.characters(_charBuffer, 0, _charBufferLength);
+                }
+            } catch (SAXException e) {
+                throw new FastInfosetException("processCII", e);
+            }
         } else {
             decodeUtf8StringAsCharBuffer();
             try {
@@ -1138,6 +1248,15 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
     }
     
     protected final void processEIIWithNamespaces() throws FastInfosetException, IOException {
+        startEIIWithNamespaces();
+        processEIIContent();
+    }
+    
+    /**
+     * Report the namespace attributes and the start of an element, and push
+     * the element onto the element stack.
+     */
+    private void startEIIWithNamespaces() throws FastInfosetException, IOException {
         final boolean hasAttributes = (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0;
         
         _clearAttributes = (_namespacePrefixesFeature) ? true : false;
@@ -1217,18 +1336,17 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
         if (b != EncodingConstants.TERMINATOR) {
             throw new IOException(CommonResourceBundle.getInstance().getString("message.EIInamespaceNameNotTerminatedCorrectly"));
         }
-        final int end = _namespacePrefixesIndex;
         
         _b = read();
         switch(DecoderStateTables.EII(_b)) {
             case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                processEII(_elementNameTable._array[_b], hasAttributes);
+                startEII(_elementNameTable._array[_b], hasAttributes, start);
                 break;
             case DecoderStateTables.EII_INDEX_MEDIUM:
-                processEII(decodeEIIIndexMedium(), hasAttributes);
+                startEII(decodeEIIIndexMedium(), hasAttributes, start);
                 break;
             case DecoderStateTables.EII_INDEX_LARGE:
-                processEII(decodeEIIIndexLarge(), hasAttributes);
+                startEII(decodeEIIIndexLarge(), hasAttributes, start);
                 break;
             case DecoderStateTables.EII_LITERAL:
             {
@@ -1236,25 +1354,12 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
                         _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
                         _elementNameTable.getNext());
                 _elementNameTable.add(qn);
-                processEII(qn, hasAttributes);
+                startEII(qn, hasAttributes, start);
                 break;
             }
             default:
                 throw new IOException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEIIAfterAIIs"));
         }
-        
-        try {
-            for (int i = end - 1; i >= start; i--) {
-                final int prefixIndex = _namespacePrefixes[i];
-                _prefixTable.popScope(prefixIndex);
-                prefix = (prefixIndex > 0) ? _prefixTable.get(prefixIndex - 1) :
-                    (prefixIndex == -1) ? "" : EncodingConstants.XML_NAMESPACE_PREFIX;
-                _contentHandler.endPrefixMapping(prefix);
-            }
-            _namespacePrefixesIndex = start;
-        } catch (SAXException e) {
-            throw new IOException("processStartNamespaceAII");
-        }
     }
     
     protected final void processAIIs() throws FastInfosetException, IOException {
@@ -1515,6 +1620,51 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
         }
     }
     
+    /**
+     * @return true if the octets of the encoding algorithm, which have not
+     *         been read, can be reported in chunks.
+     */
+    private boolean isStreamedCIIEncodingAlgorithm() {
+        if (!isStreamedContent()) {
+            return false;
+        } else if (_identifier == EncodingAlgorithmIndexes.HEXADECIMAL || 
+                _identifier == EncodingAlgorithmIndexes.BASE64) {
+            return _primitiveHandler != null;
+        } else if (_identifier >= EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START && _algorithmHandler != null) {
+            final String URI = _v.encodingAlgorithm.get(_identifier - EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START);
+            return URI != null && _registeredEncodingAlgorithms.get(URI) == null;
+        } else {
+            return false;
+        }
+    }
+    
+    /**
+     * Report the octets of the encoding algorithm in chunks, as bytes to
+     * the primitive type content handler, or as octets of an application 
+     * defined encoding algorithm to the encoding algorithm content handler.
+     */
+    private void processStreamedCIIEncodingAlgorithm() throws FastInfosetException, IOException {
+        final String URI = (_identifier >= EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START)
+                ? _v.encodingAlgorithm.get(_identifier - EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START)
+                : null;
+        
+        startStreamedContent();
+        try {
+            while (_contentOctetsRemaining > 0) {
+                final int length = readStreamedContentOctets();
+                if (URI == null) {
+                    _primitiveHandler.bytes(_octetBuffer, _octetBufferOffset, length);
+                } else {
+                    _algorithmHandler.octets(URI, _identifier, _octetBuffer, _octetBufferOffset, length);
+                }
+                _octetBufferOffset += length;
+                _contentOctetsRemaining -= length;
+            }
+        } catch (SAXException e) {
+            throw new FastInfosetException(e);
+        }
+    }
+    
     protected final void processCIIEncodingAlgorithm(boolean addToTable) throws FastInfosetException, IOException {
         if (_identifier < EncodingConstants.ENCODING_ALGORITHM_BUILTIN_END) {
             if (_primitiveHandler != null) {
@@ -1762,7 +1912,7 @@ public class SAXDocumentParser extends Decoder implements FastInfosetReader {
         }
 
         if (addToTable) {
-            _attributeValueTable.add(_attributes.getValue(_attributes.getIndex(name.qName)));
+            _attributeValueTable.add(_attributes.getValue(_attributes.getLength() - 1));
         }
     }
     
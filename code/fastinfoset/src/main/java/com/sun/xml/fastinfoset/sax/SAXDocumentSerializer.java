@@ -17,6 +17,7 @@
  */
 package com.sun.xml.fastinfoset.sax;
 
+import com.sun.xml.fastinfoset.EncodedFragment;
 import com.sun.xml.fastinfoset.Encoder;
 import com.sun.xml.fastinfoset.EncodingConstants;
 import com.sun.xml.fastinfoset.QualifiedName;
@@ -52,6 +53,13 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
 
     protected boolean _charactersAsCDATA = false;
     
+    /**
+     * The prefix and namespace name pairs of the prefix mappings in scope.
+     */
+    protected String[] _prefixMappings = new String[16];
+    
+    protected int _prefixMappingsIndex;
+    
     protected SAXDocumentSerializer(boolean v) {
         super(v);
     }
@@ -65,6 +73,7 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
         
         _elementHasNamespaces = false;
         _charactersAsCDATA = false;
+        _prefixMappingsIndex = 0;
     }
     
     // ContentHandler
@@ -101,11 +110,29 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
             }
 
             encodeNamespaceAttribute(prefix, uri);
+            
+            if (_prefixMappingsIndex == _prefixMappings.length) {
+                final String[] prefixMappings = new String[_prefixMappingsIndex * 2];
+                System.arraycopy(_prefixMappings, 0, prefixMappings, 0, _prefixMappingsIndex);
+                _prefixMappings = prefixMappings;
+            }
+            _prefixMappings[_prefixMappingsIndex++] = prefix;
+            _prefixMappings[_prefixMappingsIndex++] = uri;
         } catch (IOException e) {
             throw new SAXException("startElement", e);
         }
     }
 
+    public void endPrefixMapping(String prefix) throws SAXException {
+        for (int i = _prefixMappingsIndex - 2; i >= 0; i -= 2) {
+            if (prefix.equals(_prefixMappings[i])) {
+                System.arraycopy(_prefixMappings, i + 2, _prefixMappings, i, _prefixMappingsIndex - i - 2);
+                _prefixMappingsIndex -= 2;
+                return;
+            }
+        }
+    }
+
     public final void startElement(String namespaceURI, String localName, String qName, Attributes atts) throws SAXException {
         // TODO consider using buffer for encoding of attributes, then pre-counting is not necessary
         final int attributeCount = (atts != null && atts.getLength() > 0) 
@@ -116,7 +143,7 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
 
                 if (attributeCount > 0) {
                     // Flag the marked byte with attributes
-                    _octetBuffer[_markIndex] |= EncodingConstants.ELEMENT_ATTRIBUTE_FLAG;
+                    setMarkedOctetBits(EncodingConstants.ELEMENT_ATTRIBUTE_FLAG);
                 }
                 resetMark();
 
@@ -132,6 +159,7 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
                 }
             }
 
+            captureElementName(namespaceURI, getPrefixFromQualifiedName(qName));
             encodeElement(namespaceURI, qName, localName);
 
             if (attributeCount > 0) {
@@ -250,6 +278,38 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
     }
 
     
+    // EncodedFragment
+    
+    /**
+     * Encode an {@link EncodedFragment} as the next child items of the 
+     * current element.
+     * <p>
+     * The fragment must have been captured using the same external 
+     * vocabulary, and the prefixes it uses but does not declare must be
+     * bound, using {@link #startPrefixMapping}, to the same namespace names.
+     *
+     * @param fragment the encoded fragment.
+     */
+    public final void encodedFragment(EncodedFragment fragment) throws SAXException {
+        try {
+            encodeFragment(fragment);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        } catch (FastInfosetException e) {
+            throw new SAXException(e);
+        }
+    }
+    
+    protected String getNamespaceURIInScope(String prefix) {
+        for (int i = _prefixMappingsIndex - 2; i >= 0; i -= 2) {
+            if (prefix.equals(_prefixMappings[i])) {
+                return _prefixMappings[i + 1];
+            }
+        }
+        return null;
+    }
+    
+    
     // EncodingAlgorithmContentHandler
     
     public final void octets(String URI, int id, byte[] b, int start, int length)  throws SAXException {
@@ -514,6 +574,7 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
             String alphabet;
             for (int i = 0; i < eAtts.getLength(); i++) {
                 if (encodeAttribute(atts.getURI(i), atts.getQName(i), atts.getLocalName(i))) {
+                    captureAttributeName(atts.getURI(i), getPrefixFromQualifiedName(atts.getQName(i)));
                     data = eAtts.getAlgorithmData(i);
                     // If data is null then there is no algorithm data
                     if (data == null) {
@@ -542,6 +603,7 @@ public class SAXDocumentSerializer extends Encoder implements FastInfosetWriter
         } else {
             for (int i = 0; i < atts.getLength(); i++) {
                 if (encodeAttribute(atts.getURI(i), atts.getQName(i), atts.getLocalName(i))) {
+                    captureAttributeName(atts.getURI(i), getPrefixFromQualifiedName(atts.getQName(i)));
                     value = atts.getValue(i);
                     addToTable = isAttributeValueLengthMatchesLimit(value.length());
                     encodeNonIdentifyingStringOnFirstBit(value, _v.attributeValue, addToTable, false);
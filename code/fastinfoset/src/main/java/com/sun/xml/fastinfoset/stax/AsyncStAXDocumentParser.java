@@ -0,0 +1,183 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.stax;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.DecoderStateTables;
+import com.sun.xml.fastinfoset.InformationItemScanner;
+import java.nio.ByteBuffer;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * A non-blocking StAX parser that is fed with the octets of a fast infoset
+ * document as they arrive.
+ * <p>
+ * Octets are passed to the parser using {@link #feedInput(byte[], int, int)}
+ * or {@link #feedInput(ByteBuffer)}. If the octets of the next event have not
+ * all been fed then {@link #next()} returns {@link #EVENT_INCOMPLETE} instead
+ * of blocking, and the state of the parser is left unchanged so that
+ * {@link #next()} may be called again once more octets have been fed. The
+ * end of the document must be signalled with {@link #endOfInput()}.
+ * <p>
+ * Only the octets of events that have not yet been reported are retained,
+ * so the memory used is bounded by the size of the largest event plus the
+ * size of the fed input that has not been parsed.
+ * <p>
+ * Methods that read more than one event, such as
+ * {@link #getElementText()} and {@link #nextTag()}, or that look ahead, such
+ * as {@link #peekNext()}, require the octets of those events to have been fed.
+ */
+public class AsyncStAXDocumentParser extends StAXDocumentParser {
+    /**
+     * Returned by {@link #next()} when more input is required to report the
+     * next event.
+     */
+    public static final int EVENT_INCOMPLETE = 257;
+
+    private final InformationItemScanner _scanner = new InformationItemScanner();
+
+    private boolean _endOfInput;
+
+    public AsyncStAXDocumentParser() {
+        resetInput();
+    }
+
+    /**
+     * Discard any fed octets and prepare for the parsing of a new document.
+     */
+    public void resetInput() {
+        setInput(ByteBuffer.wrap(_octetBuffer, 0, 0));
+        _endOfInput = false;
+    }
+
+    /**
+     * Feed octets of the document to the parser.
+     *
+     * @param b the array containing the octets.
+     * @param offset the offset of the first octet.
+     * @param length the number of octets.
+     */
+    public void feedInput(byte[] b, int offset, int length) {
+        ensureInputCapacity(length);
+        System.arraycopy(b, offset, _octetBuffer, _octetBufferEnd, length);
+        _octetBufferEnd += length;
+    }
+
+    /**
+     * Feed the remaining octets of a ByteBuffer to the parser.
+     * <p>
+     * The position of the buffer is advanced to its limit.
+     *
+     * @param b the buffer containing the octets.
+     */
+    public void feedInput(ByteBuffer b) {
+        final int length = b.remaining();
+        ensureInputCapacity(length);
+        b.get(_octetBuffer, _octetBufferEnd, length);
+        _octetBufferEnd += length;
+    }
+
+    /**
+     * Signal that all octets of the document have been fed.
+     * <p>
+     * Subsequent calls to {@link #next()} no longer return
+     * {@link #EVENT_INCOMPLETE} and report an error if the document is
+     * truncated.
+     */
+    public void endOfInput() {
+        _endOfInput = true;
+    }
+
+    /**
+     * @return true if {@link #next()} has returned {@link #EVENT_INCOMPLETE}
+     *         and no more octets have been fed since.
+     */
+    public boolean needsInput() {
+        return _eventType == EVENT_INCOMPLETE && !_endOfInput;
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (!isNextEventAvailable()) {
+            return _eventType = EVENT_INCOMPLETE;
+        }
+
+        return super.next();
+    }
+
+    @Override
+    protected boolean isNextEventAvailable() {
+        return _endOfInput || isEventAvailable();
+    }
+
+    /**
+     * Check if the octets to be read for the next event have been fed.
+     */
+    private boolean isEventAvailable() {
+        int p = _octetBufferOffset;
+        switch (_internalState) {
+            case INTERNAL_STATE_START_DOCUMENT:
+                p = _scanner.scanHeader(_octetBuffer, p, _octetBufferEnd);
+                if (p == InformationItemScanner.INCOMPLETE) {
+                    return false;
+                }
+                break;
+            case INTERNAL_STATE_VOID:
+            case INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES:
+                break;
+            default:
+                // The event is reported from the state of the parser
+                return true;
+        }
+
+        // Unexpanded entity references are skipped over
+        while (p < _octetBufferEnd && DecoderStateTables.EII(_octetBuffer[p] & 0xFF) ==
+                DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II) {
+            p = _scanner.scanItem(_octetBuffer, p, _octetBufferEnd);
+            if (p == InformationItemScanner.INCOMPLETE) {
+                return false;
+            }
+        }
+
+        return _scanner.scanItem(_octetBuffer, p, _octetBufferEnd) != InformationItemScanner.INCOMPLETE;
+    }
+
+    private void ensureInputCapacity(int length) {
+        if (_endOfInput) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.inputEnded"));
+        }
+
+        if (_octetBufferEnd + length <= _octetBuffer.length) {
+            return;
+        }
+
+        final int remaining = _octetBufferEnd - _octetBufferOffset;
+        byte[] b = _octetBuffer;
+        if (remaining + length > b.length) {
+            b = new byte[Math.max(b.length * 2, remaining + length)];
+        } else if (_eventType != EVENT_INCOMPLETE && _internalState != INTERNAL_STATE_START_DOCUMENT) {
+            // The current event may refer to the octets of the buffer
+            b = new byte[b.length];
+        }
+
+        System.arraycopy(_octetBuffer, _octetBufferOffset, b, 0, remaining);
+        _octetBuffer = b;
+        _octetBufferOffset = 0;
+        _octetBufferEnd = remaining;
+    }
+}
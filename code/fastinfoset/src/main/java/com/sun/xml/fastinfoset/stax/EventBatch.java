@@ -0,0 +1,257 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.stax;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.QualifiedName;
+
+/**
+ * A batch of events decoded by
+ * {@link StAXDocumentParser#readEvents(EventBatch)}, held as parallel
+ * arrays indexed by the position of the event in the batch.
+ * <p>
+ * For each event the batch holds the event type, as defined by
+ * {@link javax.xml.stream.XMLStreamConstants}, and the following:
+ * <ul>
+ * <li>START_ELEMENT and END_ELEMENT: the qualified name, whose local name,
+ * namespace name and prefix indexes may be used in place of the strings,
+ * and the range of the namespace declarations that come into, or go out
+ * of, scope. START_ELEMENT also holds the range of its attributes.</li>
+ * <li>CHARACTERS, CDATA and COMMENT: the range of the text in
+ * {@link #_characters}.</li>
+ * <li>PROCESSING_INSTRUCTION: the target and the range of the data in
+ * {@link #_characters}.</li>
+ * </ul>
+ * Names, prefixes, namespace names and targets are those held by the tables
+ * of the parser, and are valid until the parser starts decoding another
+ * document.
+ * <p>
+ * The arrays of attributes, namespace declarations and characters grow as
+ * required. Their contents are overwritten by the next call to
+ * {@link StAXDocumentParser#readEvents(EventBatch)}.
+ */
+public final class EventBatch {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public static final int INITIAL_ATTRIBUTE_SIZE = 64;
+    public static final int INITIAL_NAMESPACE_SIZE = 16;
+    public static final int INITIAL_CHARACTER_SIZE = 4096;
+
+    /**
+     * The number of events in the batch.
+     */
+    public int _size;
+
+    public final int[] _eventType;
+    public final QualifiedName[] _name;
+    public final int[] _textOffset;
+    public final int[] _textLength;
+    public final int[] _attributeStart;
+    public final int[] _attributeCount;
+    public final int[] _namespaceStart;
+    public final int[] _namespaceCount;
+    public final String[] _piTarget;
+
+    /**
+     * The number of attributes in the batch.
+     */
+    public int _attributeSize;
+
+    public QualifiedName[] _attributeName;
+    public int[] _attributeValueOffset;
+    public int[] _attributeValueLength;
+
+    /**
+     * The number of namespace declarations in the batch.
+     */
+    public int _namespaceSize;
+
+    public String[] _namespacePrefix;
+    public String[] _namespaceName;
+
+    /**
+     * The characters of text and attribute values.
+     */
+    public char[] _characters;
+    public int _charactersLength;
+
+    public EventBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                    getString("message.illegalInitialCapacity", new Object[]{Integer.valueOf(capacity)}));
+        }
+
+        _eventType = new int[capacity];
+        _name = new QualifiedName[capacity];
+        _textOffset = new int[capacity];
+        _textLength = new int[capacity];
+        _attributeStart = new int[capacity];
+        _attributeCount = new int[capacity];
+        _namespaceStart = new int[capacity];
+        _namespaceCount = new int[capacity];
+        _piTarget = new String[capacity];
+
+        _attributeName = new QualifiedName[INITIAL_ATTRIBUTE_SIZE];
+        _attributeValueOffset = new int[INITIAL_ATTRIBUTE_SIZE];
+        _attributeValueLength = new int[INITIAL_ATTRIBUTE_SIZE];
+
+        _namespacePrefix = new String[INITIAL_NAMESPACE_SIZE];
+        _namespaceName = new String[INITIAL_NAMESPACE_SIZE];
+
+        _characters = new char[INITIAL_CHARACTER_SIZE];
+    }
+
+    /**
+     * Get the maximum number of events in the batch.
+     */
+    public int getCapacity() {
+        return _eventType.length;
+    }
+
+    public void clear() {
+        for (int i = 0; i < _size; i++) {
+            _name[i] = null;
+            _piTarget[i] = null;
+        }
+        for (int i = 0; i < _attributeSize; i++) {
+            _attributeName[i] = null;
+        }
+        for (int i = 0; i < _namespaceSize; i++) {
+            _namespacePrefix[i] = null;
+            _namespaceName[i] = null;
+        }
+
+        _size = 0;
+        _attributeSize = 0;
+        _namespaceSize = 0;
+        _charactersLength = 0;
+    }
+
+    /**
+     * Get the text of an event as a String.
+     *
+     * @param event the position of the event in the batch.
+     */
+    public String getText(int event) {
+        return new String(_characters, _textOffset[event], _textLength[event]);
+    }
+
+    /**
+     * Get the value of an attribute as a String.
+     *
+     * @param attribute the position of the attribute in the batch.
+     */
+    public String getAttributeValue(int attribute) {
+        return new String(_characters, _attributeValueOffset[attribute], _attributeValueLength[attribute]);
+    }
+
+    final int addEvent(int eventType, QualifiedName name) {
+        _eventType[_size] = eventType;
+        _name[_size] = name;
+        _textOffset[_size] = 0;
+        _textLength[_size] = 0;
+        _attributeStart[_size] = _attributeSize;
+        _attributeCount[_size] = 0;
+        _namespaceStart[_size] = _namespaceSize;
+        _namespaceCount[_size] = 0;
+        return _size++;
+    }
+
+    final int addAttribute(QualifiedName name) {
+        if (_attributeSize == _attributeName.length) {
+            final int newLength = _attributeSize * 2;
+
+            final QualifiedName[] attributeName = new QualifiedName[newLength];
+            System.arraycopy(_attributeName, 0, attributeName, 0, _attributeSize);
+            _attributeName = attributeName;
+
+            final int[] attributeValueOffset = new int[newLength];
+            System.arraycopy(_attributeValueOffset, 0, attributeValueOffset, 0, _attributeSize);
+            _attributeValueOffset = attributeValueOffset;
+
+            final int[] attributeValueLength = new int[newLength];
+            System.arraycopy(_attributeValueLength, 0, attributeValueLength, 0, _attributeSize);
+            _attributeValueLength = attributeValueLength;
+        }
+
+        _attributeName[_attributeSize] = name;
+        return _attributeSize++;
+    }
+
+    final void addNamespaces(int event, String[] prefix, String[] name, int start, int end) {
+        final int count = end - start;
+        if (_namespaceSize + count > _namespacePrefix.length) {
+            final int newLength = Math.max(_namespacePrefix.length * 2, _namespaceSize + count);
+
+            final String[] namespacePrefix = new String[newLength];
+            System.arraycopy(_namespacePrefix, 0, namespacePrefix, 0, _namespaceSize);
+            _namespacePrefix = namespacePrefix;
+
+            final String[] namespaceName = new String[newLength];
+            System.arraycopy(_namespaceName, 0, namespaceName, 0, _namespaceSize);
+            _namespaceName = namespaceName;
+        }
+
+        System.arraycopy(prefix, start, _namespacePrefix, _namespaceSize, count);
+        System.arraycopy(name, start, _namespaceName, _namespaceSize, count);
+        _namespaceStart[event] = _namespaceSize;
+        _namespaceCount[event] = count;
+        _namespaceSize += count;
+    }
+
+    /**
+     * Ensure space for a number of characters and return the offset at
+     * which they may be written. The length of the characters is not
+     * changed, and is set once the characters have been written.
+     */
+    final int ensureCharacters(int length) {
+        final int offset = _charactersLength;
+        if (_characters.length - offset < length) {
+            final char[] characters = new char[Math.max(_characters.length * 2, offset + length)];
+            System.arraycopy(_characters, 0, characters, 0, offset);
+            _characters = characters;
+        }
+        return offset;
+    }
+
+    /**
+     * Add characters and return the offset at which they were written.
+     */
+    final int addCharacters(char[] ch, int start, int length) {
+        final int offset = ensureCharacters(length);
+        System.arraycopy(ch, start, _characters, offset, length);
+        _charactersLength = offset + length;
+        return offset;
+    }
+
+    /**
+     * Add the characters of a string and return the offset at which they
+     * were written.
+     */
+    final int addCharacters(String s) {
+        final int length = s.length();
+        final int offset = ensureCharacters(length);
+        s.getChars(0, length, _characters, offset);
+        _charactersLength = offset + length;
+        return offset;
+    }
+}
@@ -23,13 +23,19 @@ import com.sun.xml.fastinfoset.EncodingConstants;
 import com.sun.xml.fastinfoset.OctetBufferListener;
 import com.sun.xml.fastinfoset.QualifiedName;
 import com.sun.xml.fastinfoset.algorithm.BuiltInEncodingAlgorithmFactory;
+import com.sun.xml.fastinfoset.algorithm.LexicalValueScanner;
 import com.sun.xml.fastinfoset.sax.AttributesHolder;
 import com.sun.xml.fastinfoset.util.CharArray;
 import com.sun.xml.fastinfoset.util.CharArrayString;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.UUID;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
 import javax.xml.stream.Location;
@@ -67,6 +73,10 @@ public class StAXDocumentParser extends Decoder
     protected static final int INTERNAL_STATE_END_DOCUMENT = 4;
     protected static final int INTERNAL_STATE_VOID = -1;
     
+    private static final int STREAMED_CONTENT_NONE = 0;
+    private static final int STREAMED_CONTENT_CHARACTERS = 1;
+    private static final int STREAMED_CONTENT_ALGORITHM = 2;
+    
     protected int _internalState;
     
     /**
@@ -111,6 +121,13 @@ public class StAXDocumentParser extends Decoder
     protected char[] _characters;
     protected int _charactersOffset;
     
+    /**
+     * Octets of the characters associated with event, each character
+     * encoded in one octet, if the characters have not been decoded.
+     */
+    protected byte[] _characterOctets;
+    protected int _characterOctetsOffset;
+    
     protected String _algorithmURI;
     protected int _algorithmId;
     protected boolean _isAlgorithmDataCloned;
@@ -118,12 +135,39 @@ public class StAXDocumentParser extends Decoder
     protected int _algorithmDataOffset;
     protected int _algorithmDataLength;
     
+    /**
+     * State for content that is streamed, the kind of content and the 
+     * length of octets of the content
+     */
+    private int _streamedContent;
+    private int _streamedContentLength;
+    
+    /**
+     * The batch that events are decoded into, if events are read by
+     * {@link #readEvents(EventBatch)}
+     */
+    private EventBatch _batch;
+    
     /**
      * State for processing instruction
      */
     protected String _piTarget;
     protected String _piData;
     
+    /**
+     * State for typed access to the content of elements, the characters
+     * of the content if values are parsed from text
+     */
+    private char[] _typedCharacters = new char[64];
+    private int _typedCharactersOffset;
+    private int _typedCharactersLength;
+    private boolean _hasTypedCharacters;
+    
+    private final int[] _intValue = new int[2];
+    private final long[] _longValue = new long[4];
+    private final float[] _floatValue = new float[2];
+    private final double[] _doubleValue = new double[2];
+    
     protected NamespaceContextImpl _nsContext = new NamespaceContextImpl();
     
     protected String _characterEncodingScheme;
@@ -146,12 +190,23 @@ public class StAXDocumentParser extends Decoder
         _manager = manager;
     }
     
+    public StAXDocumentParser(ByteBuffer b) {
+        this();
+        setInput(b);
+    }
+    
     @Override
     public void setInputStream(InputStream s) {
         super.setInputStream(s);
         reset();
     }
     
+    @Override
+    public void setInput(ByteBuffer b) {
+        super.setInput(b);
+        reset();
+    }
+    
     @Override
     public void reset() {
         super.reset();
@@ -166,7 +221,9 @@ public class StAXDocumentParser extends Decoder
             
             _namespaceAIIsIndex = 0;
             _characters = null;
+            _characterOctets = null;
             _algorithmData = null;
+            _streamedContent = STREAMED_CONTENT_NONE;
         }
         
         _characterEncodingScheme = "UTF-8";
@@ -186,7 +243,9 @@ public class StAXDocumentParser extends Decoder
         
         _namespaceAIIsIndex = 0;
         _characters = null;
+        _characterOctets = null;
         _algorithmData = null;
+        _streamedContent = STREAMED_CONTENT_NONE;
         
         _eventType = START_DOCUMENT;
         _internalState = INTERNAL_STATE_START_DOCUMENT;
@@ -204,263 +263,279 @@ public class StAXDocumentParser extends Decoder
     
     public int next() throws XMLStreamException {
         try {
-            if (_internalState != INTERNAL_STATE_VOID) {
-                switch (_internalState) {
-                    case INTERNAL_STATE_START_DOCUMENT:
-                        decodeHeader();
-                        processDII();
-                        
-                        _internalState = INTERNAL_STATE_VOID;
-                        break;
-                    case INTERNAL_STATE_START_ELEMENT_TERMINATE:
-                        if (_currentNamespaceAIIsEnd > 0) {
-                            for (int i = _currentNamespaceAIIsEnd - 1; i >= _currentNamespaceAIIsStart; i--) {
-                                _prefixTable.popScopeWithPrefixEntry(_namespaceAIIsPrefixIndex[i]);
-                            }
-                            _namespaceAIIsIndex = _currentNamespaceAIIsStart;
-                        }
-                        
-                        // Pop information off the stack
-                        popStack();
-                        
-                        _internalState = INTERNAL_STATE_VOID;
-                        return _eventType = END_ELEMENT;
-                    case INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES:
-                        // Undeclare namespaces
+            if (_streamedContent != STREAMED_CONTENT_NONE) {
+                skipStreamedContent();
+                _streamedContent = STREAMED_CONTENT_NONE;
+            }
+            
+            if (decodeNextEvent() == ENTITY_REFERENCE) {
+                // Skip the reference
+                return next();
+            }
+            return _eventType;
+        } catch (IOException e) {
+            resetOnError();
+            logger.log(Level.FINE, "next() exception", e);
+            throw new XMLStreamException(e);
+        } catch (FastInfosetException e) {
+            resetOnError();
+            logger.log(Level.FINE, "next() exception", e);
+            throw new XMLStreamException(e);
+        } catch (RuntimeException e) {
+            resetOnError();
+            logger.log(Level.FINE, "next() exception", e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Decode the next event, from the internal state or from the next
+     * information item.
+     * <p>
+     * When events are read into a batch by {@link #readEvents(EventBatch)}
+     * the start of an element and its attributes, and character content
+     * encoded in UTF-8 that is not added to the table, are decoded directly
+     * into the batch.
+     * <p>
+     * An unexpanded entity reference is reported as ENTITY_REFERENCE, and is
+     * skipped by the caller.
+     */
+    private int decodeNextEvent() throws FastInfosetException, IOException {
+        if (_internalState != INTERNAL_STATE_VOID) {
+            switch (_internalState) {
+                case INTERNAL_STATE_START_DOCUMENT:
+                    decodeHeader();
+                    processDII();
+                    
+                    _internalState = INTERNAL_STATE_VOID;
+                    break;
+                case INTERNAL_STATE_START_ELEMENT_TERMINATE:
+                    if (_currentNamespaceAIIsEnd > 0) {
                         for (int i = _currentNamespaceAIIsEnd - 1; i >= _currentNamespaceAIIsStart; i--) {
                             _prefixTable.popScopeWithPrefixEntry(_namespaceAIIsPrefixIndex[i]);
                         }
                         _namespaceAIIsIndex = _currentNamespaceAIIsStart;
-                        _internalState = INTERNAL_STATE_VOID;
-                        break;
-                    case INTERNAL_STATE_DOUBLE_TERMINATE_ELEMENT:
-                        // Undeclare namespaces
-                        if (_currentNamespaceAIIsEnd > 0) {
-                            for (int i = _currentNamespaceAIIsEnd - 1; i >= _currentNamespaceAIIsStart; i--) {
-                                _prefixTable.popScopeWithPrefixEntry(_namespaceAIIsPrefixIndex[i]);
-                            }
-                            _namespaceAIIsIndex = _currentNamespaceAIIsStart;
-                        }
-                        
-                        if (_stackCount == -1) {
-                            _internalState = INTERNAL_STATE_END_DOCUMENT;
-                            return _eventType = END_DOCUMENT;
-                        }
-                        
-                        // Pop information off the stack
-                        popStack();
-                        
-                        _internalState = (_currentNamespaceAIIsEnd > 0) ?
-                            INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES :
-                            INTERNAL_STATE_VOID;
-                        return _eventType = END_ELEMENT;
-                    case INTERNAL_STATE_END_DOCUMENT:
-                        throw new NoSuchElementException(CommonResourceBundle.getInstance().getString("message.noMoreEvents"));
-                }
-            }
-            
-            // Reset internal state
-            _characters = null;
-            _algorithmData = null;
-            _currentNamespaceAIIsEnd = 0;
-            
-            // Process information item
-            final int b = read();
-            switch(DecoderStateTables.EII(b)) {
-                case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[b], false);
-                    return _eventType;
-                case DecoderStateTables.EII_AIIS_INDEX_SMALL:
-                    processEII(_elementNameTable._array[b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true);
-                    return _eventType;
-                case DecoderStateTables.EII_INDEX_MEDIUM:
-                    processEII(processEIIIndexMedium(b), (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
-                    return _eventType;
-                case DecoderStateTables.EII_INDEX_LARGE:
-                    processEII(processEIIIndexLarge(b), (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
-                    return _eventType;
-                case DecoderStateTables.EII_LITERAL:
-                {
-                    final QualifiedName qn = processLiteralQualifiedName(
-                            b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
-                            _elementNameTable.getNext());
-                    _elementNameTable.add(qn);
-                    processEII(qn, (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
-                    return _eventType;
-                }
-                case DecoderStateTables.EII_NAMESPACES:
-                    processEIIWithNamespaces((b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
-                    return _eventType;
-                case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
-                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
-                    + 1;
-                    processUtf8CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
-                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
-                    processUtf8CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
-                    _octetBufferLength = ((read() << 24) |
-                            (read() << 16) |
-                            (read() << 8) |
-                            read())
-                            + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
-                    processUtf8CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
-                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
-                    + 1;
-                    processUtf16CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
-                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
-                    processUtf16CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
-                    _octetBufferLength = ((read() << 24) |
-                            (read() << 16) |
-                            (read() << 8) |
-                            read())
-                            + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
-                    processUtf16CharacterString(b);
-                    return _eventType = CHARACTERS;
-                case DecoderStateTables.CII_RA:
-                {
-                    final boolean addToTable = (b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
-                    
-                    _identifier = (b & 0x02) << 6;
-                    final int b2 = read();
-                    _identifier |= (b2 & 0xFC) >> 2;
-                    
-                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
+                    }
                     
-                    decodeRestrictedAlphabetAsCharBuffer();
+                    // Pop information off the stack
+                    popStack();
                     
-                    if (addToTable) {
-                        _charactersOffset = _characterContentChunkTable.add(_charBuffer, _charBufferLength);
-                        _characters = _characterContentChunkTable._array;
-                    } else {
-                        _characters = _charBuffer;
-                        _charactersOffset = 0;
+                    _internalState = INTERNAL_STATE_VOID;
+                    return _eventType = END_ELEMENT;
+                case INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES:
+                    // Undeclare namespaces
+                    for (int i = _currentNamespaceAIIsEnd - 1; i >= _currentNamespaceAIIsStart; i--) {
+                        _prefixTable.popScopeWithPrefixEntry(_namespaceAIIsPrefixIndex[i]);
+                    }
+                    _namespaceAIIsIndex = _currentNamespaceAIIsStart;
+                    _internalState = INTERNAL_STATE_VOID;
+                    break;
+                case INTERNAL_STATE_DOUBLE_TERMINATE_ELEMENT:
+                    // Undeclare namespaces
+                    if (_currentNamespaceAIIsEnd > 0) {
+                        for (int i = _currentNamespaceAIIsEnd - 1; i >= _currentNamespaceAIIsStart; i--) {
+                            _prefixTable.popScopeWithPrefixEntry(_namespaceAIIsPrefixIndex[i]);
+                        }
+                        _namespaceAIIsIndex = _currentNamespaceAIIsStart;
                     }
-                    return _eventType = CHARACTERS;
-                }
-                case DecoderStateTables.CII_EA:
-                {
-                    final boolean addToTable = (b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
-                    // Decode encoding algorithm integer
-                    _algorithmId = (b & 0x02) << 6;
-                    final int b2 = read();
-                    _algorithmId |= (b2 & 0xFC) >> 2;
-                    
-                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
-                    processCIIEncodingAlgorithm(addToTable);
                     
-                    if (_algorithmId == EncodingAlgorithmIndexes.CDATA) {
-                        return _eventType = CDATA;
+                    if (_stackCount == -1) {
+                        _internalState = INTERNAL_STATE_END_DOCUMENT;
+                        return _eventType = END_DOCUMENT;
                     }
-
-                    return _eventType = CHARACTERS;
-                }
-                case DecoderStateTables.CII_INDEX_SMALL:
-                {
-                    final int index = b & EncodingConstants.INTEGER_4TH_BIT_SMALL_MASK;
-                    _characterContentChunkTable._cachedIndex = index;
                     
-                    _characters = _characterContentChunkTable._array;
-                    _charactersOffset = _characterContentChunkTable._offset[index];
-                    _charBufferLength = _characterContentChunkTable._length[index];
-                    return _eventType = CHARACTERS;
-                }
-                case DecoderStateTables.CII_INDEX_MEDIUM:
-                {
-                    final int index = (((b & EncodingConstants.INTEGER_4TH_BIT_MEDIUM_MASK) << 8) | read())
-                    + EncodingConstants.INTEGER_4TH_BIT_SMALL_LIMIT;
-                    _characterContentChunkTable._cachedIndex = index;
+                    // Pop information off the stack
+                    popStack();
                     
-                    _characters = _characterContentChunkTable._array;
-                    _charactersOffset = _characterContentChunkTable._offset[index];
-                    _charBufferLength = _characterContentChunkTable._length[index];
+                    _internalState = (_currentNamespaceAIIsEnd > 0) ?
+                        INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES :
+                        INTERNAL_STATE_VOID;
+                    return _eventType = END_ELEMENT;
+                case INTERNAL_STATE_END_DOCUMENT:
+                    throw new NoSuchElementException(CommonResourceBundle.getInstance().getString("message.noMoreEvents"));
+            }
+        }
+        
+        // Reset internal state
+        _characters = null;
+        _characterOctets = null;
+        _algorithmData = null;
+        _currentNamespaceAIIsEnd = 0;
+        
+        // Process information item
+        final int b = read();
+        switch(DecoderStateTables.EII(b)) {
+            case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                processEII(_elementNameTable._array[b], false);
+                return _eventType;
+            case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                processEII(_elementNameTable._array[b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true);
+                return _eventType;
+            case DecoderStateTables.EII_INDEX_MEDIUM:
+                processEII(processEIIIndexMedium(b), (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                return _eventType;
+            case DecoderStateTables.EII_INDEX_LARGE:
+                processEII(processEIIIndexLarge(b), (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                return _eventType;
+            case DecoderStateTables.EII_LITERAL:
+            {
+                final QualifiedName qn = processLiteralQualifiedName(
+                        b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                        _elementNameTable.getNext());
+                _elementNameTable.add(qn);
+                processEII(qn, (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                return _eventType;
+            }
+            case DecoderStateTables.EII_NAMESPACES:
+                processEIIWithNamespaces((b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0);
+                return _eventType;
+            case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+                _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
+                + 1;
+                processUtf8CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+                _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
+                processUtf8CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+                _octetBufferLength = ((read() << 24) |
+                        (read() << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
+                processUtf8CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
+                + 1;
+                processUtf16CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
+                processUtf16CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                _octetBufferLength = ((read() << 24) |
+                        (read() << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
+                processUtf16CharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_RA:
+                processRestrictedAlphabetCharacterString(b);
+                return _eventType = CHARACTERS;
+            case DecoderStateTables.CII_EA:
+            {
+                final boolean addToTable = (b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
+                // Decode encoding algorithm integer
+                _algorithmId = (b & 0x02) << 6;
+                final int b2 = read();
+                _algorithmId |= (b2 & 0xFC) >> 2;
+                
+                decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
+                // Content read into a batch is read in full
+                if (!addToTable && _algorithmId != EncodingAlgorithmIndexes.CDATA && 
+                        _batch == null && isStreamedContent()) {
+                    decodeCIIEncodingAlgorithmURI();
+                    startStreamedContent(STREAMED_CONTENT_ALGORITHM);
                     return _eventType = CHARACTERS;
                 }
-                case DecoderStateTables.CII_INDEX_LARGE:
-                {
-                    final int index = (((b & EncodingConstants.INTEGER_4TH_BIT_LARGE_MASK) << 16) |
-                            (read() << 8) |
-                            read())
-                            + EncodingConstants.INTEGER_4TH_BIT_MEDIUM_LIMIT;
-                    _characterContentChunkTable._cachedIndex = index;
-                    
-                    _characters = _characterContentChunkTable._array;
-                    _charactersOffset = _characterContentChunkTable._offset[index];
-                    _charBufferLength = _characterContentChunkTable._length[index];
-                    return _eventType = CHARACTERS;
+                
+                decodeOctets();
+                processCIIEncodingAlgorithm(addToTable);
+                
+                if (_algorithmId == EncodingAlgorithmIndexes.CDATA) {
+                    return _eventType = CDATA;
                 }
-                case DecoderStateTables.CII_INDEX_LARGE_LARGE:
-                {
-                    final int index = ((read() << 16) |
-                            (read() << 8) |
-                            read())
-                            + EncodingConstants.INTEGER_4TH_BIT_LARGE_LIMIT;
-                    _characterContentChunkTable._cachedIndex = index;
+
+                return _eventType = CHARACTERS;
+            }
+            case DecoderStateTables.CII_INDEX_SMALL:
+            {
+                final int index = b & EncodingConstants.INTEGER_4TH_BIT_SMALL_MASK;
+                _characterContentChunkTable._cachedIndex = index;
+                
+                _characters = _characterContentChunkTable._array;
+                _charactersOffset = _characterContentChunkTable._offset[index];
+                _charBufferLength = _characterContentChunkTable._length[index];
+                return _eventType = CHARACTERS;
+            }
+            case DecoderStateTables.CII_INDEX_MEDIUM:
+            {
+                final int index = (((b & EncodingConstants.INTEGER_4TH_BIT_MEDIUM_MASK) << 8) | read())
+                + EncodingConstants.INTEGER_4TH_BIT_SMALL_LIMIT;
+                _characterContentChunkTable._cachedIndex = index;
+                
+                _characters = _characterContentChunkTable._array;
+                _charactersOffset = _characterContentChunkTable._offset[index];
+                _charBufferLength = _characterContentChunkTable._length[index];
+                return _eventType = CHARACTERS;
+            }
+            case DecoderStateTables.CII_INDEX_LARGE:
+            {
+                final int index = (((b & EncodingConstants.INTEGER_4TH_BIT_LARGE_MASK) << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.INTEGER_4TH_BIT_MEDIUM_LIMIT;
+                _characterContentChunkTable._cachedIndex = index;
+                
+                _characters = _characterContentChunkTable._array;
+                _charactersOffset = _characterContentChunkTable._offset[index];
+                _charBufferLength = _characterContentChunkTable._length[index];
+                return _eventType = CHARACTERS;
+            }
+            case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+            {
+                final int index = ((read() << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.INTEGER_4TH_BIT_LARGE_LIMIT;
+                _characterContentChunkTable._cachedIndex = index;
+                
+                _characters = _characterContentChunkTable._array;
+                _charactersOffset = _characterContentChunkTable._offset[index];
+                _charBufferLength = _characterContentChunkTable._length[index];
+                return _eventType = CHARACTERS;
+            }
+            case DecoderStateTables.COMMENT_II:
+                processCommentII();
+                return _eventType;
+            case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                processProcessingII();
+                return _eventType;
+            case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
+            {
+                processUnexpandedEntityReference(b);
+                return _eventType;
+            }
+            case DecoderStateTables.TERMINATOR_DOUBLE:
+                if (_stackCount != -1) {
+                    // Pop information off the stack
+                    popStack();
                     
-                    _characters = _characterContentChunkTable._array;
-                    _charactersOffset = _characterContentChunkTable._offset[index];
-                    _charBufferLength = _characterContentChunkTable._length[index];
-                    return _eventType = CHARACTERS;
+                    _internalState = INTERNAL_STATE_DOUBLE_TERMINATE_ELEMENT;
+                    return _eventType = END_ELEMENT;
                 }
-                case DecoderStateTables.COMMENT_II:
-                    processCommentII();
-                    return _eventType;
-                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
-                    processProcessingII();
-                    return _eventType;
-                case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
-                {
-                    processUnexpandedEntityReference(b);
-                    // Skip the reference
-                    return next();
-                }
-                case DecoderStateTables.TERMINATOR_DOUBLE:
-                    if (_stackCount != -1) {
-                        // Pop information off the stack
-                        popStack();
-                        
-                        _internalState = INTERNAL_STATE_DOUBLE_TERMINATE_ELEMENT;
-                        return _eventType = END_ELEMENT;
-                    }
+                
+                _internalState = INTERNAL_STATE_END_DOCUMENT;
+                return _eventType = END_DOCUMENT;
+            case DecoderStateTables.TERMINATOR_SINGLE:
+                if (_stackCount != -1) {
+                    // Pop information off the stack
+                    popStack();
                     
-                    _internalState = INTERNAL_STATE_END_DOCUMENT;
-                    return _eventType = END_DOCUMENT;
-                case DecoderStateTables.TERMINATOR_SINGLE:
-                    if (_stackCount != -1) {
-                        // Pop information off the stack
-                        popStack();
-                        
-                        if (_currentNamespaceAIIsEnd > 0) {
-                            _internalState = INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES;
-                        }
-                        return _eventType = END_ELEMENT;
+                    if (_currentNamespaceAIIsEnd > 0) {
+                        _internalState = INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES;
                     }
-                    
-                    _internalState = INTERNAL_STATE_END_DOCUMENT;
-                    return _eventType = END_DOCUMENT;
-                default:
-                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
-            }
-        } catch (IOException e) {
-            resetOnError();
-            logger.log(Level.FINE, "next() exception", e);
-            throw new XMLStreamException(e);
-        } catch (FastInfosetException e) {
-            resetOnError();
-            logger.log(Level.FINE, "next() exception", e);
-            throw new XMLStreamException(e);
-        } catch (RuntimeException e) {
-            resetOnError();
-            logger.log(Level.FINE, "next() exception", e);
-            throw e;
+                    return _eventType = END_ELEMENT;
+                }
+                
+                _internalState = INTERNAL_STATE_END_DOCUMENT;
+                return _eventType = END_DOCUMENT;
+            default:
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
         }
     }
     
@@ -471,8 +546,17 @@ public class StAXDocumentParser extends Decoder
             _charactersOffset = _characterContentChunkTable._arrayIndex;
             decodeUtf8StringAsCharBuffer(_characterContentChunkTable._array, _charactersOffset);
             _characterContentChunkTable.add(_charBufferLength);
+        } else if (_batch != null) {
+            // Characters are decoded directly into the batch
+            processUtf8CharacterStringIntoBatch(_batch);
+        } else if (isStreamedContent()) {
+            // Characters are read only when requested
+            startStreamedContent(STREAMED_CONTENT_CHARACTERS);
+        } else if (decodeUtf8StringAsOneByteCharacters()) {
+            // Characters are decoded only if requested as a char[]
+            _characterOctets = _octetBuffer;
+            _characterOctetsOffset = _octetBufferStart;
         } else {
-            decodeUtf8StringAsCharBuffer();
             _characters = _charBuffer;
             _charactersOffset = 0;
         }
@@ -489,6 +573,26 @@ public class StAXDocumentParser extends Decoder
         }
     }
     
+    private void processRestrictedAlphabetCharacterString(final int b) throws FastInfosetException, IOException {
+        final boolean addToTable = (b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
+        
+        _identifier = (b & 0x02) << 6;
+        final int b2 = read();
+        _identifier |= (b2 & 0xFC) >> 2;
+        
+        decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
+        
+        decodeRestrictedAlphabetAsCharBuffer();
+        
+        if (addToTable) {
+            _charactersOffset = _characterContentChunkTable.add(_charBuffer, _charBufferLength);
+            _characters = _characterContentChunkTable._array;
+        } else {
+            _characters = _charBuffer;
+            _charactersOffset = 0;
+        }
+    }
+    
     private void popStack() {
         // Pop information off the stack
         _qualifiedName = _qNameStack[_stackCount];
@@ -563,46 +667,447 @@ public class StAXDocumentParser extends Decoder
         return content.toString();
     }
     
-    /** Skips any white space (isWhiteSpace() returns true), COMMENT,
-     * or PROCESSING_INSTRUCTION,
-     * until a START_ELEMENT or END_ELEMENT is reached.
-     * If other than white space characters, COMMENT, PROCESSING_INSTRUCTION, START_ELEMENT, END_ELEMENT
-     * are encountered, an exception is thrown. This method should
-     * be used when processing element-only content seperated by white space.
-     * This method should
-     * be used when processing element-only content because
-     * the parser is not able to recognize ignorable whitespace if
-     * then DTD is missing or not interpreted.
-     * @return the event type of the element read
-     * @throws XMLStreamException if the current event is not white space
+    // Typed access to the content of text only elements
+    
+    /**
+     * Reads the content of a text-only element as an int. Precondition:
+     * the current event is START_ELEMENT. Postcondition:
+     * the current event is the corresponding END_ELEMENT.
+     * <p>
+     * The value is decoded directly from the octets of the int encoding
+     * algorithm, otherwise it is parsed from the characters of the content.
+     * @throws XMLStreamException if the current event is not a START_ELEMENT,
+     * if a non text element is encountered or if the content is not a single int.
      */
-    public final int nextTag() throws XMLStreamException {
-        next();
-        return nextTag(true);
+    public final int getElementAsInt() throws XMLStreamException {
+        readElementAsValue(EncodingAlgorithmIndexes.INT, _intValue, 1);
+        return _intValue[0];
     }
-    /** if the current tag has already read, such as in the case EventReader's
-     * peek() has been called, the current cursor should not move before the loop
+    
+    /**
+     * Reads the content of a text-only element as a long.
+     * @see #getElementAsInt()
      */
-    public final int nextTag(boolean currentTagRead) throws XMLStreamException {
-        int eventType = getEventType();
-        if (!currentTagRead) {
-            eventType = next();
-        }
-        while((eventType == CHARACTERS && isWhiteSpace()) // skip whitespace
-        || (eventType == CDATA && isWhiteSpace())
-        || eventType == SPACE
-                || eventType == PROCESSING_INSTRUCTION
-                || eventType == COMMENT) {
-            eventType = next();
-        }
-        if (eventType != START_ELEMENT && eventType != END_ELEMENT) {
-            throw new XMLStreamException(CommonResourceBundle.getInstance().getString("message.expectedStartOrEnd"), getLocation());
-        }
-        return eventType;
+    public final long getElementAsLong() throws XMLStreamException {
+        readElementAsValue(EncodingAlgorithmIndexes.LONG, _longValue, 1);
+        return _longValue[0];
     }
     
-    public final boolean hasNext() throws XMLStreamException {
-        return (_eventType != END_DOCUMENT);
+    /**
+     * Reads the content of a text-only element as a float.
+     * @see #getElementAsInt()
+     */
+    public final float getElementAsFloat() throws XMLStreamException {
+        readElementAsValue(EncodingAlgorithmIndexes.FLOAT, _floatValue, 1);
+        return _floatValue[0];
+    }
+    
+    /**
+     * Reads the content of a text-only element as a double.
+     * @see #getElementAsInt()
+     */
+    public final double getElementAsDouble() throws XMLStreamException {
+        readElementAsValue(EncodingAlgorithmIndexes.DOUBLE, _doubleValue, 1);
+        return _doubleValue[0];
+    }
+    
+    /**
+     * Reads the content of a text-only element as a UUID.
+     * @see #getElementAsInt()
+     */
+    public final UUID getElementAsUUID() throws XMLStreamException {
+        readElementAsValue(EncodingAlgorithmIndexes.UUID, _longValue, 2);
+        return new UUID(_longValue[0], _longValue[1]);
+    }
+    
+    /**
+     * Reads the content of a text-only element as a boolean, one of
+     * "true", "false", "1" or "0".
+     * @see #getElementAsInt()
+     */
+    public final boolean getElementAsBoolean() throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException(
+                    CommonResourceBundle.getInstance().getString("message.mustBeOnSTARTELEMENT"), getLocation());
+        }
+        next();
+        gatherElementText();
+        _hasTypedCharacters = false;
+        
+        final char[] ch = _typedCharacters;
+        final int start = _typedCharactersOffset;
+        final int end = LexicalValueScanner.skipWord(ch, start, _typedCharactersLength);
+        if (start == end || end != _typedCharactersLength &&
+                LexicalValueScanner.skipWhiteSpace(ch, end, _typedCharactersLength) != _typedCharactersLength) {
+            throw new XMLStreamException(
+                    CommonResourceBundle.getInstance().getString("message.typedElementExpectSingleValue"), getLocation());
+        }
+        
+        if (matches(ch, start, end, "true") || matches(ch, start, end, "1")) {
+            return true;
+        } else if (matches(ch, start, end, "false") || matches(ch, start, end, "0")) {
+            return false;
+        } else {
+            throw new XMLStreamException(CommonResourceBundle.getInstance().getString("message.invalidTypedValue", 
+                    new Object[]{new String(ch, start, end - start)}), getLocation());
+        }
+    }
+    
+    /**
+     * Reads the content of a text-only element as an array of ints.
+     * @see #getElementAsInt()
+     */
+    public final int[] getElementAsIntArray() throws XMLStreamException {
+        return (int[])readElementAsArray(EncodingAlgorithmIndexes.INT);
+    }
+    
+    /**
+     * Reads the content of a text-only element as an array of longs.
+     * @see #getElementAsInt()
+     */
+    public final long[] getElementAsLongArray() throws XMLStreamException {
+        return (long[])readElementAsArray(EncodingAlgorithmIndexes.LONG);
+    }
+    
+    /**
+     * Reads the content of a text-only element as an array of floats.
+     * @see #getElementAsInt()
+     */
+    public final float[] getElementAsFloatArray() throws XMLStreamException {
+        return (float[])readElementAsArray(EncodingAlgorithmIndexes.FLOAT);
+    }
+    
+    /**
+     * Reads the content of a text-only element as an array of doubles.
+     * @see #getElementAsInt()
+     */
+    public final double[] getElementAsDoubleArray() throws XMLStreamException {
+        return (double[])readElementAsArray(EncodingAlgorithmIndexes.DOUBLE);
+    }
+    
+    /**
+     * Reads ints from the content of a text-only element into an array.
+     * <p>
+     * The first call is made when the current event is START_ELEMENT and
+     * further calls read the values that follow, until -1 is returned and
+     * the current event is the corresponding END_ELEMENT. Values of the 
+     * int encoding algorithm are decoded directly into the array.
+     * 
+     * @param value the array into which values are read.
+     * @param offset the offset in the array of the first value.
+     * @param length the maximum number of values to read.
+     * @return the number of values read, or -1 if there are no more values
+     * in the content.
+     * @throws XMLStreamException if the current event is not a START_ELEMENT 
+     * or the content of an element, or if a non text element is encountered.
+     */
+    public final int readElementAsIntArray(int[] value, int offset, int length) throws XMLStreamException {
+        return readElementAsArray(EncodingAlgorithmIndexes.INT, value, offset, length);
+    }
+    
+    /**
+     * Reads longs from the content of a text-only element into an array.
+     * @see #readElementAsIntArray(int[], int, int)
+     */
+    public final int readElementAsLongArray(long[] value, int offset, int length) throws XMLStreamException {
+        return readElementAsArray(EncodingAlgorithmIndexes.LONG, value, offset, length);
+    }
+    
+    /**
+     * Reads floats from the content of a text-only element into an array.
+     * @see #readElementAsIntArray(int[], int, int)
+     */
+    public final int readElementAsFloatArray(float[] value, int offset, int length) throws XMLStreamException {
+        return readElementAsArray(EncodingAlgorithmIndexes.FLOAT, value, offset, length);
+    }
+    
+    /**
+     * Reads doubles from the content of a text-only element into an array.
+     * @see #readElementAsIntArray(int[], int, int)
+     */
+    public final int readElementAsDoubleArray(double[] value, int offset, int length) throws XMLStreamException {
+        return readElementAsArray(EncodingAlgorithmIndexes.DOUBLE, value, offset, length);
+    }
+    
+    private void readElementAsValue(int type, Object value, int valueLength) throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException(
+                    CommonResourceBundle.getInstance().getString("message.mustBeOnSTARTELEMENT"), getLocation());
+        }
+        
+        // Reading less than two values means the end of the element was reached
+        if (readElementAsArray(type, value, 0, valueLength * 2) != valueLength) {
+            throw new XMLStreamException(
+                    CommonResourceBundle.getInstance().getString("message.typedElementExpectSingleValue"), getLocation());
+        }
+    }
+    
+    private Object readElementAsArray(int type) throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new XMLStreamException(
+                    CommonResourceBundle.getInstance().getString("message.mustBeOnSTARTELEMENT"), getLocation());
+        }
+        
+        Object value = createArray(type, 16);
+        int capacity = 16;
+        int length = 0;
+        int n;
+        while ((n = readElementAsArray(type, value, length, capacity - length)) != -1) {
+            length += n;
+            if (length == capacity) {
+                capacity *= 2;
+                final Object newValue = createArray(type, capacity);
+                System.arraycopy(value, 0, newValue, 0, length);
+                value = newValue;
+            }
+        }
+        
+        if (length < capacity) {
+            final Object newValue = createArray(type, length);
+            System.arraycopy(value, 0, newValue, 0, length);
+            value = newValue;
+        }
+        return value;
+    }
+    
+    /**
+     * Read values from the content of an element.
+     * 
+     * @param type the index of the built-in encoding algorithm of the values.
+     * @return the number of array elements read, or -1 if the end of the
+     *         element was reached.
+     */
+    private int readElementAsArray(int type, Object value, int offset, int length) throws XMLStreamException {
+        if (_eventType == START_ELEMENT) {
+            _hasTypedCharacters = false;
+            next();
+        }
+        
+        // A UUID is read as two longs
+        final int valueLength = (type == EncodingAlgorithmIndexes.UUID) ? 2 : 1;
+        final int octetLength = (type == EncodingAlgorithmIndexes.INT || 
+                type == EncodingAlgorithmIndexes.FLOAT) ? 4 : 8;
+        
+        int n = 0;
+        while (length - n >= valueLength) {
+            if (_hasTypedCharacters) {
+                // Parse values from the characters gathered from the content
+                final char[] ch = _typedCharacters;
+                final int end = _typedCharactersLength;
+                int i = _typedCharactersOffset;
+                while (i < end && length - n >= valueLength) {
+                    final int wordEnd = LexicalValueScanner.skipWord(ch, i, end);
+                    parseValue(type, ch, i, wordEnd, value, offset + n);
+                    n += valueLength;
+                    i = LexicalValueScanner.skipWhiteSpace(ch, wordEnd, end);
+                }
+                _typedCharactersOffset = i;
+                _hasTypedCharacters = i < end;
+                continue;
+            }
+            
+            switch (_eventType) {
+                case CHARACTERS:
+                case CDATA:
+                case SPACE:
+                case ENTITY_REFERENCE:
+                    if (_algorithmData == null || _algorithmId != type) {
+                        gatherElementText();
+                        break;
+                    }
+                    
+                    // Decode values directly from the encoding algorithm data
+                    try {
+                        BuiltInEncodingAlgorithmFactory.getAlgorithm(type).
+                                getPrimtiveLengthFromOctetLength(_algorithmDataLength);
+                    } catch (EncodingAlgorithmException e) {
+                        throw new XMLStreamException(e);
+                    }
+                    final int count = Math.min(_algorithmDataLength / octetLength, 
+                            (length - n) / valueLength * valueLength);
+                    decodeValues(type, value, offset + n, count * octetLength);
+                    n += count;
+                    _algorithmDataOffset += count * octetLength;
+                    _algorithmDataLength -= count * octetLength;
+                    if (_algorithmDataLength == 0) {
+                        next();
+                    }
+                    break;
+                case PROCESSING_INSTRUCTION:
+                case COMMENT:
+                    next();
+                    break;
+                case END_ELEMENT:
+                    return (n > 0) ? n : -1;
+                default:
+                    throw unexpectedEventForTypedContent();
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Gather the characters of the remaining content of an element.
+     * Postcondition: the current event is END_ELEMENT.
+     */
+    private void gatherElementText() throws XMLStreamException {
+        int length = 0;
+        while (_eventType != END_ELEMENT) {
+            switch (_eventType) {
+                case CHARACTERS:
+                case CDATA:
+                case SPACE:
+                case ENTITY_REFERENCE:
+                    final int textLength = getTextLength();
+                    if (length + textLength > _typedCharacters.length) {
+                        final char[] typedCharacters = new char[(length + textLength) * 3 / 2];
+                        System.arraycopy(_typedCharacters, 0, typedCharacters, 0, length);
+                        _typedCharacters = typedCharacters;
+                    }
+                    System.arraycopy(getTextCharacters(), getTextStart(), _typedCharacters, length, textLength);
+                    length += textLength;
+                    break;
+                case PROCESSING_INSTRUCTION:
+                case COMMENT:
+                    break;
+                default:
+                    throw unexpectedEventForTypedContent();
+            }
+            next();
+        }
+        
+        _typedCharactersOffset = LexicalValueScanner.skipWhiteSpace(_typedCharacters, 0, length);
+        _typedCharactersLength = length;
+        _hasTypedCharacters = true;
+    }
+    
+    private XMLStreamException unexpectedEventForTypedContent() {
+        switch (_eventType) {
+            case END_DOCUMENT:
+                return new XMLStreamException(CommonResourceBundle.getInstance().getString("message.unexpectedEOF"));
+            case START_ELEMENT:
+                return new XMLStreamException(
+                        CommonResourceBundle.getInstance().getString("message.typedElementExpectTextOnly"), getLocation());
+            default:
+                return new XMLStreamException(
+                        CommonResourceBundle.getInstance().getString("message.unexpectedEventType")+ getEventTypeString(_eventType), getLocation());
+        }
+    }
+    
+    private void decodeValues(int type, Object value, int offset, int octetLength) {
+        switch (type) {
+            case EncodingAlgorithmIndexes.INT:
+                BuiltInEncodingAlgorithmFactory.intEncodingAlgorithm.decodeFromBytesToIntArray(
+                        (int[])value, offset, _algorithmData, _algorithmDataOffset, octetLength);
+                break;
+            case EncodingAlgorithmIndexes.FLOAT:
+                BuiltInEncodingAlgorithmFactory.floatEncodingAlgorithm.decodeFromBytesToFloatArray(
+                        (float[])value, offset, _algorithmData, _algorithmDataOffset, octetLength);
+                break;
+            case EncodingAlgorithmIndexes.DOUBLE:
+                BuiltInEncodingAlgorithmFactory.doubleEncodingAlgorithm.decodeFromBytesToDoubleArray(
+                        (double[])value, offset, _algorithmData, _algorithmDataOffset, octetLength);
+                break;
+            default:
+                // Long and UUID
+                BuiltInEncodingAlgorithmFactory.longEncodingAlgorithm.decodeFromBytesToLongArray(
+                        (long[])value, offset, _algorithmData, _algorithmDataOffset, octetLength);
+                break;
+        }
+    }
+    
+    private void parseValue(int type, char[] ch, int start, int end, Object value, int offset) throws XMLStreamException {
+        try {
+            switch (type) {
+                case EncodingAlgorithmIndexes.INT:
+                    ((int[])value)[offset] = LexicalValueScanner.parseInt(ch, start, end);
+                    break;
+                case EncodingAlgorithmIndexes.LONG:
+                    ((long[])value)[offset] = LexicalValueScanner.parseLong(ch, start, end);
+                    break;
+                case EncodingAlgorithmIndexes.FLOAT:
+                    ((float[])value)[offset] = LexicalValueScanner.parseFloat(ch, start, end);
+                    break;
+                case EncodingAlgorithmIndexes.DOUBLE:
+                    ((double[])value)[offset] = LexicalValueScanner.parseDouble(ch, start, end);
+                    break;
+                case EncodingAlgorithmIndexes.UUID:
+                    BuiltInEncodingAlgorithmFactory.uuidEncodingAlgorithm.fromUUIDCharacters(
+                            ch, start, end, (long[])value, offset);
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            throw new XMLStreamException(CommonResourceBundle.getInstance().getString("message.invalidTypedValue", 
+                    new Object[]{new String(ch, start, end - start)}), getLocation(), e);
+        }
+    }
+    
+    private static Object createArray(int type, int length) {
+        switch (type) {
+            case EncodingAlgorithmIndexes.INT:
+                return new int[length];
+            case EncodingAlgorithmIndexes.FLOAT:
+                return new float[length];
+            case EncodingAlgorithmIndexes.DOUBLE:
+                return new double[length];
+            default:
+                return new long[length];
+        }
+    }
+    
+    private static boolean matches(char[] ch, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (ch[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /** Skips any white space (isWhiteSpace() returns true), COMMENT,
+     * or PROCESSING_INSTRUCTION,
+     * until a START_ELEMENT or END_ELEMENT is reached.
+     * If other than white space characters, COMMENT, PROCESSING_INSTRUCTION, START_ELEMENT, END_ELEMENT
+     * are encountered, an exception is thrown. This method should
+     * be used when processing element-only content seperated by white space.
+     * This method should
+     * be used when processing element-only content because
+     * the parser is not able to recognize ignorable whitespace if
+     * then DTD is missing or not interpreted.
+     * @return the event type of the element read
+     * @throws XMLStreamException if the current event is not white space
+     */
+    public final int nextTag() throws XMLStreamException {
+        next();
+        return nextTag(true);
+    }
+    /** if the current tag has already read, such as in the case EventReader's
+     * peek() has been called, the current cursor should not move before the loop
+     */
+    public final int nextTag(boolean currentTagRead) throws XMLStreamException {
+        int eventType = getEventType();
+        if (!currentTagRead) {
+            eventType = next();
+        }
+        while((eventType == CHARACTERS && isWhiteSpace()) // skip whitespace
+        || (eventType == CDATA && isWhiteSpace())
+        || eventType == SPACE
+                || eventType == PROCESSING_INSTRUCTION
+                || eventType == COMMENT) {
+            eventType = next();
+        }
+        if (eventType != START_ELEMENT && eventType != END_ELEMENT) {
+            throw new XMLStreamException(CommonResourceBundle.getInstance().getString("message.expectedStartOrEnd"), getLocation());
+        }
+        return eventType;
+    }
+    
+    public final boolean hasNext() throws XMLStreamException {
+        return (_eventType != END_DOCUMENT);
     }
     
     public void close() throws XMLStreamException {
@@ -665,22 +1170,11 @@ public class StAXDocumentParser extends Decoder
             throw new IllegalArgumentException();
         
         // Search for the attributes in _attributes
-        if (namespaceURI != null) {
-            for (int i = 0; i < _attributes.getLength(); i++) {
-                if (_attributes.getLocalName(i).equals(localName) &&
-                        _attributes.getURI(i).equals(namespaceURI)) {
-                    return _attributes.getValue(i);
-                }
-            }
-        } else {
-            for (int i = 0; i < _attributes.getLength(); i++) {
-                if (_attributes.getLocalName(i).equals(localName)) {
-                    return _attributes.getValue(i);
-                }
-            }
-        }
+        final int index = (namespaceURI != null) ?
+            _attributes.getIndex(namespaceURI, localName) :
+            _attributes.getIndexOfLocalName(localName);
         
-        return null;
+        return (index >= 0) ? _attributes.getValue(index) : null;
     }
     
     public final int getAttributeCount() {
@@ -772,6 +1266,9 @@ public class StAXDocumentParser extends Decoder
     
     public final String getText() {
         if (_characters == null) {
+            if (_characterOctets != null) {
+                return new String(_characterOctets, _characterOctetsOffset, _charBufferLength, ISO_8859_1);
+            }
             checkTextState();
         }
         
@@ -823,6 +1320,18 @@ public class StAXDocumentParser extends Decoder
     }
     
     protected final void checkTextState() {
+        if (_streamedContent != STREAMED_CONTENT_NONE) {
+            readStreamedContent();
+            if (_characters != null) {
+                return;
+            }
+        }
+        
+        if (_characterOctets != null) {
+            convertCharacterOctetsToCharacters();
+            return;
+        }
+        
         if (_algorithmData == null) {
             throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"));
         }
@@ -839,7 +1348,74 @@ public class StAXDocumentParser extends Decoder
     }
     
     public final boolean hasText() {
-        return (_characters != null);
+        return (_characters != null || _characterOctets != null || 
+                _streamedContent == STREAMED_CONTENT_CHARACTERS);
+    }
+    
+    /**
+     * Returns true if the content of the current CHARACTERS event is 
+     * streamed.
+     * <p>
+     * Character content, or encoding algorithm data, whose length of octets 
+     * is greater than the content streaming threshold is not read until it
+     * is requested. Streamed content may be read, within a bounded size of
+     * memory, using {@link #getTextReader()} or 
+     * {@link #getTextAlgorithmStream()}. Otherwise the content is read in 
+     * full when it is first requested by any of the other methods that 
+     * access text or encoding algorithm data.
+     * 
+     * @see com.sun.xml.fastinfoset.Decoder#setContentStreamingThreshold(int)
+     */
+    public final boolean isTextStreamed() {
+        return _streamedContent != STREAMED_CONTENT_NONE;
+    }
+    
+    /**
+     * Returns a reader of the characters of the current event.
+     * <p>
+     * If the characters are streamed the characters are decoded as they are
+     * read, and the reader is valid until the next event.
+     * 
+     * @throws IllegalStateException if the current event has no characters,
+     *         or if the streamed characters have been read.
+     */
+    public final Reader getTextReader() {
+        if (_streamedContent == STREAMED_CONTENT_CHARACTERS) {
+            if (_contentOctetsRemaining != _streamedContentLength) {
+                throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"));
+            }
+            return new StreamedCharactersReader();
+        }
+        
+        if (_characters == null) {
+            checkTextState();
+        }
+        return new CharArrayReader(_characters, _charactersOffset, _charBufferLength);
+    }
+    
+    /**
+     * Returns a stream of the octets of the encoding algorithm data of the
+     * current event.
+     * <p>
+     * If the encoding algorithm data is streamed the octets are read from 
+     * the underlying stream as they are read, and the stream is valid until
+     * the next event.
+     * 
+     * @throws IllegalStateException if the current event has no encoding 
+     *         algorithm data, or if the streamed octets have been read.
+     */
+    public final InputStream getTextAlgorithmStream() {
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            if (_contentOctetsRemaining != _streamedContentLength) {
+                throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"));
+            }
+            return new StreamedAlgorithmInputStream();
+        }
+        
+        if (_algorithmData == null) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"));
+        }
+        return new ByteArrayInputStream(_algorithmData, _algorithmDataOffset, _algorithmDataLength);
     }
     
     public final Location getLocation() {
@@ -927,129 +1503,854 @@ public class StAXDocumentParser extends Decoder
         }
     }
     
-    public final String getAttributeNameString(int index) {
-        if (_eventType != START_ELEMENT) {
-            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.invalidCallingGetAttributeValue"));
+    public final String getAttributeNameString(int index) {
+        if (_eventType != START_ELEMENT) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.invalidCallingGetAttributeValue"));
+        }
+        return _attributes.getQualifiedName(index).getQNameString();
+    }
+    
+    
+    public final String getTextAlgorithmURI() {
+        return _algorithmURI;
+    }
+    
+    public final int getTextAlgorithmIndex() {
+        return _algorithmId;
+    }
+    
+    public final boolean hasTextAlgorithmBytes() {
+        return _algorithmData != null || _streamedContent == STREAMED_CONTENT_ALGORITHM;
+    }
+    
+    
+    /**
+     * Returns the byte[], which represents text algorithms.
+     * @deprecated was deprecated due to security reasons. Now the method return cloned byte[].
+     * 
+     * @return 
+     */
+    public final byte[] getTextAlgorithmBytes() {
+        // Do not return the actual _algorithmData due to security reasons
+//        return _algorithmData;
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            readStreamedContent();
+        }
+        if (_algorithmData == null) {
+            return null;
+        }
+        
+        final byte[] algorithmData = new byte[_algorithmData.length];
+        System.arraycopy(_algorithmData, 0, algorithmData, 0, _algorithmData.length);
+        return algorithmData;
+    }
+    
+    public final byte[] getTextAlgorithmBytesClone() {
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            readStreamedContent();
+        }
+        if (_algorithmData == null) {
+            return null;
+        }
+        
+        byte[] algorithmData = new byte[_algorithmDataLength];
+        System.arraycopy(_algorithmData, _algorithmDataOffset, algorithmData, 0, _algorithmDataLength);
+        return algorithmData;
+    }
+    
+    public final int getTextAlgorithmStart() {
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            readStreamedContent();
+        }
+        return _algorithmDataOffset;
+    }
+    
+    public final int getTextAlgorithmLength() {
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            return _streamedContentLength;
+        }
+        return _algorithmDataLength;
+    }
+    
+    public final int getTextAlgorithmBytes(int sourceStart, byte[] target,
+            int targetStart, int length) throws XMLStreamException {
+        if (_streamedContent == STREAMED_CONTENT_ALGORITHM) {
+            readStreamedContent();
+        }
+        try {
+            System.arraycopy(_algorithmData, sourceStart, target,
+                    targetStart, length);
+            return length;
+        } catch (IndexOutOfBoundsException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+    
+    // FastInfosetStreamReader impl
+    
+    public final int peekNext() throws XMLStreamException {
+        try {
+            if (_streamedContent != STREAMED_CONTENT_NONE) {
+                skipStreamedContent();
+                _streamedContent = STREAMED_CONTENT_NONE;
+            }
+            
+            switch(DecoderStateTables.EII(peek(this))) {
+                case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                case DecoderStateTables.EII_INDEX_MEDIUM:
+                case DecoderStateTables.EII_INDEX_LARGE:
+                case DecoderStateTables.EII_LITERAL:
+                case DecoderStateTables.EII_NAMESPACES:
+                    return START_ELEMENT;
+                case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+                case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+                case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+                case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                case DecoderStateTables.CII_RA:
+                case DecoderStateTables.CII_EA:
+                case DecoderStateTables.CII_INDEX_SMALL:
+                case DecoderStateTables.CII_INDEX_MEDIUM:
+                case DecoderStateTables.CII_INDEX_LARGE:
+                case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+                    return CHARACTERS;
+                case DecoderStateTables.COMMENT_II:
+                    return COMMENT;
+                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                    return PROCESSING_INSTRUCTION;
+                case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
+                    return ENTITY_REFERENCE;
+                case DecoderStateTables.TERMINATOR_DOUBLE:
+                case DecoderStateTables.TERMINATOR_SINGLE:
+                    return (_stackCount != -1) ? END_ELEMENT : END_DOCUMENT;
+                default:
+                    throw new FastInfosetException(
+                            CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        } catch (FastInfosetException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+    
+    public void onBeforeOctetBufferOverwrite() {
+        if (_algorithmData != null) {
+            _algorithmData = getTextAlgorithmBytesClone();
+            _algorithmDataOffset = 0;
+            _isAlgorithmDataCloned = true;
+        }
+        
+        if (_characterOctets == _octetBuffer) {
+            final byte[] characterOctets = new byte[_charBufferLength];
+            System.arraycopy(_characterOctets, _characterOctetsOffset, characterOctets, 0, _charBufferLength);
+            _characterOctets = characterOctets;
+            _characterOctetsOffset = 0;
+        }
+    }
+    
+    // Skipping of elements
+
+    public final int skipElement() throws XMLStreamException {
+        if (_eventType != START_ELEMENT) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.mustBeOnSTARTELEMENTToSkip"));
+        }
+
+        if (_internalState == INTERNAL_STATE_START_ELEMENT_TERMINATE) {
+            // The element has no children
+            return next();
+        }
+
+        try {
+            // The number of open elements within the element being skipped
+            int depth = 0;
+            while (true) {
+                final int b = peek(this);
+                switch(DecoderStateTables.EII(b)) {
+                    case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                        read();
+                        depth++;
+                        break;
+                    case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                        read();
+                        if (skipAIIs()) {
+                            depth++;
+                        }
+                        break;
+                    case DecoderStateTables.EII_INDEX_MEDIUM:
+                    case DecoderStateTables.EII_INDEX_LARGE:
+                    case DecoderStateTables.EII_LITERAL:
+                    case DecoderStateTables.EII_NAMESPACES:
+                        if (skipEII()) {
+                            depth++;
+                        }
+                        break;
+                    case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+                    case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+                    case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+                    case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                    case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                    case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                    case DecoderStateTables.CII_RA:
+                    case DecoderStateTables.CII_EA:
+                    case DecoderStateTables.CII_INDEX_SMALL:
+                    case DecoderStateTables.CII_INDEX_MEDIUM:
+                    case DecoderStateTables.CII_INDEX_LARGE:
+                    case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+                        skipCII();
+                        break;
+                    case DecoderStateTables.COMMENT_II:
+                        read();
+                        skipOtherString("message.commentIIAlgorithmNotSupported");
+                        break;
+                    case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                        read();
+                        decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherNCName);
+                        skipOtherString("message.processingIIWithEncodingAlgorithm");
+                        break;
+                    case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
+                        processUnexpandedEntityReference(read());
+                        break;
+                    case DecoderStateTables.TERMINATOR_SINGLE:
+                        if (depth == 0) {
+                            // The end of the element is reported as usual
+                            return next();
+                        }
+                        read();
+                        depth--;
+                        break;
+                    case DecoderStateTables.TERMINATOR_DOUBLE:
+                        if (depth == 0) {
+                            return next();
+                        }
+                        read();
+                        if (depth > 1) {
+                            depth -= 2;
+                            break;
+                        }
+
+                        // The terminator also ends the element
+                        _characters = null;
+                        _characterOctets = null;
+                        _algorithmData = null;
+                        popStack();
+                        if (_currentNamespaceAIIsEnd > 0) {
+                            _internalState = INTERNAL_STATE_SINGLE_TERMINATE_ELEMENT_WITH_NAMESPACES;
+                        }
+                        return _eventType = END_ELEMENT;
+                    default:
+                        throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
+                }
+            }
+        } catch (IOException e) {
+            resetOnError();
+            logger.log(Level.FINE, "skipElement() exception", e);
+            throw new XMLStreamException(e);
+        } catch (FastInfosetException e) {
+            resetOnError();
+            logger.log(Level.FINE, "skipElement() exception", e);
+            throw new XMLStreamException(e);
+        } catch (RuntimeException e) {
+            resetOnError();
+            logger.log(Level.FINE, "skipElement() exception", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Skip an element, other than one with a small index, adding
+     * literal names to the tables.
+     *
+     * @return true if the element has children.
+     */
+    private boolean skipEII() throws FastInfosetException, IOException {
+        int b = read();
+        final boolean hasAttributes = (b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0;
+        if (DecoderStateTables.EII(b) == DecoderStateTables.EII_NAMESPACES) {
+            // Namespace declarations are not in scope of any reported event
+            // and only the literal prefixes and namespace names are kept
+            while (((b = read()) & EncodingConstants.NAMESPACE_ATTRIBUTE_MASK) ==
+                    EncodingConstants.NAMESPACE_ATTRIBUTE) {
+                if ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_PREFIX_FLAG) > 0) {
+                    decodeIdentifyingNonEmptyStringOnFirstBitAsPrefix(
+                            (b & EncodingConstants.NAMESPACE_ATTRIBUTE_NAME_FLAG) > 0);
+                }
+                if ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_NAME_FLAG) > 0) {
+                    decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(
+                            (b & EncodingConstants.NAMESPACE_ATTRIBUTE_PREFIX_FLAG) > 0);
+                }
+            }
+            if (b != EncodingConstants.TERMINATOR) {
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.EIInamespaceNameNotTerminatedCorrectly"));
+            }
+            b = read();
+        }
+
+        switch(DecoderStateTables.EII(b)) {
+            case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+            case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                break;
+            case DecoderStateTables.EII_INDEX_MEDIUM:
+                read();
+                break;
+            case DecoderStateTables.EII_INDEX_LARGE:
+                if ((b & EncodingConstants.INTEGER_3RD_BIT_LARGE_LARGE_FLAG) != 0x20) {
+                    read();
+                }
+                read();
+                read();
+                break;
+            case DecoderStateTables.EII_LITERAL:
+                _elementNameTable.add(processLiteralQualifiedName(
+                        b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                        _elementNameTable.getNext()));
+                break;
+            default:
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEIIAfterAIIs"));
+        }
+
+        return (hasAttributes) ? skipAIIs() : true;
+    }
+
+    /**
+     * Skip the attributes of an element, adding literal names and values
+     * to the tables.
+     *
+     * @return true if the element has children.
+     */
+    private boolean skipAIIs() throws FastInfosetException, IOException {
+        while (true) {
+            // AII qualified name
+            int b = read();
+            QualifiedName name;
+            switch (DecoderStateTables.AII(b)) {
+                case DecoderStateTables.AII_INDEX_SMALL:
+                    name = _attributeNameTable._array[b];
+                    break;
+                case DecoderStateTables.AII_INDEX_MEDIUM:
+                {
+                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
+                    name = _attributeNameTable._array[i];
+                    break;
+                }
+                case DecoderStateTables.AII_INDEX_LARGE:
+                {
+                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
+                    name = _attributeNameTable._array[i];
+                    break;
+                }
+                case DecoderStateTables.AII_LITERAL:
+                    name = processLiteralQualifiedName(
+                            b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                            _attributeNameTable.getNext());
+                    name.createAttributeValues(DuplicateAttributeVerifier.MAP_SIZE);
+                    _attributeNameTable.add(name);
+                    break;
+                case DecoderStateTables.AII_TERMINATOR_DOUBLE:
+                    // The element has no children
+                    return false;
+                case DecoderStateTables.AII_TERMINATOR_SINGLE:
+                    return true;
+                default:
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingAIIs"));
+            }
+
+            // [normalized value] of AII
+
+            b = peek(this);
+            if ((b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) == 0 ||
+                    DecoderStateTables.NISTRING(b) > DecoderStateTables.NISTRING_EA) {
+                skipNonIdentifyingStringOnFirstBit();
+                continue;
+            }
+
+            switch (decodeNonIdentifyingStringOnFirstBit()) {
+                case NISTRING_STRING:
+                    _attributeValueTable.add(new String(_charBuffer, 0, _charBufferLength));
+                    break;
+                case NISTRING_ENCODING_ALGORITHM:
+                    // The value is converted to a string to be added, the
+                    // attributes of the element being skipped are no longer
+                    // reported
+                    _attributes.clear();
+                    _clearAttributes = true;
+                    processAIIEncodingAlgorithm(name, true);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Skip character information items, adding the characters to the
+     * table if required.
+     */
+    private void skipCII() throws FastInfosetException, IOException {
+        final int b = read();
+        final boolean addToTable = (b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
+        switch(DecoderStateTables.EII(b)) {
+            case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+            case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
+                + 1;
+                break;
+            case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+            case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
+                break;
+            case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+            case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                _octetBufferLength = ((read() << 24) |
+                        (read() << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
+                break;
+            case DecoderStateTables.CII_RA:
+            {
+                _identifier = (b & 0x02) << 6;
+                final int b2 = read();
+                _identifier |= (b2 & 0xFC) >> 2;
+
+                decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
+                if (addToTable) {
+                    decodeOctets();
+                    decodeRestrictedAlphabetAsCharBuffer();
+                    _characterContentChunkTable.add(_charBuffer, _charBufferLength);
+                    return;
+                }
+                break;
+            }
+            case DecoderStateTables.CII_EA:
+            {
+                _algorithmId = (b & 0x02) << 6;
+                final int b2 = read();
+                _algorithmId |= (b2 & 0xFC) >> 2;
+
+                decodeOctetsLengthOnSeventhBitOfNonIdentifyingStringOnThirdBit(b2);
+                if (addToTable) {
+                    decodeOctets();
+                    processCIIEncodingAlgorithm(true);
+                    _algorithmData = null;
+                    return;
+                }
+                break;
+            }
+            case DecoderStateTables.CII_INDEX_SMALL:
+                return;
+            case DecoderStateTables.CII_INDEX_MEDIUM:
+                read();
+                return;
+            case DecoderStateTables.CII_INDEX_LARGE:
+                read();
+                read();
+                return;
+            case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+                read();
+                read();
+                read();
+                return;
+        }
+
+        if (addToTable) {
+            if (DecoderStateTables.EII(b) <= DecoderStateTables.CII_UTF8_LARGE_LENGTH) {
+                processUtf8CharacterString(b);
+            } else {
+                processUtf16CharacterString(b);
+            }
+        } else {
+            skipOctets();
+        }
+    }
+
+    /**
+     * Skip the string of a comment or the data of a processing instruction,
+     * adding the string to the table if required.
+     *
+     * @param algorithmMessage the key of the message reported for 
+     *        encoding algorithm data.
+     */
+    private void skipOtherString(String algorithmMessage) throws FastInfosetException, IOException {
+        final int b = peek(this);
+        if ((b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) == 0 ||
+                DecoderStateTables.NISTRING(b) > DecoderStateTables.NISTRING_EA) {
+            skipNonIdentifyingStringOnFirstBit();
+        } else if (decodeNonIdentifyingStringOnFirstBit() == NISTRING_STRING) {
+            _v.otherString.add(new CharArray(_charBuffer, 0, _charBufferLength, true));
+        } else {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString(algorithmMessage));
+        }
+    }
+
+    /**
+     * Skip a non identifying string, on the first bit, that is not added
+     * to a table.
+     */
+    private void skipNonIdentifyingStringOnFirstBit() throws FastInfosetException, IOException {
+        final int b = read();
+        switch(DecoderStateTables.NISTRING(b)) {
+            case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+            case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+            case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_SMALL_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_MEDIUM_LENGTH:
+            case DecoderStateTables.NISTRING_UTF16_LARGE_LENGTH:
+                decodeOctetsLengthOnFifthBit(b);
+                skipOctets();
+                break;
+            case DecoderStateTables.NISTRING_RA:
+            case DecoderStateTables.NISTRING_EA:
+                decodeOctetsLengthOnFifthBit(read());
+                skipOctets();
+                break;
+            case DecoderStateTables.NISTRING_INDEX_SMALL:
+                break;
+            case DecoderStateTables.NISTRING_INDEX_MEDIUM:
+                read();
+                break;
+            case DecoderStateTables.NISTRING_INDEX_LARGE:
+                read();
+                read();
+                break;
+            case DecoderStateTables.NISTRING_EMPTY:
+                break;
+            default:
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingNonIdentifyingString"));
+        }
+    }
+
+    /**
+     * Decode the length of octets, on the fifth bit, setting
+     * _octetBufferLength, without reading the octets.
+     */
+    private void decodeOctetsLengthOnFifthBit(int b) throws FastInfosetException, IOException {
+        // Reuse UTF8 length states
+        switch(DecoderStateTables.NISTRING(b & 0x0F)) {
+            case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+                _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1;
+                break;
+            case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+                _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT;
+                break;
+            case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+                _octetBufferLength = ((read() << 24) |
+                        (read() << 16) |
+                        (read() << 8) |
+                        read())
+                        + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT;
+                break;
+            default:
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingOctets"));
+        }
+    }
+
+    /**
+     * Skip _octetBufferLength octets, reading them in chunks that do not
+     * resize the internal buffer.
+     */
+    private void skipOctets() throws IOException {
+        startStreamedContent();
+        skipStreamedContent();
+    }
+
+    // Batched access to events
+
+    /**
+     * Decode events into a batch.
+     * <p>
+     * The batch is cleared and events are decoded, as if by calling
+     * {@link #next()}, until the batch is full or the END_DOCUMENT event
+     * is decoded. Information items are decoded directly into the batch:
+     * text and attribute values are written into the characters of the
+     * batch, other than the values of attributes encoded using an encoding
+     * algorithm, which are converted as by {@link #getAttributeValue(int)}.
+     * Content that is streamed is read in full.
+     * <p>
+     * The parser is left positioned on the last event of the batch, and
+     * event-by-event access may continue with {@link #next()}. The event
+     * type, name and namespace declarations of the current event are
+     * available, but its text, attributes and processing instruction data
+     * are available only from the batch.
+     * <p>
+     * An event that is not defined by {@link javax.xml.stream.XMLStreamConstants},
+     * such as {@link AsyncStAXDocumentParser#EVENT_INCOMPLETE}, ends the
+     * batch and is not held by the batch.
+     *
+     * @param batch the batch to hold the events.
+     * @return the number of events decoded, or 0 if the END_DOCUMENT event
+     *         has already been decoded.
+     */
+    public final int readEvents(EventBatch batch) throws XMLStreamException {
+        batch.clear();
+        if (_internalState == INTERNAL_STATE_END_DOCUMENT) {
+            return 0;
+        }
+
+        _batch = batch;
+        try {
+            if (_streamedContent != STREAMED_CONTENT_NONE) {
+                skipStreamedContent();
+                _streamedContent = STREAMED_CONTENT_NONE;
+            }
+
+            final int capacity = batch.getCapacity();
+            while (batch._size < capacity) {
+                if (!isNextEventAvailable()) {
+                    // The incomplete event of a sub-class ends the batch
+                    next();
+                    return batch._size;
+                }
+
+                final int size = batch._size;
+                final int eventType = decodeNextEvent();
+                if (batch._size > size) {
+                    // The event has been decoded directly into the batch
+                    continue;
+                }
+
+                switch (eventType) {
+                    case END_ELEMENT:
+                        addNamespacesToBatch(batch, batch.addEvent(END_ELEMENT, _qualifiedName));
+                        break;
+                    case CHARACTERS:
+                    case CDATA:
+                    case COMMENT:
+                        addTextToBatch(batch, batch.addEvent(eventType, null));
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                    {
+                        final int event = batch.addEvent(PROCESSING_INSTRUCTION, null);
+                        batch._piTarget[event] = _piTarget;
+                        batch._textOffset[event] = batch.addCharacters(_piData);
+                        batch._textLength[event] = _piData.length();
+                        break;
+                    }
+                    case ENTITY_REFERENCE:
+                        // Skip the reference
+                        break;
+                    case END_DOCUMENT:
+                        batch.addEvent(END_DOCUMENT, null);
+                        return batch._size;
+                    default:
+                        // The incomplete event of a sub-class ends the batch
+                        return batch._size;
+                }
+            }
+
+            return batch._size;
+        } catch (IOException e) {
+            resetOnError();
+            logger.log(Level.FINE, "readEvents() exception", e);
+            throw new XMLStreamException(e);
+        } catch (FastInfosetException e) {
+            resetOnError();
+            logger.log(Level.FINE, "readEvents() exception", e);
+            throw new XMLStreamException(e);
+        } catch (RuntimeException e) {
+            resetOnError();
+            logger.log(Level.FINE, "readEvents() exception", e);
+            throw e;
+        } finally {
+            _batch = null;
+        }
+    }
+
+    /**
+     * Check if the octets of the next event are available to be decoded
+     * without blocking.
+     * <p>
+     * A sub-class that returns false reports an event from {@link #next()}
+     * that is not defined by {@link javax.xml.stream.XMLStreamConstants}.
+     */
+    protected boolean isNextEventAvailable() {
+        return true;
+    }
+
+    private void processAIIsIntoBatch(EventBatch batch, int event) throws FastInfosetException, IOException {
+        if (++_duplicateAttributeVerifier._currentIteration == Integer.MAX_VALUE) {
+            _duplicateAttributeVerifier.clear();
+        }
+        
+        QualifiedName name;
+        while ((name = processAIIQualifiedName()) != null) {
+            final int attribute = batch.addAttribute(name);
+            batch._attributeCount[event]++;
+            
+            int b = read();
+            switch(DecoderStateTables.NISTRING(b)) {
+                case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1;
+                    processUtf8AttributeValueIntoBatch(batch, attribute, b);
+                    break;
+                case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT;
+                    processUtf8AttributeValueIntoBatch(batch, attribute, b);
+                    break;
+                case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+                    _octetBufferLength = ((read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read())
+                            + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT;
+                    processUtf8AttributeValueIntoBatch(batch, attribute, b);
+                    break;
+                case DecoderStateTables.NISTRING_UTF16_SMALL_LENGTH:
+                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1;
+                    decodeUtf16StringAsCharBuffer();
+                    addAttributeValueToBatch(batch, attribute, (b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0);
+                    break;
+                case DecoderStateTables.NISTRING_UTF16_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT;
+                    decodeUtf16StringAsCharBuffer();
+                    addAttributeValueToBatch(batch, attribute, (b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0);
+                    break;
+                case DecoderStateTables.NISTRING_UTF16_LARGE_LENGTH:
+                    _octetBufferLength = ((read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read())
+                            + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT;
+                    decodeUtf16StringAsCharBuffer();
+                    addAttributeValueToBatch(batch, attribute, (b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0);
+                    break;
+                case DecoderStateTables.NISTRING_RA:
+                {
+                    final boolean addToTable = (b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0;
+                    // Decode resitricted alphabet integer
+                    _identifier = (b & 0x0F) << 4;
+                    b = read();
+                    _identifier |= (b & 0xF0) >> 4;
+                    
+                    decodeOctetsOnFifthBitOfNonIdentifyingStringOnFirstBit(b);
+                    
+                    decodeRestrictedAlphabetAsCharBuffer();
+                    addAttributeValueToBatch(batch, attribute, addToTable);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_EA:
+                {
+                    final boolean addToTable = (b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0;
+                    // Decode encoding algorithm integer
+                    _identifier = (b & 0x0F) << 4;
+                    b = read();
+                    _identifier |= (b & 0xF0) >> 4;
+                    
+                    decodeOctetsOnFifthBitOfNonIdentifyingStringOnFirstBit(b);
+                    processAIIEncodingAlgorithm(name, addToTable);
+                    _clearAttributes = true;
+                    addAttributeValueToBatch(batch, attribute, _attributes.getValue(_attributes.getLength() - 1));
+                    break;
+                }
+                case DecoderStateTables.NISTRING_INDEX_SMALL:
+                    addAttributeValueToBatch(batch, attribute,
+                            _attributeValueTable._array[b & EncodingConstants.INTEGER_2ND_BIT_SMALL_MASK]);
+                    break;
+                case DecoderStateTables.NISTRING_INDEX_MEDIUM:
+                {
+                    final int index = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
+                    
+                    addAttributeValueToBatch(batch, attribute, _attributeValueTable._array[index]);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_INDEX_LARGE:
+                {
+                    final int index = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
+                    
+                    addAttributeValueToBatch(batch, attribute, _attributeValueTable._array[index]);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_EMPTY:
+                    batch._attributeValueOffset[attribute] = batch._charactersLength;
+                    batch._attributeValueLength[attribute] = 0;
+                    break;
+                default:
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingAIIValue"));
+            }
+        }
+        
+        // Reset duplication attribute verfifier
+        _duplicateAttributeVerifier._poolCurrent = _duplicateAttributeVerifier._poolHead;
+    }
+    
+    private void processUtf8AttributeValueIntoBatch(EventBatch batch, int attribute, int b) throws IOException {
+        if ((b & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0) {
+            decodeUtf8StringAsCharBuffer();
+            addAttributeValueToBatch(batch, attribute, true);
+            return;
         }
-        return _attributes.getQualifiedName(index).getQNameString();
-    }
-    
-    
-    public final String getTextAlgorithmURI() {
-        return _algorithmURI;
-    }
-    
-    public final int getTextAlgorithmIndex() {
-        return _algorithmId;
-    }
-    
-    public final boolean hasTextAlgorithmBytes() {
-        return _algorithmData != null;
+        
+        // A UTF-8 encoded character is encoded in at least one octet
+        final int offset = batch.ensureCharacters(_octetBufferLength);
+        decodeUtf8StringAsCharBuffer(batch._characters, offset);
+        batch._charactersLength = offset + _charBufferLength;
+        batch._attributeValueOffset[attribute] = offset;
+        batch._attributeValueLength[attribute] = _charBufferLength;
     }
     
-    
     /**
-     * Returns the byte[], which represents text algorithms.
-     * @deprecated was deprecated due to security reasons. Now the method return cloned byte[].
-     * 
-     * @return 
+     * Add an attribute value decoded into the character buffer.
      */
-    public final byte[] getTextAlgorithmBytes() {
-        // Do not return the actual _algorithmData due to security reasons
-//        return _algorithmData;
-        if (_algorithmData == null) {
-            return null;
+    private void addAttributeValueToBatch(EventBatch batch, int attribute, boolean addToTable) {
+        if (addToTable) {
+            _attributeValueTable.add(new String(_charBuffer, 0, _charBufferLength));
         }
         
-        final byte[] algorithmData = new byte[_algorithmData.length];
-        System.arraycopy(_algorithmData, 0, algorithmData, 0, _algorithmData.length);
-        return algorithmData;
+        batch._attributeValueOffset[attribute] = batch.addCharacters(_charBuffer, 0, _charBufferLength);
+        batch._attributeValueLength[attribute] = _charBufferLength;
     }
     
-    public final byte[] getTextAlgorithmBytesClone() {
-        if (_algorithmData == null) {
-            return null;
-        }
-        
-        byte[] algorithmData = new byte[_algorithmDataLength];
-        System.arraycopy(_algorithmData, _algorithmDataOffset, algorithmData, 0, _algorithmDataLength);
-        return algorithmData;
+    private void addAttributeValueToBatch(EventBatch batch, int attribute, String value) {
+        batch._attributeValueOffset[attribute] = batch.addCharacters(value);
+        batch._attributeValueLength[attribute] = value.length();
     }
     
-    public final int getTextAlgorithmStart() {
-        return _algorithmDataOffset;
+    private void addNamespacesToBatch(EventBatch batch, int event) {
+        if (_currentNamespaceAIIsEnd > 0) {
+            batch.addNamespaces(event, _namespaceAIIsPrefix, _namespaceAIIsNamespaceName,
+                    _currentNamespaceAIIsStart, _currentNamespaceAIIsEnd);
+        }
     }
     
-    public final int getTextAlgorithmLength() {
-        return _algorithmDataLength;
+    private void processUtf8CharacterStringIntoBatch(EventBatch batch) throws IOException {
+        final int event = batch.addEvent(CHARACTERS, null);
+        
+        // A UTF-8 encoded character is encoded in at least one octet
+        final int offset = batch.ensureCharacters(_octetBufferLength);
+        decodeUtf8StringAsCharBuffer(batch._characters, offset);
+        batch._charactersLength = offset + _charBufferLength;
+        batch._textOffset[event] = offset;
+        batch._textLength[event] = _charBufferLength;
     }
     
-    public final int getTextAlgorithmBytes(int sourceStart, byte[] target,
-            int targetStart, int length) throws XMLStreamException {
-        try {
-            System.arraycopy(_algorithmData, sourceStart, target,
-                    targetStart, length);
-            return length;
-        } catch (IndexOutOfBoundsException e) {
-            throw new XMLStreamException(e);
+    private void addTextToBatch(EventBatch batch, int event) {
+        if (_characters == null && _characterOctets == null) {
+            checkTextState();
         }
-    }
-    
-    // FastInfosetStreamReader impl
-    
-    public final int peekNext() throws XMLStreamException {
-        try {
-            switch(DecoderStateTables.EII(peek(this))) {
-                case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                case DecoderStateTables.EII_AIIS_INDEX_SMALL:
-                case DecoderStateTables.EII_INDEX_MEDIUM:
-                case DecoderStateTables.EII_INDEX_LARGE:
-                case DecoderStateTables.EII_LITERAL:
-                case DecoderStateTables.EII_NAMESPACES:
-                    return START_ELEMENT;
-                case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
-                case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
-                case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
-                case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
-                case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
-                case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
-                case DecoderStateTables.CII_RA:
-                case DecoderStateTables.CII_EA:
-                case DecoderStateTables.CII_INDEX_SMALL:
-                case DecoderStateTables.CII_INDEX_MEDIUM:
-                case DecoderStateTables.CII_INDEX_LARGE:
-                case DecoderStateTables.CII_INDEX_LARGE_LARGE:
-                    return CHARACTERS;
-                case DecoderStateTables.COMMENT_II:
-                    return COMMENT;
-                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
-                    return PROCESSING_INSTRUCTION;
-                case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
-                    return ENTITY_REFERENCE;
-                case DecoderStateTables.TERMINATOR_DOUBLE:
-                case DecoderStateTables.TERMINATOR_SINGLE:
-                    return (_stackCount != -1) ? END_ELEMENT : END_DOCUMENT;
-                default:
-                    throw new FastInfosetException(
-                            CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
+
+        final int length = _charBufferLength;
+        if (_characters != null) {
+            batch._textOffset[event] = batch.addCharacters(_characters, _charactersOffset, length);
+        } else {
+            // Characters encoded in one octet are copied without decoding
+            final int offset = batch.ensureCharacters(length);
+            final char[] characters = batch._characters;
+            final byte[] octets = _characterOctets;
+            for (int i = 0, j = _characterOctetsOffset; i < length; i++, j++) {
+                characters[offset + i] = (char) (octets[j] & 0xFF);
             }
-        } catch (IOException e) {
-            throw new XMLStreamException(e);
-        } catch (FastInfosetException e) {
-            throw new XMLStreamException(e);
-        }
-    }
-    
-    public void onBeforeOctetBufferOverwrite() {
-        if (_algorithmData != null) {
-            _algorithmData = getTextAlgorithmBytesClone();
-            _algorithmDataOffset = 0;
-            _isAlgorithmDataCloned = true;
+            batch._charactersLength = offset + length;
+            batch._textOffset[event] = offset;
         }
+        batch._textLength[event] = length;
     }
-    
+
     // Faster access methods without checks
-    
+
     public final int accessNamespaceCount() {
         return (_currentNamespaceAIIsEnd > 0) ? (_currentNamespaceAIIsEnd - _currentNamespaceAIIsStart) : 0;
     }
@@ -1067,7 +2368,10 @@ public class StAXDocumentParser extends Decoder
     }
     
     public final char[] accessTextCharacters() {
-        if (_characters == null) return null;
+        if (_characters == null) {
+            if (_characterOctets == null) return null;
+            convertCharacterOctetsToCharacters();
+        }
         
         // we return a cloned version of _characters
         final char[] clonedCharacters = new char[_characters.length];
@@ -1076,6 +2380,9 @@ public class StAXDocumentParser extends Decoder
     }
     
     public final int accessTextStart() {
+        if (_characters == null && _characterOctets != null) {
+            convertCharacterOctetsToCharacters();
+        }
         return _charactersOffset;
     }
     
@@ -1170,6 +2477,11 @@ public class StAXDocumentParser extends Decoder
     }
     
     protected final void processEIIWithNamespaces(boolean hasAttributes) throws FastInfosetException, IOException {
+        processNamespaceAIIs();
+        processEII(processEIIQualifiedNameAfterNamespaceAIIs(), hasAttributes);
+    }
+    
+    private void processNamespaceAIIs() throws FastInfosetException, IOException {
         if (++_prefixTable._declarationId == Integer.MAX_VALUE) {
             _prefixTable.clearDeclarationIds();
         }
@@ -1232,26 +2544,24 @@ public class StAXDocumentParser extends Decoder
             throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.EIInamespaceNameNotTerminatedCorrectly"));
         }
         _currentNamespaceAIIsEnd = _namespaceAIIsIndex;
-        
-        b = read();
+    }
+    
+    private QualifiedName processEIIQualifiedNameAfterNamespaceAIIs() throws FastInfosetException, IOException {
+        final int b = read();
         switch(DecoderStateTables.EII(b)) {
             case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
-                processEII(_elementNameTable._array[b], hasAttributes);
-                break;
+                return _elementNameTable._array[b];
             case DecoderStateTables.EII_INDEX_MEDIUM:
-                processEII(processEIIIndexMedium(b), hasAttributes);
-                break;
+                return processEIIIndexMedium(b);
             case DecoderStateTables.EII_INDEX_LARGE:
-                processEII(processEIIIndexLarge(b), hasAttributes);
-                break;
+                return processEIIIndexLarge(b);
             case DecoderStateTables.EII_LITERAL:
             {
                 final QualifiedName qn = processLiteralQualifiedName(
                         b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
                         _elementNameTable.getNext());
                 _elementNameTable.add(qn);
-                processEII(qn, hasAttributes);
-                break;
+                return qn;
             }
             default:
                 throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEIIAfterAIIs"));
@@ -1271,10 +2581,21 @@ public class StAXDocumentParser extends Decoder
             _clearAttributes = false;
         }
         
-        if (hasAttributes) {
+        if (_batch != null) {
+            // The attributes are decoded directly into the batch
+            final int event = _batch.addEvent(START_ELEMENT, name);
+            addNamespacesToBatch(_batch, event);
+            if (hasAttributes) {
+                processAIIsIntoBatch(_batch, event);
+            }
+        } else if (hasAttributes) {
             processAIIs();
         }
         
+        pushStack();
+    }
+    
+    private void pushStack() {
         // Push element holder onto the stack
         _stackCount++;
         if (_stackCount == _qNameStack.length) {
@@ -1305,53 +2626,9 @@ public class StAXDocumentParser extends Decoder
         }
         
         _clearAttributes = true;
-        boolean terminate = false;
-        do {
-            // AII qualified name
-            b = read();
-            switch (DecoderStateTables.AII(b)) {
-                case DecoderStateTables.AII_INDEX_SMALL:
-                    name = _attributeNameTable._array[b];
-                    break;
-                case DecoderStateTables.AII_INDEX_MEDIUM:
-                {
-                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
-                    + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
-                    name = _attributeNameTable._array[i];
-                    break;
-                }
-                case DecoderStateTables.AII_INDEX_LARGE:
-                {
-                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
-                    + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
-                    name = _attributeNameTable._array[i];
-                    break;
-                }
-                case DecoderStateTables.AII_LITERAL:
-                    name = processLiteralQualifiedName(
-                            b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
-                            _attributeNameTable.getNext());
-                    name.createAttributeValues(DuplicateAttributeVerifier.MAP_SIZE);
-                    _attributeNameTable.add(name);
-                    break;
-                case DecoderStateTables.AII_TERMINATOR_DOUBLE:
-                    _internalState = INTERNAL_STATE_START_ELEMENT_TERMINATE;
-                case DecoderStateTables.AII_TERMINATOR_SINGLE:
-                    terminate = true;
-                    // AIIs have finished break out of loop
-                    continue;
-                default:
-                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingAIIs"));
-            }
-            
+        while ((name = processAIIQualifiedName()) != null) {
             // [normalized value] of AII
             
-            if (name.prefixIndex > 0 && _prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
-                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.AIIqNameNotInScope"));
-            }
-            
-            _duplicateAttributeVerifier.checkForDuplicateAttribute(name.attributeHash, name.attributeId);
-            
             b = read();
             switch(DecoderStateTables.NISTRING(b)) {
                 case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
@@ -1474,13 +2751,63 @@ public class StAXDocumentParser extends Decoder
                 default:
                     throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingAIIValue"));
             }
-            
-        } while (!terminate);
+        }
         
         // Reset duplication attribute verfifier
         _duplicateAttributeVerifier._poolCurrent = _duplicateAttributeVerifier._poolHead;
     }
     
+    /**
+     * Decode the qualified name of an attribute and check that it is in
+     * scope and is not a duplicate.
+     *
+     * @return the qualified name, or null if the attributes have finished.
+     */
+    private QualifiedName processAIIQualifiedName() throws FastInfosetException, IOException {
+        final QualifiedName name;
+        final int b = read();
+        switch (DecoderStateTables.AII(b)) {
+            case DecoderStateTables.AII_INDEX_SMALL:
+                name = _attributeNameTable._array[b];
+                break;
+            case DecoderStateTables.AII_INDEX_MEDIUM:
+            {
+                final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
+                + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
+                name = _attributeNameTable._array[i];
+                break;
+            }
+            case DecoderStateTables.AII_INDEX_LARGE:
+            {
+                final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
+                + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
+                name = _attributeNameTable._array[i];
+                break;
+            }
+            case DecoderStateTables.AII_LITERAL:
+                name = processLiteralQualifiedName(
+                        b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                        _attributeNameTable.getNext());
+                name.createAttributeValues(DuplicateAttributeVerifier.MAP_SIZE);
+                _attributeNameTable.add(name);
+                break;
+            case DecoderStateTables.AII_TERMINATOR_DOUBLE:
+                _internalState = INTERNAL_STATE_START_ELEMENT_TERMINATE;
+            case DecoderStateTables.AII_TERMINATOR_SINGLE:
+                // AIIs have finished
+                return null;
+            default:
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.decodingAIIs"));
+        }
+        
+        if (name.prefixIndex > 0 && _prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.AIIqNameNotInScope"));
+        }
+        
+        _duplicateAttributeVerifier.checkForDuplicateAttribute(name.attributeHash, name.attributeId);
+        return name;
+    }
+    
     protected final QualifiedName processEIIIndexMedium(int b) throws FastInfosetException, IOException {
         final int i = (((b & EncodingConstants.INTEGER_3RD_BIT_MEDIUM_MASK) << 8) | read())
         + EncodingConstants.INTEGER_3RD_BIT_SMALL_LIMIT;
@@ -1625,6 +2952,15 @@ public class StAXDocumentParser extends Decoder
         _algorithmDataLength = _octetBufferLength;
         _isAlgorithmDataCloned = false;
         
+        decodeCIIEncodingAlgorithmURI();
+        
+        if (addToTable) {
+            convertEncodingAlgorithmDataToCharacters();
+            _characterContentChunkTable.add(_characters, _characters.length);
+        }
+    }
+    
+    private void decodeCIIEncodingAlgorithmURI() throws FastInfosetException {
         if (_algorithmId >= EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START) {
             _algorithmURI = _v.encodingAlgorithm.get(_algorithmId - EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START);
             if (_algorithmURI == null) {
@@ -1636,10 +2972,101 @@ public class StAXDocumentParser extends Decoder
             // reported, allows for support through handler if required.
             throw new EncodingAlgorithmException(CommonResourceBundle.getInstance().getString("message.identifiers10to31Reserved"));
         }
+    }
+    
+    private void startStreamedContent(int streamedContent) {
+        startStreamedContent();
+        _streamedContent = streamedContent;
+        _streamedContentLength = _octetBufferLength;
+        _charBufferLength = 0;
+    }
+    
+    /**
+     * Read the streamed content in full, as if it had not been streamed.
+     */
+    private void readStreamedContent() {
+        if (_contentOctetsRemaining != _streamedContentLength) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"));
+        }
         
-        if (addToTable) {
-            convertEncodingAlgorithmDataToCharacters();
-            _characterContentChunkTable.add(_characters, _characters.length);
+        final int streamedContent = _streamedContent;
+        _streamedContent = STREAMED_CONTENT_NONE;
+        _octetBufferLength = _contentOctetsRemaining;
+        _contentOctetsRemaining = 0;
+        try {
+            if (streamedContent == STREAMED_CONTENT_CHARACTERS) {
+                decodeUtf8StringAsCharBuffer();
+                _characters = _charBuffer;
+                _charactersOffset = 0;
+            } else {
+                decodeOctets();
+                processCIIEncodingAlgorithm(false);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.InvalidStateForText"), e);
+        }
+    }
+    
+    /**
+     * Reader of streamed characters, decoding a chunk of characters into 
+     * the buffer of characters when the previous chunk has been read.
+     */
+    private final class StreamedCharactersReader extends Reader {
+        private int _offset;
+        
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (_streamedContent != STREAMED_CONTENT_CHARACTERS) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            
+            if (_offset == _charBufferLength) {
+                if (!decodeUtf8StreamedContentIntoCharBuffer()) {
+                    return -1;
+                }
+                _offset = 0;
+            }
+            
+            final int length = Math.min(len, _charBufferLength - _offset);
+            System.arraycopy(_charBuffer, _offset, cbuf, off, length);
+            _offset += length;
+            return length;
+        }
+        
+        public void close() {
+        }
+    }
+    
+    /**
+     * Stream of streamed encoding algorithm data, reading octets from the
+     * internal buffer.
+     */
+    private final class StreamedAlgorithmInputStream extends InputStream {
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1) ? -1 : b[0] & 0xFF;
+        }
+        
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_streamedContent != STREAMED_CONTENT_ALGORITHM || _contentOctetsRemaining == 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            
+            final int length = Math.min(len, readStreamedContentOctets());
+            System.arraycopy(_octetBuffer, _octetBufferOffset, b, off, length);
+            _octetBufferOffset += length;
+            _contentOctetsRemaining -= length;
+            return length;
+        }
+        
+        public int available() {
+            return (_streamedContent == STREAMED_CONTENT_ALGORITHM) ? 
+                Math.min(_octetBufferEnd - _octetBufferOffset, _contentOctetsRemaining) : 0;
         }
     }
     
@@ -1681,8 +3108,21 @@ public class StAXDocumentParser extends Decoder
         _attributes.addAttributeWithAlgorithmData(name, URI, _identifier,
                 algorithmData);
         if (addToTable) {
-            _attributeValueTable.add(_attributes.getValue(_attributes.getIndex(name.qName)));
+            _attributeValueTable.add(_attributes.getValue(_attributes.getLength() - 1));
+        }
+    }
+    
+    protected final void convertCharacterOctetsToCharacters() {
+        if (_charBuffer.length < _charBufferLength) {
+            _charBuffer = new char[_charBufferLength];
         }
+        
+        for (int i = 0; i < _charBufferLength; i++) {
+            _charBuffer[i] = (char) _characterOctets[_characterOctetsOffset + i];
+        }
+        
+        _characters = _charBuffer;
+        _charactersOffset = 0;
     }
     
     protected final void convertEncodingAlgorithmDataToCharacters() throws FastInfosetException, IOException {
@@ -17,16 +17,19 @@
  */
 package com.sun.xml.fastinfoset.stax;
 
+import com.sun.xml.fastinfoset.EncodedFragment;
 import com.sun.xml.fastinfoset.Encoder;
 import com.sun.xml.fastinfoset.EncodingConstants;
 import com.sun.xml.fastinfoset.util.NamespaceContextImplementation;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.EmptyStackException;
+import java.util.UUID;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.jvnet.fastinfoset.EncodingAlgorithmIndexes;
+import org.jvnet.fastinfoset.FastInfosetException;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
 import com.sun.xml.fastinfoset.QualifiedName;
 import com.sun.xml.fastinfoset.util.LocalNameQualifiedNamesMap;
@@ -78,6 +81,28 @@ public class StAXDocumentSerializer extends Encoder
     protected String[] _attributesArray = new String[4 * 16];
     protected int _attributesArrayIndex = 0;
     
+    /**
+     * Built-in encoding algorithm and bits of the values of attributes, by 
+     * attribute index. The algorithm is {@link #STRING_ATTRIBUTE_VALUE} for
+     * an attribute whose value is in the list of attributes.
+     */
+    protected int[] _attributeAlgorithmIdArray = new int[16];
+    protected long[] _attributeValueBitsArray = new long[16];
+    
+    /**
+     * The encoding algorithm of an attribute whose value is a string.
+     */
+    protected static final int STRING_ATTRIBUTE_VALUE = -1;
+    
+    /**
+     * Arrays of one value (or two longs of a UUID) for encoding typed values.
+     */
+    private final int[] _intValue = new int[1];
+    private final long[] _longValue = new long[2];
+    private final float[] _floatValue = new float[1];
+    private final double[] _doubleValue = new double[1];
+    private final boolean[] _booleanValue = new boolean[1];
+    
     protected boolean[] _nsSupportContextStack = new boolean[32];
     protected int _stackCount = -1;    
     
@@ -315,17 +340,103 @@ public class StAXDocumentSerializer extends Encoder
                 namespaceURI.equals(EncodingConstants.XMLNS_NAMESPACE_NAME)) {
             return;
         }
+        
+        if (value == null) {
+            throw new IllegalArgumentException(CommonResourceBundle.getInstance().getString("message.nullAttributeValue"));
+        }
 
+        addAttribute(prefix, namespaceURI, localName, value, STRING_ATTRIBUTE_VALUE, 0);
+    }
+    
+    /**
+     * Add an attribute to the current element.
+     * 
+     * @param value the value, or null if the value is encoded using a 
+     *        built-in encoding algorithm.
+     * @param id the built-in encoding algorithm identifier, or 
+     *        {@link #STRING_ATTRIBUTE_VALUE}.
+     * @param bits the value encoded using the algorithm.
+     */
+    private void addAttribute(String prefix, String namespaceURI,
+        String localName, String value, int id, long bits)
+    {
         if (_attributesArrayIndex == _attributesArray.length) {
             final String[] attributesArray = new String[_attributesArrayIndex * 2];
             System.arraycopy(_attributesArray, 0, attributesArray, 0, _attributesArrayIndex);
             _attributesArray = attributesArray;
         }
         
+        final int index = _attributesArrayIndex / 4;
+        if (index == _attributeAlgorithmIdArray.length) {
+            final int[] attributeAlgorithmIdArray = new int[index * 2];
+            System.arraycopy(_attributeAlgorithmIdArray, 0, attributeAlgorithmIdArray, 0, index);
+            _attributeAlgorithmIdArray = attributeAlgorithmIdArray;
+            
+            final long[] attributeValueBitsArray = new long[index * 2];
+            System.arraycopy(_attributeValueBitsArray, 0, attributeValueBitsArray, 0, index);
+            _attributeValueBitsArray = attributeValueBitsArray;
+        }
+        
         _attributesArray[_attributesArrayIndex++] = namespaceURI;
         _attributesArray[_attributesArrayIndex++] = prefix;
         _attributesArray[_attributesArrayIndex++] = localName;
         _attributesArray[_attributesArrayIndex++] = value;
+        _attributeAlgorithmIdArray[index] = id;
+        _attributeValueBitsArray[index] = bits;
+    }
+    
+    /**
+     * Write an attribute whose value is encoded using a built-in encoding 
+     * algorithm when the start of the element is written.
+     */
+    private void writeTypedAttribute(String prefix, String namespaceURI,
+        String localName, int id, long bits) throws XMLStreamException
+    {
+        if (!_inStartElement) {
+            throw new IllegalStateException(CommonResourceBundle.getInstance().getString("message.attributeWritingNotAllowed"));
+        }
+
+        // Namespace declarations are made using the writeNamespace method, 
+        // as for writeAttribute
+        if (namespaceURI == EncodingConstants.XMLNS_NAMESPACE_NAME || 
+                namespaceURI.equals(EncodingConstants.XMLNS_NAMESPACE_NAME)) {
+            return;
+        }
+
+        addAttribute(prefix, namespaceURI, localName, null, id, bits);
+    }
+    
+    public void writeIntAttribute(String prefix, String namespaceURI,
+        String localName, int value) throws XMLStreamException
+    {
+        writeTypedAttribute(prefix, namespaceURI, localName, EncodingAlgorithmIndexes.INT, value);
+    }
+    
+    public void writeLongAttribute(String prefix, String namespaceURI,
+        String localName, long value) throws XMLStreamException
+    {
+        writeTypedAttribute(prefix, namespaceURI, localName, EncodingAlgorithmIndexes.LONG, value);
+    }
+    
+    public void writeFloatAttribute(String prefix, String namespaceURI,
+        String localName, float value) throws XMLStreamException
+    {
+        writeTypedAttribute(prefix, namespaceURI, localName, EncodingAlgorithmIndexes.FLOAT, 
+                Float.floatToRawIntBits(value));
+    }
+    
+    public void writeDoubleAttribute(String prefix, String namespaceURI,
+        String localName, double value) throws XMLStreamException
+    {
+        writeTypedAttribute(prefix, namespaceURI, localName, EncodingAlgorithmIndexes.DOUBLE, 
+                Double.doubleToRawLongBits(value));
+    }
+    
+    public void writeBooleanAttribute(String prefix, String namespaceURI,
+        String localName, boolean value) throws XMLStreamException
+    {
+        writeTypedAttribute(prefix, namespaceURI, localName, EncodingAlgorithmIndexes.BOOLEAN, 
+                value ? 1 : 0);
     }
     
     public void writeNamespace(String prefix, String namespaceURI)
@@ -573,6 +684,130 @@ public class StAXDocumentSerializer extends Encoder
         }
     }
     
+    public void writeInt(int value) throws XMLStreamException {
+        _intValue[0] = value;
+        writeAlgorithmData(EncodingAlgorithmIndexes.INT, _intValue, 0, 1);
+    }
+    
+    public void writeLong(long value) throws XMLStreamException {
+        _longValue[0] = value;
+        writeAlgorithmData(EncodingAlgorithmIndexes.LONG, _longValue, 0, 1);
+    }
+    
+    public void writeFloat(float value) throws XMLStreamException {
+        _floatValue[0] = value;
+        writeAlgorithmData(EncodingAlgorithmIndexes.FLOAT, _floatValue, 0, 1);
+    }
+    
+    public void writeDouble(double value) throws XMLStreamException {
+        _doubleValue[0] = value;
+        writeAlgorithmData(EncodingAlgorithmIndexes.DOUBLE, _doubleValue, 0, 1);
+    }
+    
+    public void writeBoolean(boolean value) throws XMLStreamException {
+        _booleanValue[0] = value;
+        writeAlgorithmData(EncodingAlgorithmIndexes.BOOLEAN, _booleanValue, 0, 1);
+    }
+    
+    public void writeUUID(UUID value) throws XMLStreamException {
+        _longValue[0] = value.getMostSignificantBits();
+        _longValue[1] = value.getLeastSignificantBits();
+        writeAlgorithmData(EncodingAlgorithmIndexes.UUID, _longValue, 0, 2);
+    }
+    
+    public void writeIntArray(int[] value, int start, int len) 
+        throws XMLStreamException
+    {
+        writeAlgorithmData(EncodingAlgorithmIndexes.INT, value, start, len);
+    }
+    
+    public void writeLongArray(long[] value, int start, int len) 
+        throws XMLStreamException
+    {
+        writeAlgorithmData(EncodingAlgorithmIndexes.LONG, value, start, len);
+    }
+    
+    public void writeFloatArray(float[] value, int start, int len) 
+        throws XMLStreamException
+    {
+        writeAlgorithmData(EncodingAlgorithmIndexes.FLOAT, value, start, len);
+    }
+    
+    public void writeDoubleArray(double[] value, int start, int len) 
+        throws XMLStreamException
+    {
+        writeAlgorithmData(EncodingAlgorithmIndexes.DOUBLE, value, start, len);
+    }
+    
+    public void writeBooleanArray(boolean[] value, int start, int len) 
+        throws XMLStreamException
+    {
+        writeAlgorithmData(EncodingAlgorithmIndexes.BOOLEAN, value, start, len);
+    }
+    
+    private void writeAlgorithmData(int id, Object data, int start, int len)
+        throws XMLStreamException
+    {
+        try {
+            if (len <= 0) {
+                return;
+            }
+
+            encodeTerminationAndCurrentElement(true);
+
+            encodeCIIBuiltInAlgorithmData(id, data, start, len);
+        }
+        catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        catch (FastInfosetException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+    
+    /**
+     * Write an {@link EncodedFragment} as the next child items of the 
+     * current element.
+     * <p>
+     * The fragment must have been captured using the same external 
+     * vocabulary, and the prefixes it uses but does not declare must be
+     * bound to the same namespace names.
+     *
+     * @param fragment the encoded fragment.
+     */
+    public void writeEncodedFragment(EncodedFragment fragment) 
+        throws XMLStreamException
+    {
+        try {
+            encodeTerminationAndCurrentElement(true);
+            
+            encodeFragment(fragment);
+        }
+        catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        catch (FastInfosetException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+    
+    public EncodedFragment endFragmentCapture() throws IOException, FastInfosetException {
+        // Encode an empty element that is the last item of the fragment
+        if (_inStartElement) {
+            try {
+                encodeTerminationAndCurrentElement(false);
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+        
+        return super.endFragmentCapture();
+    }
+    
+    protected String getNamespaceURIInScope(String prefix) {
+        return _nsContext.getNamespaceURI(prefix);
+    }
+    
     protected void encodeTerminationAndCurrentElement(boolean terminateAfter) throws XMLStreamException {
         try {
             encodeTermination();
@@ -617,8 +852,14 @@ public class StAXDocumentSerializer extends Encoder
 
                     final String value = _attributesArray[i];
                     _attributesArray[i++] = null;
-                    final boolean addToTable = isAttributeValueLengthMatchesLimit(value.length());
-                    encodeNonIdentifyingStringOnFirstBit(value, _v.attributeValue, addToTable, false);
+                    final int index = (i - 1) / 4;
+                    if (_attributeAlgorithmIdArray[index] == STRING_ATTRIBUTE_VALUE) {
+                        final boolean addToTable = isAttributeValueLengthMatchesLimit(value.length());
+                        encodeNonIdentifyingStringOnFirstBit(value, _v.attributeValue, addToTable, false);
+                    } else {
+                        encodeTypedAttributeValue(_attributeAlgorithmIdArray[index], 
+                                _attributeValueBitsArray[index]);
+                    }
                     
                     _b = EncodingConstants.TERMINATOR;
                     _terminate = true;
@@ -703,7 +944,7 @@ public class StAXDocumentSerializer extends Encoder
     
     public final void writeLowLevelStartAttributes() throws IOException {
         if (hasMark()) {
-            _octetBuffer[_markIndex] |= EncodingConstants.ELEMENT_ATTRIBUTE_FLAG;
+            setMarkedOctetBits(EncodingConstants.ELEMENT_ATTRIBUTE_FLAG);
             resetMark();
         }
     }
@@ -789,6 +1030,97 @@ public class StAXDocumentSerializer extends Encoder
         encodeCIIOctetAlgorithmData(EncodingAlgorithmIndexes.BASE64, octets, 0, length);
     }
 
+    public final void writeLowLevelIntArray(int[] value, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.INT, value, offset, length);
+    }
+    
+    public final void writeLowLevelLongArray(long[] value, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.LONG, value, offset, length);
+    }
+    
+    public final void writeLowLevelFloatArray(float[] value, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.FLOAT, value, offset, length);
+    }
+    
+    public final void writeLowLevelDoubleArray(double[] value, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.DOUBLE, value, offset, length);
+    }
+    
+    public final void writeLowLevelBooleanArray(boolean[] value, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.BOOLEAN, value, offset, length);
+    }
+    
+    public final void writeLowLevelUUIDArray(long[] msblsb, int offset, int length) throws IOException {
+        writeLowLevelAlgorithmData(EncodingAlgorithmIndexes.UUID, msblsb, offset, length);
+    }
+    
+    private void writeLowLevelAlgorithmData(int id, Object data, int offset, int length) throws IOException {
+        if (length == 0)
+            return;
+        
+        encodeTermination();
+        
+        try {
+            encodeCIIBuiltInAlgorithmData(id, data, offset, length);
+        } catch (FastInfosetException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    public final void writeLowLevelIntAttributeValue(int value) throws IOException {
+        encodeTypedAttributeValue(EncodingAlgorithmIndexes.INT, value);
+    }
+    
+    public final void writeLowLevelLongAttributeValue(long value) throws IOException {
+        encodeTypedAttributeValue(EncodingAlgorithmIndexes.LONG, value);
+    }
+    
+    public final void writeLowLevelFloatAttributeValue(float value) throws IOException {
+        encodeTypedAttributeValue(EncodingAlgorithmIndexes.FLOAT, Float.floatToRawIntBits(value));
+    }
+    
+    public final void writeLowLevelDoubleAttributeValue(double value) throws IOException {
+        encodeTypedAttributeValue(EncodingAlgorithmIndexes.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+    
+    public final void writeLowLevelBooleanAttributeValue(boolean value) throws IOException {
+        encodeTypedAttributeValue(EncodingAlgorithmIndexes.BOOLEAN, value ? 1 : 0);
+    }
+    
+    /**
+     * Encode the value of an attribute using a built-in encoding algorithm.
+     *
+     * @param id the built-in encoding algorithm identifier.
+     * @param bits the value, the bits of a floating point value.
+     */
+    private void encodeTypedAttributeValue(int id, long bits) throws IOException {
+        switch (id) {
+            case EncodingAlgorithmIndexes.INT:
+                _intValue[0] = (int)bits;
+                encodeAIIBuiltInAlgorithmData(id, _intValue, 0, 1);
+                break;
+            case EncodingAlgorithmIndexes.LONG:
+                _longValue[0] = bits;
+                encodeAIIBuiltInAlgorithmData(id, _longValue, 0, 1);
+                break;
+            case EncodingAlgorithmIndexes.FLOAT:
+                _floatValue[0] = Float.intBitsToFloat((int)bits);
+                encodeAIIBuiltInAlgorithmData(id, _floatValue, 0, 1);
+                break;
+            case EncodingAlgorithmIndexes.DOUBLE:
+                _doubleValue[0] = Double.longBitsToDouble(bits);
+                encodeAIIBuiltInAlgorithmData(id, _doubleValue, 0, 1);
+                break;
+            case EncodingAlgorithmIndexes.BOOLEAN:
+                _booleanValue[0] = bits != 0;
+                encodeAIIBuiltInAlgorithmData(id, _booleanValue, 0, 1);
+                break;
+            default:
+                throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                        getString("message.unsupportedAlgorithm", new Object[]{Integer.valueOf(id)}));
+        }
+    }
+    
     private boolean encodeElement(int type, String namespaceURI, String prefix, String localName) throws IOException {
         final LocalNameQualifiedNamesMap.Entry entry = _v.elementName.obtainEntry(localName);
         for (int i = 0; i < entry._valueIndex; i++) {
@@ -0,0 +1,37 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.tools;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class FI_UTF8_XML extends TransformInputOutput {
+    
+    public FI_UTF8_XML() {
+    }
+    
+    public void parse(InputStream finf, OutputStream xml) throws Exception {
+        XMLDocumentWriter writer = new XMLDocumentWriter();
+        writer.write(finf, xml);
+    }
+    
+    public static void main(String[] args) throws Exception {        
+        FI_UTF8_XML p = new FI_UTF8_XML();
+        p.parse(args);
+    }    
+}
@@ -0,0 +1,1357 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.tools;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.Decoder;
+import com.sun.xml.fastinfoset.DecoderStateTables;
+import com.sun.xml.fastinfoset.EncodingConstants;
+import com.sun.xml.fastinfoset.QualifiedName;
+import com.sun.xml.fastinfoset.algorithm.BuiltInEncodingAlgorithmFactory;
+import com.sun.xml.fastinfoset.org.apache.xerces.util.XMLChar;
+import com.sun.xml.fastinfoset.util.CharArray;
+import com.sun.xml.fastinfoset.util.CharArrayString;
+import com.sun.xml.fastinfoset.util.DuplicateAttributeVerifier;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import org.jvnet.fastinfoset.EncodingAlgorithm;
+import org.jvnet.fastinfoset.EncodingAlgorithmException;
+import org.jvnet.fastinfoset.EncodingAlgorithmIndexes;
+import org.jvnet.fastinfoset.FastInfosetException;
+
+/**
+ * Writes a fast infoset document as an XML document encoded in UTF-8.
+ * <p>
+ * The fast infoset document is decoded and written directly to a
+ * {@link WritableByteChannel}, without reporting events to a SAX handler
+ * or a transformer. UTF-8 encoded character content and attribute values
+ * are copied as octets, escaping the octets of markup characters, and the
+ * UTF-8 encoded octets of qualified names, prefixes, namespace names and
+ * indexed attribute values are created once for each entry of the
+ * vocabulary tables.
+ */
+public class XMLDocumentWriter extends Decoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The maximum number of octets written for a character
+     */
+    private static final int MAXIMUM_CHARACTER_LENGTH = 6;
+
+    private static final byte[] XML_DECLARATION_START = toOctets("<?xml version=\"");
+    private static final byte[] XML_DECLARATION_ENCODING = toOctets("\" encoding=\"UTF-8\"");
+    private static final byte[] XML_DECLARATION_STANDALONE = toOctets(" standalone=\"yes\"");
+    private static final byte[] PROCESSING_INSTRUCTION_START = toOctets("<?");
+    private static final byte[] PROCESSING_INSTRUCTION_END = toOctets("?>");
+    private static final byte[] COMMENT_START = toOctets("<!--");
+    private static final byte[] COMMENT_END = toOctets("-->");
+    private static final byte[] CDATA_START = toOctets("<![CDATA[");
+    private static final byte[] CDATA_END = toOctets("]]>");
+    private static final byte[] DOCTYPE_START = toOctets("<!DOCTYPE ");
+    private static final byte[] DOCTYPE_PUBLIC = toOctets(" PUBLIC ");
+    private static final byte[] DOCTYPE_SYSTEM = toOctets(" SYSTEM ");
+    private static final byte[] END_TAG_START = toOctets("</");
+    private static final byte[] EMPTY_ELEMENT_TAG_END = toOctets("/>");
+    private static final byte[] ATTRIBUTE_VALUE_START = toOctets("=\"");
+    private static final byte[] DEFAULT_NAMESPACE_DECLARATION = toOctets(" xmlns=\"");
+    private static final byte[] NAMESPACE_DECLARATION = toOctets(" xmlns:");
+    private static final byte[] EMPTY_ATTRIBUTE_VALUE = toOctets("\"");
+
+    /**
+     * The escaped octets of the ASCII characters of character content, or
+     * null if a character is not escaped
+     */
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+
+    /**
+     * The escaped octets of the ASCII characters of attribute values, or
+     * null if a character is not escaped
+     */
+    private static final byte[][] ATTRIBUTE_VALUE_ESCAPES = new byte[128][];
+
+    /**
+     * No characters are escaped in comments and processing instructions
+     */
+    private static final byte[][] NO_ESCAPES = new byte[128][];
+
+    static {
+        TEXT_ESCAPES['&'] = toOctets("&amp;");
+        TEXT_ESCAPES['<'] = toOctets("&lt;");
+        TEXT_ESCAPES['>'] = toOctets("&gt;");
+        TEXT_ESCAPES['\r'] = toOctets("&#13;");
+
+        ATTRIBUTE_VALUE_ESCAPES['&'] = toOctets("&amp;");
+        ATTRIBUTE_VALUE_ESCAPES['<'] = toOctets("&lt;");
+        ATTRIBUTE_VALUE_ESCAPES['"'] = toOctets("&quot;");
+        ATTRIBUTE_VALUE_ESCAPES['\t'] = toOctets("&#9;");
+        ATTRIBUTE_VALUE_ESCAPES['\n'] = toOctets("&#10;");
+        ATTRIBUTE_VALUE_ESCAPES['\r'] = toOctets("&#13;");
+    }
+
+    private WritableByteChannel _channel;
+
+    /**
+     * The buffer of octets of the XML document
+     */
+    private byte[] _out = new byte[BUFFER_SIZE];
+    private ByteBuffer _outByteBuffer = ByteBuffer.wrap(_out);
+    private int _outLength;
+
+    /**
+     * True if the '>' of the start tag of the current element is not
+     * written
+     */
+    private boolean _isStartTagOpen;
+
+    /**
+     * The document type declaration, written with the name of the document
+     * element
+     */
+    private boolean _hasDocumentTypeDeclaration;
+    private String _systemIdentifier;
+    private String _publicIdentifier;
+
+    /**
+     * The octets of " xmlns:prefix=\"" indexed by the prefix index
+     */
+    private byte[][] _namespaceDeclarationOctets = new byte[16][];
+
+    /**
+     * The escaped octets of the namespace name followed by '"' indexed by
+     * the namespace name index
+     */
+    private byte[][] _namespaceNameOctets = new byte[16][];
+
+    /**
+     * The escaped octets of the attribute value followed by '"' indexed by
+     * the index of the attribute value table
+     */
+    private byte[][] _attributeValueOctets = new byte[64][];
+
+    /**
+     * The octets of the namespace attributes of the element being started,
+     * written after the element name
+     */
+    private byte[][] _namespaceAttributeNameOctets = new byte[16][];
+    private byte[][] _namespaceAttributeValueOctets = new byte[16][];
+    private int _namespaceAttributesIndex;
+
+    protected int[] _namespacePrefixes = new int[16];
+
+    protected int _namespacePrefixesIndex;
+
+    /**
+     * Stack of the names of the elements being processed
+     */
+    protected QualifiedName[] _elementNameStack = new QualifiedName[32];
+
+    /**
+     * Stack of the start index into the namespace prefixes of the namespace
+     * attributes declared on the elements being processed, or -1 if no
+     * namespace attributes are declared
+     */
+    protected int[] _namespacePrefixesStartStack = new int[32];
+
+    protected int _elementStackCount;
+
+    public XMLDocumentWriter() {
+    }
+
+    /**
+     * Write a fast infoset document as an XML document.
+     *
+     * @param s the input stream containing the fast infoset document.
+     * @param channel the channel the XML document is written to.
+     */
+    public void write(InputStream s, WritableByteChannel channel) throws FastInfosetException, IOException {
+        setInputStream(s);
+        write(channel);
+    }
+
+    /**
+     * Write a fast infoset document as an XML document.
+     *
+     * @param b the ByteBuffer containing the fast infoset document.
+     * @param channel the channel the XML document is written to.
+     * @see Decoder#setInput(ByteBuffer)
+     */
+    public void write(ByteBuffer b, WritableByteChannel channel) throws FastInfosetException, IOException {
+        setInput(b);
+        write(channel);
+    }
+
+    /**
+     * Write a fast infoset document as an XML document.
+     *
+     * @param s the input stream containing the fast infoset document.
+     * @param out the output stream the XML document is written to.
+     */
+    public void write(InputStream s, OutputStream out) throws FastInfosetException, IOException {
+        write(s, Channels.newChannel(out));
+    }
+
+    protected void resetOnError() {
+        _namespaceAttributesIndex = 0;
+        _namespacePrefixesIndex = 0;
+        _elementStackCount = 0;
+
+        if (_v == null) {
+            _prefixTable.clearCompletely();
+        }
+        _duplicateAttributeVerifier.clear();
+    }
+
+    protected final void write(WritableByteChannel channel) throws FastInfosetException, IOException {
+        _channel = channel;
+        _outLength = 0;
+        _isStartTagOpen = false;
+        _hasDocumentTypeDeclaration = false;
+        clearOctets(_namespaceDeclarationOctets);
+        clearOctets(_namespaceNameOctets);
+        clearOctets(_attributeValueOctets);
+
+        try {
+            reset();
+            decodeHeader();
+            processDII();
+            flush();
+        } catch (RuntimeException e) {
+            resetOnError();
+            // Wrap runtime exception
+            throw new FastInfosetException(e);
+        } catch (FastInfosetException e) {
+            resetOnError();
+            throw e;
+        } catch (IOException e) {
+            resetOnError();
+            throw e;
+        } finally {
+            _channel = null;
+        }
+    }
+
+    protected final void processDII() throws FastInfosetException, IOException {
+        _b = read();
+        if (_b > 0) {
+            processDIIOptionalProperties();
+        } else {
+            writeXMLDeclaration("1.0", false);
+        }
+
+        // Decode one Document Type II, Comment IIs, PI IIs and one EII
+        boolean firstElementHasOccured = false;
+        boolean documentTypeDeclarationOccured = false;
+        while(!_terminate || !firstElementHasOccured) {
+            _b = read();
+            switch(DecoderStateTables.DII(_b)) {
+                case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                    startEII(_elementNameTable._array[_b], false, -1);
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                    startEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true, -1);
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                case DecoderStateTables.EII_INDEX_MEDIUM:
+                    startEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                case DecoderStateTables.EII_INDEX_LARGE:
+                    startEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                case DecoderStateTables.EII_LITERAL:
+                {
+                    final QualifiedName qn = decodeLiteralQualifiedName(
+                            _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                            _elementNameTable.getNext());
+                    _elementNameTable.add(qn);
+                    startEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                }
+                case DecoderStateTables.EII_NAMESPACES:
+                    startEIIWithNamespaces();
+                    processEIIContent();
+                    firstElementHasOccured = true;
+                    break;
+                case DecoderStateTables.DOCUMENT_TYPE_DECLARATION_II:
+                {
+                    if (documentTypeDeclarationOccured) {
+                        throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.secondOccurenceOfDTDII"));
+                    }
+                    documentTypeDeclarationOccured = true;
+
+                    _systemIdentifier = ((_b & EncodingConstants.DOCUMENT_TYPE_SYSTEM_IDENTIFIER_FLAG) > 0)
+                    ? decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherURI) : null;
+                    _publicIdentifier = ((_b & EncodingConstants.DOCUMENT_TYPE_PUBLIC_IDENTIFIER_FLAG) > 0)
+                    ? decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherURI) : null;
+                    // The declaration is written with the name of the document element
+                    _hasDocumentTypeDeclaration = true;
+
+                    _b = read();
+                    while (_b == EncodingConstants.PROCESSING_INSTRUCTION) {
+                        switch(decodeNonIdentifyingStringOnFirstBit()) {
+                            case NISTRING_STRING:
+                                if (_addToTable) {
+                                    _v.otherString.add(new CharArray(_charBuffer, 0, _charBufferLength, true));
+                                }
+                                break;
+                            case NISTRING_ENCODING_ALGORITHM:
+                                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.processingIIWithEncodingAlgorithm"));
+                            case NISTRING_INDEX:
+                                break;
+                            case NISTRING_EMPTY_STRING:
+                                break;
+                        }
+                        _b = read();
+                    }
+                    if ((_b & EncodingConstants.TERMINATOR) != EncodingConstants.TERMINATOR) {
+                        throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.processingInstructionIIsNotTerminatedCorrectly"));
+                    }
+                    if (_b == EncodingConstants.DOUBLE_TERMINATOR) {
+                        _terminate = true;
+                    }
+
+                    if (_notations != null) _notations.clear();
+                    if (_unparsedEntities != null) _unparsedEntities.clear();
+                    break;
+                }
+                case DecoderStateTables.COMMENT_II:
+                    processCommentII();
+                    break;
+                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                    processProcessingII();
+                    break;
+                case DecoderStateTables.TERMINATOR_DOUBLE:
+                    _doubleTerminate = true;
+                    _terminate = true;
+                    break;
+                case DecoderStateTables.TERMINATOR_SINGLE:
+                    _terminate = true;
+                    break;
+                default:
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingDII"));
+            }
+        }
+
+        // Decode any remaining Comment IIs, PI IIs
+        while(!_terminate) {
+            _b = read();
+            switch(DecoderStateTables.DII(_b)) {
+                case DecoderStateTables.COMMENT_II:
+                    processCommentII();
+                    break;
+                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                    processProcessingII();
+                    break;
+                case DecoderStateTables.TERMINATOR_DOUBLE:
+                    _doubleTerminate = true;
+                    _terminate = true;
+                    break;
+                case DecoderStateTables.TERMINATOR_SINGLE:
+                    _terminate = true;
+                    break;
+                default:
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingDII"));
+            }
+        }
+    }
+
+    protected final void processDIIOptionalProperties() throws FastInfosetException, IOException {
+        if ((_b & EncodingConstants.DOCUMENT_ADDITIONAL_DATA_FLAG) > 0) {
+            decodeAdditionalData();
+        }
+
+        if ((_b & EncodingConstants.DOCUMENT_INITIAL_VOCABULARY_FLAG) > 0) {
+            decodeInitialVocabulary();
+        }
+
+        if ((_b & EncodingConstants.DOCUMENT_NOTATIONS_FLAG) > 0) {
+            decodeNotations();
+        }
+
+        if ((_b & EncodingConstants.DOCUMENT_UNPARSED_ENTITIES_FLAG) > 0) {
+            decodeUnparsedEntities();
+        }
+
+        if ((_b & EncodingConstants.DOCUMENT_CHARACTER_ENCODING_SCHEME) > 0) {
+            // The XML document is always encoded in UTF-8
+            decodeCharacterEncodingScheme();
+        }
+
+        boolean standalone = false;
+        if ((_b & EncodingConstants.DOCUMENT_STANDALONE_FLAG) > 0) {
+            standalone = read() > 0;
+        }
+
+        String version = "1.0";
+        if ((_b & EncodingConstants.DOCUMENT_VERSION_FLAG) > 0) {
+            version = decodeVersion();
+        }
+
+        writeXMLDeclaration(version, standalone);
+    }
+
+    private void writeXMLDeclaration(String version, boolean standalone) throws IOException {
+        write(XML_DECLARATION_START);
+        writeCharacters(version, ATTRIBUTE_VALUE_ESCAPES);
+        write(XML_DECLARATION_ENCODING);
+        if (standalone) {
+            write(XML_DECLARATION_STANDALONE);
+        }
+        write(PROCESSING_INSTRUCTION_END);
+    }
+
+    /**
+     * Write the start tag of an element, up to but not including the '>',
+     * and push the element onto the stack.
+     *
+     * @param namespacePrefixesStart the start index into the namespace
+     *        prefixes of the namespace attributes of the element, or -1
+     *        if the element has no namespace attributes.
+     */
+    private void startEII(QualifiedName name, boolean hasAttributes, int namespacePrefixesStart) throws FastInfosetException, IOException {
+        if (_prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.qnameOfEIINotInScope"));
+        }
+
+        if (_hasDocumentTypeDeclaration) {
+            writeDocumentTypeDeclaration(name);
+        }
+
+        closeStartTag();
+        write('<');
+        write(name.getQNameOctets());
+        if (_namespaceAttributesIndex > 0) {
+            for (int i = 0; i < _namespaceAttributesIndex; i++) {
+                write(_namespaceAttributeNameOctets[i]);
+                write(_namespaceAttributeValueOctets[i]);
+            }
+            _namespaceAttributesIndex = 0;
+        }
+
+        if (hasAttributes) {
+            processAIIs();
+        }
+
+        _isStartTagOpen = true;
+
+        // Push element onto the stack
+        if (_elementStackCount == _elementNameStack.length) {
+            final QualifiedName[] elementNameStack = new QualifiedName[_elementStackCount * 2];
+            System.arraycopy(_elementNameStack, 0, elementNameStack, 0, _elementStackCount);
+            _elementNameStack = elementNameStack;
+
+            final int[] namespacePrefixesStartStack = new int[_elementStackCount * 2];
+            System.arraycopy(_namespacePrefixesStartStack, 0, namespacePrefixesStartStack, 0, _elementStackCount);
+            _namespacePrefixesStartStack = namespacePrefixesStartStack;
+        }
+        _elementNameStack[_elementStackCount] = name;
+        _namespacePrefixesStartStack[_elementStackCount++] = namespacePrefixesStart;
+    }
+
+    /**
+     * Write the end of the element being processed and pop it from the
+     * stack.
+     */
+    private void endEII() throws IOException {
+        _terminate = _doubleTerminate;
+        _doubleTerminate = false;
+
+        final QualifiedName name = _elementNameStack[--_elementStackCount];
+        _elementNameStack[_elementStackCount] = null;
+        if (_isStartTagOpen) {
+            write(EMPTY_ELEMENT_TAG_END);
+            _isStartTagOpen = false;
+        } else {
+            write(END_TAG_START);
+            write(name.getQNameOctets());
+            write('>');
+        }
+
+        final int start = _namespacePrefixesStartStack[_elementStackCount];
+        if (start != -1) {
+            for (int i = start; i < _namespacePrefixesIndex; i++) {
+                _prefixTable.popScope(_namespacePrefixes[i]);
+            }
+            _namespacePrefixesIndex = start;
+        }
+    }
+
+    /**
+     * Write the '>' of the start tag of the current element if the start
+     * tag is not closed.
+     */
+    private void closeStartTag() throws IOException {
+        if (_isStartTagOpen) {
+            write('>');
+            _isStartTagOpen = false;
+        }
+    }
+
+    /**
+     * Process the children of the element being processed, up to and
+     * including the end of that element.
+     * <p>
+     * Descendant elements are pushed onto and popped from the stack rather
+     * than processed recursively, so the depth of the document does not
+     * affect the depth of the Java stack.
+     */
+    private void processEIIContent() throws FastInfosetException, IOException {
+        final int depth = _elementStackCount;
+        while (_elementStackCount >= depth) {
+            if (_terminate) {
+                endEII();
+                continue;
+            }
+
+            _b = read();
+            switch(DecoderStateTables.EII(_b)) {
+                case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                    startEII(_elementNameTable._array[_b], false, -1);
+                    break;
+                case DecoderStateTables.EII_AIIS_INDEX_SMALL:
+                    startEII(_elementNameTable._array[_b & EncodingConstants.INTEGER_3RD_BIT_SMALL_MASK], true, -1);
+                    break;
+                case DecoderStateTables.EII_INDEX_MEDIUM:
+                    startEII(decodeEIIIndexMedium(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    break;
+                case DecoderStateTables.EII_INDEX_LARGE:
+                    startEII(decodeEIIIndexLarge(), (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    break;
+                case DecoderStateTables.EII_LITERAL:
+                {
+                    final QualifiedName qn = decodeLiteralQualifiedName(
+                            _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                            _elementNameTable.getNext());
+                    _elementNameTable.add(qn);
+                    startEII(qn, (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0, -1);
+                    break;
+                }
+                case DecoderStateTables.EII_NAMESPACES:
+                    startEIIWithNamespaces();
+                    break;
+                case DecoderStateTables.CII_UTF8_SMALL_LENGTH:
+                    _octetBufferLength = (_b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
+                    + 1;
+                    processUtf8CharacterString();
+                    break;
+                case DecoderStateTables.CII_UTF8_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
+                    processUtf8CharacterString();
+                    break;
+                case DecoderStateTables.CII_UTF8_LARGE_LENGTH:
+                    _octetBufferLength = (read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read();
+                    _octetBufferLength += EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
+                    processUtf8CharacterString();
+                    break;
+                case DecoderStateTables.CII_UTF16_SMALL_LENGTH:
+                    _octetBufferLength = (_b & EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_MASK)
+                    + 1;
+                    decodeUtf16StringAsCharBuffer();
+                    processCharBuffer();
+                    break;
+                case DecoderStateTables.CII_UTF16_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_SMALL_LIMIT;
+                    decodeUtf16StringAsCharBuffer();
+                    processCharBuffer();
+                    break;
+                case DecoderStateTables.CII_UTF16_LARGE_LENGTH:
+                    _octetBufferLength = (read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read();
+                    _octetBufferLength += EncodingConstants.OCTET_STRING_LENGTH_7TH_BIT_MEDIUM_LIMIT;
+                    decodeUtf16StringAsCharBuffer();
+                    processCharBuffer();
+                    break;
+                case DecoderStateTables.CII_RA:
+                {
+                    final boolean addToTable = (_b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
+                    // Decode resitricted alphabet integer
+                    _identifier = (_b & 0x02) << 6;
+                    _b = read();
+                    _identifier |= (_b & 0xFC) >> 2;
+
+                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
+
+                    decodeRestrictedAlphabetAsCharBuffer();
+                    if (addToTable) {
+                        _characterContentChunkTable.add(_charBuffer, _charBufferLength);
+                    }
+
+                    closeStartTag();
+                    writeCharacters(_charBuffer, 0, _charBufferLength, TEXT_ESCAPES);
+                    break;
+                }
+                case DecoderStateTables.CII_EA:
+                {
+                    final boolean addToTable = (_b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0;
+                    // Decode encoding algorithm integer
+                    _identifier = (_b & 0x02) << 6;
+                    _b = read();
+                    _identifier |= (_b & 0xFC) >> 2;
+
+                    decodeOctetsOnSeventhBitOfNonIdentifyingStringOnThirdBit(_b);
+                    processCIIEncodingAlgorithm(addToTable);
+                    break;
+                }
+                case DecoderStateTables.CII_INDEX_SMALL:
+                    processCharacterContentChunk(_b & EncodingConstants.INTEGER_4TH_BIT_SMALL_MASK);
+                    break;
+                case DecoderStateTables.CII_INDEX_MEDIUM:
+                {
+                    final int index = (((_b & EncodingConstants.INTEGER_4TH_BIT_MEDIUM_MASK) << 8) | read())
+                    + EncodingConstants.INTEGER_4TH_BIT_SMALL_LIMIT;
+                    processCharacterContentChunk(index);
+                    break;
+                }
+                case DecoderStateTables.CII_INDEX_LARGE:
+                {
+                    int index = ((_b & EncodingConstants.INTEGER_4TH_BIT_LARGE_MASK) << 16) |
+                            (read() << 8) |
+                            read();
+                    index += EncodingConstants.INTEGER_4TH_BIT_MEDIUM_LIMIT;
+                    processCharacterContentChunk(index);
+                    break;
+                }
+                case DecoderStateTables.CII_INDEX_LARGE_LARGE:
+                {
+                    int index = (read() << 16) |
+                            (read() << 8) |
+                            read();
+                    index += EncodingConstants.INTEGER_4TH_BIT_LARGE_LIMIT;
+                    processCharacterContentChunk(index);
+                    break;
+                }
+                case DecoderStateTables.COMMENT_II:
+                    processCommentII();
+                    break;
+                case DecoderStateTables.PROCESSING_INSTRUCTION_II:
+                    processProcessingII();
+                    break;
+                case DecoderStateTables.UNEXPANDED_ENTITY_REFERENCE_II:
+                {
+                    final String entity_reference_name = decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherNCName);
+
+                    if ((_b & EncodingConstants.UNEXPANDED_ENTITY_SYSTEM_IDENTIFIER_FLAG) > 0) {
+                        decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherURI);
+                    }
+                    if ((_b & EncodingConstants.UNEXPANDED_ENTITY_PUBLIC_IDENTIFIER_FLAG) > 0) {
+                        decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherURI);
+                    }
+
+                    closeStartTag();
+                    write('&');
+                    writeCharacters(entity_reference_name, NO_ESCAPES);
+                    write(';');
+                    break;
+                }
+                case DecoderStateTables.TERMINATOR_DOUBLE:
+                    _doubleTerminate = true;
+                    _terminate = true;
+                    break;
+                case DecoderStateTables.TERMINATOR_SINGLE:
+                    _terminate = true;
+                    break;
+                default:
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEII"));
+            }
+        }
+    }
+
+    /**
+     * Write UTF-8 encoded character content, copying the octets unless the
+     * character content is added to the table.
+     */
+    private void processUtf8CharacterString() throws IOException {
+        closeStartTag();
+        if ((_b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0) {
+            _characterContentChunkTable.ensureSize(_octetBufferLength);
+            final int charactersOffset = _characterContentChunkTable._arrayIndex;
+            decodeUtf8StringAsCharBuffer(_characterContentChunkTable._array, charactersOffset);
+            _characterContentChunkTable.add(_charBufferLength);
+            writeCharacters(_characterContentChunkTable._array, charactersOffset, _charBufferLength, TEXT_ESCAPES);
+        } else {
+            // Copy the octets in chunks without resizing the internal buffer
+            startStreamedContent();
+            while (_contentOctetsRemaining > 0) {
+                final int length = readStreamedContentOctets();
+                writeOctets(_octetBuffer, _octetBufferOffset, length, TEXT_ESCAPES);
+                _octetBufferOffset += length;
+                _contentOctetsRemaining -= length;
+            }
+        }
+    }
+
+    private void processCharBuffer() throws IOException {
+        if ((_b & EncodingConstants.CHARACTER_CHUNK_ADD_TO_TABLE_FLAG) > 0) {
+            _characterContentChunkTable.add(_charBuffer, _charBufferLength);
+        }
+
+        closeStartTag();
+        writeCharacters(_charBuffer, 0, _charBufferLength, TEXT_ESCAPES);
+    }
+
+    private void processCharacterContentChunk(int index) throws IOException {
+        closeStartTag();
+        writeCharacters(_characterContentChunkTable._array,
+                _characterContentChunkTable._offset[index],
+                _characterContentChunkTable._length[index],
+                TEXT_ESCAPES);
+    }
+
+    private void processCIIEncodingAlgorithm(boolean addToTable) throws FastInfosetException, IOException {
+        closeStartTag();
+        if (_identifier == EncodingAlgorithmIndexes.CDATA) {
+            final int start = _octetBufferStart;
+            final int length = _octetBufferLength;
+            if (addToTable) {
+                // Set back buffer position to start of encoded string
+                _octetBufferOffset = start;
+                decodeUtf8StringIntoCharBuffer();
+                _characterContentChunkTable.add(_charBuffer, _charBufferLength);
+            }
+            writeCDATASection(_octetBuffer, start, length);
+        } else {
+            final String s = convertEncodingAlgorithmDataToCharacters();
+            if (addToTable) {
+                _characterContentChunkTable.add(s.toCharArray(), s.length());
+            }
+            writeCharacters(s, TEXT_ESCAPES);
+        }
+    }
+
+    /**
+     * Write a CDATA section, splitting the section at the occurrences of
+     * "]]>" in the octets.
+     */
+    private void writeCDATASection(byte[] b, int offset, int length) throws IOException {
+        write(CDATA_START);
+        final int end = offset + length;
+        int start = offset;
+        for (int i = offset; i + 2 < end; i++) {
+            if (b[i] == ']' && b[i + 1] == ']' && b[i + 2] == '>') {
+                write(b, start, i + 2 - start);
+                write(CDATA_END);
+                write(CDATA_START);
+                start = i + 2;
+            }
+        }
+        write(b, start, end - start);
+        write(CDATA_END);
+    }
+
+    /**
+     * Decode the namespace attributes and start an element.
+     */
+    private void startEIIWithNamespaces() throws FastInfosetException, IOException {
+        final boolean hasAttributes = (_b & EncodingConstants.ELEMENT_ATTRIBUTE_FLAG) > 0;
+
+        if (++_prefixTable._declarationId == Integer.MAX_VALUE) {
+            _prefixTable.clearDeclarationIds();
+        }
+
+        final int start = _namespacePrefixesIndex;
+        int b = read();
+        while ((b & EncodingConstants.NAMESPACE_ATTRIBUTE_MASK) == EncodingConstants.NAMESPACE_ATTRIBUTE) {
+            if (_namespaceAttributesIndex == _namespaceAttributeNameOctets.length) {
+                _namespaceAttributeNameOctets = resize(_namespaceAttributeNameOctets, _namespaceAttributesIndex);
+                _namespaceAttributeValueOctets = resize(_namespaceAttributeValueOctets, _namespaceAttributesIndex);
+            }
+
+            if (_namespacePrefixesIndex == _namespacePrefixes.length) {
+                final int[] namespaceAIIs = new int[_namespacePrefixesIndex * 3 / 2 + 1];
+                System.arraycopy(_namespacePrefixes, 0, namespaceAIIs, 0, _namespacePrefixesIndex);
+                _namespacePrefixes = namespaceAIIs;
+            }
+
+            switch (b & EncodingConstants.NAMESPACE_ATTRIBUTE_PREFIX_NAME_MASK) {
+                // no prefix, no namespace
+                // Undeclaration of default namespace
+                case 0:
+                    _namespaceAttributeNameOctets[_namespaceAttributesIndex] = DEFAULT_NAMESPACE_DECLARATION;
+                    _namespaceAttributeValueOctets[_namespaceAttributesIndex++] = EMPTY_ATTRIBUTE_VALUE;
+
+                    _prefixIndex = _namespaceNameIndex = _namespacePrefixes[_namespacePrefixesIndex++] = -1;
+                    break;
+                    // no prefix, namespace
+                    // Declaration of default namespace
+                case 1:
+                {
+                    final String namespaceName = decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(false);
+                    _namespaceAttributeNameOctets[_namespaceAttributesIndex] = DEFAULT_NAMESPACE_DECLARATION;
+                    _namespaceAttributeValueOctets[_namespaceAttributesIndex++] = getNamespaceNameOctets(namespaceName);
+
+                    _prefixIndex = _namespacePrefixes[_namespacePrefixesIndex++] = -1;
+                    break;
+                }
+                    // prefix, no namespace
+                    // Undeclaration of namespace
+                case 2:
+                {
+                    final String prefix = decodeIdentifyingNonEmptyStringOnFirstBitAsPrefix(false);
+                    _namespaceAttributeNameOctets[_namespaceAttributesIndex] = getNamespaceDeclarationOctets(prefix);
+                    _namespaceAttributeValueOctets[_namespaceAttributesIndex++] = EMPTY_ATTRIBUTE_VALUE;
+
+                    _namespaceNameIndex = -1;
+                    _namespacePrefixes[_namespacePrefixesIndex++] = _prefixIndex;
+                    break;
+                }
+                    // prefix, namespace
+                    // Declaration of prefixed namespace
+                case 3:
+                {
+                    final String prefix = decodeIdentifyingNonEmptyStringOnFirstBitAsPrefix(true);
+                    _namespaceAttributeNameOctets[_namespaceAttributesIndex] = getNamespaceDeclarationOctets(prefix);
+                    _namespaceAttributeValueOctets[_namespaceAttributesIndex++] = getNamespaceNameOctets(
+                            decodeIdentifyingNonEmptyStringOnFirstBitAsNamespaceName(true));
+
+                    _namespacePrefixes[_namespacePrefixesIndex++] = _prefixIndex;
+                    break;
+                }
+            }
+
+            _prefixTable.pushScope(_prefixIndex, _namespaceNameIndex);
+
+            b = read();
+        }
+        if (b != EncodingConstants.TERMINATOR) {
+            throw new IOException(CommonResourceBundle.getInstance().getString("message.EIInamespaceNameNotTerminatedCorrectly"));
+        }
+
+        _b = read();
+        final QualifiedName name;
+        switch(DecoderStateTables.EII(_b)) {
+            case DecoderStateTables.EII_NO_AIIS_INDEX_SMALL:
+                name = _elementNameTable._array[_b];
+                break;
+            case DecoderStateTables.EII_INDEX_MEDIUM:
+                name = decodeEIIIndexMedium();
+                break;
+            case DecoderStateTables.EII_INDEX_LARGE:
+                name = decodeEIIIndexLarge();
+                break;
+            case DecoderStateTables.EII_LITERAL:
+                name = decodeLiteralQualifiedName(
+                        _b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                        _elementNameTable.getNext());
+                _elementNameTable.add(name);
+                break;
+            default:
+                throw new IOException(CommonResourceBundle.getInstance().getString("message.IllegalStateDecodingEIIAfterAIIs"));
+        }
+
+        startEII(name, hasAttributes, start);
+    }
+
+    /**
+     * Get the octets of " xmlns:prefix=\"" for the prefix index.
+     */
+    private byte[] getNamespaceDeclarationOctets(String prefix) {
+        if (_prefixIndex >= _namespaceDeclarationOctets.length) {
+            _namespaceDeclarationOctets = resize(_namespaceDeclarationOctets, _prefixIndex);
+        }
+
+        byte[] b = _namespaceDeclarationOctets[_prefixIndex];
+        if (b == null) {
+            final byte[] prefixOctets = toOctets(prefix);
+            b = new byte[NAMESPACE_DECLARATION.length + prefixOctets.length + ATTRIBUTE_VALUE_START.length];
+            System.arraycopy(NAMESPACE_DECLARATION, 0, b, 0, NAMESPACE_DECLARATION.length);
+            System.arraycopy(prefixOctets, 0, b, NAMESPACE_DECLARATION.length, prefixOctets.length);
+            System.arraycopy(ATTRIBUTE_VALUE_START, 0, b, NAMESPACE_DECLARATION.length + prefixOctets.length,
+                    ATTRIBUTE_VALUE_START.length);
+            _namespaceDeclarationOctets[_prefixIndex] = b;
+        }
+        return b;
+    }
+
+    /**
+     * Get the escaped octets of the namespace name, followed by '"', for the
+     * namespace name index.
+     */
+    private byte[] getNamespaceNameOctets(String namespaceName) {
+        if (_namespaceNameIndex >= _namespaceNameOctets.length) {
+            _namespaceNameOctets = resize(_namespaceNameOctets, _namespaceNameIndex);
+        }
+
+        byte[] b = _namespaceNameOctets[_namespaceNameIndex];
+        if (b == null) {
+            b = _namespaceNameOctets[_namespaceNameIndex] = toEscapedAttributeValueOctets(namespaceName);
+        }
+        return b;
+    }
+
+    protected final void processAIIs() throws FastInfosetException, IOException {
+        QualifiedName name;
+        int b;
+
+        if (++_duplicateAttributeVerifier._currentIteration == Integer.MAX_VALUE) {
+            _duplicateAttributeVerifier.clear();
+        }
+
+        do {
+            // AII qualified name
+            b = read();
+            switch (DecoderStateTables.AII(b)) {
+                case DecoderStateTables.AII_INDEX_SMALL:
+                    name = _attributeNameTable._array[b];
+                    break;
+                case DecoderStateTables.AII_INDEX_MEDIUM:
+                {
+                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
+                    name = _attributeNameTable._array[i];
+                    break;
+                }
+                case DecoderStateTables.AII_INDEX_LARGE:
+                {
+                    final int i = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
+                    name = _attributeNameTable._array[i];
+                    break;
+                }
+                case DecoderStateTables.AII_LITERAL:
+                    name = decodeLiteralQualifiedName(
+                            b & EncodingConstants.LITERAL_QNAME_PREFIX_NAMESPACE_NAME_MASK,
+                            _attributeNameTable.getNext());
+                    name.createAttributeValues(DuplicateAttributeVerifier.MAP_SIZE);
+                    _attributeNameTable.add(name);
+                    break;
+                case DecoderStateTables.AII_TERMINATOR_DOUBLE:
+                    _doubleTerminate = true;
+                    _terminate = true;
+                    // AIIs have finished break out of loop
+                    continue;
+                case DecoderStateTables.AII_TERMINATOR_SINGLE:
+                    _terminate = true;
+                    // AIIs have finished break out of loop
+                    continue;
+                default:
+                    throw new IOException(CommonResourceBundle.getInstance().getString("message.decodingAIIs"));
+            }
+
+            if (name.prefixIndex > 0 && _prefixTable._currentInScope[name.prefixIndex] != name.namespaceNameIndex) {
+                throw new FastInfosetException(CommonResourceBundle.getInstance().getString("message.AIIqNameNotInScope"));
+            }
+
+            _duplicateAttributeVerifier.checkForDuplicateAttribute(name.attributeHash, name.attributeId);
+
+            write(' ');
+            write(name.getQNameOctets());
+            write(ATTRIBUTE_VALUE_START);
+
+            // [normalized value] of AII
+
+            b = read();
+            switch(DecoderStateTables.NISTRING(b)) {
+                case DecoderStateTables.NISTRING_UTF8_SMALL_LENGTH:
+                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1;
+                    processUtf8AttributeValue(b);
+                    break;
+                case DecoderStateTables.NISTRING_UTF8_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT;
+                    processUtf8AttributeValue(b);
+                    break;
+                case DecoderStateTables.NISTRING_UTF8_LARGE_LENGTH:
+                {
+                    final int length = (read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read();
+                    _octetBufferLength = length + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT;
+                    processUtf8AttributeValue(b);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_UTF16_SMALL_LENGTH:
+                    _octetBufferLength = (b & EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_MASK) + 1;
+                    processAttributeValue(b, decodeUtf16StringAsString());
+                    break;
+                case DecoderStateTables.NISTRING_UTF16_MEDIUM_LENGTH:
+                    _octetBufferLength = read() + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_SMALL_LIMIT;
+                    processAttributeValue(b, decodeUtf16StringAsString());
+                    break;
+                case DecoderStateTables.NISTRING_UTF16_LARGE_LENGTH:
+                {
+                    final int length = (read() << 24) |
+                            (read() << 16) |
+                            (read() << 8) |
+                            read();
+                    _octetBufferLength = length + EncodingConstants.OCTET_STRING_LENGTH_5TH_BIT_MEDIUM_LIMIT;
+                    processAttributeValue(b, decodeUtf16StringAsString());
+                    break;
+                }
+                case DecoderStateTables.NISTRING_RA:
+                {
+                    final int state = b;
+                    // Decode resitricted alphabet integer
+                    _identifier = (b & 0x0F) << 4;
+                    b = read();
+                    _identifier |= (b & 0xF0) >> 4;
+
+                    decodeOctetsOnFifthBitOfNonIdentifyingStringOnFirstBit(b);
+
+                    processAttributeValue(state, decodeRestrictedAlphabetAsString());
+                    break;
+                }
+                case DecoderStateTables.NISTRING_EA:
+                {
+                    final int state = b;
+                    _identifier = (b & 0x0F) << 4;
+                    b = read();
+                    _identifier |= (b & 0xF0) >> 4;
+
+                    decodeOctetsOnFifthBitOfNonIdentifyingStringOnFirstBit(b);
+                    if (_identifier == EncodingAlgorithmIndexes.CDATA) {
+                        throw new EncodingAlgorithmException(CommonResourceBundle.getInstance().getString("message.CDATAAlgorithmNotSupported"));
+                    }
+                    processAttributeValue(state, convertEncodingAlgorithmDataToCharacters());
+                    break;
+                }
+                case DecoderStateTables.NISTRING_INDEX_SMALL:
+                    writeAttributeValue(b & EncodingConstants.INTEGER_2ND_BIT_SMALL_MASK);
+                    break;
+                case DecoderStateTables.NISTRING_INDEX_MEDIUM:
+                {
+                    final int index = (((b & EncodingConstants.INTEGER_2ND_BIT_MEDIUM_MASK) << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_SMALL_LIMIT;
+                    writeAttributeValue(index);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_INDEX_LARGE:
+                {
+                    final int index = (((b & EncodingConstants.INTEGER_2ND_BIT_LARGE_MASK) << 16) | (read() << 8) | read())
+                    + EncodingConstants.INTEGER_2ND_BIT_MEDIUM_LIMIT;
+                    writeAttributeValue(index);
+                    break;
+                }
+                case DecoderStateTables.NISTRING_EMPTY:
+                    write('"');
+                    break;
+                default:
+                    throw new IOException(CommonResourceBundle.getInstance().getString("message.decodingAIIValue"));
+            }
+
+        } while (!_terminate);
+
+        // Reset duplication attribute verfifier
+        _duplicateAttributeVerifier._poolCurrent = _duplicateAttributeVerifier._poolHead;
+
+        _terminate = _doubleTerminate;
+        _doubleTerminate = false;
+    }
+
+    /**
+     * Write a UTF-8 encoded attribute value, copying the octets unless the
+     * attribute value is added to the table.
+     */
+    private void processUtf8AttributeValue(int state) throws IOException {
+        if ((state & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0) {
+            processAttributeValue(state, decodeUtf8StringAsString());
+        } else {
+            decodeOctets();
+            writeOctets(_octetBuffer, _octetBufferStart, _octetBufferLength, ATTRIBUTE_VALUE_ESCAPES);
+            write('"');
+        }
+    }
+
+    private void processAttributeValue(int state, String value) throws IOException {
+        if ((state & EncodingConstants.NISTRING_ADD_TO_TABLE_FLAG) > 0) {
+            _attributeValueTable.add(value);
+        }
+        writeCharacters(value, ATTRIBUTE_VALUE_ESCAPES);
+        write('"');
+    }
+
+    /**
+     * Write an attribute value of the table, escaping and encoding the
+     * value once for each entry of the table.
+     */
+    private void writeAttributeValue(int index) throws IOException {
+        if (index >= _attributeValueOctets.length) {
+            _attributeValueOctets = resize(_attributeValueOctets, index);
+        }
+
+        byte[] b = _attributeValueOctets[index];
+        if (b == null) {
+            b = _attributeValueOctets[index] =
+                    toEscapedAttributeValueOctets(_attributeValueTable._array[index]);
+        }
+        write(b);
+    }
+
+    protected final void processCommentII() throws FastInfosetException, IOException {
+        closeStartTag();
+        write(COMMENT_START);
+        switch(decodeNonIdentifyingStringOnFirstBit()) {
+            case NISTRING_STRING:
+                if (_addToTable) {
+                    _v.otherString.add(new CharArray(_charBuffer, 0, _charBufferLength, true));
+                }
+
+                writeCharacters(_charBuffer, 0, _charBufferLength, NO_ESCAPES);
+                break;
+            case NISTRING_ENCODING_ALGORITHM:
+                throw new IOException(CommonResourceBundle.getInstance().getString("message.commentIIAlgorithmNotSupported"));
+            case NISTRING_INDEX:
+            {
+                final CharArray ca = _v.otherString.get(_integer);
+
+                writeCharacters(ca.ch, ca.start, ca.length, NO_ESCAPES);
+                break;
+            }
+            case NISTRING_EMPTY_STRING:
+                break;
+        }
+        write(COMMENT_END);
+    }
+
+    protected final void processProcessingII() throws FastInfosetException, IOException {
+        final String target = decodeIdentifyingNonEmptyStringOnFirstBit(_v.otherNCName);
+
+        closeStartTag();
+        write(PROCESSING_INSTRUCTION_START);
+        writeCharacters(target, NO_ESCAPES);
+        switch(decodeNonIdentifyingStringOnFirstBit()) {
+            case NISTRING_STRING:
+                if (_addToTable) {
+                    _v.otherString.add(new CharArrayString(new String(_charBuffer, 0, _charBufferLength), false));
+                }
+
+                write(' ');
+                writeCharacters(_charBuffer, 0, _charBufferLength, NO_ESCAPES);
+                break;
+            case NISTRING_ENCODING_ALGORITHM:
+                throw new IOException(CommonResourceBundle.getInstance().getString("message.processingIIWithEncodingAlgorithm"));
+            case NISTRING_INDEX:
+            {
+                final CharArray ca = _v.otherString.get(_integer);
+
+                write(' ');
+                writeCharacters(ca.ch, ca.start, ca.length, NO_ESCAPES);
+                break;
+            }
+            case NISTRING_EMPTY_STRING:
+                break;
+        }
+        write(PROCESSING_INSTRUCTION_END);
+    }
+
+    private void writeDocumentTypeDeclaration(QualifiedName name) throws IOException {
+        _hasDocumentTypeDeclaration = false;
+
+        write(DOCTYPE_START);
+        write(name.getQNameOctets());
+        if (_publicIdentifier != null) {
+            write(DOCTYPE_PUBLIC);
+            writeLiteral(_publicIdentifier);
+            write(' ');
+            writeLiteral((_systemIdentifier != null) ? _systemIdentifier : "");
+        } else if (_systemIdentifier != null) {
+            write(DOCTYPE_SYSTEM);
+            writeLiteral(_systemIdentifier);
+        }
+        write('>');
+    }
+
+    private void writeLiteral(String s) throws IOException {
+        final char quote = (s.indexOf('"') == -1) ? '"' : '\'';
+        write(quote);
+        writeCharacters(s, NO_ESCAPES);
+        write(quote);
+    }
+
+    protected String convertEncodingAlgorithmDataToCharacters() throws FastInfosetException, IOException {
+        StringBuffer buffer = new StringBuffer();
+        if (_identifier < EncodingConstants.ENCODING_ALGORITHM_BUILTIN_END) {
+            Object array = BuiltInEncodingAlgorithmFactory.getAlgorithm(_identifier).
+                    decodeFromBytes(_octetBuffer, _octetBufferStart, _octetBufferLength);
+            BuiltInEncodingAlgorithmFactory.getAlgorithm(_identifier).convertToCharacters(array,  buffer);
+        } else if (_identifier >= EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START) {
+            final String URI = _v.encodingAlgorithm.get(_identifier - EncodingConstants.ENCODING_ALGORITHM_APPLICATION_START);
+            final EncodingAlgorithm ea = (EncodingAlgorithm)_registeredEncodingAlgorithms.get(URI);
+            if (ea != null) {
+                final Object data = ea.decodeFromBytes(_octetBuffer, _octetBufferStart, _octetBufferLength);
+                ea.convertToCharacters(data, buffer);
+            } else {
+                throw new EncodingAlgorithmException(
+                        CommonResourceBundle.getInstance().getString("message.algorithmDataCannotBeReported"));
+            }
+        }
+        return buffer.toString();
+    }
+
+    // -- Output --------------------------------------------------------------
+
+    private void write(int b) throws IOException {
+        if (_outLength == _out.length) {
+            flush();
+        }
+        _out[_outLength++] = (byte) b;
+    }
+
+    private void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    private void write(byte[] b, int offset, int length) throws IOException {
+        if (_outLength + length > _out.length) {
+            flush();
+            if (length > _out.length) {
+                writeToChannel(ByteBuffer.wrap(b, offset, length));
+                return;
+            }
+        }
+        System.arraycopy(b, offset, _out, _outLength, length);
+        _outLength += length;
+    }
+
+    /**
+     * Write UTF-8 encoded octets, escaping the octets of the ASCII
+     * characters that have an escape.
+     */
+    private void writeOctets(byte[] b, int offset, int length, byte[][] escapes) throws IOException {
+        final int end = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            final int c = b[i];
+            // The octets of non ASCII characters are negative
+            if (c >= 0 && escapes[c] != null) {
+                write(b, start, i - start);
+                write(escapes[c]);
+                start = i + 1;
+            }
+        }
+        write(b, start, end - start);
+    }
+
+    private void writeCharacters(String s, byte[][] escapes) throws IOException {
+        final int length = s.length();
+        if (_charBuffer.length < length) {
+            _charBuffer = new char[length];
+        }
+        s.getChars(0, length, _charBuffer, 0);
+        writeCharacters(_charBuffer, 0, length, escapes);
+    }
+
+    /**
+     * Write characters encoded in UTF-8, escaping the ASCII characters that
+     * have an escape.
+     */
+    private void writeCharacters(char[] ch, int offset, int length, byte[][] escapes) throws IOException {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (_outLength + MAXIMUM_CHARACTER_LENGTH > _out.length) {
+                flush();
+            }
+
+            int c = ch[i];
+            if (c < 0x80) {
+                final byte[] escape = escapes[c];
+                if (escape == null) {
+                    _out[_outLength++] = (byte) c;
+                } else {
+                    System.arraycopy(escape, 0, _out, _outLength, escape.length);
+                    _outLength += escape.length;
+                }
+            } else if (c < 0x800) {
+                _out[_outLength++] = (byte) (0xC0 | (c >> 6));
+                _out[_outLength++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!XMLChar.isHighSurrogate(c)) {
+                _out[_outLength++] = (byte) (0xE0 | (c >> 12));
+                _out[_outLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                _out[_outLength++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                if (i + 1 == end || !XMLChar.isLowSurrogate(ch[i + 1])) {
+                    throw new IOException(CommonResourceBundle.getInstance().getString("message.unpairedSurrogate"));
+                }
+                c = XMLChar.supplemental((char) c, ch[++i]);
+                _out[_outLength++] = (byte) (0xF0 | (c >> 18));
+                _out[_outLength++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                _out[_outLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                _out[_outLength++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (_outLength > 0) {
+            _outByteBuffer.clear();
+            _outByteBuffer.limit(_outLength);
+            writeToChannel(_outByteBuffer);
+            _outLength = 0;
+        }
+    }
+
+    private void writeToChannel(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            _channel.write(b);
+        }
+    }
+
+    private static byte[] toEscapedAttributeValueOctets(String s) {
+        final StringBuffer b = new StringBuffer(s.length() + 1);
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            final byte[] escape = (c < 0x80) ? ATTRIBUTE_VALUE_ESCAPES[c] : null;
+            if (escape == null) {
+                b.append(c);
+            } else {
+                for (int j = 0; j < escape.length; j++) {
+                    b.append((char) escape[j]);
+                }
+            }
+        }
+        b.append('"');
+        return toOctets(b.toString());
+    }
+
+    private static byte[] toOctets(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private static byte[][] resize(byte[][] a, int index) {
+        final byte[][] b = new byte[Math.max(index + 1, a.length * 2)][];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static void clearOctets(byte[][] a) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] = null;
+        }
+    }
+}
@@ -0,0 +1,1348 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.tools;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.Encoder;
+import com.sun.xml.fastinfoset.EncodingConstants;
+import com.sun.xml.fastinfoset.QualifiedName;
+import com.sun.xml.fastinfoset.util.LocalNameQualifiedNamesMap;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import org.jvnet.fastinfoset.FastInfosetException;
+
+/**
+ * Transcodes an XML document encoded in UTF-8 to a fast infoset document.
+ * <p>
+ * The octets of the XML document are tokenized and encoded directly. A 
+ * String is not created for each occurrence of a name, names are looked up
+ * by their octets in a table of the names of the document. Character 
+ * content and attribute values that cannot be added to the vocabulary are 
+ * copied as UTF-8 encoded octets without being decoded to characters.
+ * <p>
+ * The XML document must be namespace well-formed and only the predefined
+ * entities and character references may be referenced. A document type 
+ * declaration may not have an internal subset, and the external subset is
+ * not read.
+ */
+public class XMLTranscoder extends Encoder {
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    /**
+     * The length of octets of character content above which the character
+     * content is encoded in more than one chunk
+     */
+    private static final int TEXT_CHUNK_SIZE = BUFFER_SIZE / 2;
+    
+    private static final int MAX_REFERENCE_LENGTH = 16;
+    
+    private static final byte[] COMMENT_START = {'<', '!', '-', '-'};
+    private static final byte[] COMMENT_END = {'-', '-', '>'};
+    private static final byte[] CDATA_START = {'<', '!', '[', 'C', 'D', 'A', 'T', 'A', '['};
+    private static final byte[] CDATA_END = {']', ']', '>'};
+    private static final byte[] DOCTYPE_START = {'<', '!', 'D', 'O', 'C', 'T', 'Y', 'P', 'E'};
+    private static final byte[] PROCESSING_INSTRUCTION_END = {'?', '>'};
+    private static final byte[] TAG_END = {'>'};
+    private static final byte[] XML_DECLARATION_START = {'<', '?', 'x', 'm', 'l'};
+    
+    private InputStream _in;
+    
+    /**
+     * The buffer of octets of the XML document
+     */
+    private byte[] _buffer = new byte[BUFFER_SIZE];
+    private int _position;
+    private int _end;
+    
+    /**
+     * The offset in the XML document of the first octet in the buffer
+     */
+    private long _bufferOffset;
+    
+    /**
+     * The octets of normalized character content or attribute values
+     */
+    private byte[] _text = new byte[BUFFER_SIZE];
+    private int _textLength;
+    
+    private char[] _characters = new char[BUFFER_SIZE];
+    
+    private boolean _encodingStringsAsUtf8;
+    
+    /**
+     * The qualified names, and the prefixes and namespace names, of the 
+     * XML document
+     */
+    private NameTable _names = new NameTable();
+    private NameTable _strings = new NameTable();
+    
+    /**
+     * The stack of namespace declarations in scope
+     */
+    private String[] _namespacePrefixes = new String[16];
+    private String[] _namespaceNames = new String[16];
+    private int _namespacesCount;
+    
+    /**
+     * The stack of elements
+     */
+    private Name[] _elementNames = new Name[16];
+    private int[] _elementNamespacesStart = new int[16];
+    private int _depth;
+    
+    /**
+     * The attributes of the current start tag
+     */
+    private Name[] _attributeNames = new Name[8];
+    private String[] _attributeNamespaceNames = new String[8];
+    private byte[][] _attributeValues = new byte[8][];
+    private int[] _attributeValueOffsets = new int[8];
+    private int[] _attributeValueLengths = new int[8];
+    private int _attributesCount;
+    
+    public XMLTranscoder() {
+    }
+    
+    /**
+     * Transcode an XML document to the output stream of the transcoder.
+     *
+     * @param s the input stream of the XML document, encoded in UTF-8.
+     * @throws FastInfosetException if the XML document is not well-formed 
+     *         or is not supported.
+     */
+    public void transcode(InputStream s) throws IOException, FastInfosetException {
+        _in = s;
+        _position = _end = 0;
+        _bufferOffset = 0;
+        _namespacesCount = 0;
+        _depth = 0;
+        _encodingStringsAsUtf8 = UTF_8.equals(getCharacterEncodingScheme());
+        
+        reset();
+        encodeHeader(false);
+        encodeInitialVocabulary();
+        
+        processXMLDeclaration();
+        
+        boolean hasDocumentElement = false;
+        boolean hasDocumentTypeDeclaration = false;
+        while (ensure(1)) {
+            if (_buffer[_position] != '<') {
+                processText();
+                continue;
+            }
+            
+            if (!ensure(2)) {
+                throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+            }
+            switch (_buffer[_position + 1]) {
+                case '/':
+                    if (_depth == 0) {
+                        throw notWellFormed(_position);
+                    }
+                    processEndTag();
+                    break;
+                case '?':
+                    processProcessingInstruction();
+                    break;
+                case '!':
+                    if (startsWith(COMMENT_START)) {
+                        processComment();
+                    } else if (_depth > 0 && startsWith(CDATA_START)) {
+                        processCDATASection();
+                    } else if (!hasDocumentElement && !hasDocumentTypeDeclaration && 
+                            startsWith(DOCTYPE_START)) {
+                        processDocumentTypeDeclaration();
+                        hasDocumentTypeDeclaration = true;
+                    } else {
+                        throw notWellFormed(_position);
+                    }
+                    break;
+                default:
+                    if (_depth == 0 && hasDocumentElement) {
+                        throw notWellFormed(_position);
+                    }
+                    processStartTag();
+                    hasDocumentElement = true;
+            }
+        }
+        
+        if (_depth > 0 || !hasDocumentElement) {
+            throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+        }
+        encodeDocumentTermination();
+    }
+    
+    // -- Markup --------------------------------------------------------------
+    
+    private void processXMLDeclaration() throws IOException, FastInfosetException {
+        // Skip the byte order mark
+        if (ensure(3) && (_buffer[_position] & 0xFF) == 0xEF && 
+                (_buffer[_position + 1] & 0xFF) == 0xBB && (_buffer[_position + 2] & 0xFF) == 0xBF) {
+            _position += 3;
+        }
+        
+        if (!startsWith(XML_DECLARATION_START) || !ensure(6) || 
+                !isWhiteSpace(_buffer[_position + XML_DECLARATION_START.length])) {
+            return;
+        }
+        
+        final int end = findTerminator(XML_DECLARATION_START.length, PROCESSING_INSTRUCTION_END);
+        final String declaration = decodeString(_buffer, _position, end - _position);
+        _position = end + PROCESSING_INSTRUCTION_END.length;
+        
+        final int encodingIndex = declaration.indexOf("encoding");
+        if (encodingIndex == -1) {
+            return;
+        }
+        
+        int i = declaration.indexOf('=', encodingIndex) + 1;
+        while (i > 0 && i < declaration.length() && declaration.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i == 0 || i == declaration.length()) {
+            throw notWellFormed(_position);
+        }
+        final int encodingEnd = declaration.indexOf(declaration.charAt(i), i + 1);
+        if (encodingEnd == -1) {
+            throw notWellFormed(_position);
+        }
+        final String encoding = declaration.substring(i + 1, encodingEnd);
+        if (!encoding.equalsIgnoreCase("UTF-8")) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().
+                    getString("message.xmlEncodingNotSupported", new Object[]{encoding}));
+        }
+    }
+    
+    private void processStartTag() throws IOException, FastInfosetException {
+        final int tagEnd = findStartTagEnd();
+        
+        int i = _position + 1;
+        int nameEnd = scanName(i, tagEnd);
+        final Name elementName = obtainQualifiedName(i, nameEnd);
+        i = nameEnd;
+        
+        // Gather the namespace declarations and attributes
+        final int namespacesStart = _namespacesCount;
+        _attributesCount = 0;
+        _textLength = 0;
+        boolean isEmpty = false;
+        while (true) {
+            final int nameStart = skipWhiteSpace(i, tagEnd);
+            if (_buffer[nameStart] == '>') {
+                break;
+            } else if (_buffer[nameStart] == '/') {
+                if (nameStart + 1 != tagEnd) {
+                    throw notWellFormed(nameStart);
+                }
+                isEmpty = true;
+                break;
+            } else if (nameStart == i) {
+                throw notWellFormed(i);
+            }
+            
+            nameEnd = scanName(nameStart, tagEnd);
+            final Name name = obtainQualifiedName(nameStart, nameEnd);
+            i = skipWhiteSpace(nameEnd, tagEnd);
+            if (_buffer[i] != '=') {
+                throw notWellFormed(i);
+            }
+            i = skipWhiteSpace(i + 1, tagEnd);
+            final byte quote = _buffer[i];
+            if (quote != '"' && quote != '\'') {
+                throw notWellFormed(i);
+            }
+            final int valueStart = i + 1;
+            int valueEnd = valueStart;
+            while (_buffer[valueEnd] != quote) {
+                valueEnd++;
+            }
+            i = valueEnd + 1;
+            
+            if (name.qName == EncodingConstants.XMLNS_NAMESPACE_PREFIX || 
+                    name.prefix == EncodingConstants.XMLNS_NAMESPACE_PREFIX) {
+                processNamespaceDeclaration(name, valueStart, valueEnd);
+            } else {
+                addAttribute(name, valueStart, valueEnd);
+            }
+        }
+        
+        // Resolve the namespace names
+        final String namespaceName = getNamespaceName(elementName.prefix, true);
+        for (int j = 0; j < _attributesCount; j++) {
+            final Name name = _attributeNames[j];
+            final String attributeNamespaceName = getNamespaceName(name.prefix, false);
+            for (int k = 0; k < j; k++) {
+                if (name.localName.equals(_attributeNames[k].localName) &&
+                        attributeNamespaceName.equals(_attributeNamespaceNames[k])) {
+                    throw new FastInfosetException(CommonResourceBundle.getInstance().
+                            getString("message.xmlDuplicateAttribute", new Object[]{name.qName}));
+                }
+            }
+            _attributeNamespaceNames[j] = attributeNamespaceName;
+        }
+        
+        encodeTermination();
+        if (_namespacesCount > namespacesStart) {
+            write(EncodingConstants.ELEMENT | EncodingConstants.ELEMENT_NAMESPACES_FLAG |
+                    ((_attributesCount > 0) ? EncodingConstants.ELEMENT_ATTRIBUTE_FLAG : 0));
+            for (int j = namespacesStart; j < _namespacesCount; j++) {
+                encodeNamespaceAttribute(_namespacePrefixes[j], _namespaceNames[j]);
+            }
+            write(EncodingConstants.TERMINATOR);
+            _b = 0;
+        } else {
+            _b = EncodingConstants.ELEMENT;
+            if (_attributesCount > 0) {
+                _b |= EncodingConstants.ELEMENT_ATTRIBUTE_FLAG;
+            }
+        }
+        encodeElement(namespaceName, elementName);
+        
+        if (_attributesCount > 0) {
+            for (int j = 0; j < _attributesCount; j++) {
+                encodeAttribute(_attributeNamespaceNames[j], _attributeNames[j]);
+                encodeAttributeValue((_attributeValues[j] != null) ? _attributeValues[j] : _text,
+                        _attributeValueOffsets[j], _attributeValueLengths[j]);
+            }
+            _b = EncodingConstants.TERMINATOR;
+            _terminate = true;
+        }
+        
+        _position = tagEnd + 1;
+        if (isEmpty) {
+            _namespacesCount = namespacesStart;
+            encodeElementTermination();
+        } else {
+            pushElement(elementName, namespacesStart);
+        }
+    }
+    
+    private void processEndTag() throws IOException, FastInfosetException {
+        final int tagEnd = findTerminator(2, TAG_END);
+        final int nameEnd = scanName(_position + 2, tagEnd);
+        if (skipWhiteSpace(nameEnd, tagEnd) != tagEnd) {
+            throw notWellFormed(nameEnd);
+        }
+        
+        final Name name = _names.get(_buffer, _position + 2, nameEnd - _position - 2);
+        _depth--;
+        if (name != _elementNames[_depth]) {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().
+                    getString("message.xmlEndTagMismatch", new Object[]{
+                        String.valueOf(_bufferOffset + _position), _elementNames[_depth].qName}));
+        }
+        _namespacesCount = _elementNamespacesStart[_depth];
+        _position = tagEnd + 1;
+        
+        encodeElementTermination();
+    }
+    
+    private void processComment() throws IOException, FastInfosetException {
+        final int end = findTerminator(COMMENT_START.length, COMMENT_END);
+        final int start = _position + COMMENT_START.length;
+        final int length = decodeCharacters(_buffer, start, end - start);
+        _position = end + COMMENT_END.length;
+        
+        if (getIgnoreComments()) {
+            return;
+        }
+        encodeTermination();
+        encodeComment(_characters, 0, length);
+    }
+    
+    private void processCDATASection() throws IOException, FastInfosetException {
+        final int end = findTerminator(CDATA_START.length, CDATA_END);
+        final int start = _position + CDATA_START.length;
+        final int length = decodeCharacters(_buffer, start, end - start);
+        _position = end + CDATA_END.length;
+        
+        if (length == 0 || getIgnoreWhiteSpaceTextContent() && 
+                isWhiteSpace(_characters, 0, length)) {
+            return;
+        }
+        encodeTermination();
+        encodeCIIBuiltInAlgorithmDataAsCDATA(_characters, 0, length);
+    }
+    
+    private void processProcessingInstruction() throws IOException, FastInfosetException {
+        final int end = findTerminator(2, PROCESSING_INSTRUCTION_END);
+        final int targetStart = _position + 2;
+        final int targetEnd = scanName(targetStart, end);
+        final int dataStart = skipWhiteSpace(targetEnd, end);
+        if (dataStart == targetEnd && dataStart != end) {
+            throw notWellFormed(targetEnd);
+        }
+        
+        final String target = obtainString(_buffer, targetStart, targetEnd - targetStart);
+        if (target.equalsIgnoreCase("xml") || target.indexOf(':') != -1) {
+            throw notWellFormed(targetStart);
+        }
+        final int length = decodeCharacters(_buffer, dataStart, end - dataStart);
+        _position = end + PROCESSING_INSTRUCTION_END.length;
+        
+        if (getIgnoreProcesingInstructions()) {
+            return;
+        }
+        encodeTermination();
+        encodeProcessingInstruction(target, new String(_characters, 0, length));
+    }
+    
+    private void processDocumentTypeDeclaration() throws IOException, FastInfosetException {
+        // Find the end of the declaration, outside of quoted literals
+        int end = _position + DOCTYPE_START.length;
+        byte quote = 0;
+        while (true) {
+            if (end == _end) {
+                final int n = end - _position;
+                if (!fill()) {
+                    throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+                }
+                end = _position + n;
+                continue;
+            }
+            
+            final byte b = _buffer[end];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '[') {
+                throw new FastInfosetException(CommonResourceBundle.getInstance().
+                        getString("message.xmlInternalSubsetNotSupported"));
+            } else if (b == '>') {
+                break;
+            }
+            end++;
+        }
+        
+        int i = _position + DOCTYPE_START.length;
+        if (!isWhiteSpace(_buffer[i])) {
+            throw notWellFormed(i);
+        }
+        i = scanName(skipWhiteSpace(i, end), end);
+        i = skipWhiteSpace(i, end);
+        
+        String publicId = null;
+        String systemId = null;
+        if (i < end) {
+            final int keywordEnd = scanName(i, end);
+            final String keyword = decodeString(_buffer, i, keywordEnd - i);
+            i = skipWhiteSpace(keywordEnd, end);
+            if (keyword.equals("PUBLIC")) {
+                final int literalEnd = scanLiteral(i, end);
+                publicId = decodeString(_buffer, i + 1, literalEnd - i - 1);
+                i = skipWhiteSpace(literalEnd + 1, end);
+            } else if (!keyword.equals("SYSTEM")) {
+                throw notWellFormed(i);
+            }
+            final int literalEnd = scanLiteral(i, end);
+            systemId = decodeString(_buffer, i + 1, literalEnd - i - 1);
+            if (skipWhiteSpace(literalEnd + 1, end) != end) {
+                throw notWellFormed(literalEnd + 1);
+            }
+        }
+        _position = end + 1;
+        
+        if (getIgnoreDTD()) {
+            return;
+        }
+        encodeTermination();
+        encodeDocumentTypeDeclaration(systemId, publicId);
+        encodeElementTermination();
+    }
+    
+    // -- Character content ---------------------------------------------------
+    
+    /**
+     * Process character content up to the next markup.
+     * <p>
+     * Octets are copied only if references or line ends are normalized, 
+     * and content larger than the chunk size is encoded in chunks so that
+     * the buffer is not resized.
+     */
+    private void processText() throws IOException, FastInfosetException {
+        _textLength = 0;
+        boolean isNormalized = false;
+        // The number of consecutive ']' octets preceding the current octet
+        int brackets = 0;
+        int i = _position;
+        while (true) {
+            if (i == _end) {
+                if (isNormalized) {
+                    appendText(_buffer, _position, i - _position);
+                    _position = i;
+                    if (_textLength >= TEXT_CHUNK_SIZE) {
+                        final int length = getCompleteUtf8Length(_text, 0, _textLength);
+                        encodeText(_text, 0, length);
+                        System.arraycopy(_text, length, _text, 0, _textLength - length);
+                        _textLength -= length;
+                    }
+                } else if (i - _position >= TEXT_CHUNK_SIZE) {
+                    final int length = getCompleteUtf8Length(_buffer, _position, i - _position);
+                    encodeText(_buffer, _position, length);
+                    _position += length;
+                }
+                
+                final int n = i - _position;
+                final boolean isEnd = !fill();
+                i = _position + n;
+                if (isEnd) {
+                    break;
+                }
+                continue;
+            }
+            
+            final byte b = _buffer[i];
+            if (b == '<') {
+                break;
+            } else if (b == '&' || b == '\r') {
+                appendText(_buffer, _position, i - _position);
+                isNormalized = true;
+                brackets = 0;
+                _position = i;
+                if (b == '&') {
+                    final int end = findReferenceEnd();
+                    appendReference(_position, end);
+                    _position = end + 1;
+                } else {
+                    // Normalize line ends
+                    appendText('\n');
+                    _position++;
+                    if (ensure(1) && _buffer[_position] == '\n') {
+                        _position++;
+                    }
+                }
+                i = _position;
+            } else if (b == ']') {
+                brackets++;
+                i++;
+            } else if (b == '>' && brackets >= 2) {
+                // The sequence ']]>' must not occur in character content
+                throw notWellFormed(i);
+            } else {
+                brackets = 0;
+                i++;
+            }
+        }
+        
+        if (isNormalized) {
+            appendText(_buffer, _position, i - _position);
+            _position = i;
+            encodeText(_text, 0, _textLength);
+        } else {
+            final int start = _position;
+            _position = i;
+            encodeText(_buffer, start, i - start);
+        }
+    }
+    
+    private void encodeText(byte[] b, int offset, int length) throws IOException, FastInfosetException {
+        if (length == 0) {
+            return;
+        }
+        
+        if (_depth == 0) {
+            // Only white space may occur outside of the document element
+            for (int i = offset; i < offset + length; i++) {
+                if (!isWhiteSpace(b[i])) {
+                    throw notWellFormed(_position);
+                }
+            }
+            return;
+        }
+        
+        final int charactersLength = decodeUtf8(b, offset, length, null, false);
+        if (getIgnoreWhiteSpaceTextContent() && isWhiteSpace(b, offset, length)) {
+            return;
+        }
+        
+        encodeTermination();
+        if (!_encodingStringsAsUtf8 || isCharacterContentChunkLengthMatchesLimit(charactersLength)) {
+            // Line ends are already normalized, a carriage return is from a character reference
+            ensureCharactersSize(charactersLength);
+            decodeUtf8(b, offset, length, _characters, false);
+            encodeCharacters(_characters, 0, charactersLength);
+        } else {
+            encodeUtf8Characters(b, offset, length);
+        }
+    }
+    
+    /**
+     * Append the octets of a character or entity reference, ending at the 
+     * ';' at the given position, to the normalized text.
+     */
+    private void appendReference(int start, int end) throws FastInfosetException {
+        if (_buffer[start + 1] == '#') {
+            int c = 0;
+            int i = start + 2;
+            final boolean isHexadecimal = _buffer[i] == 'x';
+            if (isHexadecimal) {
+                i++;
+            }
+            if (i == end) {
+                throw notWellFormed(start);
+            }
+            for (; i < end; i++) {
+                final int b = _buffer[i];
+                final int digit = (b >= '0' && b <= '9') ? b - '0' :
+                    (isHexadecimal && b >= 'a' && b <= 'f') ? b - 'a' + 10 :
+                    (isHexadecimal && b >= 'A' && b <= 'F') ? b - 'A' + 10 : -1;
+                if (digit == -1 || c > 0x10FFFF) {
+                    throw notWellFormed(start);
+                }
+                c = c * (isHexadecimal ? 16 : 10) + digit;
+            }
+            if (!isXMLCharacter(c)) {
+                throw notWellFormed(start);
+            }
+            appendCharacter(c);
+            return;
+        }
+        
+        final int length = end - start - 1;
+        if (matches(start + 1, length, "lt")) {
+            appendText('<');
+        } else if (matches(start + 1, length, "gt")) {
+            appendText('>');
+        } else if (matches(start + 1, length, "amp")) {
+            appendText('&');
+        } else if (matches(start + 1, length, "apos")) {
+            appendText('\'');
+        } else if (matches(start + 1, length, "quot")) {
+            appendText('"');
+        } else {
+            throw new FastInfosetException(CommonResourceBundle.getInstance().
+                    getString("message.xmlEntityNotSupported", new Object[]{
+                        decodeString(_buffer, start + 1, length)}));
+        }
+    }
+    
+    private int findReferenceEnd() throws IOException, FastInfosetException {
+        int i = _position + 1;
+        while (true) {
+            if (i == _end) {
+                final int n = i - _position;
+                if (!fill()) {
+                    throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+                }
+                i = _position + n;
+                continue;
+            }
+            
+            if (_buffer[i] == ';') {
+                return i;
+            } else if (i - _position > MAX_REFERENCE_LENGTH) {
+                throw notWellFormed(_position);
+            }
+            i++;
+        }
+    }
+    
+    // -- Names and attributes ------------------------------------------------
+    
+    private void processNamespaceDeclaration(Name name, int valueStart, int valueEnd) throws FastInfosetException {
+        final byte[] value = normalizeAttributeValue(valueStart, valueEnd);
+        final String namespaceName = obtainString(value, _valueOffset, _valueLength);
+        final String prefix = (name.prefix == EncodingConstants.XMLNS_NAMESPACE_PREFIX) ? name.localName : "";
+        
+        if (prefix == EncodingConstants.XMLNS_NAMESPACE_PREFIX ||
+                namespaceName.equals(EncodingConstants.XMLNS_NAMESPACE_NAME) ||
+                (prefix == EncodingConstants.XML_NAMESPACE_PREFIX) != 
+                    namespaceName.equals(EncodingConstants.XML_NAMESPACE_NAME) ||
+                (prefix.length() > 0 && namespaceName.length() == 0)) {
+            throw notWellFormed(valueStart);
+        }
+        
+        if (_namespacesCount == _namespacePrefixes.length) {
+            final String[] prefixes = new String[_namespacesCount * 2];
+            System.arraycopy(_namespacePrefixes, 0, prefixes, 0, _namespacesCount);
+            _namespacePrefixes = prefixes;
+            final String[] namespaceNames = new String[_namespacesCount * 2];
+            System.arraycopy(_namespaceNames, 0, namespaceNames, 0, _namespacesCount);
+            _namespaceNames = namespaceNames;
+        }
+        _namespacePrefixes[_namespacesCount] = prefix;
+        _namespaceNames[_namespacesCount++] = namespaceName;
+    }
+    
+    private void addAttribute(Name name, int valueStart, int valueEnd) throws FastInfosetException {
+        if (_attributesCount == _attributeNames.length) {
+            final int length = _attributesCount * 2;
+            final Name[] names = new Name[length];
+            System.arraycopy(_attributeNames, 0, names, 0, _attributesCount);
+            _attributeNames = names;
+            _attributeNamespaceNames = new String[length];
+            final byte[][] values = new byte[length][];
+            System.arraycopy(_attributeValues, 0, values, 0, _attributesCount);
+            _attributeValues = values;
+            final int[] offsets = new int[length];
+            System.arraycopy(_attributeValueOffsets, 0, offsets, 0, _attributesCount);
+            _attributeValueOffsets = offsets;
+            final int[] lengths = new int[length];
+            System.arraycopy(_attributeValueLengths, 0, lengths, 0, _attributesCount);
+            _attributeValueLengths = lengths;
+        }
+        
+        _attributeNames[_attributesCount] = name;
+        // The normalized text may be resized by a following attribute value
+        final byte[] value = normalizeAttributeValue(valueStart, valueEnd);
+        _attributeValues[_attributesCount] = (value == _buffer) ? _buffer : null;
+        _attributeValueOffsets[_attributesCount] = _valueOffset;
+        _attributeValueLengths[_attributesCount++] = _valueLength;
+    }
+    
+    /**
+     * The offset and length of the last normalized attribute value
+     */
+    private int _valueOffset;
+    private int _valueLength;
+    
+    /**
+     * Normalize an attribute value, returning the octets of the value.
+     * <p>
+     * The value is copied to the normalized text only if it contains
+     * references or white space characters other than space.
+     */
+    private byte[] normalizeAttributeValue(int start, int end) throws FastInfosetException {
+        int i = start;
+        while (i < end) {
+            final byte b = _buffer[i];
+            if (b == '&' || b == '<' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        if (i == end) {
+            _valueOffset = start;
+            _valueLength = end - start;
+            return _buffer;
+        }
+        
+        final int offset = _textLength;
+        appendText(_buffer, start, i - start);
+        while (i < end) {
+            final byte b = _buffer[i];
+            switch (b) {
+                case '&':
+                {
+                    int referenceEnd = i + 1;
+                    while (referenceEnd < end && _buffer[referenceEnd] != ';') {
+                        referenceEnd++;
+                    }
+                    if (referenceEnd == end) {
+                        throw notWellFormed(i);
+                    }
+                    appendReference(i, referenceEnd);
+                    i = referenceEnd + 1;
+                    break;
+                }
+                case '<':
+                    throw notWellFormed(i);
+                case '\r':
+                    // A carriage return and line feed is one space
+                    if (i + 1 < end && _buffer[i + 1] == '\n') {
+                        i++;
+                    }
+                    appendText(' ');
+                    i++;
+                    break;
+                case '\t':
+                case '\n':
+                    appendText(' ');
+                    i++;
+                    break;
+                default:
+                    appendText(b);
+                    i++;
+                    break;
+            }
+        }
+        _valueOffset = offset;
+        _valueLength = _textLength - offset;
+        return _text;
+    }
+    
+    private String getNamespaceName(String prefix, boolean isElement) throws FastInfosetException {
+        if (prefix.length() == 0 && !isElement) {
+            return "";
+        }
+        
+        for (int i = _namespacesCount - 1; i >= 0; i--) {
+            if (_namespacePrefixes[i] == prefix) {
+                return _namespaceNames[i];
+            }
+        }
+        
+        if (prefix.length() == 0) {
+            return "";
+        } else if (prefix == EncodingConstants.XML_NAMESPACE_PREFIX) {
+            return EncodingConstants.XML_NAMESPACE_NAME;
+        }
+        throw new FastInfosetException(CommonResourceBundle.getInstance().
+                getString("message.xmlPrefixNotDeclared", new Object[]{prefix}));
+    }
+    
+    private void encodeElement(String namespaceURI, Name name) throws IOException {
+        LocalNameQualifiedNamesMap.Entry entry = _v.elementName.obtainEntry(name.qName);
+        if (entry._valueIndex > 0) {
+            QualifiedName[] names = entry._value;
+            for (int i = 0; i < entry._valueIndex; i++) {
+                if ((namespaceURI == names[i].namespaceName || namespaceURI.equals(names[i].namespaceName))) {
+                    encodeNonZeroIntegerOnThirdBit(names[i].index);
+                    return;
+                }
+            }
+        }
+        
+        encodeLiteralElementQualifiedNameOnThirdBit(namespaceURI, name.prefix,
+                name.localName, entry);
+    }
+    
+    private void encodeAttribute(String namespaceURI, Name name) throws IOException {
+        LocalNameQualifiedNamesMap.Entry entry = _v.attributeName.obtainEntry(name.qName);
+        if (entry._valueIndex > 0) {
+            QualifiedName[] names = entry._value;
+            for (int i = 0; i < entry._valueIndex; i++) {
+                if ((namespaceURI == names[i].namespaceName || namespaceURI.equals(names[i].namespaceName))) {
+                    encodeNonZeroIntegerOnSecondBitFirstBitZero(names[i].index);
+                    return;
+                }
+            }
+        }
+        
+        encodeLiteralAttributeQualifiedNameOnSecondBit(namespaceURI, name.prefix,
+                name.localName, entry);
+    }
+    
+    private void encodeAttributeValue(byte[] b, int offset, int length) throws IOException, FastInfosetException {
+        final int charactersLength = decodeUtf8(b, offset, length, null, false);
+        final boolean addToTable = isAttributeValueLengthMatchesLimit(charactersLength);
+        if (!_encodingStringsAsUtf8 || addToTable) {
+            ensureCharactersSize(charactersLength);
+            decodeUtf8(b, offset, length, _characters, false);
+            encodeNonIdentifyingStringOnFirstBit(new String(_characters, 0, charactersLength), 
+                    _v.attributeValue, addToTable, false);
+        } else {
+            encodeNonIdentifyingUtf8StringOnFirstBit(b, offset, length);
+        }
+    }
+    
+    private void pushElement(Name name, int namespacesStart) {
+        if (_depth == _elementNames.length) {
+            final Name[] names = new Name[_depth * 2];
+            System.arraycopy(_elementNames, 0, names, 0, _depth);
+            _elementNames = names;
+            final int[] namespacesStarts = new int[_depth * 2];
+            System.arraycopy(_elementNamespacesStart, 0, namespacesStarts, 0, _depth);
+            _elementNamespacesStart = namespacesStarts;
+        }
+        _elementNames[_depth] = name;
+        _elementNamespacesStart[_depth++] = namespacesStart;
+    }
+    
+    /**
+     * Obtain the qualified name whose octets are in the buffer, adding the
+     * name to the table of names if not present.
+     */
+    private Name obtainQualifiedName(int start, int end) throws FastInfosetException {
+        final int length = end - start;
+        Name name = _names.get(_buffer, start, length);
+        if (name != null) {
+            return name;
+        }
+        
+        int colon = -1;
+        for (int i = start; i < end; i++) {
+            if (_buffer[i] == ':') {
+                if (colon != -1 || i == start || i == end - 1) {
+                    throw notWellFormed(i);
+                }
+                colon = i;
+            }
+        }
+        
+        final String qName = obtainString(_buffer, start, length);
+        if (colon == -1) {
+            name = new Name(_buffer, start, length, qName, "", qName);
+        } else {
+            name = new Name(_buffer, start, length, qName, 
+                    obtainString(_buffer, start, colon - start), 
+                    obtainString(_buffer, colon + 1, end - colon - 1));
+        }
+        _names.add(name);
+        return name;
+    }
+    
+    /**
+     * Obtain the interned string of the octets, adding the string to the
+     * table of strings if not present.
+     */
+    private String obtainString(byte[] b, int offset, int length) throws FastInfosetException {
+        Name name = _strings.get(b, offset, length);
+        if (name == null) {
+            final String s = decodeString(b, offset, length).intern();
+            name = new Name(b, offset, length, s, null, null);
+            _strings.add(name);
+        }
+        return name.qName;
+    }
+    
+    private String decodeString(byte[] b, int offset, int length) throws FastInfosetException {
+        return new String(_characters, 0, decodeCharacters(b, offset, length));
+    }
+    
+    /**
+     * Decode UTF-8 encoded octets into the buffer of characters, normalizing
+     * line ends.
+     *
+     * @return the length of characters.
+     */
+    private int decodeCharacters(byte[] b, int offset, int length) throws FastInfosetException {
+        ensureCharactersSize(length);
+        return decodeUtf8(b, offset, length, _characters, true);
+    }
+    
+    private void ensureCharactersSize(int length) {
+        if (_characters.length < length) {
+            _characters = new char[length];
+        }
+    }
+    
+    /**
+     * Decode, or only check, UTF-8 encoded octets of XML characters.
+     *
+     * @param ch the array the characters are decoded into, or null if the 
+     *        octets are only checked.
+     * @return the length of characters.
+     */
+    private int decodeUtf8(byte[] b, int offset, int length, char[] ch, boolean normalizeLineEnds) throws FastInfosetException {
+        final int end = offset + length;
+        int charactersLength = 0;
+        int i = offset;
+        while (i < end) {
+            int c = b[i++] & 0xFF;
+            if (c < 0x80) {
+                if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                    throw illegalCharacter();
+                } else if (c == '\r' && normalizeLineEnds) {
+                    c = '\n';
+                    if (i < end && b[i] == '\n') {
+                        i++;
+                    }
+                }
+                if (ch != null) {
+                    ch[charactersLength] = (char) c;
+                }
+                charactersLength++;
+                continue;
+            }
+            
+            int octets;
+            int minimum;
+            if (c < 0xC2) {
+                throw illegalCharacter();
+            } else if (c < 0xE0) {
+                octets = 1;
+                minimum = 0x80;
+                c &= 0x1F;
+            } else if (c < 0xF0) {
+                octets = 2;
+                minimum = 0x800;
+                c &= 0x0F;
+            } else if (c < 0xF5) {
+                octets = 3;
+                minimum = 0x10000;
+                c &= 0x07;
+            } else {
+                throw illegalCharacter();
+            }
+            if (i + octets > end) {
+                throw illegalCharacter();
+            }
+            while (octets-- > 0) {
+                final int d = b[i++];
+                if ((d & 0xC0) != 0x80) {
+                    throw illegalCharacter();
+                }
+                c = (c << 6) | (d & 0x3F);
+            }
+            if (c < minimum || !isXMLCharacter(c)) {
+                throw illegalCharacter();
+            }
+            
+            if (c < 0x10000) {
+                if (ch != null) {
+                    ch[charactersLength] = (char) c;
+                }
+                charactersLength++;
+            } else {
+                if (ch != null) {
+                    c -= 0x10000;
+                    ch[charactersLength] = (char) (0xD800 | (c >> 10));
+                    ch[charactersLength + 1] = (char) (0xDC00 | (c & 0x3FF));
+                }
+                charactersLength += 2;
+            }
+        }
+        return charactersLength;
+    }
+    
+    /**
+     * Get the length of the octets up to the start of a last character 
+     * whose octets are not all present.
+     */
+    private static int getCompleteUtf8Length(byte[] b, int offset, int length) {
+        final int end = offset + length;
+        int start = end - 1;
+        while (start > offset && end - start < 4 && (b[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        
+        final int c = b[start] & 0xFF;
+        final int characterLength = (c < 0xC0) ? 1 : (c < 0xE0) ? 2 : (c < 0xF0) ? 3 : 4;
+        // An illegal sequence is left to be reported when decoded
+        return (end - start >= characterLength) ? length : start - offset;
+    }
+    
+    private static boolean isXMLCharacter(int c) {
+        return (c >= 0x20 && c < 0xD800) || c == '\t' || c == '\n' || c == '\r' ||
+                (c >= 0xE000 && c < 0xFFFE) || (c >= 0x10000 && c <= 0x10FFFF);
+    }
+    
+    private void appendText(byte[] b, int offset, int length) {
+        ensureTextSize(length);
+        System.arraycopy(b, offset, _text, _textLength, length);
+        _textLength += length;
+    }
+    
+    private void appendText(int b) {
+        ensureTextSize(1);
+        _text[_textLength++] = (byte) b;
+    }
+    
+    private void appendCharacter(int c) {
+        ensureTextSize(4);
+        if (c < 0x80) {
+            _text[_textLength++] = (byte) c;
+        } else if (c < 0x800) {
+            _text[_textLength++] = (byte) (0xC0 | (c >> 6));
+            _text[_textLength++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c < 0x10000) {
+            _text[_textLength++] = (byte) (0xE0 | (c >> 12));
+            _text[_textLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            _text[_textLength++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            _text[_textLength++] = (byte) (0xF0 | (c >> 18));
+            _text[_textLength++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            _text[_textLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            _text[_textLength++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+    
+    private void ensureTextSize(int length) {
+        if (_textLength + length > _text.length) {
+            final byte[] text = new byte[(_textLength + length) * 3 / 2];
+            System.arraycopy(_text, 0, text, 0, _textLength);
+            _text = text;
+        }
+    }
+    
+    // -- Buffer --------------------------------------------------------------
+    
+    /**
+     * Move the octets from the current position to the start of the buffer,
+     * or resize the buffer if full, and read more octets.
+     *
+     * @return false if the end of the XML document is reached.
+     */
+    private boolean fill() throws IOException {
+        if (_position > 0) {
+            System.arraycopy(_buffer, _position, _buffer, 0, _end - _position);
+            _bufferOffset += _position;
+            _end -= _position;
+            _position = 0;
+        } else if (_end == _buffer.length) {
+            final byte[] buffer = new byte[_buffer.length * 2];
+            System.arraycopy(_buffer, 0, buffer, 0, _end);
+            _buffer = buffer;
+        }
+        
+        final int n = _in.read(_buffer, _end, _buffer.length - _end);
+        if (n < 0) {
+            return false;
+        }
+        _end += n;
+        return true;
+    }
+    
+    /**
+     * @return false if less than length octets remain in the XML document.
+     */
+    private boolean ensure(int length) throws IOException {
+        while (_end - _position < length) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean startsWith(byte[] b) throws IOException {
+        if (!ensure(b.length)) {
+            return false;
+        }
+        for (int i = 0; i < b.length; i++) {
+            if (_buffer[_position + i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Find the terminator of the markup at the current position, reading
+     * the markup into the buffer.
+     *
+     * @param offset the offset from the current position to start from.
+     * @return the position of the terminator.
+     */
+    private int findTerminator(int offset, byte[] terminator) throws IOException {
+        int i = _position + offset;
+        while (true) {
+            if (i + terminator.length > _end) {
+                final int n = i - _position;
+                if (!fill()) {
+                    throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+                }
+                i = _position + n;
+                continue;
+            }
+            
+            int j = 0;
+            while (j < terminator.length && _buffer[i + j] == terminator[j]) {
+                j++;
+            }
+            if (j == terminator.length) {
+                return i;
+            }
+            i++;
+        }
+    }
+    
+    /**
+     * Find the '>' of the start tag at the current position, outside of the 
+     * attribute values, reading the start tag into the buffer.
+     */
+    private int findStartTagEnd() throws IOException, FastInfosetException {
+        int i = _position + 1;
+        byte quote = 0;
+        while (true) {
+            if (i == _end) {
+                final int n = i - _position;
+                if (!fill()) {
+                    throw new EOFException(CommonResourceBundle.getInstance().getString("message.EOF"));
+                }
+                i = _position + n;
+                continue;
+            }
+            
+            final byte b = _buffer[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            } else if (b == '<') {
+                throw notWellFormed(i);
+            }
+            i++;
+        }
+    }
+    
+    /**
+     * @return the position after the name that starts at the position.
+     */
+    private int scanName(int start, int end) throws FastInfosetException {
+        int i = start;
+        while (i < end) {
+            final byte b = _buffer[i];
+            if (b < 0) {
+                // A non ASCII character
+                i++;
+                continue;
+            } else if (isWhiteSpace(b) || b == '/' || b == '>' || b == '=' || b == '?') {
+                break;
+            } else if (!(b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b == '_' || b == ':' ||
+                    i > start && (b >= '0' && b <= '9' || b == '-' || b == '.'))) {
+                throw notWellFormed(i);
+            }
+            i++;
+        }
+        
+        if (i == start) {
+            throw notWellFormed(start);
+        }
+        return i;
+    }
+    
+    /**
+     * @return the position of the closing quote of the literal that starts
+     *         at the position.
+     */
+    private int scanLiteral(int start, int end) throws FastInfosetException {
+        final byte quote = _buffer[start];
+        if (quote == '"' || quote == '\'') {
+            for (int i = start + 1; i < end; i++) {
+                if (_buffer[i] == quote) {
+                    return i;
+                }
+            }
+        }
+        throw notWellFormed(start);
+    }
+    
+    private int skipWhiteSpace(int start, int end) {
+        while (start < end && isWhiteSpace(_buffer[start])) {
+            start++;
+        }
+        return start;
+    }
+    
+    private boolean matches(int start, int length, String s) {
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (_buffer[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isWhiteSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+    
+    private static boolean isWhiteSpace(byte[] b, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!isWhiteSpace(b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private FastInfosetException notWellFormed(int position) {
+        return new FastInfosetException(CommonResourceBundle.getInstance().
+                getString("message.xmlNotWellFormed", new Object[]{String.valueOf(_bufferOffset + position)}));
+    }
+    
+    private FastInfosetException illegalCharacter() {
+        return new FastInfosetException(CommonResourceBundle.getInstance().
+                getString("message.xmlIllegalCharacter"));
+    }
+    
+    /**
+     * A name, or string, and its UTF-8 encoded octets.
+     */
+    private static final class Name {
+        final byte[] octets;
+        final int hash;
+        final String qName;
+        final String prefix;
+        final String localName;
+        Name next;
+        
+        Name(byte[] b, int offset, int length, String qName, String prefix, String localName) {
+            octets = new byte[length];
+            System.arraycopy(b, offset, octets, 0, length);
+            hash = hashCode(b, offset, length);
+            this.qName = qName;
+            this.prefix = prefix;
+            this.localName = localName;
+        }
+        
+        static int hashCode(byte[] b, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + b[i];
+            }
+            return hash;
+        }
+        
+        boolean equals(byte[] b, int offset, int length) {
+            if (octets.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (octets[i] != b[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * A table of names looked up by their octets.
+     */
+    private static final class NameTable {
+        private Name[] _table = new Name[64];
+        private int _size;
+        
+        Name get(byte[] b, int offset, int length) {
+            final int hash = Name.hashCode(b, offset, length);
+            for (Name n = _table[hash & (_table.length - 1)]; n != null; n = n.next) {
+                if (n.hash == hash && n.equals(b, offset, length)) {
+                    return n;
+                }
+            }
+            return null;
+        }
+        
+        void add(Name name) {
+            if (++_size > _table.length * 3 / 4) {
+                final Name[] table = new Name[_table.length * 2];
+                for (int i = 0; i < _table.length; i++) {
+                    Name n = _table[i];
+                    while (n != null) {
+                        final Name next = n.next;
+                        final int index = n.hash & (table.length - 1);
+                        n.next = table[index];
+                        table[index] = n;
+                        n = next;
+                    }
+                }
+                _table = table;
+            }
+            
+            final int index = name.hash & (_table.length - 1);
+            name.next = _table[index];
+            _table[index] = name;
+        }
+    }
+}
@@ -19,6 +19,20 @@ package com.sun.xml.fastinfoset.util;
 
 import com.sun.xml.fastinfoset.CommonResourceBundle;
 
+/**
+ * A map of character arrays to indexes using open addressing with linear
+ * probing.
+ * <p>
+ * The keys, hash codes and values are held in parallel arrays. The table
+ * holds the entries of the read only map and of this map, and the read only
+ * map is never modified, so it may be shared between maps used by different
+ * threads.
+ * <p>
+ * Setting a read only map shares its table, which is copied without 
+ * rehashing when an entry is first added to this map. The entries of the
+ * read only map precede the added entries, which are the only entries
+ * removed when this map is cleared.
+ */
 public class CharArrayIntMap extends KeyIntMap {
 
     private CharArrayIntMap _readOnlyMap;
@@ -26,43 +40,23 @@ public class CharArrayIntMap extends KeyIntMap {
     // Total character count of Map
     protected int _totalCharacterCount;
     
-    static class Entry extends BaseEntry {
-        final char[] _ch;
-        final int _start;
-        final int _length;
-        Entry _next;
-        
-        public Entry(char[] ch, int start, int length, int hash, int value, Entry next) {
-            super(hash, value);
-            _ch = ch;
-            _start = start;
-            _length = length;
-            _next = next;
-        }
-        
-        public final boolean equalsCharArray(char[] ch, int start, int length) {
-            if (_length == length) {
-                int n = _length;
-                int i = _start;
-                int j = start;
-                while (n-- != 0) {
-                    if (_ch[i++] != ch[j++])
-                        return false;
-                }
-                return true;
-            }
-
-            return false;
-        }
-        
-    }
+    /**
+     * The arrays of characters of the keys, null for an empty slot.
+     */
+    private char[][] _ch;
+    
+    private int[] _start;
+    
+    private int[] _length;
+    
+    private int[] _hashes;
     
-    private Entry[] _table;
+    private int[] _values;
     
     public CharArrayIntMap(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
 
-        _table = new Entry[_capacity];        
+        allocate(_capacity);
     }
     
     public CharArrayIntMap(int initialCapacity) {
@@ -74,8 +68,8 @@ public class CharArrayIntMap extends KeyIntMap {
     }
 
     public final void clear() {
-        for (int i = 0; i < _table.length; i++) {
-            _table[i] = null;
+        for (int i = 0; i < _size; i++) {
+            _ch[_dynamicSlots[i]] = null;
         }
         _size = 0;
         _totalCharacterCount = 0;
@@ -91,6 +85,10 @@ public class CharArrayIntMap extends KeyIntMap {
     }
     
     public final void setReadOnlyMap(CharArrayIntMap readOnlyMap, boolean clear) {
+        if (clear && readOnlyMap != null) {
+            clear();
+        }
+        replaceReadOnlyEntries(readOnlyMap);
         _readOnlyMap = readOnlyMap;
         if (_readOnlyMap != null) {
             _readOnlyMapSize = _readOnlyMap.size();
@@ -111,8 +109,15 @@ public class CharArrayIntMap extends KeyIntMap {
      * otherwise NOT_PRESENT.
      */
     public final int get(char[] ch, int start, int length) {
-        final int hash = hashHash(CharArray.hashCode(ch, start, length));
-        return get(ch, start, length, hash);
+        final int hash = mix(CharArray.hashCode(ch, start, length));
+        final int mask = _ch.length - 1;
+        for (int i = hash & mask; _ch[i] != null; i = (i + 1) & mask) {
+            if (_hashes[i] == hash && equalsCharArray(i, ch, start, length)) {
+                return _values[i];
+            }
+        }
+                
+        return NOT_PRESENT;
     }
 
     /**
@@ -124,20 +129,14 @@ public class CharArrayIntMap extends KeyIntMap {
      * NOT_PRESENT if character buffer was just added.
      */
     public final int obtainIndex(char[] ch, int start, int length, boolean clone) {
-        final int hash = hashHash(CharArray.hashCode(ch, start, length));
-        
-        if (_readOnlyMap != null) {
-            final int index = _readOnlyMap.get(ch, start, length, hash);
-            if (index != -1) {
-                return index;
-            }
-        }
-        
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && e.equalsCharArray(ch, start, length)) {
-                return e._value;
+        final int hash = mix(CharArray.hashCode(ch, start, length));
+        final int mask = _ch.length - 1;
+        int i = hash & mask;
+        while (_ch[i] != null) {
+            if (_hashes[i] == hash && equalsCharArray(i, ch, start, length)) {
+                return _values[i];
             }
+            i = (i + 1) & mask;
         }
 
         if (clone) {
@@ -148,7 +147,8 @@ public class CharArrayIntMap extends KeyIntMap {
             start = 0;
         }
         
-        addEntry(ch, start, length, hash, _size + _readOnlyMapSize, tableIndex);        
+        addEntry(ch, start, length, hash, _size + _readOnlyMapSize, i);
+        _totalCharacterCount += length;
         return NOT_PRESENT;
     }
     
@@ -156,63 +156,160 @@ public class CharArrayIntMap extends KeyIntMap {
         return _totalCharacterCount;
     }
 
-    private final int get(char[] ch, int start, int length, int hash) {
-        if (_readOnlyMap != null) {
-            final int i = _readOnlyMap.get(ch, start, length, hash);
-            if (i != -1) {
-                return i;
+    private boolean equalsCharArray(int slot, char[] ch, int start, int length) {
+        if (_length[slot] == length) {
+            final char[] keyCh = _ch[slot];
+            int n = length;
+            int i = _start[slot];
+            int j = start;
+            while (n-- != 0) {
+                if (keyCh[i++] != ch[j++])
+                    return false;
             }
+            return true;
         }
 
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && e.equalsCharArray(ch, start, length)) {
-                return e._value;
+        return false;
+    }
+    
+    /**
+     * Replace the entries of the read only map with the entries of another
+     * read only map, keeping the entries added to this map.
+     * <p>
+     * The table of the other read only map is shared if no entries have
+     * been added to this map, otherwise the entries are placed in a new
+     * table.
+     */
+    private void replaceReadOnlyEntries(CharArrayIntMap readOnlyMap) {
+        if (readOnlyMap == _readOnlyMap) {
+            return;
+        }
+        
+        if (_size == 0) {
+            if (readOnlyMap != null) {
+                _readOnlyCount = readOnlyMap._readOnlyCount + readOnlyMap._size;
+                _capacity = readOnlyMap._ch.length;
+                _ch = readOnlyMap._ch;
+                _start = readOnlyMap._start;
+                _length = readOnlyMap._length;
+                _hashes = readOnlyMap._hashes;
+                _values = readOnlyMap._values;
+                _threshold = threshold(_capacity);
+                _shared = true;
+            } else {
+                _readOnlyCount = 0;
+                allocate(_ch.length);
             }
+        } else if (readOnlyMap != null) {
+            _readOnlyCount = readOnlyMap._readOnlyCount + readOnlyMap._size;
+            rebuild(capacityFor(_ch.length, _readOnlyCount + _size), readOnlyMap._ch,
+                    readOnlyMap._start, readOnlyMap._length, readOnlyMap._hashes, readOnlyMap._values);
+        } else {
+            _readOnlyCount = 0;
+            rebuild(_ch.length, null, null, null, null, null);
         }
-                
-        return NOT_PRESENT;
     }
-
-    private final void addEntry(char[] ch, int start, int length, int hash, int value, int bucketIndex) {
-	Entry e = _table[bucketIndex];
-        _table[bucketIndex] = new Entry(ch, start, length, hash, value, e);
-        _totalCharacterCount += length;
-                if (_size++ >= _threshold) {
-            resize(2 * _table.length);
+    
+    private void addEntry(char[] ch, int start, int length, int hash, int value, int slot) {
+        if (_shared) {
+            copyEntries();
+        }
+        putEntry(ch, start, length, hash, value, slot);
+        addDynamicSlot(slot);
+        if (_size + _readOnlyCount > _threshold) {
+            resize(2 * _ch.length);
         }        
     }
     
-    private final void resize(int newCapacity) {
-        _capacity = newCapacity;
-        Entry[] oldTable = _table;
-        int oldCapacity = oldTable.length;
-        if (oldCapacity == MAXIMUM_CAPACITY) {
-            _threshold = Integer.MAX_VALUE;
+    private void putEntry(char[] ch, int start, int length, int hash, int value, int slot) {
+        _ch[slot] = ch;
+        _start[slot] = start;
+        _length[slot] = length;
+        _hashes[slot] = hash;
+        _values[slot] = value;
+    }
+    
+    private int emptySlotFor(int hash) {
+        final int mask = _ch.length - 1;
+        int i = hash & mask;
+        while (_ch[i] != null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    private void allocate(int capacity) {
+        _capacity = capacity;
+        _ch = new char[capacity][];
+        _start = new int[capacity];
+        _length = new int[capacity];
+        _hashes = new int[capacity];
+        _values = new int[capacity];
+        _threshold = threshold(capacity);
+        _shared = false;
+    }
+    
+    /**
+     * Copy the shared table of the read only map, the entries keep their
+     * slots.
+     */
+    private void copyEntries() {
+        final char[][] ch = _ch;
+        final int[] start = _start;
+        final int[] length = _length;
+        final int[] hashes = _hashes;
+        final int[] values = _values;
+        allocate(_capacity);
+        System.arraycopy(ch, 0, _ch, 0, _capacity);
+        System.arraycopy(start, 0, _start, 0, _capacity);
+        System.arraycopy(length, 0, _length, 0, _capacity);
+        System.arraycopy(hashes, 0, _hashes, 0, _capacity);
+        System.arraycopy(values, 0, _values, 0, _capacity);
+    }
+    
+    private void resize(int newCapacity) {
+        if (_ch.length == MAXIMUM_CAPACITY) {
+            _threshold = MAXIMUM_CAPACITY - 1;
             return;
         }
 
-        Entry[] newTable = new Entry[_capacity];
-        transfer(newTable);
-        _table = newTable;
-        _threshold = (int)(_capacity * _loadFactor);        
+        rebuild(newCapacity, _ch, _start, _length, _hashes, _values);
     }
-
-    private final void transfer(Entry[] newTable) {
-        Entry[] src = _table;
-        int newCapacity = newTable.length;
-        for (int j = 0; j < src.length; j++) {
-            Entry e = src[j];
-            if (e != null) {
-                src[j] = null;
-                do {
-                    Entry next = e._next;
-                    int i = indexFor(e._hash, newCapacity);  
-                    e._next = newTable[i];
-                    newTable[i] = e;
-                    e = next;
-                } while (e != null);
+    
+    /**
+     * Allocate a table and place the entries of the given arrays, followed
+     * by the entries added since the map was last cleared.
+     */
+    private void rebuild(int capacity, char[][] ch, int[] start, int[] length, int[] hashes, int[] values) {
+        final char[][] dynamicCh = new char[_size][];
+        final int[] dynamicStart = new int[_size];
+        final int[] dynamicLength = new int[_size];
+        final int[] dynamicHashes = new int[_size];
+        final int[] dynamicValues = new int[_size];
+        for (int n = 0; n < _size; n++) {
+            final int i = _dynamicSlots[n];
+            dynamicCh[n] = _ch[i];
+            dynamicStart[n] = _start[i];
+            dynamicLength[n] = _length[i];
+            dynamicHashes[n] = _hashes[i];
+            dynamicValues[n] = _values[i];
+            // The added entries are not placed with the given entries when
+            // the given arrays are those of this map
+            _ch[i] = null;
+        }
+        
+        allocate(capacity);
+        if (ch != null) {
+            for (int i = 0; i < ch.length; i++) {
+                if (ch[i] != null) {
+                    putEntry(ch[i], start[i], length[i], hashes[i], values[i], emptySlotFor(hashes[i]));
+                }
             }
         }
-    }        
+        for (int n = 0; n < dynamicCh.length; n++) {
+            final int slot = emptySlotFor(dynamicHashes[n]);
+            putEntry(dynamicCh[n], dynamicStart[n], dynamicLength[n], dynamicHashes[n], dynamicValues[n], slot);
+            _dynamicSlots[n] = slot;
+        }
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.util;
+
+import com.sun.xml.fastinfoset.CommonResourceBundle;
+import com.sun.xml.fastinfoset.EncodedFragment;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of {@link EncodedFragment} instances, indexed by an identifier
+ * of the fragment.
+ * <p>
+ * The cache holds a maximum number of fragments. When the maximum is 
+ * exceeded the least recently used fragment is removed.
+ * <p>
+ * The cache may be shared between serializers running in different threads.
+ */
+public final class EncodedFragmentCache {
+    private final int _maximumSize;
+    
+    private final Map _fragments;
+    
+    public EncodedFragmentCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException(CommonResourceBundle.getInstance().
+                    getString("message.illegalMaximumSize", new Object[]{Integer.valueOf(maximumSize)}));
+        }
+        
+        _maximumSize = maximumSize;
+        _fragments = new LeastRecentlyUsedMap(maximumSize);
+    }
+    
+    /**
+     * Get the fragment for an identifier.
+     *
+     * @param id the identifier of the fragment.
+     * @return the fragment, or null if the cache does not hold the fragment.
+     */
+    public synchronized EncodedFragment get(Object id) {
+        return (EncodedFragment)_fragments.get(id);
+    }
+    
+    /**
+     * Put the fragment for an identifier.
+     *
+     * @param id the identifier of the fragment.
+     * @param fragment the fragment.
+     * @return the fragment previously held for the identifier, or null.
+     */
+    public synchronized EncodedFragment put(Object id, EncodedFragment fragment) {
+        return (EncodedFragment)_fragments.put(id, fragment);
+    }
+    
+    /**
+     * Remove the fragment for an identifier.
+     *
+     * @param id the identifier of the fragment.
+     * @return the fragment, or null if the cache does not hold the fragment.
+     */
+    public synchronized EncodedFragment remove(Object id) {
+        return (EncodedFragment)_fragments.remove(id);
+    }
+    
+    public synchronized int size() {
+        return _fragments.size();
+    }
+    
+    public synchronized void clear() {
+        _fragments.clear();
+    }
+    
+    public int getMaximumSize() {
+        return _maximumSize;
+    }
+    
+    /**
+     * A map, in access order, that removes the least recently used entry
+     * when the maximum size is exceeded.
+     */
+    private static final class LeastRecentlyUsedMap extends LinkedHashMap {
+        private static final long serialVersionUID = 1L;
+        
+        private final int _maximumSize;
+        
+        LeastRecentlyUsedMap(int maximumSize) {
+            super(16, 0.75f, true);
+            _maximumSize = maximumSize;
+        }
+        
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > _maximumSize;
+        }
+    }
+}
@@ -21,18 +21,21 @@ import com.sun.xml.fastinfoset.CommonResourceBundle;
 
 public class FixedEntryStringIntMap extends StringIntMap {
     
-    private Entry _fixedEntry;
+    private final String _fixedKey;
+    
+    /**
+     * True if the fixed entry has been added to this map, otherwise the
+     * fixed entry is that of the read only map.
+     */
+    private boolean _fixedEntryAdded;
 
     public FixedEntryStringIntMap(String fixedEntry, int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
         
         // Add the fixed entry
-        final int hash = hashHash(fixedEntry.hashCode());
-        final int tableIndex = indexFor(hash, _table.length);
-        _table[tableIndex] = _fixedEntry = new Entry(fixedEntry, hash, _index++, null);
-        if (_size++ >= _threshold) {
-            resize(2 * _table.length);
-        }
+        _fixedKey = fixedEntry;
+        addFixedEntry();
+        _index++;
     }
     
     public FixedEntryStringIntMap(String fixedEntry, int initialCapacity) {
@@ -44,21 +47,16 @@ public class FixedEntryStringIntMap extends StringIntMap {
     }
 
     public final void clear() {
-        for (int i = 0; i < _table.length; i++) {
-            _table[i] = null;
-        }
-        _lastEntry = NULL_ENTRY;
-        
-        if (_fixedEntry != null) {
-            final int tableIndex = indexFor(_fixedEntry._hash, _table.length);
-            _table[tableIndex] = _fixedEntry;
-            _fixedEntry._next = null;
-            _size = 1;
-            _index = _readOnlyMapSize + 1;
+        clearEntries();
+        _fixedEntryAdded = false;
+        if (_readOnlyMap == null) {
+            addFixedEntry();
         } else {
-            _size = 0;
-            _index = _readOnlyMapSize;
+            // The fixed entry is that of the read only map
+            _readOnlyMapSize = _readOnlyMap.size();
         }
+        _index = _readOnlyMapSize + _size;
+        _totalCharacterCount = 0;
     }
 
     public final void setReadOnlyMap(KeyIntMap readOnlyMap, boolean clear) {
@@ -71,35 +69,34 @@ public class FixedEntryStringIntMap extends StringIntMap {
     }
     
     public final void setReadOnlyMap(FixedEntryStringIntMap readOnlyMap, boolean clear) {
+        if (readOnlyMap != null && (clear || (_fixedEntryAdded && _size == 1))) {
+            // The fixed entry of the read only map replaces an added fixed
+            // entry, so that the table of the read only map may be shared
+            clearEntries();
+            _fixedEntryAdded = false;
+        }
+        replaceReadOnlyEntries(readOnlyMap);
         _readOnlyMap = readOnlyMap;
+        _lastKey = null;
         if (_readOnlyMap != null) {
-            readOnlyMap.removeFixedEntry();
-            _readOnlyMapSize = readOnlyMap.size();
+            // The fixed entry of the read only map is not counted if the 
+            // fixed entry has been added
+            _readOnlyMapSize = (_fixedEntryAdded) ? readOnlyMap.size() - 1 : readOnlyMap.size();
             _index = _readOnlyMapSize + _size;
             if (clear) {
                 clear();
             }
         }  else {
             _readOnlyMapSize = 0;
+            if (!_fixedEntryAdded) {
+                addFixedEntry();
+            }
         }     
     }
     
-    private final void removeFixedEntry() {
-        if (_fixedEntry != null) {
-            final int tableIndex = indexFor(_fixedEntry._hash, _table.length);
-            final Entry firstEntry = _table[tableIndex];
-            if (firstEntry == _fixedEntry) {
-                _table[tableIndex] = _fixedEntry._next;
-            } else {
-                Entry previousEntry = firstEntry;
-                while (previousEntry._next != _fixedEntry) {
-                    previousEntry = previousEntry._next;
-                }
-                previousEntry._next = _fixedEntry._next;
-            }
-            
-            _fixedEntry = null;
-            _size--;
-        }
-    }    
+    private void addFixedEntry() {
+        final int hash = mix(_fixedKey.hashCode());
+        addEntry(_fixedKey, hash, 0, emptySlotFor(hash));
+        _fixedEntryAdded = true;
+    }
 }
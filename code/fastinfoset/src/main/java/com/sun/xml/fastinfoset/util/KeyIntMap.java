@@ -31,7 +31,7 @@ public abstract class KeyIntMap {
      * by either of the constructors with arguments.
      * MUST be a power of two <= 1<<30.
      */
-    static final int MAXIMUM_CAPACITY = 1 << 20;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
 
     /**
      * The load factor used when none specified in constructor.
@@ -40,6 +40,24 @@ public abstract class KeyIntMap {
     
     int _readOnlyMapSize;
     
+    /**
+     * The number of entries of the read only map held in the table.
+     */
+    int _readOnlyCount;
+    
+    /**
+     * True if the table is that of the read only map, which is copied
+     * before an entry is added to this map.
+     */
+    boolean _shared;
+    
+    /**
+     * The slots of the entries added since the map was last cleared, so that
+     * clearing the map removes only those entries and leaves the entries
+     * copied from the read only map in place.
+     */
+    int[] _dynamicSlots = new int[DEFAULT_INITIAL_CAPACITY];
+    
     /**
      * The number of key-value mappings contained in this identity hash map.
      */
@@ -57,16 +75,6 @@ public abstract class KeyIntMap {
      */
     final float _loadFactor;
 
-    static class BaseEntry {
-        final int _hash;
-        final int _value;
-
-        public BaseEntry(int hash, int value) {
-            _hash = hash;
-            _value = value;
-        }
-    }
- 
     public KeyIntMap(int initialCapacity, float loadFactor) {
         if (initialCapacity < 0)
             throw new IllegalArgumentException(CommonResourceBundle.getInstance().
@@ -110,6 +118,16 @@ public abstract class KeyIntMap {
     
     public abstract void setReadOnlyMap(KeyIntMap readOnlyMap, boolean clear);
 
+    /**
+     * Returns true if the table of the read only map is shared by this map.
+     * <p>
+     * Setting a read only map shares its table, and the table is copied, 
+     * without rehashing, when an entry is first added to this map.
+     */
+    public final boolean isReadOnlyMapShared() {
+        return _shared;
+    }
+
     
     public static final int hashHash(int h) {
         h += ~(h << 9);
@@ -123,4 +141,45 @@ public abstract class KeyIntMap {
         return h & (length-1);
     }
 
+    /**
+     * Spread the bits of a hash code for the probing of an open addressing
+     * table, whose slot index is taken from the low bits.
+     */
+    static final int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Record the slot of an entry added since the map was last cleared,
+     * incrementing the size.
+     */
+    final void addDynamicSlot(int slot) {
+        if (_size == _dynamicSlots.length) {
+            final int[] dynamicSlots = new int[_size * 2];
+            System.arraycopy(_dynamicSlots, 0, dynamicSlots, 0, _size);
+            _dynamicSlots = dynamicSlots;
+        }
+        _dynamicSlots[_size++] = slot;
+    }
+
+    /**
+     * Calculate the capacity of an open addressing table, no smaller than
+     * the current capacity, that holds a number of entries without resizing.
+     */
+    final int capacityFor(int capacity, int count) {
+        while (capacity < MAXIMUM_CAPACITY && threshold(capacity) < count) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Calculate the next size value at which to resize an open addressing
+     * table, leaving at least one slot empty so that probing terminates.
+     */
+    final int threshold(int capacity) {
+        return Math.min((int)(capacity * _loadFactor), capacity - 1);
+    }
+
 }
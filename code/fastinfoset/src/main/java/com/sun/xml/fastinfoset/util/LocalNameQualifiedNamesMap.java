@@ -20,6 +20,20 @@ package com.sun.xml.fastinfoset.util;
 import com.sun.xml.fastinfoset.QualifiedName;
 import com.sun.xml.fastinfoset.CommonResourceBundle;
 
+/**
+ * A map of local names to entries of qualified names using open addressing
+ * with linear probing.
+ * <p>
+ * The table holds the entries of the read only map and of this map, and the
+ * entries of the read only map are placed before the entries added to this
+ * map. The read only map and its entries are never modified, so they may be
+ * shared between maps used by different threads. An entry of the read only
+ * map is replaced by a copy when it is first obtained, and is set again when
+ * this map is cleared.
+ * <p>
+ * Setting a read only map shares its table, which is copied without 
+ * rehashing when an entry is first added or replaced.
+ */
 public class LocalNameQualifiedNamesMap extends KeyIntMap {
 
     private LocalNameQualifiedNamesMap _readOnlyMap;
@@ -27,19 +41,19 @@ public class LocalNameQualifiedNamesMap extends KeyIntMap {
     private int _index;
     
     public static class Entry {
-        final String _key;
-        final int _hash;
         public QualifiedName[] _value;
         public int _valueIndex;
-        Entry _next;
         
-        public Entry(String key, int hash, Entry next) {
-            _key = key;
-            _hash = hash;
-            _next = next;
+        public Entry() {
             _value = new QualifiedName[1];
         }
         
+        Entry(Entry e) {
+            _value = new QualifiedName[e._value.length];
+            System.arraycopy(e._value, 0, _value, 0, e._valueIndex);
+            _valueIndex = e._valueIndex;
+        }
+        
         public void addQualifiedName(QualifiedName name) {
             if (_valueIndex < _value.length) {
                 _value[_valueIndex++] = name;
@@ -52,12 +66,31 @@ public class LocalNameQualifiedNamesMap extends KeyIntMap {
         }
     }
     
-    private Entry[] _table;
+    /**
+     * The keys, null for an empty slot.
+     */
+    private String[] _keys;
+    
+    private int[] _hashes;
+    
+    private Entry[] _entries;
+    
+    /**
+     * The entries of the read only map, null for the slot of an entry added
+     * to this map. The array is that of the entries of the read only map if
+     * the table is shared, and is never modified.
+     */
+    private Entry[] _readOnlyEntries;
+    
+    /**
+     * The number of occupied slots.
+     */
+    private int _count;
     
     public LocalNameQualifiedNamesMap(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
 
-        _table = new Entry[_capacity];        
+        allocate(_capacity);
     }
     
     public LocalNameQualifiedNamesMap(int initialCapacity) {
@@ -69,10 +102,15 @@ public class LocalNameQualifiedNamesMap extends KeyIntMap {
     }
         
     public final void clear() {
-        for (int i = 0; i < _table.length; i++) {
-            _table[i] = null;
+        for (int i = 0; i < _size; i++) {
+            final int slot = _dynamicSlots[i];
+            _entries[slot] = _readOnlyEntries[slot];
+            if (_entries[slot] == null) {
+                _keys[slot] = null;
+            }
         }
         _size = 0;
+        _count = _readOnlyCount;
         
         if (_readOnlyMap != null) {        
             _index = _readOnlyMap.getIndex();
@@ -91,6 +129,10 @@ public class LocalNameQualifiedNamesMap extends KeyIntMap {
     }
     
     public final void setReadOnlyMap(LocalNameQualifiedNamesMap readOnlyMap, boolean clear) {
+        if (clear && readOnlyMap != null) {
+            clear();
+        }
+        replaceReadOnlyEntries(readOnlyMap);
         _readOnlyMap = readOnlyMap;
         if (_readOnlyMap != null) {
             _readOnlyMapSize = _readOnlyMap.size();
@@ -117,102 +159,193 @@ public class LocalNameQualifiedNamesMap extends KeyIntMap {
     }
     
     public final Entry obtainEntry(String key) {
-        final int hash = hashHash(key.hashCode());
-        
-        if (_readOnlyMap != null) {
-            final Entry entry = _readOnlyMap.getEntry(key, hash);
-            if (entry != null) {
-                return entry;
-            }
-        }
-        
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && eq(key, e._key)) {
-                return e;
+        final int hash = mix(key.hashCode());
+        final int mask = _keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = _keys[i]) != null) {
+            if (_hashes[i] == hash && eq(key, k)) {
+                final Entry e = _entries[i];
+                return (e == _readOnlyEntries[i]) ? replaceEntry(i, new Entry(e)) : e;
             }
+            i = (i + 1) & mask;
         }
 
-        return addEntry(key, hash, tableIndex);        
+        return addEntry(key, hash, new Entry(), i);
     }
     
+    /**
+     * Obtain an entry of this map, replacing rather than copying an entry of
+     * the read only map.
+     */
     public final Entry obtainDynamicEntry(String key) {
-        final int hash = hashHash(key.hashCode());
-        
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && eq(key, e._key)) {
-                return e;
+        final int hash = mix(key.hashCode());
+        final int mask = _keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = _keys[i]) != null) {
+            if (_hashes[i] == hash && eq(key, k)) {
+                final Entry e = _entries[i];
+                return (e == _readOnlyEntries[i]) ? replaceEntry(i, new Entry()) : e;
             }
+            i = (i + 1) & mask;
         }
 
-        return addEntry(key, hash, tableIndex);        
+        return addEntry(key, hash, new Entry(), i);
     }
 
-    private final Entry getEntry(String key, int hash) {
-        if (_readOnlyMap != null) {
-            final Entry entry = _readOnlyMap.getEntry(key, hash);
-            if (entry != null) {
-                return entry;
-            }
+    /**
+     * Replace the entries of the read only map with the entries of another
+     * read only map, keeping the entries obtained from this map.
+     * <p>
+     * The table of the other read only map is shared if no entries have
+     * been obtained from this map, otherwise the entries are placed in a 
+     * new table.
+     */
+    private void replaceReadOnlyEntries(LocalNameQualifiedNamesMap readOnlyMap) {
+        if (readOnlyMap == _readOnlyMap) {
+            return;
         }
-
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && eq(key, e._key)) {
-                return e;
+        
+        if (_size == 0) {
+            if (readOnlyMap != null) {
+                _readOnlyCount = _count = readOnlyMap._count;
+                _capacity = readOnlyMap._keys.length;
+                _keys = readOnlyMap._keys;
+                _hashes = readOnlyMap._hashes;
+                _entries = _readOnlyEntries = readOnlyMap._entries;
+                _threshold = threshold(_capacity);
+                _shared = true;
+            } else {
+                _readOnlyCount = _count = 0;
+                allocate(_keys.length);
             }
+        } else if (readOnlyMap != null) {
+            _readOnlyCount = readOnlyMap._count;
+            rebuild(capacityFor(_keys.length, _readOnlyCount + _size),
+                    readOnlyMap._keys, readOnlyMap._hashes, readOnlyMap._entries);
+        } else {
+            _readOnlyCount = 0;
+            rebuild(_keys.length, null, null, null);
         }
-                
-        return null;
     }
-
-
-    private final Entry addEntry(String key, int hash, int bucketIndex) {
-	Entry e = _table[bucketIndex];
-        _table[bucketIndex] = new Entry(key, hash, e);
-        e = _table[bucketIndex];
-        if (_size++ >= _threshold) {
-            resize(2 * _table.length);
+    
+    private Entry addEntry(String key, int hash, Entry e, int slot) {
+        if (_shared) {
+            copyEntries();
+        }
+        _keys[slot] = key;
+        _hashes[slot] = hash;
+        _entries[slot] = e;
+        addDynamicSlot(slot);
+        if (++_count > _threshold) {
+            resize(2 * _keys.length);
         }
         
         return e;
     }
     
-    private final void resize(int newCapacity) {
-        _capacity = newCapacity;
-        Entry[] oldTable = _table;
-        int oldCapacity = oldTable.length;
-        if (oldCapacity == MAXIMUM_CAPACITY) {
-            _threshold = Integer.MAX_VALUE;
+    private Entry replaceEntry(int slot, Entry e) {
+        if (_shared) {
+            copyEntries();
+        }
+        _entries[slot] = e;
+        addDynamicSlot(slot);
+        return e;
+    }
+    
+    private void allocate(int capacity) {
+        _capacity = capacity;
+        _keys = new String[capacity];
+        _hashes = new int[capacity];
+        _entries = new Entry[capacity];
+        _readOnlyEntries = new Entry[capacity];
+        _threshold = threshold(capacity);
+        _shared = false;
+    }
+    
+    /**
+     * Copy the shared table of the read only map, the entries keep their
+     * slots and the entries of the read only map remain shared.
+     */
+    private void copyEntries() {
+        final String[] keys = new String[_capacity];
+        System.arraycopy(_keys, 0, keys, 0, _capacity);
+        _keys = keys;
+        final int[] hashes = new int[_capacity];
+        System.arraycopy(_hashes, 0, hashes, 0, _capacity);
+        _hashes = hashes;
+        final Entry[] entries = new Entry[_capacity];
+        System.arraycopy(_entries, 0, entries, 0, _capacity);
+        _entries = entries;
+        _shared = false;
+    }
+    
+    private void resize(int newCapacity) {
+        if (_keys.length == MAXIMUM_CAPACITY) {
+            _threshold = MAXIMUM_CAPACITY - 1;
             return;
         }
 
-        Entry[] newTable = new Entry[_capacity];
-        transfer(newTable);
-        _table = newTable;
-        _threshold = (int)(_capacity * _loadFactor);        
+        rebuild(newCapacity, _keys, _hashes, _readOnlyEntries);
     }
-
-    private final void transfer(Entry[] newTable) {
-        Entry[] src = _table;
-        int newCapacity = newTable.length;
-        for (int j = 0; j < src.length; j++) {
-            Entry e = src[j];
-            if (e != null) {
-                src[j] = null;
-                do {
-                    Entry next = e._next;
-                    int i = indexFor(e._hash, newCapacity);  
-                    e._next = newTable[i];
-                    newTable[i] = e;
-                    e = next;
-                } while (e != null);
+    
+    /**
+     * Allocate a table and place the given entries of the read only map,
+     * followed by the entries obtained since the map was last cleared.
+     */
+    private void rebuild(int capacity, String[] keys, int[] hashes, Entry[] readOnlyEntries) {
+        final String[] dynamicKeys = new String[_size];
+        final int[] dynamicHashes = new int[_size];
+        final Entry[] dynamicEntries = new Entry[_size];
+        for (int n = 0; n < _size; n++) {
+            final int i = _dynamicSlots[n];
+            dynamicKeys[n] = _keys[i];
+            dynamicHashes[n] = _hashes[i];
+            dynamicEntries[n] = _entries[i];
+            // The added entries are not placed with the given entries when
+            // the given arrays are those of this map
+            if (_readOnlyEntries[i] == null) {
+                _keys[i] = null;
+            }
+        }
+        
+        allocate(capacity);
+        _count = 0;
+        final int mask = capacity - 1;
+        if (keys != null) {
+            for (int j = 0; j < keys.length; j++) {
+                if (keys[j] != null) {
+                    int i = hashes[j] & mask;
+                    while (_keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    _keys[i] = keys[j];
+                    _hashes[i] = hashes[j];
+                    _entries[i] = _readOnlyEntries[i] = readOnlyEntries[j];
+                    _count++;
+                }
+            }
+        }
+        for (int n = 0; n < dynamicKeys.length; n++) {
+            // An obtained entry replaces an entry of the read only map
+            // of the same key
+            int i = dynamicHashes[n] & mask;
+            String k;
+            while ((k = _keys[i]) != null && !(_hashes[i] == dynamicHashes[n] && eq(dynamicKeys[n], k))) {
+                i = (i + 1) & mask;
+            }
+            if (k == null) {
+                _keys[i] = dynamicKeys[n];
+                _hashes[i] = dynamicHashes[n];
+                _count++;
             }
+            _entries[i] = dynamicEntries[n];
+            _dynamicSlots[n] = i;
         }
     }
         
-    private final boolean eq(String x, String y) {
+    private static boolean eq(String x, String y) {
         return x == y || x.equals(y);
     }
 
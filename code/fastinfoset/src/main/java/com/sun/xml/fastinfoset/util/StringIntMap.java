@@ -19,25 +19,36 @@ package com.sun.xml.fastinfoset.util;
 
 import com.sun.xml.fastinfoset.CommonResourceBundle;
 
+/**
+ * A map of strings to indexes using open addressing with linear probing.
+ * <p>
+ * The keys, hash codes and values are held in parallel arrays. The table
+ * holds the entries of the read only map and of this map, so that a key is 
+ * looked up with a single probe sequence. The read only map is never 
+ * modified, so it may be shared between maps used by different threads.
+ * <p>
+ * Setting a read only map shares its table, without copying or rehashing
+ * the entries. The table is copied when an entry is first added to this
+ * map, and the copy is kept when this map is cleared. The entries of the
+ * read only map precede the added entries, so clearing this map need only
+ * empty the slots of the added entries, without breaking the probe
+ * sequence of any entry of the read only map.
+ */
 public class StringIntMap extends KeyIntMap {
-    protected static final Entry NULL_ENTRY = new Entry(null, 0, -1, null);
-    
     protected StringIntMap _readOnlyMap;
     
-    protected static class Entry extends BaseEntry {
-        final String _key;
-        Entry _next;
-        
-        public Entry(String key, int hash, int value, Entry next) {
-            super(hash, value);
-            _key = key;
-            _next = next;
-        }
-    }
+    /**
+     * The keys, null for an empty slot.
+     */
+    protected String[] _keys;
+    
+    protected int[] _hashes;
+    
+    protected int[] _values;
     
-    protected Entry _lastEntry = NULL_ENTRY;
+    protected String _lastKey;
     
-    protected Entry[] _table;
+    protected int _lastValue;
     
     protected int _index;
     
@@ -47,7 +58,7 @@ public class StringIntMap extends KeyIntMap {
     public StringIntMap(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
 
-        _table = new Entry[_capacity];
+        allocate(_capacity);
     }
     
     public StringIntMap(int initialCapacity) {
@@ -59,11 +70,7 @@ public class StringIntMap extends KeyIntMap {
     }
 
     public void clear() {
-        for (int i = 0; i < _table.length; i++) {
-            _table[i] = null;
-        }
-        _lastEntry = NULL_ENTRY;
-        _size = 0;
+        clearEntries();
         _index = _readOnlyMapSize;
         _totalCharacterCount = 0;
     }
@@ -78,7 +85,12 @@ public class StringIntMap extends KeyIntMap {
     }
     
     public final void setReadOnlyMap(StringIntMap readOnlyMap, boolean clear) {
+        if (clear && readOnlyMap != null) {
+            clearEntries();
+        }
+        replaceReadOnlyEntries(readOnlyMap);
         _readOnlyMap = readOnlyMap;
+        _lastKey = null;
         if (_readOnlyMap != null) {
             _readOnlyMapSize = _readOnlyMap.size();
             _index = _size + _readOnlyMapSize;
@@ -101,106 +113,190 @@ public class StringIntMap extends KeyIntMap {
     }
     
     public final int obtainIndex(String key) {
-        final int hash = hashHash(key.hashCode());
-        
-        if (_readOnlyMap != null) {
-            final int index = _readOnlyMap.get(key, hash);
-            if (index != -1) {
-                return index;
-            }
-        }
-        
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && eq(key, e._key)) {
-                return e._value;
+        final int hash = mix(key.hashCode());
+        final int mask = _keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = _keys[i]) != null) {
+            if (_hashes[i] == hash && eq(key, k)) {
+                return _values[i];
             }
+            i = (i + 1) & mask;
         }
 
-        addEntry(key, hash, tableIndex);        
+        addEntry(key, hash, _index++, i);
+        _totalCharacterCount += key.length();
         return NOT_PRESENT;
     }
 
     public final void add(String key) {
-        final int hash = hashHash(key.hashCode());
-        final int tableIndex = indexFor(hash, _table.length);
-        addEntry(key, hash, tableIndex);
+        final int hash = mix(key.hashCode());
+        addEntry(key, hash, _index++, emptySlotFor(hash));
+        _totalCharacterCount += key.length();
     }
 
     public final int get(String key) {
-        if (key == _lastEntry._key)
-            return _lastEntry._value;
+        if (key == _lastKey)
+            return _lastValue;
         
-        return get(key, hashHash(key.hashCode()));
+        final int hash = mix(key.hashCode());
+        final int mask = _keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = _keys[i]) != null) {
+            if (_hashes[i] == hash && eq(key, k)) {
+                _lastKey = k;
+                return _lastValue = _values[i];
+            }
+            i = (i + 1) & mask;
+        }
+                
+        return NOT_PRESENT;
     }
     
     public final int getTotalCharacterCount() {
         return _totalCharacterCount;
     }
     
-    private final int get(String key, int hash) {
-        if (_readOnlyMap != null) {
-            final int i = _readOnlyMap.get(key, hash);
-            if (i != -1) {
-                return i;
-            }
+    /**
+     * Remove the entries added since the map was last cleared.
+     */
+    protected final void clearEntries() {
+        for (int i = 0; i < _size; i++) {
+            _keys[_dynamicSlots[i]] = null;
         }
-
-        final int tableIndex = indexFor(hash, _table.length);
-        for (Entry e = _table[tableIndex]; e != null; e = e._next) {
-            if (e._hash == hash && eq(key, e._key)) {
-                _lastEntry = e;
-                return e._value;
+        _size = 0;
+        _lastKey = null;
+    }
+    
+    /**
+     * Replace the entries of the read only map with the entries of another
+     * read only map, keeping the entries added to this map.
+     * <p>
+     * The table of the other read only map is shared if no entries have
+     * been added to this map, otherwise the entries are placed in a new
+     * table.
+     */
+    protected final void replaceReadOnlyEntries(StringIntMap readOnlyMap) {
+        if (readOnlyMap == _readOnlyMap) {
+            return;
+        }
+        
+        if (_size == 0) {
+            if (readOnlyMap != null) {
+                _readOnlyCount = readOnlyMap._readOnlyCount + readOnlyMap._size;
+                _capacity = readOnlyMap._keys.length;
+                _keys = readOnlyMap._keys;
+                _hashes = readOnlyMap._hashes;
+                _values = readOnlyMap._values;
+                _threshold = threshold(_capacity);
+                _shared = true;
+            } else {
+                _readOnlyCount = 0;
+                allocate(_keys.length);
             }
+        } else if (readOnlyMap != null) {
+            _readOnlyCount = readOnlyMap._readOnlyCount + readOnlyMap._size;
+            rebuild(capacityFor(_keys.length, _readOnlyCount + _size),
+                    readOnlyMap._keys, readOnlyMap._hashes, readOnlyMap._values);
+        } else {
+            _readOnlyCount = 0;
+            rebuild(_keys.length, null, null, null);
         }
-                
-        return NOT_PRESENT;
     }
-
-
-    private final void addEntry(String key, int hash, int bucketIndex) {
-	Entry e = _table[bucketIndex];
-        _table[bucketIndex] = new Entry(key, hash, _index++, e);
-        _totalCharacterCount += key.length();
-        if (_size++ >= _threshold) {
-            resize(2 * _table.length);
+    
+    protected final void addEntry(String key, int hash, int value, int slot) {
+        if (_shared) {
+            copyEntries();
+        }
+        putEntry(key, hash, value, slot);
+        addDynamicSlot(slot);
+        if (_size + _readOnlyCount > _threshold) {
+            resize(2 * _keys.length);
+        }
+    }
+    
+    private void putEntry(String key, int hash, int value, int slot) {
+        _keys[slot] = key;
+        _hashes[slot] = hash;
+        _values[slot] = value;
+    }
+    
+    protected final int emptySlotFor(int hash) {
+        final int mask = _keys.length - 1;
+        int i = hash & mask;
+        while (_keys[i] != null) {
+            i = (i + 1) & mask;
         }
+        return i;
     }
     
     protected final void resize(int newCapacity) {
-        _capacity = newCapacity;
-        Entry[] oldTable = _table;
-        int oldCapacity = oldTable.length;
-        if (oldCapacity == MAXIMUM_CAPACITY) {
-            _threshold = Integer.MAX_VALUE;
+        if (_keys.length == MAXIMUM_CAPACITY) {
+            _threshold = MAXIMUM_CAPACITY - 1;
             return;
         }
-
-        Entry[] newTable = new Entry[_capacity];
-        transfer(newTable);
-        _table = newTable;
-        _threshold = (int)(_capacity * _loadFactor);        
+        
+        rebuild(newCapacity, _keys, _hashes, _values);
     }
-
-    private final void transfer(Entry[] newTable) {
-        Entry[] src = _table;
-        int newCapacity = newTable.length;
-        for (int j = 0; j < src.length; j++) {
-            Entry e = src[j];
-            if (e != null) {
-                src[j] = null;
-                do {
-                    Entry next = e._next;
-                    int i = indexFor(e._hash, newCapacity);  
-                    e._next = newTable[i];
-                    newTable[i] = e;
-                    e = next;
-                } while (e != null);
+    
+    private void allocate(int capacity) {
+        _capacity = capacity;
+        _keys = new String[capacity];
+        _hashes = new int[capacity];
+        _values = new int[capacity];
+        _threshold = threshold(capacity);
+        _shared = false;
+    }
+    
+    /**
+     * Copy the shared table of the read only map, the entries keep their
+     * slots.
+     */
+    private void copyEntries() {
+        final String[] keys = _keys;
+        final int[] hashes = _hashes;
+        final int[] values = _values;
+        allocate(_capacity);
+        System.arraycopy(keys, 0, _keys, 0, _capacity);
+        System.arraycopy(hashes, 0, _hashes, 0, _capacity);
+        System.arraycopy(values, 0, _values, 0, _capacity);
+    }
+    
+    /**
+     * Allocate a table and place the entries of the given arrays, followed
+     * by the entries added since the map was last cleared.
+     */
+    private void rebuild(int capacity, String[] keys, int[] hashes, int[] values) {
+        final String[] dynamicKeys = new String[_size];
+        final int[] dynamicHashes = new int[_size];
+        final int[] dynamicValues = new int[_size];
+        for (int n = 0; n < _size; n++) {
+            final int i = _dynamicSlots[n];
+            dynamicKeys[n] = _keys[i];
+            dynamicHashes[n] = _hashes[i];
+            dynamicValues[n] = _values[i];
+            // The added entries are not placed with the given entries when
+            // the given arrays are those of this map
+            _keys[i] = null;
+        }
+        
+        allocate(capacity);
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    putEntry(keys[i], hashes[i], values[i], emptySlotFor(hashes[i]));
+                }
             }
         }
+        for (int n = 0; n < dynamicKeys.length; n++) {
+            final int slot = emptySlotFor(dynamicHashes[n]);
+            putEntry(dynamicKeys[n], dynamicHashes[n], dynamicValues[n], slot);
+            _dynamicSlots[n] = slot;
+        }
     }
         
-    private final boolean eq(String x, String y) {
+    private static boolean eq(String x, String y) {
         return x == y || x.equals(y);
     }
 }
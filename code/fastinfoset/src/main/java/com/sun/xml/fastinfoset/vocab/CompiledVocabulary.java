@@ -0,0 +1,83 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.sun.xml.fastinfoset.vocab;
+
+import org.jvnet.fastinfoset.ExternalVocabulary;
+import org.jvnet.fastinfoset.Vocabulary;
+
+/**
+ * An external vocabulary compiled into the tables used by serializers and
+ * parsers.
+ * <p>
+ * A compiled vocabulary is immutable and may be shared between serializers
+ * and parsers used by different threads. It is set on a serializer using
+ * {@link org.jvnet.fastinfoset.FastInfosetSerializer#setExternalVocabulary}
+ * and registered with a parser using
+ * {@link org.jvnet.fastinfoset.FastInfosetParser#setExternalVocabularies},
+ * in both cases as the read only layer of the vocabulary of the serializer
+ * or parser. The tables are not converted again for each serializer, parser
+ * or document.
+ * <p>
+ * A serializer shares the tables when the vocabulary is set. A table is 
+ * copied, without rehashing, when the serializer first adds an entry to
+ * it, and the copy is reused for the following documents.
+ * <p>
+ * The vocabulary is compiled when the compiled vocabulary is created, 
+ * modifications to the vocabulary after that are ignored.
+ */
+public final class CompiledVocabulary extends ExternalVocabulary {
+    
+    private final ParserVocabulary _parserVocabulary;
+
+    private final SerializerVocabulary _serializerVocabulary;
+    
+    private final SerializerVocabulary _localNameSerializerVocabulary;
+    
+    public CompiledVocabulary(String URI, Vocabulary vocabulary) {
+        super(URI, vocabulary);
+        
+        _parserVocabulary = new ParserVocabulary(vocabulary);
+        _serializerVocabulary = new SerializerVocabulary(vocabulary, false);
+        _localNameSerializerVocabulary = new SerializerVocabulary(vocabulary, true);
+    }
+    
+    public CompiledVocabulary(ExternalVocabulary v) {
+        this(v.URI, v.vocabulary);
+    }
+    
+    /**
+     * Get the parser vocabulary of the external vocabulary.
+     * <p>
+     * The parser vocabulary must not be modified.
+     */
+    public ParserVocabulary getParserVocabulary() {
+        return _parserVocabulary;
+    }
+    
+    /**
+     * Get the serializer vocabulary of the external vocabulary.
+     * <p>
+     * The serializer vocabulary must not be modified.
+     *
+     * @param useLocalNameAsKey true if the qualified names of the serializer
+     *        vocabulary are keyed by local name, otherwise by qualified name.
+     */
+    public SerializerVocabulary getSerializerVocabulary(boolean useLocalNameAsKey) {
+        return (useLocalNameAsKey) ? _localNameSerializerVocabulary : _serializerVocabulary;
+    }
+}
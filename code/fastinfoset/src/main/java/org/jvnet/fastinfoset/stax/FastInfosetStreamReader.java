@@ -17,6 +17,7 @@
  */
 package org.jvnet.fastinfoset.stax;
 
+import java.util.UUID;
 import javax.xml.stream.XMLStreamException;
 
 /**
@@ -34,6 +35,18 @@ public interface FastInfosetStreamReader {
      */
     public int peekNext() throws XMLStreamException;
     
+    /**
+     * Skip the content of the current element.
+     * <p>
+     * The call is made on a START_ELEMENT and the current event is the
+     * matching END_ELEMENT on return. The information items of the content
+     * are not reported, and are decoded only as far as required to
+     * maintain the vocabulary tables, other octets are skipped.
+     * 
+     * @return the END_ELEMENT event.
+     */
+    public int skipElement() throws XMLStreamException;
+    
     // Faster access methods without checks
     
     public int accessNamespaceCount();
@@ -56,4 +69,45 @@ public interface FastInfosetStreamReader {
     public int accessTextStart();
     
     public int accessTextLength();
+    
+    // Typed access to the content of text only elements, decoding
+    // values directly from the octets of built-in encoding algorithms
+    // or otherwise parsing values from the characters of the content
+    
+    public int getElementAsInt() throws XMLStreamException;
+    
+    public long getElementAsLong() throws XMLStreamException;
+    
+    public float getElementAsFloat() throws XMLStreamException;
+    
+    public double getElementAsDouble() throws XMLStreamException;
+    
+    public boolean getElementAsBoolean() throws XMLStreamException;
+    
+    public UUID getElementAsUUID() throws XMLStreamException;
+    
+    public int[] getElementAsIntArray() throws XMLStreamException;
+    
+    public long[] getElementAsLongArray() throws XMLStreamException;
+    
+    public float[] getElementAsFloatArray() throws XMLStreamException;
+    
+    public double[] getElementAsDoubleArray() throws XMLStreamException;
+    
+    /**
+     * Read ints from the content of a text only element.
+     * <p>
+     * The first call is made on a START_ELEMENT and further calls read 
+     * the following values. The current event is the END_ELEMENT once 
+     * -1 is returned.
+     * 
+     * @return the number of values read, or -1 if there are no more values.
+     */
+    public int readElementAsIntArray(int[] value, int offset, int length) throws XMLStreamException;
+    
+    public int readElementAsLongArray(long[] value, int offset, int length) throws XMLStreamException;
+    
+    public int readElementAsFloatArray(float[] value, int offset, int length) throws XMLStreamException;
+    
+    public int readElementAsDoubleArray(double[] value, int offset, int length) throws XMLStreamException;
 }
@@ -60,14 +60,28 @@ import javax.xml.stream.XMLStreamException;
  *                 |  writeLowLevelStartElement
  * 
  * ATTRUBUTES      := writeLowLevelStartAttributes
- *                   (ATTRIBUTE_NAME writeLowLevelAttributeValue)*
+ *                   (ATTRIBUTE_NAME ATTRIBUTE_VALUE)*
  *
  * ATTRIBUTE_NAME  := writeLowLevelAttributeIndexed
  *                 |  writeLowLevelStartNameLiteral
  *                 |  writeLowLevelAttribute
+ *
+ * ATTRIBUTE_VALUE := writeLowLevelAttributeValue
+ *                 |  writeLowLevelIntAttributeValue
+ *                 |  writeLowLevelLongAttributeValue
+ *                 |  writeLowLevelFloatAttributeValue
+ *                 |  writeLowLevelDoubleAttributeValue
+ *                 |  writeLowLevelBooleanAttributeValue
  *       
  *
- * CONTENTS      := (ELEMENT | writeLowLevelText writeLowLevelOctets)*
+ * CONTENTS      := (ELEMENT | writeLowLevelText writeLowLevelOctets | TYPED)*
+ *
+ * TYPED         := writeLowLevelIntArray
+ *               |  writeLowLevelLongArray
+ *               |  writeLowLevelFloatArray
+ *               |  writeLowLevelDoubleArray
+ *               |  writeLowLevelBooleanArray
+ *               |  writeLowLevelUUIDArray
  * </pre>
  * <p>
  * Some methods defer to the application for the mapping of information
@@ -170,6 +184,25 @@ public interface LowLevelFastInfosetStreamWriter {
     public void writeLowLevelAttributeValue(String value)
     throws IOException;
     
+    /**
+     * Write the value of an attribute encoded using the int 
+     * built-in encoding algorithm.
+     */
+    public void writeLowLevelIntAttributeValue(int value)
+    throws IOException;
+    
+    public void writeLowLevelLongAttributeValue(long value)
+    throws IOException;
+    
+    public void writeLowLevelFloatAttributeValue(float value)
+    throws IOException;
+    
+    public void writeLowLevelDoubleAttributeValue(double value)
+    throws IOException;
+    
+    public void writeLowLevelBooleanAttributeValue(boolean value)
+    throws IOException;
+    
     public void writeLowLevelStartNameLiteral(int type, 
             String prefix, byte[] utf8LocalName, String namespaceURI)
             throws IOException;
@@ -192,4 +225,33 @@ public interface LowLevelFastInfosetStreamWriter {
     
     public void writeLowLevelOctets(byte[] octets, int length)
     throws IOException;
+    
+    /**
+     * Write character content encoded using the int built-in
+     * encoding algorithm.
+     */
+    public void writeLowLevelIntArray(int[] value, int offset, int length)
+    throws IOException;
+    
+    public void writeLowLevelLongArray(long[] value, int offset, int length)
+    throws IOException;
+    
+    public void writeLowLevelFloatArray(float[] value, int offset, int length)
+    throws IOException;
+    
+    public void writeLowLevelDoubleArray(double[] value, int offset, int length)
+    throws IOException;
+    
+    public void writeLowLevelBooleanArray(boolean[] value, int offset, int length)
+    throws IOException;
+    
+    /**
+     * Write character content encoded using the UUID built-in
+     * encoding algorithm.
+     *
+     * @param msblsb the most and least significant bits of each UUID.
+     * @param length the number of longs, twice the number of UUIDs.
+     */
+    public void writeLowLevelUUIDArray(long[] msblsb, int offset, int length)
+    throws IOException;
 }
\ No newline at end of file
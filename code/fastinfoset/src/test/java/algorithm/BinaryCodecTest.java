@@ -0,0 +1,180 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package algorithm;
+
+import com.sun.xml.fastinfoset.algorithm.BASE64EncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.HexadecimalEncodingAlgorithm;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class BinaryCodecTest extends TestCase {
+
+    private static final char[] HEXADECIMAL = "0123456789ABCDEF".toCharArray();
+
+    private BASE64EncodingAlgorithm _base64 = new BASE64EncodingAlgorithm();
+
+    private HexadecimalEncodingAlgorithm _hexadecimal = new HexadecimalEncodingAlgorithm();
+
+    public void testBase64RoundTrip() throws Exception {
+        Random r = new Random(11);
+        for (int length = 0; length < 100; length++) {
+            assertBase64RoundTrip(createBytes(r, length));
+        }
+        // Larger than a chunk of encoded characters
+        assertBase64RoundTrip(createBytes(r, 10000));
+    }
+
+    public void testBase64EncodeToArray() throws Exception {
+        byte[] b = createBytes(new Random(12), 50);
+        String expected = toBase64(b);
+
+        char[] ch = new char[BASE64EncodingAlgorithm.getEncodedLength(b.length) + 4];
+        int length = _base64.encode(b, 0, b.length, ch, 2);
+        assertEquals(expected.length(), length);
+        assertEquals(expected, new String(ch, 2, length));
+
+        byte[] v = new byte[BASE64EncodingAlgorithm.getMaximumDecodedLength(length) + 1];
+        assertEquals(b.length, _base64.decode(ch, 2, length, v, 1));
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(b[i], v[i + 1]);
+        }
+    }
+
+    public void testBase64Whitespace() throws Exception {
+        byte[] b = createBytes(new Random(13), 100);
+        String s = toBase64(b);
+
+        // Whitespace at every position
+        for (int i = 0; i <= s.length(); i++) {
+            String w = s.substring(0, i) + " \n\t" + s.substring(i);
+            assertTrue(Arrays.equals(b, decodeBase64(w)));
+        }
+        assertTrue(Arrays.equals(new byte[9], decodeBase64("   AAA AA AAA  AAAA    ")));
+        assertEquals(0, decodeBase64("  \r\n ").length);
+    }
+
+    public void testBase64Unpadded() throws Exception {
+        assertTrue(Arrays.equals(new byte[] {0}, decodeBase64("AA")));
+        assertTrue(Arrays.equals(new byte[] {0, 0}, decodeBase64("AAA")));
+        assertTrue(Arrays.equals(new byte[] {0, 0, 0, 0}, decodeBase64("AAAAAA")));
+    }
+
+    public void testBase64Invalid() throws Exception {
+        String[] invalid = {"AAA*", "AA\u00E9A", "A", "AAAAA", "=", "AA==AAAA", "AAAA="};
+        for (int i = 0; i < invalid.length; i++) {
+            try {
+                decodeBase64(invalid[i]);
+                fail(invalid[i]);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    public void testHexadecimalRoundTrip() throws Exception {
+        Random r = new Random(14);
+        for (int length = 0; length < 20; length++) {
+            assertHexadecimalRoundTrip(createBytes(r, length));
+        }
+        // Larger than a chunk of encoded characters
+        assertHexadecimalRoundTrip(createBytes(r, 5000));
+    }
+
+    public void testHexadecimalWhitespaceAndCase() throws Exception {
+        byte[] b = createBytes(new Random(15), 20);
+        String s = toHexadecimal(b);
+
+        for (int i = 0; i <= s.length(); i++) {
+            String w = s.substring(0, i) + " \n" + s.substring(i);
+            assertTrue(Arrays.equals(b, decodeHexadecimal(w)));
+        }
+        assertTrue(Arrays.equals(b, decodeHexadecimal(s.toLowerCase())));
+    }
+
+    public void testHexadecimalInvalid() throws Exception {
+        String[] invalid = {"0G", "ABC", "AB C", "\u00E9A"};
+        for (int i = 0; i < invalid.length; i++) {
+            try {
+                decodeHexadecimal(invalid[i]);
+                fail(invalid[i]);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    private void assertBase64RoundTrip(byte[] b) {
+        StringBuffer s = new StringBuffer("prefix");
+        _base64.convertToCharacters(b, s);
+        assertEquals("prefix" + toBase64(b), s.toString());
+
+        assertTrue(Arrays.equals(b, decodeBase64(s.substring(6))));
+    }
+
+    private void assertHexadecimalRoundTrip(byte[] b) {
+        StringBuffer s = new StringBuffer("prefix");
+        _hexadecimal.convertToCharacters(b, s);
+        assertEquals("prefix" + toHexadecimal(b), s.toString());
+
+        assertTrue(Arrays.equals(b, decodeHexadecimal(s.substring(6))));
+    }
+
+    private byte[] decodeBase64(String s) {
+        final char[] ch = s.toCharArray();
+        return (byte[]) _base64.convertFromCharacters(ch, 0, ch.length);
+    }
+
+    private byte[] decodeHexadecimal(String s) {
+        final char[] ch = s.toCharArray();
+        return (byte[]) _hexadecimal.convertFromCharacters(ch, 0, ch.length);
+    }
+
+    private byte[] createBytes(Random r, int length) {
+        byte[] b = new byte[length];
+        r.nextBytes(b);
+        return b;
+    }
+
+    // Reference encodings, one bit at a time
+    private String toBase64(byte[] b) {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuffer s = new StringBuffer();
+        int bits = b.length * 8;
+        for (int i = 0; i < bits; i += 6) {
+            int v = 0;
+            for (int j = i; j < i + 6; j++) {
+                v <<= 1;
+                if (j < bits && (b[j / 8] & (0x80 >>> (j % 8))) != 0) {
+                    v |= 1;
+                }
+            }
+            s.append(alphabet.charAt(v));
+        }
+        while (s.length() % 4 != 0) {
+            s.append('=');
+        }
+        return s.toString();
+    }
+
+    private String toHexadecimal(byte[] b) {
+        StringBuffer s = new StringBuffer();
+        for (int i = 0; i < b.length; i++) {
+            s.append(HEXADECIMAL[(b[i] >> 4) & 0xF]).append(HEXADECIMAL[b[i] & 0xF]);
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package algorithm;
+
+import com.sun.xml.fastinfoset.algorithm.DoubleEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.FloatEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.FloatingPointFormatter;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class FloatingPointFormatterTest extends TestCase {
+
+    public void testDoubleFormat() throws Exception {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("1.0", format(1.0));
+        assertEquals("-1.5", format(-1.5));
+        assertEquals("100.0", format(100.0));
+        assertEquals("9999999.0", format(9999999.0));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("0.001", format(0.001));
+        assertEquals("9.9E-4", format(0.00099));
+        assertEquals("0.1", format(0.1));
+        assertEquals("0.3333333333333333", format(1.0 / 3));
+        assertEquals("1.0E23", format(1e23));
+        assertEquals("2.0E23", format(2e23));
+        assertEquals("1.23456789E8", format(123456789.0));
+        assertEquals("4.9E-324", format(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        assertEquals("-2.2250738585072014E-308", format(-Double.MIN_NORMAL));
+        assertEquals("NaN", format(Double.NaN));
+        assertEquals("Infinity", format(Double.POSITIVE_INFINITY));
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+    }
+
+    public void testFloatFormat() throws Exception {
+        assertEquals("0.0", format(0.0f));
+        assertEquals("-0.0", format(-0.0f));
+        assertEquals("1.0", format(1.0f));
+        assertEquals("0.1", format(0.1f));
+        assertEquals("1.0E10", format(1e10f));
+        assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+        assertEquals("1.4E-45", format(Float.MIN_VALUE));
+        assertEquals("1.1754944E-38", format(Float.MIN_NORMAL));
+        assertEquals("NaN", format(Float.NaN));
+        assertEquals("-Infinity", format(Float.NEGATIVE_INFINITY));
+    }
+
+    public void testDoubleShortest() throws Exception {
+        Random r = new Random(9);
+        for (int i = 0; i < 100000; i++) {
+            final double v = Double.longBitsToDouble(r.nextLong());
+            if (Double.isNaN(v) || Double.isInfinite(v)) {
+                continue;
+            }
+            final String s = format(v);
+            assertEquals(s, v, Double.parseDouble(s), 0);
+            // No decimal with one digit fewer converts to the value
+            final int n = significantDigits(s);
+            if (n > 2) {
+                BigDecimal d = new BigDecimal(v);
+                assertTrue(s, d.round(new MathContext(n - 1, RoundingMode.FLOOR)).doubleValue() != v);
+                assertTrue(s, d.round(new MathContext(n - 1, RoundingMode.CEILING)).doubleValue() != v);
+            }
+            assertTrue(s, s.length() <= FloatingPointFormatter.DOUBLE_MAX_CHARACTER_SIZE);
+            assertTrue(s, n <= significantDigits(Double.toString(v)));
+        }
+    }
+
+    public void testFloatShortest() throws Exception {
+        Random r = new Random(10);
+        for (int i = 0; i < 100000; i++) {
+            final float v = Float.intBitsToFloat(r.nextInt());
+            if (Float.isNaN(v) || Float.isInfinite(v)) {
+                continue;
+            }
+            final String s = format(v);
+            assertEquals(s, v, Float.parseFloat(s), 0);
+            final int n = significantDigits(s);
+            if (n > 2) {
+                BigDecimal d = new BigDecimal(v);
+                assertTrue(s, d.round(new MathContext(n - 1, RoundingMode.FLOOR)).floatValue() != v);
+                assertTrue(s, d.round(new MathContext(n - 1, RoundingMode.CEILING)).floatValue() != v);
+            }
+            assertTrue(s, s.length() <= FloatingPointFormatter.FLOAT_MAX_CHARACTER_SIZE);
+            assertTrue(s, n <= significantDigits(Float.toString(v)));
+        }
+    }
+
+    public void testConvertToCharacters() throws Exception {
+        // More values than are converted to characters at a time
+        Random r = new Random(11);
+        double[] d = new double[1000];
+        float[] f = new float[1000];
+        StringBuffer ds = new StringBuffer();
+        StringBuffer fs = new StringBuffer();
+        for (int i = 0; i < d.length; i++) {
+            d[i] = r.nextGaussian() * 1e6;
+            f[i] = (float) d[i];
+            if (i != 0) {
+                ds.append(' ');
+                fs.append(' ');
+            }
+            ds.append(format(d[i]));
+            fs.append(format(f[i]));
+        }
+
+        StringBuffer s = new StringBuffer();
+        new DoubleEncodingAlgorithm().convertToCharacters(d, s);
+        assertEquals(ds.toString(), s.toString());
+        char[] ch = s.toString().toCharArray();
+        assertTrue(Arrays.equals(d, (double[]) new DoubleEncodingAlgorithm().convertFromCharacters(ch, 0, ch.length)));
+
+        s = new StringBuffer();
+        new FloatEncodingAlgorithm().convertToCharacters(f, s);
+        assertEquals(fs.toString(), s.toString());
+        ch = s.toString().toCharArray();
+        assertTrue(Arrays.equals(f, (float[]) new FloatEncodingAlgorithm().convertFromCharacters(ch, 0, ch.length)));
+    }
+
+    private String format(double v) {
+        char[] ch = new char[FloatingPointFormatter.DOUBLE_MAX_CHARACTER_SIZE + 2];
+        return new String(ch, 1, FloatingPointFormatter.format(v, ch, 1) - 1);
+    }
+
+    private String format(float v) {
+        char[] ch = new char[FloatingPointFormatter.FLOAT_MAX_CHARACTER_SIZE + 2];
+        return new String(ch, 1, FloatingPointFormatter.format(v, ch, 1) - 1);
+    }
+
+    private int significantDigits(String s) {
+        int e = s.indexOf('E');
+        String m = (e == -1) ? s : s.substring(0, e);
+        m = m.replace("-", "").replace(".", "");
+        int start = 0;
+        while (start < m.length() - 1 && m.charAt(start) == '0') {
+            start++;
+        }
+        int end = m.length();
+        while (end > start + 1 && m.charAt(end - 1) == '0') {
+            end--;
+        }
+        return end - start;
+    }
+}
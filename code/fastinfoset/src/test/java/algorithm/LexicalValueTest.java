@@ -0,0 +1,268 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package algorithm;
+
+import com.sun.xml.fastinfoset.algorithm.BooleanEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.DoubleEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.FloatEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.IntEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.LongEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.ShortEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.UUIDEncodingAlgorithm;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.EncodingAlgorithm;
+
+public class LexicalValueTest extends TestCase {
+
+    private static final String[] INTEGERS = {
+        "0", "-0", "+7", "1", "-1", "32767", "-32768", "32768", "-32769",
+        "2147483647", "-2147483648", "2147483648", "-2147483649",
+        "9223372036854775807", "-9223372036854775808", "00012", "\u0661\u0662"
+    };
+
+    private static final String[] DECIMALS = {
+        "0", "-0", "0.0", "-0.0", "1", "1.", ".5", "-.5", "3.14159", "1e10", "1E-10",
+        "1.5e+3", "123456789012345", "1234567890123456789", "0.1", "0.30000000000000004",
+        "9007199254740993", "1e22", "1e23", "1e-22", "1e-23", "4.9E-324", "1.7976931348623157E308",
+        "3.4028235E38", "1.4E-45", "16777217", "1.0000001", "NaN", "-Infinity", "Infinity",
+        "0x1.8p1", "2f", "1d", "0.000001234", "1234567.0", "7e7", "1.17549435E-38"
+    };
+
+    private static final String[] INVALID = {
+        "", "-", "+", "1-", "--1", "1.2.3", "e5", "1e", "1e+", "abc"
+    };
+
+    public void testShort() throws Exception {
+        ShortEncodingAlgorithm a = new ShortEncodingAlgorithm();
+        for (int i = 0; i < INTEGERS.length; i++) {
+            assertParse(a, INTEGERS[i], new Parser() {
+                public Object parse(String s) {
+                    return Short.valueOf(Short.parseShort(s));
+                }
+            });
+        }
+    }
+
+    public void testInt() throws Exception {
+        IntEncodingAlgorithm a = new IntEncodingAlgorithm();
+        for (int i = 0; i < INTEGERS.length; i++) {
+            assertParse(a, INTEGERS[i], new Parser() {
+                public Object parse(String s) {
+                    return Integer.valueOf(Integer.parseInt(s));
+                }
+            });
+        }
+    }
+
+    public void testLong() throws Exception {
+        LongEncodingAlgorithm a = new LongEncodingAlgorithm();
+        for (int i = 0; i < INTEGERS.length; i++) {
+            assertParse(a, INTEGERS[i], new Parser() {
+                public Object parse(String s) {
+                    return Long.valueOf(Long.parseLong(s));
+                }
+            });
+        }
+        assertParse(a, "92233720368547758070", null);
+    }
+
+    public void testFloat() throws Exception {
+        FloatEncodingAlgorithm a = new FloatEncodingAlgorithm();
+        Parser p = new Parser() {
+            public Object parse(String s) {
+                return Float.valueOf(Float.parseFloat(s));
+            }
+        };
+        for (int i = 0; i < DECIMALS.length; i++) {
+            assertParse(a, DECIMALS[i], p);
+        }
+        for (int i = 0; i < INVALID.length; i++) {
+            assertParse(a, INVALID[i], null);
+        }
+
+        Random r = new Random(6);
+        for (int i = 0; i < 10000; i++) {
+            assertParse(a, createDecimal(r), p);
+            assertParse(a, Float.toString(Float.intBitsToFloat(r.nextInt())), p);
+        }
+    }
+
+    public void testDouble() throws Exception {
+        DoubleEncodingAlgorithm a = new DoubleEncodingAlgorithm();
+        Parser p = new Parser() {
+            public Object parse(String s) {
+                return Double.valueOf(Double.parseDouble(s));
+            }
+        };
+        for (int i = 0; i < DECIMALS.length; i++) {
+            assertParse(a, DECIMALS[i], p);
+        }
+        for (int i = 0; i < INVALID.length; i++) {
+            assertParse(a, INVALID[i], null);
+        }
+
+        Random r = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            assertParse(a, createDecimal(r), p);
+            assertParse(a, Double.toString(Double.longBitsToDouble(r.nextLong())), p);
+        }
+    }
+
+    public void testWhiteSpace() throws Exception {
+        IntEncodingAlgorithm a = new IntEncodingAlgorithm();
+        char[] ch = "x \t1\n-2  \r3\f4\u000B5 x".toCharArray();
+        int[] v = (int[]) a.convertFromCharacters(ch, 1, ch.length - 2);
+        int[] expected = {1, -2, 3, 4, 5};
+        assertEquals(expected.length, v.length);
+        for (int i = 0; i < v.length; i++) {
+            assertEquals(expected[i], v[i]);
+        }
+
+        ch = "   ".toCharArray();
+        assertEquals(0, ((int[]) a.convertFromCharacters(ch, 0, ch.length)).length);
+        assertEquals(0, ((int[]) a.convertFromCharacters(ch, 0, 0)).length);
+    }
+
+    public void testBoolean() throws Exception {
+        BooleanEncodingAlgorithm a = new BooleanEncodingAlgorithm();
+        char[] ch = " true false  true\tfalse ".toCharArray();
+        boolean[] v = (boolean[]) a.convertFromCharacters(ch, 0, ch.length);
+        assertEquals(4, v.length);
+        assertTrue(v[0]);
+        assertFalse(v[1]);
+        assertTrue(v[2]);
+        assertFalse(v[3]);
+    }
+
+    public void testUUID() throws Exception {
+        UUIDEncodingAlgorithm a = new UUIDEncodingAlgorithm();
+        Random r = new Random(8);
+        UUID[] uuids = new UUID[10];
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = new UUID(r.nextLong(), r.nextLong());
+            b.append(' ').append(i % 2 == 0 ? uuids[i].toString() : uuids[i].toString().toUpperCase());
+        }
+        char[] ch = b.toString().toCharArray();
+        long[] v = (long[]) a.convertFromCharacters(ch, 0, ch.length);
+        assertEquals(uuids.length * 2, v.length);
+        for (int i = 0; i < uuids.length; i++) {
+            assertEquals(uuids[i].getMostSignificantBits(), v[i * 2]);
+            assertEquals(uuids[i].getLeastSignificantBits(), v[i * 2 + 1]);
+        }
+
+        StringBuffer s = new StringBuffer();
+        a.convertToCharacters(v, s);
+        assertEquals(b.substring(1).toLowerCase(), s.toString());
+
+        String[] invalid = {
+            "0", "00000000-0000-0000-0000-00000000000", "00000000-0000-0000-0000-00000000000g",
+            "00000000+0000-0000-0000-000000000000"
+        };
+        for (int i = 0; i < invalid.length; i++) {
+            assertParse(a, invalid[i], null);
+        }
+    }
+
+    private interface Parser {
+        Object parse(String s);
+    }
+
+    private void assertParse(EncodingAlgorithm a, String s, Parser p) throws Exception {
+        Object expected;
+        try {
+            expected = (p != null) ? p.parse(s) : null;
+        } catch (NumberFormatException e) {
+            expected = null;
+        }
+
+        // Parse the value between other values
+        char[] ch = ("9 " + s + " 8").toCharArray();
+        Object v;
+        try {
+            v = a.convertFromCharacters(ch, 2, s.length());
+        } catch (IllegalArgumentException e) {
+            if (expected != null) {
+                throw e;
+            }
+            return;
+        }
+        if (expected == null && s.trim().length() != 0) {
+            fail(s);
+        }
+
+        List values = new ArrayList();
+        if (v instanceof short[]) {
+            short[] a1 = (short[]) v;
+            for (int i = 0; i < a1.length; i++) {
+                values.add(Short.valueOf(a1[i]));
+            }
+        } else if (v instanceof int[]) {
+            int[] a1 = (int[]) v;
+            for (int i = 0; i < a1.length; i++) {
+                values.add(Integer.valueOf(a1[i]));
+            }
+        } else if (v instanceof long[]) {
+            long[] a1 = (long[]) v;
+            for (int i = 0; i < a1.length; i++) {
+                values.add(Long.valueOf(a1[i]));
+            }
+        } else if (v instanceof float[]) {
+            float[] a1 = (float[]) v;
+            for (int i = 0; i < a1.length; i++) {
+                values.add(Float.valueOf(a1[i]));
+            }
+        } else if (v instanceof double[]) {
+            double[] a1 = (double[]) v;
+            for (int i = 0; i < a1.length; i++) {
+                values.add(Double.valueOf(a1[i]));
+            }
+        }
+
+        if (expected == null) {
+            assertEquals(s, 0, values.size());
+        } else {
+            assertEquals(s, 1, values.size());
+            // Equality of the bits of floating point values
+            assertEquals(s, expected, values.get(0));
+        }
+    }
+
+    private String createDecimal(Random r) {
+        StringBuffer b = new StringBuffer();
+        if (r.nextBoolean()) {
+            b.append('-');
+        }
+        int digits = 1 + r.nextInt(18);
+        int point = r.nextInt(digits + 1);
+        for (int i = 0; i < digits; i++) {
+            if (i == point) {
+                b.append('.');
+            }
+            b.append((char) ('0' + r.nextInt(10)));
+        }
+        if (r.nextBoolean()) {
+            b.append('e').append(r.nextInt(61) - 30);
+        }
+        return b.toString();
+    }
+}
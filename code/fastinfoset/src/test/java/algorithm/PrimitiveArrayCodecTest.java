@@ -0,0 +1,160 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package algorithm;
+
+import com.sun.xml.fastinfoset.algorithm.BuiltInEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.DoubleEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.FloatEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.IntEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.LongEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.ShortEncodingAlgorithm;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class PrimitiveArrayCodecTest extends TestCase {
+
+    // Lengths either side of the use of bulk conversion, and larger than
+    // a chunk written to an output stream
+    private static final int[] LENGTHS = {
+        0, 1, 7, 15, 16, 17, 100, 3000
+    };
+
+    public void testShortArray() throws Exception {
+        ShortEncodingAlgorithm a = new ShortEncodingAlgorithm();
+        Random r = new Random(1);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            short[] data = new short[LENGTHS[i]];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (short) r.nextInt();
+                dos.writeShort(data[j]);
+            }
+            byte[] expected = baos.toByteArray();
+
+            assertTrue(Arrays.equals(expected, encodeToBytes(a, data, data.length)));
+            assertTrue(Arrays.equals(expected, encodeToOutputStream(a, data)));
+            assertTrue(Arrays.equals(data, (short[]) a.decodeFromBytes(offset(expected), 3, expected.length)));
+        }
+    }
+
+    public void testIntArray() throws Exception {
+        IntEncodingAlgorithm a = new IntEncodingAlgorithm();
+        Random r = new Random(2);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            int[] data = new int[LENGTHS[i]];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            for (int j = 0; j < data.length; j++) {
+                data[j] = r.nextInt();
+                dos.writeInt(data[j]);
+            }
+            byte[] expected = baos.toByteArray();
+
+            assertTrue(Arrays.equals(expected, encodeToBytes(a, data, data.length)));
+            assertTrue(Arrays.equals(expected, encodeToOutputStream(a, data)));
+            assertTrue(Arrays.equals(data, (int[]) a.decodeFromBytes(offset(expected), 3, expected.length)));
+        }
+    }
+
+    public void testLongArray() throws Exception {
+        LongEncodingAlgorithm a = new LongEncodingAlgorithm();
+        Random r = new Random(3);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            long[] data = new long[LENGTHS[i]];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            for (int j = 0; j < data.length; j++) {
+                data[j] = r.nextLong();
+                dos.writeLong(data[j]);
+            }
+            byte[] expected = baos.toByteArray();
+
+            assertTrue(Arrays.equals(expected, encodeToBytes(a, data, data.length)));
+            assertTrue(Arrays.equals(expected, encodeToOutputStream(a, data)));
+            assertTrue(Arrays.equals(data, (long[]) a.decodeFromBytes(offset(expected), 3, expected.length)));
+        }
+    }
+
+    public void testFloatArray() throws Exception {
+        FloatEncodingAlgorithm a = new FloatEncodingAlgorithm();
+        Random r = new Random(4);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            float[] data = new float[LENGTHS[i]];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            for (int j = 0; j < data.length; j++) {
+                // NaN values with a payload are written as the canonical NaN
+                data[j] = (j % 10 == 9) ? Float.intBitsToFloat(0x7F800001 + j) : r.nextFloat();
+                dos.writeFloat(data[j]);
+            }
+            byte[] expected = baos.toByteArray();
+
+            assertTrue(Arrays.equals(expected, encodeToBytes(a, data, data.length)));
+            assertTrue(Arrays.equals(expected, encodeToOutputStream(a, data)));
+            assertTrue(Arrays.equals(data, (float[]) a.decodeFromBytes(offset(expected), 3, expected.length)));
+        }
+    }
+
+    public void testDoubleArray() throws Exception {
+        DoubleEncodingAlgorithm a = new DoubleEncodingAlgorithm();
+        Random r = new Random(5);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            double[] data = new double[LENGTHS[i]];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos);
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (j % 10 == 9) ? Double.longBitsToDouble(0x7FF0000000000001L + j) : r.nextDouble();
+                dos.writeDouble(data[j]);
+            }
+            byte[] expected = baos.toByteArray();
+
+            assertTrue(Arrays.equals(expected, encodeToBytes(a, data, data.length)));
+            assertTrue(Arrays.equals(expected, encodeToOutputStream(a, data)));
+            assertTrue(Arrays.equals(data, (double[]) a.decodeFromBytes(offset(expected), 3, expected.length)));
+        }
+    }
+
+    private byte[] encodeToBytes(BuiltInEncodingAlgorithm a,
+            Object data, int length) {
+        // Encode at an offset to check the bounds of the octets written
+        byte[] b = new byte[a.getOctetLengthFromPrimitiveLength(length) + 5];
+        a.encodeToBytes(data, 0, length, b, 3);
+        assertEquals(0, b[0] | b[1] | b[2] | b[b.length - 2] | b[b.length - 1]);
+
+        byte[] v = new byte[b.length - 5];
+        System.arraycopy(b, 3, v, 0, v.length);
+        return v;
+    }
+
+    private byte[] encodeToOutputStream(BuiltInEncodingAlgorithm a,
+            Object data) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        a.encodeToOutputStream(data, baos);
+        return baos.toByteArray();
+    }
+
+    private byte[] offset(byte[] b) {
+        byte[] v = new byte[b.length + 6];
+        System.arraycopy(b, 0, v, 3, b.length);
+        return v;
+    }
+}
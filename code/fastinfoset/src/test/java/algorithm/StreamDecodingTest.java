@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package algorithm;
+
+import com.sun.xml.fastinfoset.algorithm.BASE64EncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.BooleanEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.BuiltInEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.DoubleEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.FloatEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.HexadecimalEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.IntEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.LongEncodingAlgorithm;
+import com.sun.xml.fastinfoset.algorithm.ShortEncodingAlgorithm;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class StreamDecodingTest extends TestCase {
+
+    // Lengths either side of the size of a chunk read from the stream
+    private static final int[] LENGTHS = {
+        0, 1, 5, 100, 1023, 1024, 1025, 2048, 10000
+    };
+
+    public void testPrimitiveArrays() throws Exception {
+        Random r = new Random(12);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            final int length = LENGTHS[i];
+            short[] s = new short[length];
+            int[] n = new int[length];
+            long[] l = new long[length];
+            float[] f = new float[length];
+            double[] d = new double[length];
+            for (int j = 0; j < length; j++) {
+                s[j] = (short) r.nextInt();
+                n[j] = r.nextInt();
+                l[j] = r.nextLong();
+                f[j] = r.nextFloat() - 0.5f;
+                d[j] = r.nextDouble() - 0.5;
+            }
+
+            assertTrue(Arrays.equals(s, (short[]) decode(new ShortEncodingAlgorithm(), s, length)));
+            assertTrue(Arrays.equals(n, (int[]) decode(new IntEncodingAlgorithm(), n, length)));
+            assertTrue(Arrays.equals(l, (long[]) decode(new LongEncodingAlgorithm(), l, length)));
+            assertTrue(Arrays.equals(f, (float[]) decode(new FloatEncodingAlgorithm(), f, length)));
+            assertTrue(Arrays.equals(d, (double[]) decode(new DoubleEncodingAlgorithm(), d, length)));
+        }
+    }
+
+    public void testOctets() throws Exception {
+        Random r = new Random(13);
+        for (int i = 0; i < LENGTHS.length; i++) {
+            byte[] b = new byte[LENGTHS[i]];
+            r.nextBytes(b);
+            assertTrue(Arrays.equals(b, (byte[]) new BASE64EncodingAlgorithm().
+                    decodeFromInputStream(new TricklingInputStream(b))));
+            assertTrue(Arrays.equals(b, (byte[]) new HexadecimalEncodingAlgorithm().
+                    decodeFromInputStream(new TricklingInputStream(b))));
+        }
+    }
+
+    public void testBooleans() throws Exception {
+        Random r = new Random(14);
+        BooleanEncodingAlgorithm a = new BooleanEncodingAlgorithm();
+        for (int i = 0; i < LENGTHS.length; i++) {
+            boolean[] v = new boolean[LENGTHS[i]];
+            for (int j = 0; j < v.length; j++) {
+                v[j] = r.nextBoolean();
+            }
+            assertTrue(Arrays.equals(v, (boolean[]) decode(a, v, v.length)));
+        }
+
+        try {
+            a.decodeFromInputStream(new ByteArrayInputStream(new byte[0]));
+            fail();
+        } catch (EOFException e) {
+        }
+    }
+
+    public void testPartialValue() throws Exception {
+        try {
+            new IntEncodingAlgorithm().decodeFromInputStream(new TricklingInputStream(new byte[4097]));
+            fail();
+        } catch (EOFException e) {
+        }
+        try {
+            new DoubleEncodingAlgorithm().decodeFromInputStream(new TricklingInputStream(new byte[7]));
+            fail();
+        } catch (EOFException e) {
+        }
+    }
+
+    private Object decode(BuiltInEncodingAlgorithm a, Object data, int length) throws Exception {
+        byte[] b = new byte[a.getOctetLengthFromPrimitiveLength(length)];
+        a.encodeToBytes(data, 0, length, b, 0);
+        return a.decodeFromInputStream(new TricklingInputStream(b));
+    }
+
+    /**
+     * Return fewer octets than requested, as a stream of a fragmented
+     * document may do.
+     */
+    private static class TricklingInputStream extends InputStream {
+        private final byte[] _b;
+        private int _offset;
+
+        TricklingInputStream(byte[] b) {
+            _b = b;
+        }
+
+        public int read() {
+            return (_offset < _b.length) ? _b[_offset++] & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (_offset == _b.length) {
+                return -1;
+            }
+            final int n = Math.min(Math.min(len, 1 + _offset % 1000), _b.length - _offset);
+            System.arraycopy(_b, _offset, b, off, n);
+            _offset += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dom;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public class DeepNestingTest extends TestCase {
+
+    // The DOM checks the ancestors of a node when appending a child, so
+    // the depth is kept moderate and the parser is run with a small stack
+    private static final int DEPTH = 10000;
+
+    private static final long STACK_SIZE = 128 * 1024;
+
+    public void testDeepNesting() throws Exception {
+        assertNesting(createDocument(false), false);
+    }
+
+    public void testDeepNestingWithNamespaces() throws Exception {
+        assertNesting(createDocument(true), true);
+    }
+
+    private void assertNesting(final byte[] b, boolean namespaces) throws Exception {
+        final Document d = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        final Throwable[] error = new Throwable[1];
+        Thread t = new Thread(null, new Runnable() {
+            public void run() {
+                try {
+                    DOMDocumentParser p = new DOMDocumentParser();
+                    p.parse(d, new ByteArrayInputStream(b));
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+        }, "DeepNestingTest", STACK_SIZE);
+        t.start();
+        t.join();
+        if (error[0] != null) {
+            throw new Exception(error[0]);
+        }
+
+        int depth = 0;
+        Node n = d.getDocumentElement();
+        while (n != null) {
+            Element e = (Element) n;
+            depth++;
+            assertEquals(Integer.toString(depth), e.getAttribute("depth"));
+            if (namespaces && depth > 1) {
+                assertEquals("urn:" + (depth % 2), e.getNamespaceURI());
+            }
+            assertEquals(depth == 1 ? 2 : depth < DEPTH ? 1 : 0, e.getChildNodes().getLength());
+            n = e.getFirstChild();
+        }
+        assertEquals(DEPTH, depth);
+
+        // The last child of the document element follows the nested elements
+        assertEquals("last", d.getDocumentElement().getLastChild().getNodeName());
+    }
+
+    private byte[] createDocument(boolean namespaces) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        w.writeAttribute("depth", "1");
+        for (int i = 2; i <= DEPTH; i++) {
+            if (namespaces) {
+                w.writeStartElement("p", "e", "urn:" + (i % 2));
+                w.writeNamespace("p", "urn:" + (i % 2));
+            } else {
+                w.writeStartElement("e");
+            }
+            w.writeAttribute("depth", Integer.toString(i));
+        }
+        for (int i = 2; i <= DEPTH; i++) {
+            w.writeEndElement();
+        }
+        w.writeEmptyElement("last");
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dom;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import stax.StAXTestUtil;
+
+public class DeferredDocumentTest extends TestCase {
+
+    private static final int DEPTH = 10000;
+
+    public void testEqualToDocument() throws Exception {
+        assertEqualDocuments(createDocument());
+    }
+
+    public void testEqualToUBLDocument() throws Exception {
+        assertEqualDocuments(StAXTestUtil.getUBLDocument());
+    }
+
+    public void testParserReuse() throws Exception {
+        final byte[] b = createDocument();
+        final byte[] ubl = StAXTestUtil.getUBLDocument();
+        DOMDocumentParser p = new DOMDocumentParser();
+        Document d = p.parseDeferred(new ByteArrayInputStream(b));
+
+        // The names of the first document are not changed by the parse
+        // of further documents
+        p.parseDeferred(new ByteArrayInputStream(ubl));
+        p.parse(newDocument(), new ByteArrayInputStream(ubl));
+        assertTrue(parse(b).isEqualNode(d));
+    }
+
+    public void testNodeIdentity() throws Exception {
+        Document d = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(createDocument()));
+        Element root = d.getDocumentElement();
+        assertSame(root, d.getDocumentElement());
+        assertSame(root, d.getFirstChild());
+        assertSame(d, root.getParentNode());
+        assertSame(d, root.getOwnerDocument());
+
+        Node child = root.getFirstChild();
+        assertSame(root, child.getParentNode());
+        assertSame(child, root.getChildNodes().item(0));
+        assertSame(child, child.getNextSibling().getPreviousSibling());
+        assertSame(root.getLastChild(), root.getChildNodes().item(root.getChildNodes().getLength() - 1));
+
+        Attr a = root.getAttributeNode("a");
+        assertSame(a, root.getAttributes().getNamedItem("a"));
+        assertSame(root, a.getOwnerElement());
+        assertNull(a.getParentNode());
+    }
+
+    public void testNamespaces() throws Exception {
+        Document d = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(createDocument()));
+        Element root = d.getDocumentElement();
+        assertEquals("urn:default", root.getNamespaceURI());
+        assertNull(root.getPrefix());
+        assertEquals("urn:p", root.getAttributeNS("http://www.w3.org/2000/xmlns/", "p"));
+        assertEquals("urn:default", root.getAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns"));
+        assertEquals("p", root.lookupPrefix("urn:p"));
+        assertEquals("urn:p", root.lookupNamespaceURI("p"));
+        assertTrue(root.isDefaultNamespace("urn:default"));
+
+        NodeList l = d.getElementsByTagNameNS("urn:p", "child");
+        assertEquals(3, l.getLength());
+        for (int i = 0; i < l.getLength(); i++) {
+            Element e = (Element) l.item(i);
+            assertEquals("p", e.getPrefix());
+            assertEquals("p:child", e.getTagName());
+            assertEquals(Integer.toString(i), e.getAttributeNS("urn:p", "index"));
+        }
+        assertEquals(3, d.getElementsByTagName("p:child").getLength());
+        assertEquals(0, d.getElementsByTagName("child").getLength());
+        assertEquals(3, root.getElementsByTagNameNS("*", "*").getLength());
+        assertEquals(4, d.getElementsByTagNameNS("*", "*").getLength());
+    }
+
+    public void testContent() throws Exception {
+        Document d = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(createDocument()));
+        Element root = d.getDocumentElement();
+        assertEquals(Node.COMMENT_NODE, root.getFirstChild().getNodeType());
+        assertEquals("comment", root.getFirstChild().getNodeValue());
+
+        ProcessingInstruction pi = (ProcessingInstruction) root.getFirstChild().getNextSibling();
+        assertEquals("target", pi.getTarget());
+        assertEquals("data", pi.getData());
+
+        Element child = (Element) d.getElementsByTagNameNS("urn:p", "child").item(0);
+        assertEquals(1, child.getChildNodes().getLength());
+        assertEquals("text 0 and more", child.getFirstChild().getNodeValue());
+        assertEquals("text 0 and more", child.getTextContent());
+        assertEquals("text 0 and moretext 1 and moretext 2 and more", root.getTextContent());
+        assertNull(d.getTextContent());
+    }
+
+    public void testReadOnly() throws Exception {
+        Document d = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(createDocument()));
+        Element root = d.getDocumentElement();
+        assertModificationNotAllowed(root, new Mutation() {
+            public void mutate(Node n) {
+                ((Element) n).setAttribute("a", "b");
+            }
+        });
+        assertModificationNotAllowed(root, new Mutation() {
+            public void mutate(Node n) {
+                n.removeChild(n.getFirstChild());
+            }
+        });
+        assertModificationNotAllowed(root.getLastChild().getFirstChild(), new Mutation() {
+            public void mutate(Node n) {
+                n.setNodeValue("value");
+            }
+        });
+
+        try {
+            d.createElement("e");
+            fail();
+        } catch (DOMException e) {
+            assertEquals(DOMException.NOT_SUPPORTED_ERR, e.code);
+        }
+
+        // A node is imported into another document to be modified
+        Document copy = newDocument();
+        Element e = (Element) copy.importNode(root, true);
+        e.setAttribute("a", "b");
+        assertEquals("b", e.getAttribute("a"));
+        assertEquals(root.getChildNodes().getLength(), e.getChildNodes().getLength());
+    }
+
+    public void testDeepNesting() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        for (int i = 1; i <= DEPTH; i++) {
+            w.writeStartElement("e");
+            w.writeAttribute("depth", Integer.toString(i));
+        }
+        for (int i = 1; i <= DEPTH; i++) {
+            w.writeEndElement();
+        }
+        w.writeEndDocument();
+        w.close();
+
+        Document d = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(DEPTH, d.getElementsByTagName("e").getLength());
+
+        int depth = 0;
+        Node n = d.getDocumentElement();
+        while (n != null) {
+            depth++;
+            assertEquals(Integer.toString(depth), ((Element) n).getAttribute("depth"));
+            n = n.getFirstChild();
+        }
+        assertEquals(DEPTH, depth);
+    }
+
+    private void assertEqualDocuments(byte[] b) throws Exception {
+        Document expected = parse(b);
+        Document actual = new DOMDocumentParser().parseDeferred(new ByteArrayInputStream(b));
+        assertTrue(expected.isEqualNode(actual));
+        assertTrue(actual.isEqualNode(expected));
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    private String describe(Node n) {
+        StringBuffer b = new StringBuffer();
+        describe(n, b);
+        return b.toString();
+    }
+
+    private void describe(Node n, StringBuffer b) {
+        b.append('(').append(n.getNodeType()).append(' ').append(n.getNodeName()).
+                append(' ').append(n.getNamespaceURI()).append(' ').append(n.getNodeValue());
+        // The order of attributes is implementation dependent
+        final NamedNodeMap attributes = n.getAttributes();
+        if (attributes != null) {
+            List l = new ArrayList();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                l.add(describe(attributes.item(i)));
+            }
+            Collections.sort(l);
+            for (int i = 0; i < l.size(); i++) {
+                b.append(l.get(i));
+            }
+        }
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            describe(c, b);
+        }
+        b.append(')');
+    }
+
+    private void assertModificationNotAllowed(Node n, Mutation m) {
+        try {
+            m.mutate(n);
+            fail();
+        } catch (DOMException e) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+        }
+    }
+
+    private interface Mutation {
+        void mutate(Node n);
+    }
+
+    private Document parse(byte[] b) throws Exception {
+        Document d = newDocument();
+        new DOMDocumentParser().parse(d, new ByteArrayInputStream(b));
+        return d;
+    }
+
+    private Document newDocument() throws Exception {
+        DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+        f.setNamespaceAware(true);
+        return f.newDocumentBuilder().newDocument();
+    }
+
+    private byte[] createDocument() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+            w.writeStartElement("", "root", "urn:default");
+            w.writeNamespace("p", "urn:p");
+            w.writeDefaultNamespace("urn:default");
+            w.writeAttribute("a", "value");
+                w.writeComment("comment");
+                w.writeProcessingInstruction("target", "data");
+                for (int i = 0; i < 3; i++) {
+                    w.writeStartElement("p", "child", "urn:p");
+                    w.writeAttribute("p", "urn:p", "index", Integer.toString(i));
+                        w.writeCharacters("text " + i);
+                        w.writeCharacters(" and more");
+                    w.writeEndElement();
+                }
+            w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dom;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class DocumentTypeDeclarationTest extends TestCase {
+    
+    public void testWithoutNotations() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startDTD("root", "public", "root.dtd");
+        s.endDTD();
+        s.startElement("", "root", "root", new AttributesImpl());
+        s.endElement("", "root", "root");
+        s.endDocument();
+        
+        DOMDocumentParser documentParser = new DOMDocumentParser();
+        Document document =
+                DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        documentParser.parse(document, new ByteArrayInputStream(baos.toByteArray()));
+        
+        assertEquals("root", document.getDocumentElement().getNodeName());
+    }
+}
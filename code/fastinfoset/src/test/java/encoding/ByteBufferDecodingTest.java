@@ -0,0 +1,127 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2013 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+
+public class ByteBufferDecodingTest extends TestCase {
+
+    private byte[] _finfDocument;
+
+    protected void setUp() throws Exception {
+        URL u = this.getClass().getClassLoader().getResource(DecodingTest.FINF_SPEC_UBL_FINF_RESOURCE);
+        _finfDocument = obtainBytesFromStream(u.openStream());
+    }
+
+    public void testSAXHeapByteBuffer() throws Exception {
+        // Place the document in the middle of a larger array
+        byte[] a = new byte[_finfDocument.length + 20];
+        System.arraycopy(_finfDocument, 0, a, 10, _finfDocument.length);
+        ByteBuffer b = ByteBuffer.wrap(a, 10, _finfDocument.length).slice();
+
+        assertTrue(Arrays.equals(_finfDocument, reencode(b)));
+        assertEquals(0, b.position());
+        assertEquals(_finfDocument.length, b.limit());
+    }
+
+    public void testSAXDirectByteBuffer() throws Exception {
+        ByteBuffer b = ByteBuffer.allocateDirect(_finfDocument.length);
+        b.put(_finfDocument);
+        b.flip();
+
+        assertTrue(Arrays.equals(_finfDocument, reencode(b)));
+        assertEquals(0, b.position());
+    }
+
+    public void testSAXByteBufferThenInputStream() throws Exception {
+        byte[] a = new byte[_finfDocument.length];
+        System.arraycopy(_finfDocument, 0, a, 0, a.length);
+
+        SAXDocumentParser p = new SAXDocumentParser();
+        p.parse(ByteBuffer.wrap(a));
+        p.parse(new ByteArrayInputStream(_finfDocument));
+
+        // Stream decoding must not refill into the array of the ByteBuffer
+        assertTrue(Arrays.equals(_finfDocument, a));
+    }
+
+    public void testTruncatedByteBuffer() throws Exception {
+        SAXDocumentParser p = new SAXDocumentParser();
+        try {
+            p.parse(ByteBuffer.wrap(_finfDocument, 0, _finfDocument.length / 2));
+            fail();
+        } catch (EOFException e) {
+        }
+    }
+
+    public void testStAXByteBuffer() throws Exception {
+        XMLStreamReader r = new StAXDocumentParser(ByteBuffer.wrap(_finfDocument));
+        int elements = 0;
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamReader.START_ELEMENT) {
+                elements++;
+            }
+        }
+        assertTrue(elements > 0);
+    }
+
+    public void testDOMByteBuffer() throws Exception {
+        Document d = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        DOMDocumentParser p = new DOMDocumentParser();
+        p.parse(d, ByteBuffer.wrap(_finfDocument));
+        assertNotNull(d.getDocumentElement());
+    }
+
+    private byte[] reencode(ByteBuffer b) throws Exception {
+        SAXDocumentSerializer documentSerializer = new SAXDocumentSerializer();
+        documentSerializer.setMaxCharacterContentChunkSize(6);
+        documentSerializer.setMaxAttributeValueSize(6);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        documentSerializer.setOutputStream(baos);
+
+        SAXDocumentParser documentParser = new SAXDocumentParser();
+        documentParser.setContentHandler(documentSerializer);
+        documentParser.parse(b);
+
+        return baos.toByteArray();
+    }
+
+    private byte[] obtainBytesFromStream(InputStream s) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = s.read(buffer)) != -1) {
+            baos.write(buffer, 0, n);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class ChunkedBufferTest extends TestCase {
+
+    // Enough namespace declarations to fill many chunks of the buffered
+    // stream while the element is marked
+    private static final int NAMESPACES = 2000;
+
+    public void testMarkedElement() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(baos);
+        serialize(s);
+        assertParsed(baos.toByteArray());
+    }
+
+    public void testChannel() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(expected);
+        serialize(s);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        s.setOutputChannel(Channels.newChannel(baos));
+        serialize(s);
+        assertTrue(Arrays.equals(expected.toByteArray(), baos.toByteArray()));
+
+        GatheringChannel c = new GatheringChannel();
+        s.setOutputChannel(c);
+        serialize(s);
+        assertTrue(Arrays.equals(expected.toByteArray(), c.baos.toByteArray()));
+        assertTrue(c.gatheringWrites > 0);
+    }
+
+    private void serialize(SAXDocumentSerializer s) throws Exception {
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        for (int i = 0; i < NAMESPACES; i++) {
+            s.startPrefixMapping("p" + i, "urn:namespace-name-" + i);
+        }
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "a", "a", "CDATA", "value");
+        s.startElement("", "e", "e", atts);
+        s.characters("text".toCharArray(), 0, 4);
+        s.endElement("", "e", "e");
+        for (int i = 0; i < NAMESPACES; i++) {
+            s.endPrefixMapping("p" + i);
+        }
+        s.endElement("", "root", "root");
+        s.endDocument();
+    }
+
+    private void assertParsed(byte[] b) throws Exception {
+        final int[] namespaces = new int[1];
+        final String[] value = new String[1];
+        SAXDocumentParser p = new SAXDocumentParser();
+        p.setContentHandler(new DefaultHandler() {
+            public void startPrefixMapping(String prefix, String uri) {
+                namespaces[0]++;
+            }
+
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                if (localName.equals("e")) {
+                    value[0] = atts.getValue("a");
+                }
+            }
+        });
+        p.parse(new ByteArrayInputStream(b));
+        assertEquals(NAMESPACES, namespaces[0]);
+        assertEquals("value", value[0]);
+    }
+
+    /**
+     * A gathering channel that writes at most 100 bytes at a time.
+     */
+    private static class GatheringChannel implements GatheringByteChannel {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        int gatheringWrites;
+
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatheringWrites++;
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                written += write(srcs[i]);
+                if (srcs[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return written;
+        }
+
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public int write(ByteBuffer src) {
+            final int length = Math.min(100, src.remaining());
+            for (int i = 0; i < length; i++) {
+                baos.write(src.get());
+            }
+            return length;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+}
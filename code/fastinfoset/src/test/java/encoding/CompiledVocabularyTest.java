@@ -0,0 +1,194 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.util.KeyIntMap;
+import com.sun.xml.fastinfoset.vocab.CompiledVocabulary;
+import com.sun.xml.fastinfoset.vocab.SerializerVocabulary;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.ExternalVocabulary;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class CompiledVocabularyTest extends TestCase {
+
+    private static final String URI = VocabularyTestUtil.URI;
+
+    private static final String NS = VocabularyTestUtil.NS;
+
+    private static final String EXPECTED_EVENTS =
+            "<urn:ns:root a=x><urn:ns:known b=y>known</urn:ns:known>" +
+            "<urn:ns:unknown c=z>unknown</urn:ns:unknown>" +
+            "<urn:ns:known b=y>known</urn:ns:known></urn:ns:root>";
+
+    public void testSAXSerializer() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        CompiledVocabulary cv = new CompiledVocabulary(v);
+
+        // A compiled vocabulary encodes identically to the vocabulary
+        final byte[] expected = serializeSAX(v);
+        assertTrue(Arrays.equals(expected, serializeSAX(cv)));
+        assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(expected, cv));
+        assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(expected, v));
+    }
+
+    public void testStAXSerializer() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        CompiledVocabulary cv = new CompiledVocabulary(v);
+
+        final byte[] expected = serializeStAX(v);
+        assertTrue(Arrays.equals(expected, serializeStAX(cv)));
+        assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(expected, cv));
+    }
+
+    public void testSerializerReuse() throws Exception {
+        CompiledVocabulary cv = new CompiledVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        final byte[] expected = serializeSAX(cv);
+
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            s.setOutputStream(baos);
+            s.setExternalVocabulary(cv);
+            serialize(s);
+            assertTrue(Arrays.equals(expected, baos.toByteArray()));
+        }
+        assertEquals(expected.length, serializeSAX(cv).length);
+
+        // The compiled vocabulary is not modified by serializing
+        assertEquals(5, cv.getSerializerVocabulary(false).localName.size());
+        assertEquals(4, cv.getSerializerVocabulary(false).elementName.getIndex());
+    }
+
+    public void testTablesShared() throws Exception {
+        CompiledVocabulary cv = new CompiledVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        final SerializerVocabulary ev = cv.getSerializerVocabulary(false);
+
+        // Attaching the compiled vocabulary shares its tables
+        SerializerVocabulary v = new SerializerVocabulary();
+        v.setExternalVocabulary(URI, ev, true);
+        for (int i = 0; i < v.tables.length; i++) {
+            assertTrue(v.tables[i].isReadOnlyMapShared());
+        }
+        assertEquals(1, v.localName.get("known"));
+        assertEquals(KeyIntMap.NOT_PRESENT, v.localName.get("unknown"));
+
+        // A table is copied when an entry is first added
+        assertEquals(KeyIntMap.NOT_PRESENT, v.localName.obtainIndex("unknown"));
+        assertFalse(v.localName.isReadOnlyMapShared());
+        assertTrue(v.namespaceName.isReadOnlyMapShared());
+        assertEquals(KeyIntMap.NOT_PRESENT, ev.localName.get("unknown"));
+        assertEquals(1, v.localName.get("known"));
+
+        // Clearing keeps the copy, and attaching again shares the tables
+        v.clear();
+        assertFalse(v.localName.isReadOnlyMapShared());
+        assertEquals(KeyIntMap.NOT_PRESENT, v.localName.get("unknown"));
+        v.setExternalVocabulary(URI, new CompiledVocabulary(URI, VocabularyTestUtil.createVocabulary()).getSerializerVocabulary(false), true);
+        for (int i = 0; i < v.tables.length; i++) {
+            assertTrue(v.tables[i].isReadOnlyMapShared());
+        }
+    }
+
+    public void testConcurrentUse() throws Exception {
+        final CompiledVocabulary cv = new CompiledVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        final byte[] expected = serializeSAX(cv);
+
+        final Throwable[] errors = new Throwable[4];
+        Thread[] threads = new Thread[errors.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            assertTrue(Arrays.equals(expected, 
+                                    (n % 2 == 0) ? serializeSAX(cv) : serializeStAX(cv)));
+                            assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(expected, cv));
+                        }
+                    } catch (Throwable e) {
+                        errors[n] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            if (errors[i] != null) {
+                throw new Exception(errors[i]);
+            }
+        }
+    }
+
+    private byte[] serializeSAX(ExternalVocabulary v) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        serialize(VocabularyTestUtil.createSAXSerializer(baos, v));
+        return baos.toByteArray();
+    }
+
+    private void serialize(SAXDocumentSerializer s) throws Exception {
+        s.startDocument();
+        s.startPrefixMapping("", NS);
+        s.startElement(NS, "root", "root", attributes("a", "x"));
+        element(s, "known", "b", "y");
+        element(s, "unknown", "c", "z");
+        element(s, "known", "b", "y");
+        s.endElement(NS, "root", "root");
+        s.endPrefixMapping("");
+        s.endDocument();
+    }
+
+    private void element(SAXDocumentSerializer s, String name, String attribute, String value) throws Exception {
+        s.startElement(NS, name, name, attributes(attribute, value));
+        s.characters(name.toCharArray(), 0, name.length());
+        s.endElement(NS, name, name);
+    }
+
+    private AttributesImpl attributes(String name, String value) {
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", name, name, "CDATA", value);
+        return atts;
+    }
+
+    private byte[] serializeStAX(ExternalVocabulary v) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = VocabularyTestUtil.createStAXSerializer(baos, v);
+        w.writeStartDocument();
+        w.writeStartElement("", "root", NS);
+        w.writeDefaultNamespace(NS);
+        w.writeAttribute("a", "x");
+        element(w, "known", "b", "y");
+        element(w, "unknown", "c", "z");
+        element(w, "known", "b", "y");
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+
+    private void element(XMLStreamWriter w, String name, String attribute, String value) throws Exception {
+        w.writeStartElement("", name, NS);
+        w.writeAttribute(attribute, value);
+        w.writeCharacters(name);
+        w.writeEndElement();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.EncodedFragment;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import com.sun.xml.fastinfoset.util.EncodedFragmentCache;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import javax.xml.stream.XMLStreamException;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.ExternalVocabulary;
+import org.jvnet.fastinfoset.FastInfosetException;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class EncodedFragmentTest extends TestCase {
+
+    private static final String URI = VocabularyTestUtil.URI;
+
+    private static final String NS = VocabularyTestUtil.NS;
+
+    private static final String OTHER_NS = VocabularyTestUtil.OTHER_NS;
+
+    private static final String EXPECTED_EVENTS =
+            "<urn:ns:root><urn:ns:item a=x><urn:other:name>known</urn:other:name></urn:ns:item>" +
+            "<urn:ns:item a=x><urn:other:name>known</urn:other:name></urn:ns:item></urn:ns:root>";
+
+    public void testStAXSerializer() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        EncodedFragment f = captureStAX(v);
+        assertEquals(URI, f.getExternalVocabularyURI());
+        assertEquals(1, f.getNamespaceCount());
+        assertEquals("", f.getNamespacePrefix(0));
+        assertEquals(NS, f.getNamespaceURI(0));
+
+        final byte[] expected = serializeStAX(v, null);
+        final byte[] b = serializeStAX(v, f);
+        assertTrue(Arrays.equals(expected, b));
+        assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(b, v));
+    }
+
+    public void testSAXSerializer() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        EncodedFragment f = captureSAX(v);
+
+        final byte[] expected = serializeSAX(v, null);
+        final byte[] b = serializeSAX(v, f);
+        assertTrue(Arrays.equals(expected, b));
+        assertEquals(EXPECTED_EVENTS, VocabularyTestUtil.parse(b, v));
+
+        // A fragment captured using the StAX serializer is the same
+        assertTrue(Arrays.equals(expected, serializeSAX(v, captureStAX(v))));
+    }
+
+    public void testIncompatibleVocabulary() throws Exception {
+        EncodedFragment f = captureStAX(new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary()));
+        ExternalVocabulary other = new ExternalVocabulary("urn:other-vocabulary", VocabularyTestUtil.createVocabulary());
+        try {
+            serializeStAX(other, f);
+            fail();
+        } catch (XMLStreamException e) {
+        }
+        try {
+            serializeSAX(other, f);
+            fail();
+        } catch (SAXException e) {
+        }
+    }
+
+    public void testNamespaceNotInScope() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        EncodedFragment f = captureStAX(v);
+
+        SAXDocumentSerializer s = VocabularyTestUtil.createSAXSerializer(new ByteArrayOutputStream(), v);
+        s.startDocument();
+        s.startPrefixMapping("", OTHER_NS);
+        s.startElement(OTHER_NS, "root", "root", new AttributesImpl());
+        try {
+            s.encodedFragment(f);
+            fail();
+        } catch (SAXException e) {
+        }
+
+        // The default namespace is bound when the mapping ends
+        s.endPrefixMapping("");
+        s.startPrefixMapping("", NS);
+        s.encodedFragment(f);
+    }
+
+    public void testNotInVocabulary() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        StAXDocumentSerializer s = VocabularyTestUtil.createStAXSerializer(new ByteArrayOutputStream(), v);
+        s.startFragmentCapture();
+        s.writeStartElement("", "unknown", NS);
+        s.writeEndElement();
+        try {
+            s.endFragmentCapture();
+            fail();
+        } catch (FastInfosetException e) {
+        }
+
+        // The vocabulary used for the capture is reset for the next capture
+        s.startFragmentCapture();
+        s.writeStartElement("", "item", NS);
+        s.writeAttribute("a", "x");
+        s.writeEndElement();
+        s.endFragmentCapture();
+    }
+
+    public void testNotBalanced() throws Exception {
+        ExternalVocabulary v = new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary());
+        StAXDocumentSerializer s = VocabularyTestUtil.createStAXSerializer(new ByteArrayOutputStream(), v);
+        s.startFragmentCapture();
+        s.writeStartElement("", "item", NS);
+        s.writeCharacters("known");
+        try {
+            s.endFragmentCapture();
+            fail();
+        } catch (FastInfosetException e) {
+        }
+    }
+
+    public void testCaptureRequiresExternalVocabulary() throws Exception {
+        StAXDocumentSerializer s = new StAXDocumentSerializer(new ByteArrayOutputStream());
+        try {
+            s.startFragmentCapture();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testCache() throws Exception {
+        EncodedFragment f = captureStAX(new ExternalVocabulary(URI, VocabularyTestUtil.createVocabulary()));
+        EncodedFragmentCache c = new EncodedFragmentCache(2);
+        c.put("a", f);
+        c.put("b", f);
+        assertSame(f, c.get("a"));
+        c.put("c", f);
+
+        // The least recently used fragment is removed
+        assertEquals(2, c.size());
+        assertNull(c.get("b"));
+        assertSame(f, c.get("a"));
+        assertSame(f, c.get("c"));
+
+        try {
+            new EncodedFragmentCache(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private EncodedFragment captureStAX(ExternalVocabulary v) throws Exception {
+        StAXDocumentSerializer s = VocabularyTestUtil.createStAXSerializer(new ByteArrayOutputStream(), v);
+        s.startFragmentCapture();
+        item(s);
+        return s.endFragmentCapture();
+    }
+
+    private void item(StAXDocumentSerializer s) throws Exception {
+        s.writeStartElement("", "item", NS);
+        s.writeAttribute("a", "x");
+        s.writeStartElement("p", "name", OTHER_NS);
+        s.writeNamespace("p", OTHER_NS);
+        s.writeCharacters("known");
+        s.writeEndElement();
+        s.writeEndElement();
+    }
+
+    private byte[] serializeStAX(ExternalVocabulary v, EncodedFragment f) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer s = VocabularyTestUtil.createStAXSerializer(baos, v);
+        s.writeStartDocument();
+        s.writeStartElement("", "root", NS);
+        s.writeDefaultNamespace(NS);
+        for (int i = 0; i < 2; i++) {
+            if (f != null) {
+                s.writeEncodedFragment(f);
+            } else {
+                item(s);
+            }
+        }
+        s.writeEndElement();
+        s.writeEndDocument();
+        s.close();
+        return baos.toByteArray();
+    }
+
+    private EncodedFragment captureSAX(ExternalVocabulary v) throws Exception {
+        SAXDocumentSerializer s = VocabularyTestUtil.createSAXSerializer(new ByteArrayOutputStream(), v);
+        s.startFragmentCapture();
+        item(s);
+        return s.endFragmentCapture();
+    }
+
+    private void item(SAXDocumentSerializer s) throws Exception {
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "a", "a", "CDATA", "x");
+        s.startElement(NS, "item", "item", atts);
+        s.startPrefixMapping("p", OTHER_NS);
+        s.startElement(OTHER_NS, "name", "p:name", new AttributesImpl());
+        s.characters("known".toCharArray(), 0, 5);
+        s.endElement(OTHER_NS, "name", "p:name");
+        s.endPrefixMapping("p");
+        s.endElement(NS, "item", "item");
+    }
+
+    private byte[] serializeSAX(ExternalVocabulary v, EncodedFragment f) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = VocabularyTestUtil.createSAXSerializer(baos, v);
+        s.startDocument();
+        s.startPrefixMapping("", NS);
+        s.startElement(NS, "root", "root", new AttributesImpl());
+        for (int i = 0; i < 2; i++) {
+            if (f != null) {
+                s.encodedFragment(f);
+            } else {
+                item(s);
+            }
+        }
+        s.endElement(NS, "root", "root");
+        s.endPrefixMapping("");
+        s.endDocument();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.sax.helpers.FastInfosetDefaultHandler;
+
+public class StreamingContentTest extends TestCase {
+
+    private static final int THRESHOLD = 1024;
+
+    private static final int LENGTH = 100000;
+
+    public void testSAXDocumentParser() throws Exception {
+        final String text = createText();
+        final byte[] data = createData();
+
+        final StringBuffer characters = new StringBuffer();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final int[] chunks = new int[2];
+        SAXDocumentParser p = new SAXDocumentParser();
+        FastInfosetDefaultHandler h = new FastInfosetDefaultHandler() {
+            public void characters(char[] ch, int start, int length) {
+                assertTrue(length <= THRESHOLD);
+                characters.append(ch, start, length);
+                chunks[0]++;
+            }
+
+            public void bytes(byte[] b, int start, int length) {
+                assertTrue(length <= THRESHOLD);
+                bytes.write(b, start, length);
+                chunks[1]++;
+            }
+        };
+        p.setContentHandler(h);
+        p.setPrimitiveTypeContentHandler(h);
+        p.setContentStreamingThreshold(THRESHOLD);
+        p.parse(new ChunkedInputStream(createDocument(text, data)));
+
+        assertEquals("small" + text + "small", characters.toString());
+        assertTrue(chunks[0] > LENGTH / THRESHOLD);
+        assertTrue(Arrays.equals(data, bytes.toByteArray()));
+        assertTrue(chunks[1] > LENGTH / THRESHOLD);
+    }
+
+    public void testStAXDocumentParser() throws Exception {
+        final String text = createText();
+        final byte[] data = createData();
+
+        StAXDocumentParser r = new StAXDocumentParser();
+        r.setContentStreamingThreshold(THRESHOLD);
+        r.setInputStream(new ChunkedInputStream(createDocument(text, data)));
+        r.nextTag();
+        r.nextTag();
+        assertEquals("small", r.getElementText());
+
+        r.nextTag();
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertTrue(r.isTextStreamed());
+        assertTrue(r.hasText());
+        final StringBuffer characters = new StringBuffer();
+        final Reader reader = r.getTextReader();
+        final char[] ch = new char[100];
+        int n;
+        while ((n = reader.read(ch, 0, ch.length)) != -1) {
+            characters.append(ch, 0, n);
+        }
+        assertEquals(text, characters.toString());
+        try {
+            r.getText();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        r.nextTag();
+
+        r.nextTag();
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertTrue(r.isTextStreamed());
+        assertTrue(r.hasTextAlgorithmBytes());
+        assertEquals(data.length, r.getTextAlgorithmLength());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final InputStream s = r.getTextAlgorithmStream();
+        final byte[] b = new byte[100];
+        while ((n = s.read(b)) != -1) {
+            bytes.write(b, 0, n);
+        }
+        assertTrue(Arrays.equals(data, bytes.toByteArray()));
+        r.nextTag();
+
+        r.nextTag();
+        assertEquals("small", r.getElementText());
+        r.nextTag();
+        assertEquals(XMLStreamReader.END_DOCUMENT, r.next());
+    }
+
+    public void testStAXDocumentParserReadsInFull() throws Exception {
+        final String text = createText();
+        final byte[] data = createData();
+
+        StAXDocumentParser r = new StAXDocumentParser();
+        r.setContentStreamingThreshold(THRESHOLD);
+        r.setInputStream(new ChunkedInputStream(createDocument(text, data)));
+        r.nextTag();
+        r.nextTag();
+        assertEquals("small", r.getElementText());
+        r.nextTag();
+        assertEquals(text, r.getElementText());
+
+        r.nextTag();
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertTrue(Arrays.equals(data, r.getTextAlgorithmBytesClone()));
+        assertFalse(r.isTextStreamed());
+        r.nextTag();
+
+        // Streamed content that is not read is skipped
+        r.setInputStream(new ChunkedInputStream(createDocument(text, data)));
+        r.nextTag();
+        r.nextTag();
+        assertEquals("small", r.getElementText());
+        r.nextTag();
+        assertEquals(XMLStreamReader.CHARACTERS, r.next());
+        assertTrue(r.isTextStreamed());
+        r.nextTag();
+        r.nextTag();
+        r.next();
+        assertTrue(r.isTextStreamed());
+        r.nextTag();
+        r.nextTag();
+        assertEquals("small", r.getElementText());
+    }
+
+    private byte[] createDocument(String text, byte[] data) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        w.writeStartElement("small");
+        w.writeCharacters("small");
+        w.writeEndElement();
+        w.writeStartElement("text");
+        w.writeCharacters(text);
+        w.writeEndElement();
+        w.writeStartElement("data");
+        w.writeOctets(data, 0, data.length);
+        w.writeEndElement();
+        w.writeStartElement("small");
+        w.writeCharacters("small");
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+
+    private String createText() {
+        // Characters of one to four octets cross the boundaries of chunks
+        final String[] characters = {"a", "\u00E9", "\u20AC", "\uD834\uDD1E"};
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; b.length() < LENGTH; i++) {
+            b.append(characters[i % characters.length]);
+            if (i % 7 == 0) {
+                b.append('x');
+            }
+        }
+        return b.toString();
+    }
+
+    private byte[] createData() {
+        final byte[] data = new byte[LENGTH];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    /**
+     * Returns at most 100 octets from each read.
+     */
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+        ChunkedInputStream(byte[] b) {
+            super(b);
+        }
+
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 100));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+
+public class Utf8DecodingTest extends TestCase {
+
+    private static final String[] FRAGMENTS = {
+        "plain ascii text",
+        "\n", "\t", "\r",
+        "\u00E9", "\u00FF", "\u07FF",
+        "\u0800", "\u20AC", "\uFFFD",
+        "\uD834\uDD1E",
+        "~", " "
+    };
+
+    public void testCharacterContent() throws Exception {
+        List strings = createStrings();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        for (int i = 0; i < strings.size(); i++) {
+            w.writeStartElement("e");
+            w.writeAttribute("a", (String) strings.get(i));
+            w.writeCharacters((String) strings.get(i));
+            w.writeEndElement();
+        }
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+
+        XMLStreamReader r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        for (int i = 0; i < strings.size(); i++) {
+            r.nextTag();
+            assertEquals(strings.get(i), r.getAttributeValue(null, "a"));
+            assertEquals(strings.get(i), r.getElementText());
+        }
+    }
+
+    public void testTextAccess() throws Exception {
+        // Large enough not to be added to the character content chunk table
+        final String ascii = ascii(100) + "\n\t\r" + ascii(100);
+        final String nonAscii = ascii(100) + "\u20AC" + ascii(100);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        w.writeStartElement("e");
+        w.writeCharacters(ascii);
+        w.writeEndElement();
+        w.writeStartElement("e");
+        w.writeCharacters(nonAscii);
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+
+        StAXDocumentParser r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        for (int i = 0; i < 2; i++) {
+            final String expected = (i == 0) ? ascii : nonAscii;
+            r.nextTag();
+            assertEquals(XMLStreamReader.CHARACTERS, r.next());
+            assertTrue(r.hasText());
+            assertEquals(expected, r.getText());
+            assertEquals(expected, new String(r.getTextCharacters(), r.getTextStart(), r.getTextLength()));
+            assertEquals(expected, r.getText());
+
+            final char[] ch = new char[expected.length()];
+            assertEquals(ch.length, r.getTextCharacters(0, ch, 0, ch.length));
+            assertEquals(expected, new String(ch));
+            r.nextTag();
+        }
+    }
+
+    public void testIllegalControlCharacter() throws Exception {
+        // Control characters are rejected wherever they occur in a run of
+        // ASCII characters
+        for (int i = 0; i < 20; i++) {
+            StringBuffer b = new StringBuffer();
+            for (int j = 0; j < 20; j++) {
+                b.append(j == i ? '\u0001' : 'x');
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            XMLStreamWriter w = new StAXDocumentSerializer(baos);
+            w.writeStartDocument();
+            w.writeStartElement("root");
+            w.writeCharacters(b.toString());
+            w.writeEndElement();
+            w.writeEndDocument();
+            w.close();
+
+            XMLStreamReader r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+            try {
+                r.nextTag();
+                r.getElementText();
+                fail();
+            } catch (XMLStreamException e) {
+            }
+        }
+    }
+
+    private List createStrings() {
+        // Place each fragment at every position relative to a block of
+        // eight octets, within runs of ASCII characters of several lengths
+        List strings = new ArrayList();
+        for (int i = 0; i < FRAGMENTS.length; i++) {
+            for (int before = 0; before < 10; before++) {
+                for (int after = 0; after < 70; after += 7) {
+                    strings.add(ascii(before) + FRAGMENTS[i] + ascii(after));
+                }
+            }
+        }
+        return strings;
+    }
+
+    private String ascii(int length) {
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            b.append((char) (0x20 + (i * 7) % 0x60));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class Utf8EncodingTest extends TestCase {
+
+    private static final String[] CHARACTERS = {
+        "a", "\u00E9", "\u20AC", "\uD834\uDD1E"
+    };
+
+    // Lengths around the size of the buffer of the serializer
+    private static final int[] LENGTHS = {
+        1, 7, 100, 1023, 1024, 1025, 5000
+    };
+
+    public void testRoundTrip() throws Exception {
+        List strings = new ArrayList();
+        for (int i = 0; i < CHARACTERS.length; i++) {
+            for (int j = 0; j < LENGTHS.length; j++) {
+                strings.add(createString(CHARACTERS[i], LENGTHS[j]));
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        for (int i = 0; i < strings.size(); i++) {
+            final String v = (String) strings.get(i);
+            // Names are encoded as identifying strings
+            final String name = "e" + i + "\u00E9";
+            AttributesImpl atts = new AttributesImpl();
+            atts.addAttribute("", "a", "a", "CDATA", v);
+            s.startElement("", name, name, atts);
+            s.characters(v.toCharArray(), 0, v.length());
+            s.endElement("", name, name);
+        }
+        s.endElement("", "root", "root");
+        s.endDocument();
+
+        final List values = new ArrayList();
+        final StringBuffer characters = new StringBuffer();
+        SAXDocumentParser p = new SAXDocumentParser();
+        p.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                if (atts.getLength() > 0) {
+                    values.add(atts.getValue("a"));
+                }
+                characters.setLength(0);
+            }
+
+            public void characters(char[] ch, int start, int length) {
+                characters.append(ch, start, length);
+            }
+
+            public void endElement(String uri, String localName, String qName) {
+                if (!localName.equals("root")) {
+                    values.add(characters.toString());
+                }
+            }
+        });
+        p.parse(new ByteArrayInputStream(baos.toByteArray()));
+
+        assertEquals(strings.size() * 2, values.size());
+        for (int i = 0; i < strings.size(); i++) {
+            assertEquals(strings.get(i), values.get(i * 2));
+            assertEquals(strings.get(i), values.get(i * 2 + 1));
+        }
+    }
+
+    public void testUnpairedSurrogate() throws Exception {
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(new ByteArrayOutputStream());
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        try {
+            final char[] ch = "ab\uD834c".toCharArray();
+            s.characters(ch, 0, ch.length);
+            fail();
+        } catch (Exception e) {
+        }
+    }
+
+    private String createString(String c, int length) {
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < length; i++) {
+            b.append((i % 3 == 0) ? c : "x");
+        }
+        return b.toString();
+    }
+}
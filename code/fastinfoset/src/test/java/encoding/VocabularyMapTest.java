@@ -0,0 +1,267 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.QualifiedName;
+import com.sun.xml.fastinfoset.util.CharArrayIntMap;
+import com.sun.xml.fastinfoset.util.FixedEntryStringIntMap;
+import com.sun.xml.fastinfoset.util.KeyIntMap;
+import com.sun.xml.fastinfoset.util.LocalNameQualifiedNamesMap;
+import com.sun.xml.fastinfoset.util.StringIntMap;
+import junit.framework.TestCase;
+
+public class VocabularyMapTest extends TestCase {
+
+    // Enough keys to resize the maps several times
+    private static final int SIZE = 5000;
+
+    public void testStringIntMap() {
+        StringIntMap m = new StringIntMap(4);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex(key(i)));
+        }
+        assertEquals(SIZE, m.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i, m.obtainIndex(key(i)));
+            assertEquals(i, m.get(new String(key(i))));
+        }
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get("absent"));
+
+        m.clear();
+        assertEquals(0, m.size());
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get(key(0)));
+    }
+
+    public void testStringIntMapReadOnlyMap() {
+        StringIntMap ro = new StringIntMap();
+        for (int i = 0; i < SIZE; i++) {
+            ro.obtainIndex(key(i));
+        }
+
+        StringIntMap m = new StringIntMap(4);
+        m.obtainIndex("dynamic");
+        m.setReadOnlyMap(ro, false);
+        assertEquals(0, m.get("dynamic"));
+        m.setReadOnlyMap(ro, true);
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get("dynamic"));
+
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i, m.obtainIndex(key(i)));
+        }
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("dynamic"));
+        assertEquals(SIZE, m.get("dynamic"));
+        assertEquals(SIZE + 1, m.size());
+
+        m.clear();
+        assertEquals(SIZE - 1, m.get(key(SIZE - 1)));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get("dynamic"));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("dynamic"));
+        assertEquals(SIZE, m.get("dynamic"));
+
+        // The read only map is not modified
+        assertEquals(KeyIntMap.NOT_PRESENT, ro.get("dynamic"));
+        assertEquals(SIZE, ro.size());
+    }
+
+    public void testStringIntMapClearAfterResize() {
+        StringIntMap ro = new StringIntMap();
+        for (int i = 0; i < SIZE; i++) {
+            ro.obtainIndex(key(i));
+        }
+
+        StringIntMap m = new StringIntMap(4);
+        m.setReadOnlyMap(ro, true);
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < SIZE; i++) {
+                assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("dynamic" + i));
+            }
+            assertEquals(2 * SIZE, m.size());
+
+            // Only the added entries are removed
+            m.clear();
+            assertEquals(SIZE, m.size());
+            for (int i = 0; i < SIZE; i++) {
+                assertEquals(i, m.get(key(i)));
+                assertEquals(KeyIntMap.NOT_PRESENT, m.get("dynamic" + i));
+            }
+        }
+
+        // The added entries are kept when the read only map is replaced
+        StringIntMap other = new StringIntMap();
+        other.obtainIndex("other");
+        m.obtainIndex("dynamic");
+        m.setReadOnlyMap(other, false);
+        assertEquals(0, m.get("other"));
+        assertEquals(SIZE, m.get("dynamic"));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get(key(1)));
+        m.clear();
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get("dynamic"));
+        assertEquals(0, m.get("other"));
+    }
+
+    public void testFixedEntryStringIntMap() {
+        FixedEntryStringIntMap ro = new FixedEntryStringIntMap("fixed", 4);
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(KeyIntMap.NOT_PRESENT, ro.obtainIndex(key(i)));
+        }
+        assertEquals(0, ro.get("fixed"));
+        assertEquals(1, ro.get(key(0)));
+
+        FixedEntryStringIntMap m = new FixedEntryStringIntMap("fixed", 4);
+        m.setReadOnlyMap(ro, true);
+        assertEquals(0, m.get("fixed"));
+        assertEquals(SIZE, m.get(key(SIZE - 1)));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("dynamic"));
+        assertEquals(SIZE + 1, m.get("dynamic"));
+
+        m.clear();
+        assertEquals(0, m.get("fixed"));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get("dynamic"));
+        assertEquals(KeyIntMap.NOT_PRESENT, ro.get("dynamic"));
+        assertEquals(0, ro.get("fixed"));
+    }
+
+    public void testCharArrayIntMap() {
+        CharArrayIntMap ro = new CharArrayIntMap();
+        for (int i = 0; i < SIZE; i++) {
+            final char[] ch = key(i).toCharArray();
+            assertEquals(KeyIntMap.NOT_PRESENT, ro.obtainIndex(ch, 0, ch.length, true));
+        }
+
+        CharArrayIntMap m = new CharArrayIntMap(4);
+        m.setReadOnlyMap(ro, true);
+        final char[] ch = ("x" + key(SIZE - 1) + "x").toCharArray();
+        assertEquals(SIZE - 1, m.get(ch, 1, ch.length - 2));
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex(ch, 0, ch.length, false));
+        assertEquals(SIZE, m.get(ch, 0, ch.length));
+        assertEquals(ch.length, m.getTotalCharacterCount());
+
+        m.clear();
+        assertEquals(KeyIntMap.NOT_PRESENT, m.get(ch, 0, ch.length));
+        assertEquals(0, m.get(key(0).toCharArray(), 0, key(0).length()));
+    }
+
+    public void testLocalNameQualifiedNamesMap() {
+        LocalNameQualifiedNamesMap ro = new LocalNameQualifiedNamesMap();
+        for (int i = 0; i < SIZE; i++) {
+            ro.obtainEntry(key(i)).addQualifiedName(
+                    new QualifiedName("", "", key(i), ro.getNextIndex()));
+        }
+
+        LocalNameQualifiedNamesMap m = new LocalNameQualifiedNamesMap(4);
+        m.setReadOnlyMap(ro, true);
+        assertEquals(SIZE, m.getIndex());
+        final LocalNameQualifiedNamesMap.Entry e = m.obtainEntry(key(1));
+        assertEquals(1, e._valueIndex);
+        assertEquals(1, e._value[0].index);
+        assertTrue(m.isQNameFromReadOnlyMap(e._value[0]));
+
+        // Names are added to a copy of the entry of the read only map
+        e.addQualifiedName(new QualifiedName("p", "urn", key(1), m.getNextIndex()));
+        for (int i = 0; i < SIZE; i++) {
+            m.obtainEntry("dynamic" + i);
+        }
+        assertSame(e, m.obtainEntry(key(1)));
+        assertSame(e, m.obtainDynamicEntry(key(1)));
+        assertEquals(2, e._valueIndex);
+        assertEquals(SIZE, e._value[1].index);
+        assertEquals(1, ro.obtainEntry(key(1))._valueIndex);
+
+        final LocalNameQualifiedNamesMap.Entry d = m.obtainDynamicEntry(key(2));
+        assertEquals(0, d._valueIndex);
+
+        m.clear();
+        assertEquals(SIZE, m.getIndex());
+        assertNotSame(e, m.obtainEntry(key(1)));
+        assertEquals(1, m.obtainEntry(key(1))._valueIndex);
+    }
+
+    public void testReadOnlyMapShared() {
+        StringIntMap ro = new StringIntMap();
+        CharArrayIntMap charArrayRo = new CharArrayIntMap();
+        LocalNameQualifiedNamesMap namesRo = new LocalNameQualifiedNamesMap();
+        for (int i = 0; i < SIZE; i++) {
+            ro.obtainIndex(key(i));
+            final char[] ch = key(i).toCharArray();
+            charArrayRo.obtainIndex(ch, 0, ch.length, true);
+            namesRo.obtainEntry(key(i)).addQualifiedName(
+                    new QualifiedName("", "", key(i), namesRo.getNextIndex()));
+        }
+
+        // Setting the read only map shares its table until an entry is added
+        StringIntMap m = new StringIntMap(4);
+        m.setReadOnlyMap(ro, true);
+        assertTrue(m.isReadOnlyMapShared());
+        assertEquals(1, m.obtainIndex(key(1)));
+        assertTrue(m.isReadOnlyMapShared());
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("dynamic"));
+        assertFalse(m.isReadOnlyMapShared());
+        assertEquals(KeyIntMap.NOT_PRESENT, ro.get("dynamic"));
+        assertFalse(ro.isReadOnlyMapShared());
+
+        CharArrayIntMap c = new CharArrayIntMap(4);
+        c.setReadOnlyMap(charArrayRo, true);
+        assertTrue(c.isReadOnlyMapShared());
+        assertEquals(1, c.get(key(1).toCharArray(), 0, key(1).length()));
+        final char[] ch = "dynamic".toCharArray();
+        assertEquals(KeyIntMap.NOT_PRESENT, c.obtainIndex(ch, 0, ch.length, false));
+        assertFalse(c.isReadOnlyMapShared());
+        assertEquals(KeyIntMap.NOT_PRESENT, charArrayRo.get(ch, 0, ch.length));
+
+        // Obtaining an entry of the read only map replaces it with a copy
+        LocalNameQualifiedNamesMap n = new LocalNameQualifiedNamesMap(4);
+        n.setReadOnlyMap(namesRo, true);
+        assertTrue(n.isReadOnlyMapShared());
+        final LocalNameQualifiedNamesMap.Entry e = n.obtainEntry(key(1));
+        assertFalse(n.isReadOnlyMapShared());
+        assertNotSame(e, namesRo.obtainEntry(key(1)));
+
+        // A map with entries of its own does not share the table
+        StringIntMap d = new StringIntMap(4);
+        d.obtainIndex("dynamic");
+        d.setReadOnlyMap(ro, false);
+        assertFalse(d.isReadOnlyMapShared());
+        assertEquals(SIZE - 1, d.get(key(SIZE - 1)));
+    }
+
+    public void testFixedEntryStringIntMapShared() {
+        FixedEntryStringIntMap ro = new FixedEntryStringIntMap("fixed", 4);
+        ro.obtainIndex("a");
+
+        // The added fixed entry is replaced by that of the read only map
+        FixedEntryStringIntMap m = new FixedEntryStringIntMap("fixed", 4);
+        m.setReadOnlyMap(ro, false);
+        assertTrue(m.isReadOnlyMapShared());
+        assertEquals(2, m.size());
+        assertEquals(2, m.getIndex());
+        assertEquals(0, m.get("fixed"));
+        assertEquals(1, m.get("a"));
+
+        m.clear();
+        assertTrue(m.isReadOnlyMapShared());
+        assertEquals(2, m.getIndex());
+        assertEquals(KeyIntMap.NOT_PRESENT, m.obtainIndex("b"));
+        assertEquals(2, m.get("b"));
+        assertEquals(3, m.size());
+        assertFalse(m.isReadOnlyMapShared());
+    }
+
+    private String key(int i) {
+        return "k" + i;
+    }
+}
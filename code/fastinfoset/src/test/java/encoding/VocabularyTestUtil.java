@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import org.jvnet.fastinfoset.ExternalVocabulary;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The external vocabulary, serializers and event descriptions shared by the
+ * tests of documents serialized with an external vocabulary.
+ */
+public final class VocabularyTestUtil {
+
+    public static final String URI = "urn:external-vocabulary";
+
+    public static final String NS = "urn:ns";
+
+    public static final String OTHER_NS = "urn:other";
+
+    private VocabularyTestUtil() {
+    }
+
+    /**
+     * Create the vocabulary of the external vocabulary. The elements root,
+     * known and item of NS, and name of OTHER_NS, are in the vocabulary,
+     * as are the attribute a, its value x and the character content known.
+     */
+    public static org.jvnet.fastinfoset.Vocabulary createVocabulary() {
+        org.jvnet.fastinfoset.Vocabulary v = new org.jvnet.fastinfoset.Vocabulary();
+        v.prefixes.add("p");
+        v.namespaceNames.add(NS);
+        v.namespaceNames.add(OTHER_NS);
+        v.localNames.add("root");
+        v.localNames.add("known");
+        v.localNames.add("item");
+        v.localNames.add("name");
+        v.localNames.add("a");
+        v.attributeValues.add("x");
+        v.characterContentChunks.add("known");
+        v.elements.add(new QName(NS, "root"));
+        v.elements.add(new QName(NS, "known"));
+        v.elements.add(new QName(NS, "item"));
+        v.elements.add(new QName(OTHER_NS, "name", "p"));
+        v.attributes.add(new QName("", "a"));
+        return v;
+    }
+
+    public static SAXDocumentSerializer createSAXSerializer(OutputStream out, ExternalVocabulary v) {
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(out);
+        s.setExternalVocabulary(v);
+        return s;
+    }
+
+    public static StAXDocumentSerializer createStAXSerializer(OutputStream out, ExternalVocabulary v) {
+        StAXDocumentSerializer s = new StAXDocumentSerializer(out);
+        s.setExternalVocabulary(v);
+        return s;
+    }
+
+    /**
+     * Parse a document serialized with an external vocabulary, returning a
+     * description of the elements, attributes and character content.
+     */
+    public static String parse(byte[] b, ExternalVocabulary v) throws Exception {
+        final StringBuffer events = new StringBuffer();
+        SAXDocumentParser p = new SAXDocumentParser();
+        Map m = new HashMap();
+        m.put(URI, v);
+        p.setExternalVocabularies(m);
+        p.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                events.append('<').append(uri).append(':').append(localName);
+                for (int i = 0; i < atts.getLength(); i++) {
+                    events.append(' ').append(atts.getLocalName(i)).append('=').append(atts.getValue(i));
+                }
+                events.append('>');
+            }
+
+            public void characters(char[] ch, int start, int length) {
+                events.append(ch, start, length);
+            }
+
+            public void endElement(String uri, String localName, String qName) {
+                events.append("</").append(uri).append(':').append(localName).append('>');
+            }
+        });
+        p.parse(new ByteArrayInputStream(b));
+        return events.toString();
+    }
+}
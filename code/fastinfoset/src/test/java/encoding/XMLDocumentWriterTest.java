@@ -0,0 +1,147 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.tools.XMLDocumentWriter;
+import com.sun.xml.fastinfoset.tools.XML_SAX_FI;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class XMLDocumentWriterTest extends TestCase {
+
+    private static final String[] DOCUMENTS = {
+        "<root/>",
+        "<root a='1' b=\"2\">text</root>",
+        "<!-- comment --><?pi data?><root><!--c--><?pi?><e/><e></e></root><!-- end -->",
+        "<root xmlns='urn:a' xmlns:p=\"urn:p\"><p:e p:a='1' a='2'><e xmlns=''/></p:e>" +
+                "<p:e xmlns:p='urn:q'/><x:e xmlns:x='urn:p' xml:lang='en'/></root>",
+        "<root a='&lt;&amp;&gt;&apos;&quot;' b='&#9;&#10;&#13;' c='\"&quot;'>" +
+                "&lt;&amp;&gt; &#13; ]]&gt; a\nb</root>",
+        "<root a='\u00E9\u20AC\uD834\uDD1E'>\u00E9\u20AC\uD834\uDD1E<e\u00E9 \u00E9='\u00E9'/></root>",
+        "<root><e a='v'>x</e><e a='v'>x</e><e a='v'>x</e></root>",
+    };
+
+    public void testDocuments() throws Exception {
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            assertWritten(DOCUMENTS[i]);
+        }
+    }
+
+    public void testLargeContent() throws Exception {
+        final String[] characters = {"a", "\u00E9", "\u20AC", "\uD834\uDD1E", "&amp;", "&lt;", "\n"};
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; b.length() < 100000; i++) {
+            b.append(characters[i % characters.length]);
+        }
+        final String text = b.toString();
+        assertWritten("<root><e a='" + text + "'>" + text + "</e></root>");
+
+        b.setLength(0);
+        b.append("<root>");
+        for (int i = 0; i < 2000; i++) {
+            b.append("<e").append(i % 10).append(" a='").append(i % 20).append("'>")
+                    .append(i).append("</e").append(i % 10).append(">");
+        }
+        b.append("</root>");
+        assertWritten(b.toString());
+    }
+
+    public void testCDATASection() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        s.startCDATA();
+        final char[] ch = "<a>]]>&".toCharArray();
+        s.characters(ch, 0, ch.length);
+        s.endCDATA();
+        s.endElement("", "root", "root");
+        s.endDocument();
+
+        final String xml = write(baos.toByteArray());
+        assertTrue(xml, xml.indexOf("<![CDATA[") != -1);
+        Document d = parse(xml.getBytes("UTF-8"));
+        assertEquals("<a>]]>&", d.getDocumentElement().getTextContent());
+    }
+
+    public void testXMLDeclaration() throws Exception {
+        final String xml = write(transcode("<root/>"));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root/>", xml);
+    }
+
+    public void testChannel() throws Exception {
+        final byte[] finf = transcode(DOCUMENTS[3]);
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        // Writes at most one octet for each write
+        WritableByteChannel channel = new WritableByteChannel() {
+            public int write(ByteBuffer b) {
+                if (!b.hasRemaining()) {
+                    return 0;
+                }
+                xml.write(b.get());
+                return 1;
+            }
+
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void close() {
+            }
+        };
+
+        XMLDocumentWriter w = new XMLDocumentWriter();
+        w.write(ByteBuffer.wrap(finf), channel);
+        assertTrue(parse(DOCUMENTS[3].getBytes("UTF-8")).isEqualNode(parse(xml.toByteArray())));
+    }
+
+    private void assertWritten(String xml) throws Exception {
+        final Document expected = parse(xml.getBytes("UTF-8"));
+        final String written = write(transcode(xml));
+        assertTrue(written, expected.isEqualNode(parse(written.getBytes("UTF-8"))));
+    }
+
+    private byte[] transcode(String xml) throws Exception {
+        ByteArrayOutputStream finf = new ByteArrayOutputStream();
+        new XML_SAX_FI().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")), finf);
+        return finf.toByteArray();
+    }
+
+    private String write(byte[] finf) throws Exception {
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        XMLDocumentWriter w = new XMLDocumentWriter();
+        w.write(new ByteArrayInputStream(finf), xml);
+        return new String(xml.toByteArray(), "UTF-8");
+    }
+
+    private Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document d = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        d.normalizeDocument();
+        return d;
+    }
+}
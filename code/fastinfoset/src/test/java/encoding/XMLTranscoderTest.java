@@ -0,0 +1,198 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package encoding;
+
+import com.sun.xml.fastinfoset.dom.DOMDocumentParser;
+import com.sun.xml.fastinfoset.tools.XMLTranscoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.FastInfosetException;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+public class XMLTranscoderTest extends TestCase {
+
+    private static final String[] DOCUMENTS = {
+        "<root/>",
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root a='1' b=\"2\">text</root>\n",
+        "<!-- comment --><?pi data?><root><!--c--><?pi?><e/><e></e></root><!-- end -->",
+        "<root xmlns='urn:a' xmlns:p=\"urn:p\"><p:e p:a='1' a='2'><e xmlns=''/></p:e>" +
+                "<p:e xmlns:p='urn:q'/><x:e xmlns:x='urn:p' xml:lang='en'/></root>",
+        "<root a='&lt;&amp;&gt;&apos;&quot;' b='&#65;&#x42;&#x20AC;&#x1D11E;' c='a\tb\r\nc\rd'>" +
+                "&lt;&amp;&gt; &#65;&#x20AC;&#x1D11E; &#13; a\r\nb\rc</root>",
+        "<root a='\u00E9\u20AC\uD834\uDD1E'>\u00E9\u20AC\uD834\uDD1E<e\u00E9 \u00E9='\u00E9'/></root>",
+        "<!DOCTYPE root SYSTEM \"root.dtd\"><root/>",
+        "<!DOCTYPE root PUBLIC 'public' 'root.dtd'><root/>",
+    };
+
+    public void testDocuments() throws Exception {
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            assertTranscoded(DOCUMENTS[i]);
+        }
+    }
+
+    public void testLargeContent() throws Exception {
+        final String[] characters = {"a", "\u00E9", "\u20AC", "\uD834\uDD1E", "&amp;", "\r\n"};
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; b.length() < 20000; i++) {
+            b.append(characters[i % characters.length]);
+        }
+        final String text = b.toString();
+        assertTranscoded("<root><e a='" + text + "'>" + text + "</e><e>" +
+                text.replace('&', 'x').replace('\r', 'x') + "</e></root>");
+
+        b.setLength(0);
+        b.append("<root>");
+        for (int i = 0; i < 2000; i++) {
+            b.append("<e").append(i % 10).append(" a='").append(i).append("'>")
+                    .append(i).append("</e").append(i % 10).append(">");
+        }
+        b.append("</root>");
+        assertTranscoded(b.toString());
+    }
+
+    public void testCDATASection() throws Exception {
+        Document d = parse(transcode("<root><![CDATA[<a>&amp;\r\n]]></root>".getBytes("UTF-8"), false));
+        assertEquals("<a>&amp;\n", d.getDocumentElement().getTextContent());
+    }
+
+    public void testCDATASectionEndInText() throws Exception {
+        assertTranscoded("<root>]]&gt;]] >]&amp;]></root>");
+
+        // The sequence is split across the reads of a chunked stream
+        try {
+            transcode("<root>text]]>text</root>".getBytes("UTF-8"), true);
+            fail();
+        } catch (FastInfosetException e) {
+        }
+    }
+
+    public void testNotWellFormed() throws Exception {
+        final String[] documents = {
+            "",
+            "<root>",
+            "<root></e>",
+            "<root/><root/>",
+            "text<root/>",
+            "<root a='1' a='2'/>",
+            "<root xmlns:p='urn:p' xmlns:q='urn:p' p:a='1' q:a='2'/>",
+            "<p:root/>",
+            "<root a=1/>",
+            "<root a='<'/>",
+            "<root>&unknown;</root>",
+            "<root>&#0;</root>",
+            "<root>\u0001</root>",
+            "<root>]]></root>",
+            "<root>text]]]>text</root>",
+            "<root><![CDATA[text]]></root><![CDATA[text]]>",
+            "<!DOCTYPE root [<!ENTITY e 'e'>]><root/>",
+            "<?xml version='1.0' encoding='ISO-8859-1'?><root/>",
+        };
+        for (int i = 0; i < documents.length; i++) {
+            try {
+                transcode(documents[i].getBytes("UTF-8"), false);
+                fail(documents[i]);
+            } catch (FastInfosetException e) {
+            } catch (java.io.EOFException e) {
+            }
+        }
+
+        // Illegal UTF-8 encoding
+        final byte[][] encodings = {
+            {(byte) 0xC0, (byte) 0x80},
+            {(byte) 0xE0, (byte) 0x80, (byte) 0x80},
+            {(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+            {(byte) 0xEF, (byte) 0xBF, (byte) 0xBF},
+            {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+            {(byte) 0xE2, (byte) 0x82},
+        };
+        for (int i = 0; i < encodings.length; i++) {
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            document.write("<root>".getBytes("UTF-8"));
+            document.write(encodings[i]);
+            document.write("</root>".getBytes("UTF-8"));
+            try {
+                transcode(document.toByteArray(), false);
+                fail();
+            } catch (FastInfosetException e) {
+            }
+        }
+    }
+
+    private void assertTranscoded(String xml) throws Exception {
+        final byte[] b = xml.getBytes("UTF-8");
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        // The external subset is not read
+        db.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                return new InputSource(new StringReader(""));
+            }
+        });
+        Document expected = db.parse(new ByteArrayInputStream(b));
+        if (expected.getDoctype() != null) {
+            // The DOM parser does not report the document type declaration
+            expected.removeChild(expected.getDoctype());
+        }
+        expected.normalizeDocument();
+
+        Document d = parse(transcode(b, false));
+        assertTrue(xml, expected.isEqualNode(d));
+        d = parse(transcode(b, true));
+        assertTrue(xml, expected.isEqualNode(d));
+    }
+
+    private Document parse(byte[] finf) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document d = dbf.newDocumentBuilder().newDocument();
+        DOMDocumentParser p = new DOMDocumentParser();
+        p.parse(d, new ByteArrayInputStream(finf));
+        d.normalizeDocument();
+        return d;
+    }
+
+    private byte[] transcode(byte[] xml, boolean isChunked) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLTranscoder t = new XMLTranscoder();
+        t.setOutputStream(baos);
+        InputStream s = isChunked ? new ChunkedInputStream(xml) : new ByteArrayInputStream(xml);
+        t.transcode(s);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Returns one octet from each read.
+     */
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+        ChunkedInputStream(byte[] b) {
+            super(b);
+        }
+
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sax;
+
+import com.sun.xml.fastinfoset.QualifiedName;
+import com.sun.xml.fastinfoset.sax.AttributesHolder;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+
+public class AttributesHolderTest extends TestCase {
+
+    public void testFewAttributes() {
+        assertLookups(4);
+    }
+
+    public void testManyAttributes() {
+        assertLookups(100);
+    }
+
+    public void testAddAfterLookup() {
+        AttributesHolder a = new AttributesHolder();
+        for (int i = 0; i < 20; i++) {
+            a.addAttribute(new QualifiedName("", "", "a" + i), "v" + i);
+        }
+        assertEquals(-1, a.getIndex("a20"));
+
+        a.addAttribute(new QualifiedName("", "", "a20"), "v20");
+        assertEquals(20, a.getIndex("a20"));
+
+        a.clear();
+        assertEquals(-1, a.getIndex("a0"));
+        for (int i = 0; i < 10; i++) {
+            a.addAttribute(new QualifiedName("", "", "b" + i), "w" + i);
+        }
+        assertEquals(-1, a.getIndex("a0"));
+        assertEquals("w9", a.getValue("b9"));
+    }
+
+    public void testStAXDocumentParser() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        w.writeNamespace("p", "urn:p");
+        for (int i = 0; i < 50; i++) {
+            w.writeAttribute("a" + i, "v" + i);
+            w.writeAttribute("p", "urn:p", "b" + i, "w" + i);
+        }
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+
+        XMLStreamReader r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(XMLStreamReader.START_ELEMENT, r.nextTag());
+        assertEquals(100, r.getAttributeCount());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("v" + i, r.getAttributeValue("", "a" + i));
+            assertEquals("v" + i, r.getAttributeValue(null, "a" + i));
+            assertEquals("w" + i, r.getAttributeValue("urn:p", "b" + i));
+            assertEquals("w" + i, r.getAttributeValue(null, "b" + i));
+            assertNull(r.getAttributeValue("", "b" + i));
+        }
+        assertNull(r.getAttributeValue(null, "c"));
+    }
+
+    private void assertLookups(int count) {
+        AttributesHolder a = new AttributesHolder();
+        QualifiedName[] names = new QualifiedName[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = (i % 2 == 0) ?
+                new QualifiedName("", "", "a" + i) :
+                new QualifiedName("p", "urn:p", "a" + i);
+            a.addAttribute(names[i], "v" + i);
+        }
+
+        for (int i = 0; i < count; i++) {
+            final String uri = (i % 2 == 0) ? "" : "urn:p";
+            final String qName = (i % 2 == 0) ? "a" + i : "p:a" + i;
+
+            assertEquals(i, a.getIndex(qName));
+            assertEquals(i, a.getIndex(uri, "a" + i));
+            assertEquals(i, a.getIndexOfLocalName("a" + i));
+            assertEquals(i, a.getIndex(names[i]));
+            assertEquals(i, a.getIndex(new QualifiedName("q", uri, "a" + i)));
+            assertEquals("v" + i, a.getValue(qName));
+            assertEquals("v" + i, a.getValue(uri, "a" + i));
+
+            assertEquals(-1, a.getIndex("x:a" + i));
+            assertEquals(-1, a.getIndex("urn:x", "a" + i));
+        }
+        assertEquals(-1, a.getIndex("b"));
+        assertEquals(-1, a.getIndexOfLocalName("b"));
+        assertEquals(-1, a.getIndex(new QualifiedName("", "", "b")));
+    }
+}
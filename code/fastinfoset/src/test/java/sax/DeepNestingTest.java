@@ -0,0 +1,90 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sax;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class DeepNestingTest extends TestCase {
+
+    private static final int DEPTH = 100000;
+
+    public void testDeepNesting() throws Exception {
+        assertNesting(createDocument(false), 0);
+    }
+
+    public void testDeepNestingWithNamespaces() throws Exception {
+        assertNesting(createDocument(true), DEPTH);
+    }
+
+    private void assertNesting(byte[] b, int prefixMappings) throws Exception {
+        final int[] counts = new int[4];
+        SAXDocumentParser p = new SAXDocumentParser();
+        p.setContentHandler(new DefaultHandler() {
+            int depth;
+
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                counts[0]++;
+                counts[2] = Math.max(counts[2], ++depth);
+                assertEquals(Integer.toString(depth), atts.getValue("depth"));
+            }
+
+            public void endElement(String uri, String localName, String qName) {
+                counts[1]++;
+                depth--;
+            }
+
+            public void endPrefixMapping(String prefix) {
+                counts[3]++;
+            }
+        });
+        p.parse(new ByteArrayInputStream(b));
+
+        assertEquals(DEPTH, counts[0]);
+        assertEquals(DEPTH, counts[1]);
+        assertEquals(DEPTH, counts[2]);
+        assertEquals(prefixMappings, counts[3]);
+    }
+
+    private byte[] createDocument(boolean namespaces) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        for (int i = 1; i <= DEPTH; i++) {
+            if (namespaces) {
+                w.writeStartElement("p", "e", "urn:" + (i % 2));
+                w.writeNamespace("p", "urn:" + (i % 2));
+            } else {
+                w.writeStartElement("e");
+            }
+            w.writeAttribute("depth", Integer.toString(i));
+        }
+        for (int i = 0; i < DEPTH; i++) {
+            w.writeEndElement();
+        }
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.stax.AsyncStAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import junit.framework.TestCase;
+
+public class AsyncParserTest extends TestCase {
+
+    public void testUBLOneOctetAtATime() throws Exception {
+        assertFeeding(StAXTestUtil.getUBLDocument(), 1);
+    }
+
+    public void testUBLChunks() throws Exception {
+        final byte[] b = StAXTestUtil.getUBLDocument();
+        assertFeeding(b, 7);
+        assertFeeding(b, 100);
+        assertFeeding(b, b.length);
+    }
+
+    public void testNamespacesOneOctetAtATime() throws Exception {
+        assertFeeding(StAXTestUtil.createDocument(), 1);
+    }
+
+    public void testNamespacesChunks() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        assertFeeding(b, 13);
+        assertFeeding(b, 1024);
+    }
+
+    public void testByteBuffer() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        AsyncStAXDocumentParser p = new AsyncStAXDocumentParser();
+        ByteBuffer bb = ByteBuffer.allocateDirect(b.length);
+        bb.put(b).flip();
+        p.feedInput(bb);
+        p.endOfInput();
+        assertEquals(0, bb.remaining());
+        assertEquals(StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b))),
+                StAXTestUtil.getEvents(p));
+    }
+
+    public void testTruncated() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        AsyncStAXDocumentParser p = new AsyncStAXDocumentParser();
+        p.feedInput(b, 0, b.length / 2);
+        while (p.next() != AsyncStAXDocumentParser.EVENT_INCOMPLETE) {
+        }
+        assertTrue(p.needsInput());
+
+        p.endOfInput();
+        try {
+            while (p.hasNext()) {
+                p.next();
+            }
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    public void testResetInput() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        AsyncStAXDocumentParser p = new AsyncStAXDocumentParser();
+        p.feedInput(b, 0, b.length / 2);
+        p.next();
+        p.resetInput();
+        p.feedInput(b, 0, b.length);
+        p.endOfInput();
+        assertEquals(expected, StAXTestUtil.getEvents(p));
+    }
+
+    private void assertFeeding(byte[] b, int chunkSize) throws Exception {
+        List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        List actual = new ArrayList();
+        AsyncStAXDocumentParser p = new AsyncStAXDocumentParser();
+        int offset = 0;
+        while (p.hasNext()) {
+            final int event = p.next();
+            if (event == AsyncStAXDocumentParser.EVENT_INCOMPLETE) {
+                assertTrue(offset < b.length);
+                final int length = Math.min(chunkSize, b.length - offset);
+                p.feedInput(b, offset, length);
+                offset += length;
+                if (offset == b.length) {
+                    p.endOfInput();
+                }
+            } else {
+                actual.add(StAXTestUtil.getEvent(p));
+            }
+        }
+        assertEquals(expected, actual);
+    }
+}
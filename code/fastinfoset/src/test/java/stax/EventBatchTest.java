@@ -0,0 +1,240 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.QualifiedName;
+import com.sun.xml.fastinfoset.stax.AsyncStAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.EventBatch;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+
+public class EventBatchTest extends TestCase {
+
+    public void testEvents() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        final List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), 1));
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), 7));
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)),
+                EventBatch.DEFAULT_CAPACITY));
+    }
+
+    public void testUBL() throws Exception {
+        final byte[] b = StAXTestUtil.getUBLDocument();
+        final List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), 16));
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), 1024));
+    }
+
+    public void testEncodingAlgorithms() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+            w.writeStartElement("root");
+            w.writeIntAttribute("", "", "i", 42);
+            w.writeAttribute("s", "value");
+            w.writeBooleanAttribute("", "", "b", true);
+                w.writeStartElement("value");
+                    w.writeDouble(1.5);
+                w.writeEndElement();
+            w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        final byte[] b = baos.toByteArray();
+        final List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        assertEquals(expected, getBatchedEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), 2));
+    }
+
+    public void testStreamedContent() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        final List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        // Content that would be streamed is read in full
+        StAXDocumentParser p = new StAXDocumentParser(new ByteArrayInputStream(b));
+        p.setContentStreamingThreshold(16);
+        assertEquals(expected, getBatchedEvents(p, 5));
+    }
+
+    public void testNameIndexes() throws Exception {
+        StAXDocumentParser p = new StAXDocumentParser(new ByteArrayInputStream(StAXTestUtil.createDocument()));
+        EventBatch batch = new EventBatch();
+        final int size = p.readEvents(batch);
+        assertEquals(XMLStreamReader.END_DOCUMENT, batch._eventType[size - 1]);
+
+        int child = -1;
+        for (int i = 0; i < size; i++) {
+            if (batch._eventType[i] != XMLStreamReader.START_ELEMENT &&
+                    batch._eventType[i] != XMLStreamReader.END_ELEMENT) {
+                continue;
+            }
+
+            final QualifiedName name = batch._name[i];
+            if (name.localName.equals("child")) {
+                if (child == -1) {
+                    child = name.localNameIndex;
+                }
+                assertEquals(child, name.localNameIndex);
+                assertTrue(name.namespaceNameIndex > 0);
+            } else {
+                assertTrue(name.localNameIndex != child);
+            }
+        }
+        assertTrue(child != -1);
+    }
+
+    public void testMixedWithNext() throws Exception {
+        StAXDocumentParser p = new StAXDocumentParser(new ByteArrayInputStream(StAXTestUtil.createDocument()));
+        assertEquals(XMLStreamReader.START_ELEMENT, p.next());
+
+        // The parser is positioned on the last event of the batch
+        EventBatch batch = new EventBatch(3);
+        assertEquals(3, p.readEvents(batch));
+        assertEquals(XMLStreamReader.COMMENT, batch._eventType[0]);
+        assertEquals("comment", batch.getText(0));
+        assertEquals(XMLStreamReader.PROCESSING_INSTRUCTION, batch._eventType[1]);
+        assertEquals("target", batch._piTarget[1]);
+        assertEquals("data", batch.getText(1));
+        assertEquals(XMLStreamReader.START_ELEMENT, batch._eventType[2]);
+        assertEquals(XMLStreamReader.START_ELEMENT, p.getEventType());
+        assertEquals("child", p.getLocalName());
+        assertEquals(2, batch._attributeCount[2]);
+        assertEquals("0", batch.getAttributeValue(batch._attributeStart[2]));
+        assertEquals("name0", batch.getAttributeValue(batch._attributeStart[2] + 1));
+
+        assertEquals(XMLStreamReader.CHARACTERS, p.next());
+        assertEquals("text 0", p.getText());
+
+        while (p.readEvents(batch) > 0) {
+        }
+        assertEquals(XMLStreamReader.END_DOCUMENT, p.getEventType());
+        assertEquals(0, p.readEvents(batch));
+        assertEquals(0, batch._size);
+    }
+
+    public void testNamespaces() throws Exception {
+        StAXDocumentParser p = new StAXDocumentParser(new ByteArrayInputStream(StAXTestUtil.createDocument()));
+        EventBatch batch = new EventBatch();
+        final int size = p.readEvents(batch);
+
+        assertEquals(XMLStreamReader.START_ELEMENT, batch._eventType[0]);
+        assertEquals(2, batch._namespaceCount[0]);
+        assertEquals("p", batch._namespacePrefix[batch._namespaceStart[0]]);
+        assertEquals("urn:p", batch._namespaceName[batch._namespaceStart[0]]);
+        assertEquals("", batch._namespacePrefix[batch._namespaceStart[0] + 1]);
+        assertEquals("urn:default", batch._namespaceName[batch._namespaceStart[0] + 1]);
+
+        // The declarations go out of scope at the end of the element
+        assertEquals(XMLStreamReader.END_DOCUMENT, batch._eventType[size - 1]);
+        assertEquals(XMLStreamReader.END_ELEMENT, batch._eventType[size - 2]);
+        assertEquals(2, batch._namespaceCount[size - 2]);
+        assertEquals(4, batch._namespaceSize);
+        assertEquals(0, batch._namespaceCount[1]);
+    }
+
+    public void testAsyncParser() throws Exception {
+        final byte[] b = StAXTestUtil.createDocument();
+        final List expected = StAXTestUtil.getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)));
+
+        List actual = new ArrayList();
+        AsyncStAXDocumentParser p = new AsyncStAXDocumentParser();
+        EventBatch batch = new EventBatch(5);
+        int offset = 0;
+        while (p.hasNext()) {
+            final int size = p.readEvents(batch);
+            addEvents(batch, actual);
+            if (size < batch.getCapacity() && p.needsInput()) {
+                final int length = Math.min(31, b.length - offset);
+                p.feedInput(b, offset, length);
+                offset += length;
+                if (offset == b.length) {
+                    p.endOfInput();
+                }
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    public void testIllegalCapacity() {
+        try {
+            new EventBatch(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private List getBatchedEvents(StAXDocumentParser p, int capacity) throws Exception {
+        List events = new ArrayList();
+        EventBatch batch = new EventBatch(capacity);
+        int size;
+        while ((size = p.readEvents(batch)) > 0) {
+            assertTrue(size <= capacity);
+            addEvents(batch, events);
+        }
+        return events;
+    }
+
+    private void addEvents(EventBatch batch, List events) {
+        for (int i = 0; i < batch._size; i++) {
+            StringBuffer b = new StringBuffer();
+            b.append(batch._eventType[i]);
+            switch (batch._eventType[i]) {
+                case XMLStreamReader.START_ELEMENT:
+                    for (int j = 0; j < batch._namespaceCount[i]; j++) {
+                        final int n = batch._namespaceStart[i] + j;
+                        b.append(" xmlns:").append(batch._namespacePrefix[n]).append('=').append(batch._namespaceName[n]);
+                    }
+                    b.append(' ').append(getQName(batch._name[i]));
+                    for (int j = 0; j < batch._attributeCount[i]; j++) {
+                        final int a = batch._attributeStart[i] + j;
+                        b.append(' ').append(getQName(batch._attributeName[a])).
+                                append('=').append(batch.getAttributeValue(a));
+                    }
+                    break;
+                case XMLStreamReader.END_ELEMENT:
+                    b.append(' ').append(getQName(batch._name[i]));
+                    for (int j = 0; j < batch._namespaceCount[i]; j++) {
+                        b.append(" xmlns:").append(batch._namespacePrefix[batch._namespaceStart[i] + j]);
+                    }
+                    break;
+                case XMLStreamReader.CHARACTERS:
+                case XMLStreamReader.CDATA:
+                case XMLStreamReader.COMMENT:
+                    b.append(' ').append(batch.getText(i));
+                    break;
+                case XMLStreamReader.PROCESSING_INSTRUCTION:
+                    b.append(' ').append(batch._piTarget[i]).append(' ').append(batch.getText(i));
+                    break;
+            }
+            events.add(b.toString());
+        }
+    }
+
+    private QName getQName(QualifiedName name) {
+        return new QName(name.namespaceName, name.localName, name.prefix);
+    }
+}
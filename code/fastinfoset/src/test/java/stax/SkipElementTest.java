@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+
+public class SkipElementTest extends TestCase {
+
+    public void testSkipElements() throws Exception {
+        final byte[] b = createSkippingDocument();
+        assertSkipping(b, "skipped", -1);
+        assertSkipping(b, "child", -1);
+        assertSkipping(b, "empty", -1);
+        assertSkipping(b, "inner", -1);
+    }
+
+    public void testSkipUBL() throws Exception {
+        final byte[] b = StAXTestUtil.getUBLDocument();
+        assertSkipping(b, null, 2);
+        assertSkipping(b, null, 3);
+    }
+
+    public void testSkipStreamedContent() throws Exception {
+        final byte[] b = createSkippingDocument();
+        List expected = getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), "skipped", -1, false);
+
+        StAXDocumentParser p = new StAXDocumentParser();
+        p.setContentStreamingThreshold(16);
+        p.setInputStream(new ChunkedInputStream(b));
+        assertEquals(expected, getEvents(p, "skipped", -1, true));
+    }
+
+    public void testNotOnStartElement() throws Exception {
+        StAXDocumentParser p = new StAXDocumentParser(new ByteArrayInputStream(createSkippingDocument()));
+        try {
+            p.skipElement();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        p.nextTag();
+        assertEquals(XMLStreamReader.END_ELEMENT, p.skipElement());
+        assertEquals("root", p.getLocalName());
+        try {
+            p.skipElement();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(XMLStreamReader.END_DOCUMENT, p.next());
+    }
+
+    /**
+     * Assert that the events of a document, with elements skipped, are the
+     * events of the document with the content of those elements removed.
+     */
+    private void assertSkipping(byte[] b, String localName, int depth) throws Exception {
+        List expected = getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), localName, depth, false);
+        List actual = getEvents(new StAXDocumentParser(new ByteArrayInputStream(b)), localName, depth, true);
+        assertEquals(expected, actual);
+    }
+
+    private List getEvents(StAXDocumentParser r, String localName, int depth, boolean skip) throws Exception {
+        List events = new ArrayList();
+        int currentDepth = 0;
+        int skippedDepth = -1;
+        while (r.hasNext()) {
+            final int event = r.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                currentDepth++;
+            }
+
+            if (skippedDepth == -1) {
+                events.add(StAXTestUtil.getEvent(r));
+            }
+
+            if (event == XMLStreamReader.START_ELEMENT && skippedDepth == -1 &&
+                    (currentDepth == depth || r.getLocalName().equals(localName))) {
+                if (skip) {
+                    assertEquals(XMLStreamReader.END_ELEMENT, r.skipElement());
+                    events.add(StAXTestUtil.getEvent(r));
+                    currentDepth--;
+                } else {
+                    skippedDepth = currentDepth;
+                }
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                if (currentDepth == skippedDepth) {
+                    events.add(StAXTestUtil.getEvent(r));
+                    skippedDepth = -1;
+                }
+                currentDepth--;
+            }
+        }
+        return events;
+    }
+
+    private byte[] createSkippingDocument() throws Exception {
+        StringBuffer large = new StringBuffer();
+        for (int i = 0; i < 100; i++) {
+            large.append("large content \u00E9 ");
+        }
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+            w.writeStartElement("root");
+            w.writeNamespace("p", "urn:p");
+            // Names, values and content first occur in skipped elements
+            // and are then referred to by index
+            for (int i = 0; i < 8; i++) {
+                w.writeStartElement("skipped");
+                w.writeAttribute("a" + i % 4, "value " + i % 3);
+                    w.writeStartElement("q" + i % 2, "inner", "urn:q" + i % 2);
+                    w.writeNamespace("q" + i % 2, "urn:q" + i % 2);
+                    w.writeAttribute("q" + i % 2, "urn:q" + i % 2, "b", "inner value " + i % 2);
+                        w.writeComment("comment " + i % 2);
+                        w.writeProcessingInstruction("target" + i % 2, "data " + i % 2);
+                        w.writeCharacters("text " + i % 5);
+                        w.writeEmptyElement("empty");
+                        w.writeAttribute("p", "urn:p", "c", "\u20AC " + i % 2);
+                        w.writeStartElement("child");
+                            w.writeCharacters(large.toString());
+                        w.writeEndElement();
+                        w.writeStartElement("child");
+                            w.writeOctets(data, 0, data.length);
+                        w.writeEndElement();
+                        w.writeStartElement("child");
+                            w.writeStartElement("child");
+                            w.writeEndElement();
+                        w.writeEndElement();
+                    w.writeEndElement();
+                w.writeEndElement();
+
+                w.writeStartElement("kept");
+                w.writeAttribute("a" + i % 4, "value " + i % 3);
+                    w.writeComment("comment " + i % 2);
+                    w.writeProcessingInstruction("target" + i % 2, "data " + i % 2);
+                    w.writeCharacters("text " + i % 5);
+                    w.writeStartElement("q" + i % 2, "inner", "urn:q" + i % 2);
+                    w.writeNamespace("q" + i % 2, "urn:q" + i % 2);
+                    w.writeAttribute("q" + i % 2, "urn:q" + i % 2, "b", "inner value " + i % 2);
+                    w.writeEndElement();
+                    w.writeEmptyElement("empty");
+                    w.writeAttribute("p", "urn:p", "c", "\u20AC " + i % 2);
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Returns at most 100 octets from each read.
+     */
+    private static class ChunkedInputStream extends ByteArrayInputStream {
+        ChunkedInputStream(byte[] b) {
+            super(b);
+        }
+
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 100));
+        }
+    }
+}
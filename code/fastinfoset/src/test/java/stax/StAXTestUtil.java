@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Documents and event descriptions shared by the StAX parser tests.
+ */
+public final class StAXTestUtil {
+
+    public static final String UBL_FINF_RESOURCE = "X.finf/UBL-example.finf";
+
+    private StAXTestUtil() {
+    }
+
+    /**
+     * Get a description of each of the remaining events of a reader.
+     */
+    public static List getEvents(XMLStreamReader r) throws Exception {
+        List events = new ArrayList();
+        while (r.hasNext()) {
+            r.next();
+            events.add(getEvent(r));
+        }
+        return events;
+    }
+
+    /**
+     * Get a description of the current event of a reader.
+     */
+    public static String getEvent(XMLStreamReader r) {
+        StringBuffer b = new StringBuffer();
+        b.append(r.getEventType());
+        switch (r.getEventType()) {
+            case XMLStreamReader.START_ELEMENT:
+                for (int i = 0; i < r.getNamespaceCount(); i++) {
+                    b.append(" xmlns:").append(r.getNamespacePrefix(i)).append('=').append(r.getNamespaceURI(i));
+                }
+                b.append(' ').append(r.getName());
+                for (int i = 0; i < r.getAttributeCount(); i++) {
+                    b.append(' ').append(r.getAttributeName(i)).append('=').append(r.getAttributeValue(i));
+                }
+                break;
+            case XMLStreamReader.END_ELEMENT:
+                b.append(' ').append(r.getName());
+                for (int i = 0; i < r.getNamespaceCount(); i++) {
+                    b.append(" xmlns:").append(r.getNamespacePrefix(i));
+                }
+                break;
+            case XMLStreamReader.CHARACTERS:
+            case XMLStreamReader.CDATA:
+            case XMLStreamReader.COMMENT:
+                b.append(' ').append(r.getText());
+                break;
+            case XMLStreamReader.PROCESSING_INSTRUCTION:
+                b.append(' ').append(r.getPITarget()).append(' ').append(r.getPIData());
+                break;
+        }
+        return b.toString();
+    }
+
+    public static byte[] getUBLDocument() throws Exception {
+        URL u = StAXTestUtil.class.getClassLoader().getResource(UBL_FINF_RESOURCE);
+        InputStream s = u.openStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = s.read(buffer)) != -1) {
+            baos.write(buffer, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Create a document with namespace declarations, attributes, comments,
+     * processing instructions, large and non-ASCII content and a CDATA
+     * section.
+     */
+    public static byte[] createDocument() throws Exception {
+        StringBuffer large = new StringBuffer();
+        for (int i = 0; i < 100; i++) {
+            large.append("large content ");
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+            w.writeStartElement("p", "root", "urn:p");
+            w.writeNamespace("p", "urn:p");
+            w.writeDefaultNamespace("urn:default");
+            w.writeAttribute("a", "value");
+                w.writeComment("comment");
+                w.writeProcessingInstruction("target", "data");
+                for (int i = 0; i < 64; i++) {
+                    w.writeStartElement("urn:default", "child");
+                    w.writeAttribute("p", "urn:p", "index", Integer.toString(i));
+                    w.writeAttribute("name", "name" + i % 4);
+                        w.writeCharacters("text " + i % 8);
+                    w.writeEndElement();
+                }
+                w.writeStartElement("urn:default", "large");
+                    w.writeCharacters(large.toString());
+                w.writeEndElement();
+                w.writeStartElement("urn:default", "other");
+                    w.writeCharacters("caf\u00E9 \u20AC");
+                    w.writeCData("cdata <content>");
+                w.writeEndElement();
+                w.writeEmptyElement("urn:default", "empty");
+            w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        return baos.toByteArray();
+    }
+}
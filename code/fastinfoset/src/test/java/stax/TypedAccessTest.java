@@ -0,0 +1,223 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentSerializer;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class TypedAccessTest extends TestCase {
+
+    private static final int[] INTS = new int[1000];
+    
+    private static final double[] DOUBLES = new double[1000];
+    
+    static {
+        for (int i = 0; i < INTS.length; i++) {
+            INTS[i] = i * 7919 - 1000000;
+            DOUBLES[i] = i / 3.0 - 100;
+        }
+    }
+    
+    private static final UUID ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    
+    public void testAlgorithmData() throws Exception {
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        startElement(s, "i");
+        s.ints(new int[] {-42}, 0, 1);
+        endElement(s, "i");
+        startElement(s, "l");
+        s.longs(new long[] {Long.MIN_VALUE}, 0, 1);
+        endElement(s, "l");
+        startElement(s, "f");
+        s.floats(new float[] {1.5f}, 0, 1);
+        endElement(s, "f");
+        startElement(s, "d");
+        s.doubles(new double[] {Math.PI}, 0, 1);
+        endElement(s, "d");
+        startElement(s, "b");
+        s.booleans(new boolean[] {true}, 0, 1);
+        endElement(s, "b");
+        startElement(s, "u");
+        s.uuids(new long[] {ID.getMostSignificantBits(), ID.getLeastSignificantBits()}, 0, 2);
+        endElement(s, "u");
+        startElement(s, "ia");
+        s.ints(INTS, 0, 500);
+        s.ints(INTS, 500, 500);
+        endElement(s, "ia");
+        startElement(s, "da");
+        s.doubles(DOUBLES, 0, DOUBLES.length);
+        endElement(s, "da");
+        startElement(s, "ib");
+        s.ints(INTS, 0, INTS.length);
+        endElement(s, "ib");
+        s.endElement("", "root", "root");
+        s.endDocument();
+        
+        assertTypedAccess(baos.toByteArray());
+    }
+
+    public void testText() throws Exception {
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        text(s, "i", " -42\n");
+        text(s, "l", "-9223372036854775808");
+        text(s, "f", "1.5");
+        text(s, "d", Double.toString(Math.PI));
+        text(s, "b", " true ");
+        text(s, "u", ID.toString());
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < INTS.length; i++) {
+            b.append(' ').append(INTS[i]);
+        }
+        text(s, "ia", b.toString());
+        b.setLength(0);
+        for (int i = 0; i < DOUBLES.length; i++) {
+            b.append(DOUBLES[i]).append("\t");
+        }
+        text(s, "da", b.toString());
+        // Text split over several chunks
+        startElement(s, "ib");
+        for (int i = 0; i < INTS.length; i++) {
+            final char[] ch = (INTS[i] + " ").toCharArray();
+            s.characters(ch, 0, 2);
+            s.characters(ch, 2, ch.length - 2);
+        }
+        endElement(s, "ib");
+        s.endElement("", "root", "root");
+        s.endDocument();
+        
+        assertTypedAccess(baos.toByteArray());
+    }
+    
+    public void testInvalidContent() throws Exception {
+        SAXDocumentSerializer s = new SAXDocumentSerializer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        s.setOutputStream(baos);
+        s.startDocument();
+        s.startElement("", "root", "root", new AttributesImpl());
+        text(s, "e", "1 2");
+        text(s, "e", "x");
+        text(s, "e", "");
+        text(s, "e", "yes");
+        startElement(s, "e");
+        startElement(s, "e");
+        endElement(s, "e");
+        endElement(s, "e");
+        s.endElement("", "root", "root");
+        s.endDocument();
+        
+        StAXDocumentParser r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        for (int i = 0; i < 5; i++) {
+            r.nextTag();
+            try {
+                if (i == 3) {
+                    r.getElementAsBoolean();
+                } else {
+                    r.getElementAsInt();
+                }
+                fail();
+            } catch (XMLStreamException e) {
+            }
+            if (i < 4) {
+                assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+            }
+        }
+    }
+    
+    private void assertTypedAccess(byte[] b) throws Exception {
+        StAXDocumentParser r = new StAXDocumentParser(new ByteArrayInputStream(b));
+        r.nextTag();
+        r.nextTag();
+        assertEquals(-42, r.getElementAsInt());
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+        r.nextTag();
+        assertEquals(Long.MIN_VALUE, r.getElementAsLong());
+        r.nextTag();
+        assertEquals(1.5f, r.getElementAsFloat(), 0);
+        r.nextTag();
+        assertEquals(Math.PI, r.getElementAsDouble(), 0);
+        r.nextTag();
+        assertTrue(r.getElementAsBoolean());
+        r.nextTag();
+        assertEquals(ID, r.getElementAsUUID());
+        
+        r.nextTag();
+        final int[] ints = r.getElementAsIntArray();
+        assertEquals(INTS.length, ints.length);
+        for (int i = 0; i < INTS.length; i++) {
+            assertEquals(INTS[i], ints[i]);
+        }
+        assertEquals("ia", r.getLocalName());
+        
+        r.nextTag();
+        final double[] doubles = r.getElementAsDoubleArray();
+        assertEquals(DOUBLES.length, doubles.length);
+        for (int i = 0; i < DOUBLES.length; i++) {
+            assertEquals(DOUBLES[i], doubles[i], 0);
+        }
+        
+        // Read in blocks that do not divide the number of values
+        r.nextTag();
+        final int[] block = new int[7];
+        int length = 0;
+        int n;
+        while ((n = r.readElementAsIntArray(block, 0, block.length)) != -1) {
+            assertTrue(n > 0);
+            for (int i = 0; i < n; i++) {
+                assertEquals(INTS[length + i], block[i]);
+            }
+            length += n;
+        }
+        assertEquals(INTS.length, length);
+        assertEquals(XMLStreamReader.END_ELEMENT, r.getEventType());
+        assertEquals("ib", r.getLocalName());
+        assertEquals(-1, r.readElementAsIntArray(block, 0, block.length));
+        
+        assertEquals(XMLStreamReader.END_ELEMENT, r.nextTag());
+        assertEquals("root", r.getLocalName());
+    }
+    
+    private void text(SAXDocumentSerializer s, String name, String text) throws Exception {
+        startElement(s, name);
+        s.characters(text.toCharArray(), 0, text.length());
+        endElement(s, name);
+    }
+    
+    private void startElement(SAXDocumentSerializer s, String name) throws Exception {
+        s.startElement("", name, name, new AttributesImpl());
+    }
+    
+    private void endElement(SAXDocumentSerializer s, String name) throws Exception {
+        s.endElement("", name, name);
+    }
+}
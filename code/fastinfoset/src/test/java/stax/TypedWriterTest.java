@@ -0,0 +1,230 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2004-2011 Oracle and/or its affiliates. All rights reserved.
+ *
+ * Oracle licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package stax;
+
+import com.sun.xml.fastinfoset.sax.SAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentParser;
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+import org.jvnet.fastinfoset.EncodingAlgorithmIndexes;
+import org.jvnet.fastinfoset.sax.EncodingAlgorithmAttributes;
+import org.jvnet.fastinfoset.sax.EncodingAlgorithmContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class TypedWriterTest extends TestCase {
+
+    private static final UUID ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    
+    public void testTypedContent() throws Exception {
+        final int[] ints = new int[1000];
+        final double[] doubles = new double[1000];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 7919 - 1000000;
+            doubles[i] = i / 3.0 - 100;
+        }
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        w.writeIntAttribute("", "", "i", -42);
+        w.writeAttribute("s", "string");
+        w.writeDoubleAttribute("", "", "d", Math.E);
+        w.writeStartElement("i");
+        w.writeInt(Integer.MIN_VALUE);
+        w.writeEndElement();
+        w.writeStartElement("l");
+        w.writeLong(Long.MAX_VALUE);
+        w.writeEndElement();
+        w.writeStartElement("f");
+        w.writeFloat(-0.5f);
+        w.writeEndElement();
+        w.writeStartElement("d");
+        w.writeDouble(Math.PI);
+        w.writeEndElement();
+        w.writeStartElement("b");
+        w.writeBoolean(true);
+        w.writeEndElement();
+        w.writeStartElement("u");
+        w.writeUUID(ID);
+        w.writeEndElement();
+        w.writeStartElement("ia");
+        w.writeIntArray(ints, 0, ints.length);
+        w.writeEndElement();
+        w.writeStartElement("da");
+        w.writeDoubleArray(doubles, 0, 400);
+        w.writeDoubleArray(doubles, 400, 600);
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        
+        StAXDocumentParser r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        assertEquals(3, r.getAttributeCount());
+        assertEquals("-42", r.getAttributeValue(null, "i"));
+        assertEquals("string", r.getAttributeValue(null, "s"));
+        assertEquals(Math.E, Double.parseDouble(r.getAttributeValue(null, "d")), 0);
+        r.nextTag();
+        assertEquals(Integer.MIN_VALUE, r.getElementAsInt());
+        r.nextTag();
+        assertEquals(Long.MAX_VALUE, r.getElementAsLong());
+        r.nextTag();
+        assertEquals(-0.5f, r.getElementAsFloat(), 0);
+        r.nextTag();
+        assertEquals(Math.PI, r.getElementAsDouble(), 0);
+        r.nextTag();
+        assertTrue(r.getElementAsBoolean());
+        r.nextTag();
+        assertEquals(ID, r.getElementAsUUID());
+        r.nextTag();
+        assertArrayEquals(ints, r.getElementAsIntArray());
+        r.nextTag();
+        final double[] d = r.getElementAsDoubleArray();
+        assertEquals(doubles.length, d.length);
+        for (int i = 0; i < d.length; i++) {
+            assertEquals(doubles[i], d[i], 0);
+        }
+        assertEquals(XMLStreamReader.END_ELEMENT, r.nextTag());
+        assertEquals("root", r.getLocalName());
+    }
+    
+    public void testTypedAttributes() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        // More attributes than the initial capacity of the attribute arrays
+        for (int i = 0; i < 40; i++) {
+            if (i % 2 == 0) {
+                w.writeAttribute("s" + i, Integer.toString(i));
+            } else {
+                w.writeLongAttribute("", "", "l" + i, i);
+            }
+        }
+        w.writeFloatAttribute("", "", "f", 1.5f);
+        w.writeBooleanAttribute("", "", "b", false);
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        
+        final List values = new ArrayList();
+        SAXDocumentParser p = new SAXDocumentParser();
+        p.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                EncodingAlgorithmAttributes a = (EncodingAlgorithmAttributes) atts;
+                for (int i = 0; i < a.getLength(); i++) {
+                    values.add(a.getLocalName(i));
+                    values.add(a.getAlgorithmData(i) != null ? 
+                            Integer.valueOf(a.getAlgorithmIndex(i)) : null);
+                    values.add(a.getValue(i));
+                }
+            }
+        });
+        // Report attribute values as algorithm data
+        p.setEncodingAlgorithmContentHandler(new EncodingAlgorithmContentHandler() {
+            public void octets(String URI, int algorithm, byte[] b, int start, int length) {
+            }
+
+            public void object(String URI, int algorithm, Object o) {
+            }
+        });
+        p.parse(new ByteArrayInputStream(baos.toByteArray()));
+        
+        assertEquals(42 * 3, values.size());
+        for (int i = 0; i < 40; i++) {
+            if (i % 2 == 0) {
+                assertEquals("s" + i, values.get(i * 3));
+                assertNull(values.get(i * 3 + 1));
+            } else {
+                assertEquals("l" + i, values.get(i * 3));
+                assertEquals(Integer.valueOf(EncodingAlgorithmIndexes.LONG), values.get(i * 3 + 1));
+            }
+            assertEquals(Integer.toString(i), values.get(i * 3 + 2));
+        }
+        assertEquals(Integer.valueOf(EncodingAlgorithmIndexes.FLOAT), values.get(40 * 3 + 1));
+        assertEquals("1.5", values.get(40 * 3 + 2));
+        assertEquals(Integer.valueOf(EncodingAlgorithmIndexes.BOOLEAN), values.get(41 * 3 + 1));
+        assertEquals("false", values.get(41 * 3 + 2));
+    }
+    
+    public void testAttributeValues() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.writeStartElement("root");
+        try {
+            w.writeAttribute("a", null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        // Namespace declarations are made using writeNamespace
+        w.writeIntAttribute("xmlns", "http://www.w3.org/2000/xmlns/", "p", 1);
+        w.writeAttribute("a", "");
+        w.writeIntAttribute("", "", "i", 1);
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+        
+        XMLStreamReader r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        assertEquals(0, r.getNamespaceCount());
+        assertEquals(2, r.getAttributeCount());
+        assertEquals("a", r.getAttributeLocalName(0));
+        assertEquals("", r.getAttributeValue(0));
+        assertEquals("i", r.getAttributeLocalName(1));
+        assertEquals("1", r.getAttributeValue(1));
+    }
+    
+    public void testLowLevelTypedContent() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StAXDocumentSerializer w = new StAXDocumentSerializer(baos);
+        w.writeStartDocument();
+        w.initiateLowLevelWriting();
+        w.writeLowLevelTerminationAndMark();
+        w.writeLowLevelStartElement(0, "", "root", "");
+        w.writeLowLevelStartAttributes();
+        w.writeLowLevelAttribute("", "", "a");
+        w.writeLowLevelIntAttributeValue(7);
+        w.writeLowLevelEndStartElement();
+        w.writeLowLevelIntArray(new int[] {1, 2, 3}, 1, 2);
+        w.writeLowLevelEndElement();
+        w.writeEndDocument();
+        w.close();
+        
+        StAXDocumentParser r = new StAXDocumentParser(new ByteArrayInputStream(baos.toByteArray()));
+        r.nextTag();
+        assertEquals("root", r.getLocalName());
+        assertEquals("7", r.getAttributeValue(null, "a"));
+        assertArrayEquals(new int[] {2, 3}, r.getElementAsIntArray());
+    }
+    
+    private void assertArrayEquals(int[] expected, int[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+    }
+}